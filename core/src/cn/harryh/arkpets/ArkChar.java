@@ -8,6 +8,7 @@ import cn.harryh.arkpets.animations.AnimClip.AnimStage;
 import cn.harryh.arkpets.animations.AnimClipGroup;
 import cn.harryh.arkpets.animations.AnimComposer;
 import cn.harryh.arkpets.animations.AnimData;
+import cn.harryh.arkpets.assets.ModelAssetStore;
 import cn.harryh.arkpets.assets.ModelItem.ModelAssetAccessor;
 import cn.harryh.arkpets.transitions.EasingFunction;
 import cn.harryh.arkpets.transitions.TransitionFloat;
@@ -27,6 +28,7 @@ import com.badlogic.gdx.utils.SerializationException;
 import com.esotericsoftware.spine.*;
 import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
 
+import java.io.File;
 import java.util.HashMap;
 
 import static cn.harryh.arkpets.Const.*;
@@ -87,6 +89,8 @@ public class ArkChar {
         try {
             String assetLocation = config.character_asset;
             ModelAssetAccessor modelAssetAccessor = new ModelAssetAccessor(config.character_files);
+            // Restore the files that are missing but deduplicated in the asset store
+            ModelAssetStore.restoreFiles(new File(assetLocation));
             String path2atlas = assetLocation + separator + modelAssetAccessor.getFirstFileOf(".atlas");
             String path2skel = assetLocation + separator + modelAssetAccessor.getFirstFileOf(".skel");
             // Load atlas
@@ -76,6 +76,8 @@ public class ArkConfig implements Serializable {
     public float        initial_position_x;
     /** @since ArkPets 3.2 */ @JSONField(defaultValue = "0.2")
     public float        initial_position_y;
+    /** @since ArkPets 3.7 */ @JSONField(defaultValue = "true")
+    public boolean      launcher_models_dedup;
     /** @since ArkPets 3.0 */ @JSONField(defaultValue = "true")
     public boolean      launcher_solid_exit;
     /** @since ArkPets 2.0 */ @JSONField(defaultValue = "INFO")
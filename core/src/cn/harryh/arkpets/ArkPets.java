@@ -4,11 +4,18 @@
 package cn.harryh.arkpets;
 
 import cn.harryh.arkpets.animations.AnimData;
+import cn.harryh.arkpets.animations.BehaviorGraph.Guard;
 import cn.harryh.arkpets.animations.GeneralBehavior;
 import cn.harryh.arkpets.concurrent.SocketClient;
 import cn.harryh.arkpets.transitions.TransitionVector2;
 import cn.harryh.arkpets.tray.MemberTrayImpl;
 import cn.harryh.arkpets.platform.HWndCtrl;
+import cn.harryh.arkpets.platform.MonitorRegistry;
+import cn.harryh.arkpets.platform.MouseEventForwarder;
+import cn.harryh.arkpets.platform.WindowHitIndex;
+import cn.harryh.arkpets.platform.WindowIndex;
+import cn.harryh.arkpets.platform.WindowIndexWorker;
+import cn.harryh.arkpets.platform.WindowOpQueue;
 import cn.harryh.arkpets.platform.WindowSystem;
 import cn.harryh.arkpets.utils.Logger;
 import cn.harryh.arkpets.utils.Plane;
@@ -21,8 +28,6 @@ import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.PixmapIO;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Objects;
 
 import static cn.harryh.arkpets.Const.coreTitleManager;
@@ -39,8 +44,11 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
 
     private HWndCtrl hWndMine;
     private HWndCtrl hWndTopmost;
+    private WindowOpQueue windowOps;
     private LoopCtrl getHWndLoopCtrl;
-    private List<? extends HWndCtrl> hWndList;
+    private WindowHitIndex hWndHitIndex;
+    private WindowIndexWorker windowIndexWorker;
+    private MouseEventForwarder mouseEventForwarder;
 
     private final String APP_TITLE;
     private final MouseStatus mouseStatus = new MouseStatus();
@@ -48,6 +56,10 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
     private boolean isFocused = false;
     private boolean isToolwindowStyle = false;
     private boolean isAlwaysTransparent = false;
+    private volatile boolean isSuspended = false;
+    private ArkConfig.Monitor currentMonitor;
+    private HWndCtrl.WindowRect monitorRect;
+    private MonitorRegistry monitorRegistry;
 
     public ArkPets(String title) {
         APP_TITLE = title;
@@ -80,6 +92,8 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
         plane.setFrict(config.physic_air_friction_acc, config.physic_static_friction_acc);
         plane.setObjSize(cha.camera.getWidth(), cha.camera.getHeight());
         plane.setSpeedLimit(config.physic_speed_limit_x, config.physic_speed_limit_y);
+        monitorRegistry = new MonitorRegistry(2000);
+        monitorRegistry.install();
         ArkConfig.Monitor primaryMonitor = refreshMonitorInfo();
         plane.changePosition(0,
                 primaryMonitor.size[0] * config.initial_position_x - cha.camera.getWidth() / 2f,
@@ -98,9 +112,21 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
 
         // 5.Window style setup
         hWndMine = WindowSystem.findWindow(null, APP_TITLE);
-        hWndMine.setLayered(true);
+        windowOps = new WindowOpQueue(hWndMine);
+        windowOps.setLayered(true);
         if(config.window_style_topmost)
-            hWndMine.setTopmost(true);
+            windowOps.setTopmost(true);
+        windowOps.apply();
+        windowIndexWorker = new WindowIndexWorker(coreTitleManager, (long)(1000f / config.display_fps * 4));
+        windowIndexWorker.setOnUpdated(() -> {
+            // Act as the watchdog to wake up the suspended app.
+            if (isSuspended)
+                Gdx.graphics.requestRendering();
+        });
+        updateWindowIndexQuery();
+        windowIndexWorker.start();
+        mouseEventForwarder = new MouseEventForwarder(64, 50);
+        mouseEventForwarder.start();
         promiseToolwindowStyle(1000);
 
         // 6.Tray icon setup
@@ -112,6 +138,18 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
 
     @Override
     public void render() {
+        // 0.Suspend if the app is covered.
+        if (windowIndexWorker != null) {
+            boolean wasSuspended = isSuspended;
+            if (updateSuspension())
+                return;
+            if (wasSuspended) {
+                // Skip the physics in the resuming frame since the delta time is inaccurate.
+                cha.renderToBatch();
+                return;
+            }
+        }
+
         // 1.Render the next frame.
         cha.renderToBatch();
 
@@ -123,20 +161,26 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
                 if (willReachBorder(cha.getPlaying().mobility())) {
                     // Turn around if auto-walk cause the collision from screen border.
                     newAnim = cha.getPlaying();
-                    newAnim = new AnimData(newAnim.animClip(), null, newAnim.isLoop(), newAnim.isStrict(), -newAnim.mobility());
+                    newAnim = newAnim.derive(-newAnim.mobility());
                     tray.keepAnim = tray.keepAnim == null ? null : newAnim;
                 }
                 walkWindow(0.85f * cha.getPlaying().mobility());
             }
-        } else { // If dragging:
-            newAnim = behavior.dragging();
         }
-        if (plane.getDropping()) { // If dropping, do not change anim.
-            newAnim = behavior.defaultAnim();
-        } else if (plane.getDropped()) { // If dropped, play the dropped anim.
-            newAnim = behavior.dropped();
-        } else if (tray.keepAnim != null) { // If keep-anim is enabled.
-            newAnim = tray.keepAnim;
+        // The "dropped" flag is consumed by the query, so do not query it while dropping.
+        boolean dropping = plane.getDropping();
+        boolean dropped = !dropping && plane.getDropped();
+        int guardMask = (mouseStatus.dragging ? Guard.DRAGGING.bit() : 0) |
+                (dropping ? Guard.DROPPING.bit() : 0) |
+                (dropped ? Guard.DROPPED.bit() : 0) |
+                (tray.keepAnim != null ? Guard.KEEPING.bit() : 0);
+        switch (behavior.arbitrate(guardMask)) {
+            case DRAGGING -> newAnim = behavior.dragging();
+            case DEFAULT -> newAnim = behavior.defaultAnim();
+            case DROPPED -> newAnim = behavior.dropped();
+            case KEEP -> newAnim = tray.keepAnim;
+            default -> {
+            }
         }
         changeAnimation(newAnim); // Apply the new anim.
 
@@ -163,6 +207,16 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
     @Override
     public void dispose() {
         Logger.info("App", "Dispose");
+        if (windowIndexWorker != null)
+            windowIndexWorker.stop();
+        if (monitorRegistry != null)
+            monitorRegistry.uninstall();
+        if (mouseEventForwarder != null) {
+            Logger.debug("Input", "Mouse event forwarding " + mouseEventForwarder);
+            mouseEventForwarder.stop();
+        }
+        if (windowOps != null)
+            Logger.debug("Window", "Window operations " + windowOps);
     }
 
     /* INTERFACES */
@@ -199,14 +253,12 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
             mouseStatus.updatePosition(screenX, screenY, button);
             if (!isMouseAtSolidPixel()) {
                 // Transfer mouse event
-                RelativeWindowPosition rwp = getRelativeWindowPositionAt(screenX, screenY);
-                if (rwp != null)
-                    rwp.sendMouseEvent(switch (button) {
-                        case Input.Buttons.LEFT -> HWndCtrl.MouseEvent.LBUTTONDOWN;
-                        case Input.Buttons.RIGHT -> HWndCtrl.MouseEvent.RBUTTONDOWN;
-                        case Input.Buttons.MIDDLE -> HWndCtrl.MouseEvent.MBUTTONDOWN;
-                        default -> HWndCtrl.MouseEvent.EMPTY;
-                    });
+                transferMouseEvent(screenX, screenY, switch (button) {
+                    case Input.Buttons.LEFT -> HWndCtrl.MouseEvent.LBUTTONDOWN;
+                    case Input.Buttons.RIGHT -> HWndCtrl.MouseEvent.RBUTTONDOWN;
+                    case Input.Buttons.MIDDLE -> HWndCtrl.MouseEvent.MBUTTONDOWN;
+                    default -> HWndCtrl.MouseEvent.EMPTY;
+                });
             } else {
                 if (button == Input.Buttons.LEFT) {
                     // Left Click: Play the specified animation
@@ -259,14 +311,12 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
                 }
             } else if (!isMouseAtSolidPixel()) {
                 // Transfer mouse event
-                RelativeWindowPosition rwp = getRelativeWindowPositionAt(screenX, screenY);
-                if (rwp != null)
-                    rwp.sendMouseEvent(switch (button) {
-                        case Input.Buttons.LEFT -> HWndCtrl.MouseEvent.LBUTTONUP;
-                        case Input.Buttons.RIGHT -> HWndCtrl.MouseEvent.RBUTTONUP;
-                        case Input.Buttons.MIDDLE -> HWndCtrl.MouseEvent.MBUTTONUP;
-                        default -> HWndCtrl.MouseEvent.EMPTY;
-                    });
+                transferMouseEvent(screenX, screenY, switch (button) {
+                    case Input.Buttons.LEFT -> HWndCtrl.MouseEvent.LBUTTONUP;
+                    case Input.Buttons.RIGHT -> HWndCtrl.MouseEvent.RBUTTONUP;
+                    case Input.Buttons.MIDDLE -> HWndCtrl.MouseEvent.MBUTTONUP;
+                    default -> HWndCtrl.MouseEvent.EMPTY;
+                });
             } else if (button == Input.Buttons.LEFT) {
                 // Left Click: Play the specified animation
                 changeAnimation(behavior.clickEnd());
@@ -307,9 +357,7 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
         mouseStatus.updatePosition(screenX, screenY);
         if (!isMouseAtSolidPixel()) {
             // Transfer mouse event
-            RelativeWindowPosition rwp = getRelativeWindowPositionAt(screenX, screenY);
-            if (rwp != null)
-                rwp.sendMouseEvent(HWndCtrl.MouseEvent.MOUSEMOVE);
+            transferMouseEvent(screenX, screenY, HWndCtrl.MouseEvent.MOUSEMOVE);
         }
         return false;
     }
@@ -329,107 +377,122 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
         if (hWndMine == null) return;
         if (getHWndLoopCtrl.isExecutable(Gdx.graphics.getDeltaTime())) {
             refreshMonitorInfo();
-            HWndCtrl new_hwnd_topmost = refreshWindowIndex();
-            hWndTopmost = new_hwnd_topmost != hWndTopmost ? new_hwnd_topmost : hWndTopmost;
-            hWndMine.setTransparent(isAlwaysTransparent);
+            applyWindowIndex(windowIndexWorker.getSnapshot());
+            updateWindowIndexQuery();
+            windowOps.setTransparent(isAlwaysTransparent);
+            windowOps.invalidate(); // Re-assert the z-order in case that other windows covered the app.
             isFocused = hWndMine.isForeground();
         }
-        hWndMine.setWindowPosition(hWndTopmost,
+        windowOps.setWindowPosition(hWndTopmost,
                 (int)windowPosition.now().x, (int)windowPosition.now().y,
                 cha.camera.getWidth(), cha.camera.getHeight());
+        windowOps.apply();
     }
 
-    private RelativeWindowPosition getRelativeWindowPositionAt(int x, int y) {
-        if (hWndList == null)
-            return null;
+    private void transferMouseEvent(int x, int y, HWndCtrl.MouseEvent msg) {
+        if (hWndHitIndex == null || mouseEventForwarder == null || msg == HWndCtrl.MouseEvent.EMPTY)
+            return;
         int absX = x + (int)(windowPosition.now().x);
         int absY = y + (int)(windowPosition.now().y);
-        for (HWndCtrl hWndCtrl : hWndList) {
-            if (coreTitleManager.getNumber(hWndCtrl) < 0)
-                if (hWndCtrl.posLeft <= absX && hWndCtrl.posRight > absX)
-                    if (hWndCtrl.posTop <= absY && hWndCtrl.posBottom > absY) {
-                        int relX = absX - hWndCtrl.posLeft;
-                        int relY = absY - hWndCtrl.posTop;
-                        return new RelativeWindowPosition(hWndCtrl, relX, relY);
-                    }
+        int idx = hWndHitIndex.find(absX, absY);
+        if (idx >= 0) {
+            int relX = absX - hWndHitIndex.getLeft(idx);
+            int relY = absY - hWndHitIndex.getTop(idx);
+            //Logger.debug("Input", "Transfer mouse event " + msg + " to `" + hWndHitIndex.get(idx).getWindowText() + "` @ " + relX + ", " + relY);
+            mouseEventForwarder.offer(hWndHitIndex.get(idx), msg, relX, relY);
         }
-        return null;
     }
 
-    private HWndCtrl refreshWindowIndex() {
-        hWndList = WindowSystem.getWindowList(true);
-        HWndCtrl minWindow = null;
-        HashMap<Integer, HWndCtrl> line = new HashMap<>();
-        int myPos = (int)(windowPosition.now().x + cha.camera.getWidth() / 2f);
-        int minNum = 2048;
-        int myNum = coreTitleManager.getNumber(APP_TITLE);
+    private void updateWindowIndexQuery() {
+        windowIndexWorker.setQuery(new WindowIndex.Query(
+                (int)(windowPosition.now().x + cha.camera.getWidth() / 2f),
+                plane.borderTop(),
+                plane.borderBottomOfWorld(),
+                coreTitleManager.getNumber(APP_TITLE),
+                config.behavior_do_peer_repulsion,
+                config.window_style_topmost,
+                monitorRect
+        ));
+    }
+
+    private void applyWindowIndex(WindowIndex windowIndex) {
+        if (windowIndex == null)
+            return;
+        hWndHitIndex = windowIndex.hitIndex();
+        hWndTopmost = windowIndex.insertAfter();
+        // Reset plane additions.
+        plane.barriers.clear();
+        plane.pointCharges.clear();
         final float quantityProduct = 1;
-        if (plane != null) {
-            // Reset plane additions.
-            plane.barriers.clear();
-            plane.pointCharges.clear();
+        for (HWndCtrl.WindowRect rect : windowIndex.peers()) {
+            // This window is peer window, set as point charges.
+            plane.setPointCharge(-(rect.top() + (rect.bottom() - rect.top()) / 2f),
+                    rect.left() + (rect.right() - rect.left()) / 2f, quantityProduct);
         }
-        for (HWndCtrl hWndCtrl : hWndList) {
-            int wndNum = coreTitleManager.getNumber(hWndCtrl);
-            // Distinguish non-peer windows from peers.
-            if (wndNum == -1) {
-                if (hWndCtrl.posLeft <= myPos && myPos <= hWndCtrl.posRight) {
-                    // This window and the app are share the same vertical line.
-                    if (-hWndCtrl.posBottom < plane.borderTop() && -hWndCtrl.posTop > plane.borderBottom()) {
-                        // This window is "under" the app.
-                        for (int h = -hWndCtrl.posTop; h > -hWndCtrl.posBottom; h--) {
-                            // Mark the window's y-position in the vertical line.
-                            if (!line.containsKey(h))
-                                line.put(h, (h == -hWndCtrl.posTop) ? hWndCtrl : null); // Record this window.
-                        }
-                    }
-                }
-            } else {
-                if (config.behavior_do_peer_repulsion && wndNum != myNum && plane != null) {
-                    // This window is peer window, set as point charges.
-                    plane.setPointCharge(-hWndCtrl.getCenterY(), hWndCtrl.getCenterX(), quantityProduct);
-                }
-                // Find the last peer window to handle the z-index.
-                if (wndNum > myNum && wndNum < minNum) {
-                    minNum = coreTitleManager.getNumber(hWndCtrl);
-                    minWindow = hWndCtrl;
-                }
-            }
-            // Window iteration end.
-        }
-        if (minWindow == null) {
-            // Set as the top window if there is no peer.
-            minWindow = WindowSystem.getTopmostWindow();
+        // Set barriers from the upper one to the lower one, until the barrier is lower than the bottom border.
+        int top = (int)plane.borderTop();
+        for (HWndCtrl.WindowRect rect : windowIndex.barriers()) {
+            int h = -rect.top();
+            if (h > top)
+                continue;
+            if (h <= plane.borderBottom())
+                break;
+            plane.setBarrier(h, rect.left(), rect.right() - rect.left(), false);
         }
-        if (plane != null) {
-            // Set barriers according to the vertical line.
-            for (int h = (int)plane.borderTop(); h > plane.borderBottom(); h--) {
-                if (line.containsKey(h)) {
-                    HWndCtrl temp = line.get(h);
-                    if (temp != null)
-                        plane.setBarrier(-temp.posTop, temp.posLeft, temp.windowWidth, false);
-                }
-            }
+    }
+
+    private boolean updateSuspension() {
+        WindowIndex windowIndex = windowIndexWorker.getSnapshot();
+        HWndCtrl occluder = windowIndex == null ? null : windowIndex.occluder();
+        if ((occluder != null) != isSuspended) {
+            isSuspended = occluder != null;
+            // Rendering is only triggered by the window index worker during the suspension.
+            Gdx.graphics.setContinuousRendering(!isSuspended);
+            if (isSuspended)
+                Logger.info("App", "Suspend since the app is covered by " + occluder);
+            else
+                Logger.info("App", "Resume since the app is no longer covered");
         }
-        return config.window_style_topmost ? minWindow : null; // Return the last peer window.
+        return isSuspended;
     }
 
     private ArkConfig.Monitor refreshMonitorInfo() {
-        ArkConfig.Monitor[] monitors = ArkConfig.Monitor.getMonitors();
-        if (monitors.length == 0) {
-            Logger.error("App", "Failed to get monitors information since no monitor has been found");
-            throw new RuntimeException("Failed to refresh monitors config.");
+        if (monitorRegistry.refresh() || plane.world.isEmpty()) {
+            ArkConfig.Monitor[] monitors = monitorRegistry.getMonitors();
+            if (monitors.length == 0) {
+                Logger.error("App", "Failed to get monitors information since no monitor has been found");
+                throw new RuntimeException("Failed to refresh monitors config.");
+            }
+            // Rebuild the world only if the monitors changed.
+            plane.world.clear();
+            boolean flag = true;
+            for (ArkConfig.Monitor i : monitors) {
+                if (!flag) break;
+                flag = config.display_multi_monitors;
+                float left = i.virtual[0];
+                float right = left + i.size[0];
+                float top = -i.virtual[1];
+                float bottom = top - i.size[1] + config.display_margin_bottom;
+                plane.world.add(new Plane.RectArea(left, right, top, bottom));
+            }
         }
-        plane.world.clear();
-        boolean flag = true;
-        for (ArkConfig.Monitor i : monitors) {
-            if (!flag) break;
-            flag = config.display_multi_monitors;
-            float left = i.virtual[0];
-            float right = left + i.size[0];
-            float top = -i.virtual[1];
-            float bottom = top - i.size[1] + config.display_margin_bottom;
-            plane.world.add(new Plane.RectArea(left, right, top, bottom));
+        ArkConfig.Monitor[] monitors = monitorRegistry.getMonitors();
+        // Find the monitor where the app is.
+        ArkConfig.Monitor current = monitors[0];
+        if (windowPosition != null) {
+            int x = (int)(windowPosition.now().x + cha.camera.getWidth() / 2f);
+            int y = (int)(windowPosition.now().y + cha.camera.getHeight() / 2f);
+            for (ArkConfig.Monitor i : monitors) {
+                if (i.virtual[0] <= x && x < i.virtual[0] + i.size[0] && i.virtual[1] <= y && y < i.virtual[1] + i.size[1]) {
+                    current = i;
+                    break;
+                }
+            }
+        }
+        if (current != currentMonitor) {
+            currentMonitor = current;
+            monitorRect = new HWndCtrl.WindowRect(current.virtual[1], current.virtual[1] + current.size[1],
+                    current.virtual[0], current.virtual[0] + current.size[0]);
         }
         return monitors[0];
     }
@@ -439,7 +502,8 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
             // Make sure ArkPets has been set as foreground window once
             for (int i = 0; i < maxRetries; i++) {
                 if (hWndMine.isForeground()) {
-                    hWndMine.setTaskbar(false);
+                    windowOps.setTaskbar(false);
+                    windowOps.apply();
                     Logger.info("Window", "SetForegroundWindow succeeded");
                     isToolwindowStyle = true;
                     break;
@@ -525,13 +589,4 @@ public class ArkPets extends ApplicationAdapter implements InputProcessor {
             this.button = button;
         }
     }
-
-
-    private record RelativeWindowPosition(HWndCtrl hWndCtrl, int relX, int relY) {
-        public void sendMouseEvent(HWndCtrl.MouseEvent msg) {
-            if(msg == HWndCtrl.MouseEvent.EMPTY) return;
-            //Logger.debug("Input", "Transfer mouse event " + msg + " to `" + hWndCtrl.windowText + "` @ " + relX + ", " + relY);
-            hWndCtrl.updated().sendMouseEvent(msg, relX, relY);
-        }
-    }
 }
@@ -32,6 +32,9 @@ public final class Const {
     public static final int zipBufferSizeDefault      = 16 * 1024;
     public static final int httpBufferSizeDefault     = 16 * 1024;
     public static final int httpTimeoutDefault        = 20 * 1000;
+    public static final int httpSegmentCountMax       = 4;
+    public static final long httpSegmentSizeMin       = 4 * 1024 * 1024L;
+    public static final int httpRetryCountMax         = 5;
     public static final long diskFreeSpaceRecommended = 1024 * 1024 * 1024L;
 
     // Graphics presets
@@ -56,6 +59,7 @@ public final class Const {
     // Paths of static files and internal files
     public static final String configExternal   = "ArkPetsConfig.json";
     public static final String configInternal   = "/ArkPetsConfigDefault.json";
+    public static final String behaviorFile     = "behavior.json";
     public static final String iconFilePng      = "/icons/icon.png";
     public static final String pass1VShader     = "shaders/TCPBVertex.glsl";
     public static final String pass1FShader     = "shaders/TCPBFragment.glsl";
@@ -89,10 +93,21 @@ public final class Const {
         public static final String urlLicense       = "https://github.com/isHarryh/Ark-Pets";
         public static final String urlModelsZip     = "isHarryh/Ark-Models/archive/refs/heads/main.zip";
         public static final String urlModelsData    = "isHarryh/Ark-Models/main/models_data.json";
+        public static final String urlModelsRoot    = "isHarryh/Ark-Models/main/";
         public static final String tempDirPath      = "temp/";
         public static final String fileModelsZipName            = "ArkModels";
         public static final String fileModelsDataPath           = "models_data.json";
+        public static final String fileModelsMetadataPath       = "models_metadata.json";
+        public static final String fileModelsSnapshotPath       = "models_data.snapshot";
+        public static final String fileModelsPinyinPath         = "models_pinyin.json";
+        public static final String fileModelsVerifyCachePath    = "models_verify.json";
+        public static final String fileModelManifestName        = ".manifest.json";
+        public static final String fileSourcesProbeCachePath    = "sources_probe.json";
+        public static final String modelsStoreDirPath           = "models_store/";
         public static final String tempModelsUnzipDirPath       = tempDirPath + "models_unzipped/";
+        public static final String tempModelsSyncDirPath        = tempDirPath + "models_sync/";
+        public static final String tempModelsStagingDirPath     = tempDirPath + "models_staging/";
+        public static final String tempModelsTrashDirPath       = tempDirPath + "models_trash/";
         public static final String tempModelsZipCachePath       = tempDirPath + fileModelsZipName + ".zip";
         public static final String tempQueryVersionCachePath    = tempDirPath + "ApiQueryVersionCache";
     }
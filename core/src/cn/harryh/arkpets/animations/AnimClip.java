@@ -23,32 +23,40 @@ public class AnimClip {
     public final AnimModifier modifier;
     public final AnimStage stage;
     public final float duration;
+    /** The intern pool of the animation clip group which created this clip, may be {@code null}. */
+    AnimDataPool pool;
 
     /** An animation type represents a series of identical animation.
      */
     public enum AnimType {
-        NONE("", 5),
-        DEFAULT("^Default.?$", 5),
-        IDLE("^((Idle)|(Relax)).?$", 5),
-        MOVE("^Move.?$", 5),
-        SIT("^Sit$", 50),
-        SLEEP("^Sleep$", 25),
-        SPECIAL("^Special$", 5),
-        INTERACT("^Interact$", 5),
-        ATTACK("^((Attack)|(Combat)).?$", 5),
-        SKILL("^Skill.?$", 5),
-        START("^Start.?$", 5),
-        DIE("^Die.?$", 5),
-        REVIVE("^((Revive)|(Reborn)).?$", 5);
+        NONE(5, false),
+        DEFAULT(5, true, "Default"),
+        IDLE(5, true, "Idle", "Relax"),
+        MOVE(5, true, "Move"),
+        SIT(50, false, "Sit"),
+        SLEEP(25, false, "Sleep"),
+        SPECIAL(5, false, "Special"),
+        INTERACT(5, false, "Interact"),
+        ATTACK(5, true, "Attack", "Combat"),
+        SKILL(5, true, "Skill"),
+        START(5, true, "Start"),
+        DIE(5, true, "Die"),
+        REVIVE(5, true, "Revive", "Reborn");
 
         /** The regex pattern of this type of animation, which is case-insensitive. */
         public final Pattern pattern;
         /** The y-axis offset that should be applied on this type of animation when rendering. */
         public final int offsetY;
+        /** The keywords of this type of animation, from which the pattern is built. */
+        final List<String> keywords;
+        /** Whether one arbitrary character is allowed to follow the keyword. */
+        final boolean suffixed;
 
-        AnimType(String pattern, int offsetY) {
-            this.pattern = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+        AnimType(int offsetY, boolean suffixed, String... keywords) {
+            this.pattern = compilePattern(suffixed, keywords);
             this.offsetY = offsetY;
+            this.keywords = List.of(keywords);
+            this.suffixed = suffixed;
         }
 
         public Matcher matcher(String input) {
@@ -59,19 +67,22 @@ public class AnimClip {
     /** An animation modifier represents the attributes of a certain animation.
      */
     public enum AnimModifier {
-        NONE(""),
-        BEGIN("^((Begin)|(Start)|(Up)|(Appear))$"),
-        LOOP("^Loop$"),
-        END("^((End)|(Down)|(Disappear))$");
+        NONE(),
+        BEGIN("Begin", "Start", "Up", "Appear"),
+        LOOP("Loop"),
+        END("End", "Down", "Disappear");
 
         public final Pattern pattern;
+        /** The keywords of this modifier, from which the pattern is built. */
+        final List<String> keywords;
 
         public Matcher matcher(String input) {
             return pattern.matcher(input);
         }
 
-        AnimModifier(String regex) {
-            pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+        AnimModifier(String... keywords) {
+            this.pattern = compilePattern(false, keywords);
+            this.keywords = List.of(keywords);
         }
     }
 
@@ -151,13 +162,12 @@ public class AnimClip {
      * @param duration The duration of the animation (second).
      */
     public AnimClip(String name, float duration) {
-        ArrayList<String> elements = split(name);
-        RecognitionResult<AnimType> temp = recognizeType(elements);
+        AnimNameClassifier.Result result = AnimNameClassifier.classify(name);
         this.fullName = name;
-        this.baseName = temp.according;
-        this.type = temp.result;
-        this.modifier = recognizeModifier(elements).result;
-        this.stage = recognizeStage(elements).result;
+        this.baseName = result.baseName();
+        this.type = result.type();
+        this.modifier = result.modifier();
+        this.stage = result.stage();
         this.duration = duration;
     }
 
@@ -168,98 +178,6 @@ public class AnimClip {
         this(anim.getName(), anim.getDuration());
     }
 
-    private record SeparationResult(String result, List<String> fragments) {
-    }
-
-    private record RecognitionResult<T>(T result, String according) {
-    }
-
-    private ArrayList<String> split(String string) {
-        return new ArrayList<>(List.of(string.split("_")));
-    }
-
-    private SeparationResult separateNumber(String string) {
-        char[] chars = string.toCharArray();
-        ArrayList<String> fragment = new ArrayList<>();
-        int headTo = -1;
-        for (int i = 0; i < chars.length; i++) {
-            if (!Character.isDigit(chars[i])) {
-                headTo = i - 1;
-                break;
-            }
-        }
-        if (headTo > -1)
-            fragment.add(String.valueOf(chars, 0, headTo + 1));
-        int tailBegin = chars.length;
-        for (int i = chars.length - 1; i >= 0; i--){
-            if (!Character.isDigit(chars[i])) {
-                tailBegin = i + 1;
-                break;
-            }
-        }
-        if (tailBegin < chars.length)
-            fragment.add(String.valueOf(chars, tailBegin, chars.length - tailBegin));
-        String core = String.valueOf(chars, headTo + 1, tailBegin - headTo - 1);
-        return new SeparationResult(core, fragment);
-    }
-
-    private RecognitionResult<AnimModifier> recognizeModifier(ArrayList<String> elements) {
-        for (var iterator = elements.listIterator(elements.size()); iterator.hasPrevious(); ) {
-            String s = iterator.previous();
-            for (AnimModifier a : AnimModifier.values()) {
-                if (a.matcher(s).matches()) {
-                    iterator.remove();
-                    return new RecognitionResult<>(a, s);
-                }
-            }
-        }
-        return new RecognitionResult<>(AnimModifier.NONE, "");
-    }
-
-    private RecognitionResult<AnimType> recognizeType(ArrayList<String> elements) {
-        for (var iterator = elements.listIterator(); iterator.hasNext(); ) {
-            String s = iterator.next();
-            for (AnimType a : AnimType.values()) {
-                if (a.matcher(s).matches()) {
-                    // NO iterator.remove();
-                    return new RecognitionResult<>(a, s);
-                }
-            }
-        }
-        return new RecognitionResult<>(AnimType.NONE, "");
-    }
-
-    private RecognitionResult<AnimStage> recognizeStage(ArrayList<String> elements) {
-        final AnimType[] exMatchingTypes = new AnimType[]{AnimType.IDLE, AnimType.MOVE/*, AnimType.ATTACK*/};
-        final Pattern exMatchingPattern = Pattern.compile("\\d", Pattern.CASE_INSENSITIVE);
-        for (var iterator = elements.listIterator(); iterator.hasNext(); ) {
-            String s = iterator.next();
-            /* Simple matching */
-            for (AnimStage.AnimCommonStage a : AnimStage.AnimCommonStage.values()) {
-                if (a.matcher(s).matches()) {
-                    iterator.remove();
-                    return new RecognitionResult<>(new AnimStage(s), s);
-                }
-            }
-            /* Extensive matching : Since the naming system of Arknights' animation is so f**king a mess,
-            it is necessary to do additional matching in order to figure out their stage's info correctly. */
-            SeparationResult separation = separateNumber(s);
-            for (AnimType t : exMatchingTypes) {
-                if (t.matcher(separation.result()).matches()) {
-                    String s1;
-                    if (!separation.fragments().isEmpty()) s1 = separation.fragments().get(0);
-                    else if (iterator.hasNext()) s1 = elements.get(iterator.nextIndex());
-                    else break;
-                    if (exMatchingPattern.matcher(s1).matches()) {
-                        // NO iterator.remove();
-                        return new RecognitionResult<>(new AnimStage('C' + s1), s1);
-                    }
-                }
-            }
-        }
-        return new RecognitionResult<>(new AnimStage(0), "");
-    }
-
     @Override
     public String toString() {
         ArrayList<String> stringArray = new ArrayList<>();
@@ -293,4 +211,12 @@ public class AnimClip {
     public int hashCode() {
         return Objects.hash(fullName, baseName, type, modifier, stage, duration);
     }
+
+    private static Pattern compilePattern(boolean suffixed, String... keywords) {
+        // Such as "^Sit$", "^Move.?$" and "^((Idle)|(Relax)).?$"
+        if (keywords.length == 0)
+            return Pattern.compile("", Pattern.CASE_INSENSITIVE);
+        String body = keywords.length == 1 ? keywords[0] : "((" + String.join(")|(", keywords) + "))";
+        return Pattern.compile("^" + body + (suffixed ? ".?$" : "$"), Pattern.CASE_INSENSITIVE);
+    }
 }
@@ -14,11 +14,20 @@ import java.util.*;
  */
 public class AnimClipGroup implements Collection<AnimClip> {
     protected final ArrayList<AnimClip> animClipList;
+    private final EnumMap<AnimType, AnimData> streamedAnimDataCache = new EnumMap<>(AnimType.class);
+    private final EnumMap<AnimType, AnimData> loopAnimDataCache = new EnumMap<>(AnimType.class);
+    private final EnumMap<AnimType, AnimData> strictAnimDataCache = new EnumMap<>(AnimType.class);
+    private EnumMap<AnimType, EnumMap<AnimModifier, AnimClip>> typeModifierIndex;
 
     public AnimClipGroup(Animation[] animList) {
         this.animClipList = new ArrayList<>();
-        for (Animation a : animList)
-            this.animClipList.add(new AnimClip(a));
+        // All the animation data drawn from the clips of this group share one intern pool
+        AnimDataPool pool = new AnimDataPool();
+        for (Animation a : animList) {
+            AnimClip clip = new AnimClip(a);
+            clip.pool = pool;
+            this.animClipList.add(clip);
+        }
         sortStages();
     }
 
@@ -100,21 +109,24 @@ public class AnimClipGroup implements Collection<AnimClip> {
      * @return The animation data whose animation clip will be none if not found.
      */
     public AnimData getStreamedAnimData(AnimType type) {
-        AnimClipGroup found = this.findAnimations(type);
-        AnimClip begin = found.findAnimations(AnimModifier.BEGIN).get(0);
-        AnimClip end = found.findAnimations(AnimModifier.END).get(0);
-        AnimClip loop = found.findAnimations(AnimModifier.LOOP).get(0);
-        AnimClip none = found.findAnimations(AnimModifier.NONE).get(0);
-        AnimClip center = loop != null ? loop : none;
-        if (center != null) {
-            AnimData result = new AnimData(center);
-            if (begin != null)
-                result = new AnimData(begin).join(result);
-            if (end != null)
-                result = result.join(new AnimData(end));
-            return result;
+        AnimData cached = streamedAnimDataCache.get(type);
+        if (cached == null) {
+            AnimClip begin = findFirstAnimation(type, AnimModifier.BEGIN);
+            AnimClip end = findFirstAnimation(type, AnimModifier.END);
+            AnimClip center = findCenterAnimation(type);
+            if (center != null) {
+                cached = new AnimData(center);
+                if (begin != null)
+                    cached = new AnimData(begin).join(cached);
+                if (end != null)
+                    cached = cached.join(new AnimData(end));
+            } else {
+                cached = new AnimData(null);
+            }
+            cached = canonicalOf(cached);
+            streamedAnimDataCache.put(type, cached);
         }
-        return new AnimData(null);
+        return cached;
     }
 
     /** Draws a loop animation data from this animation clip group.
@@ -123,14 +135,14 @@ public class AnimClipGroup implements Collection<AnimClip> {
      * @param type The specified animation type.
      * @return The animation data whose animation clip will be none if not found.
      */
-    public AnimData getLoopAnimData( AnimType type) {
-        AnimClipGroup found = this.findAnimations(type);
-        AnimClip loop = found.findAnimations(AnimModifier.LOOP).get(0);
-        AnimClip none = found.findAnimations(AnimModifier.NONE).get(0);
-        AnimClip center = loop != null ? loop : none;
-        if (center != null)
-            return new AnimData(center, null, true, false, 0);
-        return new AnimData(null);
+    public AnimData getLoopAnimData(AnimType type) {
+        AnimData cached = loopAnimDataCache.get(type);
+        if (cached == null) {
+            AnimClip center = findCenterAnimation(type);
+            cached = canonicalOf(center != null ? new AnimData(center, null, true, false, 0) : new AnimData(null));
+            loopAnimDataCache.put(type, cached);
+        }
+        return cached;
     }
 
     /** Draws a strict animation data from this animation clip group.
@@ -140,13 +152,50 @@ public class AnimClipGroup implements Collection<AnimClip> {
      * @return The animation data whose animation clip will be none if not found.
      */
     public AnimData getStrictAnimData(AnimType type) {
-        AnimClipGroup found = this.findAnimations(type);
-        AnimClip loop = found.findAnimations(AnimModifier.LOOP).get(0);
-        AnimClip none = found.findAnimations(AnimModifier.NONE).get(0);
-        AnimClip center = loop != null ? loop : none;
-        if (center != null)
-            return new AnimData(center, null, false, true);
-        return new AnimData(null);
+        AnimData cached = strictAnimDataCache.get(type);
+        if (cached == null) {
+            AnimClip center = findCenterAnimation(type);
+            cached = canonicalOf(center != null ? new AnimData(center, null, false, true) : new AnimData(null));
+            strictAnimDataCache.put(type, cached);
+        }
+        return cached;
+    }
+
+    /** Finds the first animation that matches the given type and modifier, using the precomputed index.
+     * @param type The specified animation type.
+     * @param modifier The specified animation modifier.
+     * @return The animation clip, or {@code null} if not found.
+     */
+    public AnimClip findFirstAnimation(AnimType type, AnimModifier modifier) {
+        if (typeModifierIndex == null) {
+            // Build the index in one pass, where only the first matched animation is kept
+            typeModifierIndex = new EnumMap<>(AnimType.class);
+            for (AnimClip a : animClipList)
+                typeModifierIndex.computeIfAbsent(a.type, k -> new EnumMap<>(AnimModifier.class))
+                        .putIfAbsent(a.modifier, a);
+        }
+        EnumMap<AnimModifier, AnimClip> modifierMap = typeModifierIndex.get(type);
+        return modifierMap == null ? null : modifierMap.get(modifier);
+    }
+
+    private static AnimData canonicalOf(AnimData animData) {
+        AnimDataPool pool = AnimDataPool.of(animData);
+        return pool != null ? pool.intern(animData) : animData;
+    }
+
+    private AnimClip findCenterAnimation(AnimType type) {
+        AnimClip loop = findFirstAnimation(type, AnimModifier.LOOP);
+        return loop != null ? loop : findFirstAnimation(type, AnimModifier.NONE);
+    }
+
+    /** Discards the precomputed index and the memoized animation data,
+     * which should be called whenever the animation clip list is modified.
+     */
+    protected void invalidateIndex() {
+        typeModifierIndex = null;
+        streamedAnimDataCache.clear();
+        loopAnimDataCache.clear();
+        strictAnimDataCache.clear();
     }
 
     protected void sortStages() {
@@ -163,16 +212,35 @@ public class AnimClipGroup implements Collection<AnimClip> {
 
     @Override
     public Iterator<AnimClip> iterator() {
-        return animClipList.iterator();
+        Iterator<AnimClip> iterator = animClipList.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public AnimClip next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                invalidateIndex();
+            }
+        };
     }
 
     @Override
     public boolean add(AnimClip animClip) {
+        invalidateIndex();
         return animClipList.add(animClip);
     }
 
     @Override
     public boolean addAll(Collection<? extends AnimClip> c) {
+        invalidateIndex();
         return animClipList.addAll(c);
     }
 
@@ -188,21 +256,25 @@ public class AnimClipGroup implements Collection<AnimClip> {
 
     @Override
     public boolean remove(Object o) {
+        invalidateIndex();
         return animClipList.remove(o);
     }
 
     @Override
     public boolean removeAll(Collection<?> c) {
+        invalidateIndex();
         return animClipList.removeAll(c);
     }
 
     @Override
     public boolean retainAll(Collection<?> c) {
+        invalidateIndex();
         return animClipList.retainAll(c);
     }
 
     @Override
     public void clear() {
+        invalidateIndex();
         animClipList.clear();
     }
 
@@ -1,4 +1,4 @@
-/** Copyright (c) 2022-2024, Harry Huang
+/** Copyright (c) 2022-2025, Harry Huang
  * At GPL-3.0 License
  */
 package cn.harryh.arkpets.animations;
@@ -34,7 +34,11 @@ public class AnimComposer {
 
     public boolean offer(AnimData animData) {
         if (animData != null && !animData.isEmpty()) {
-            if (playing == null || playing.isEmpty() || (!playing.isStrict() && !playing.equals(animData))) {
+            // Compare the canonical instances by identity instead of comparing the whole sequences
+            AnimDataPool pool = AnimDataPool.of(animData);
+            if (pool != null)
+                animData = pool.intern(animData);
+            if (playing == null || playing.isEmpty() || (!playing.isStrict() && !isSame(playing, animData))) {
                 playing = animData;
                 state.setAnimation(coreTrackId, playing.name(), playing.isLoop());
                 onApply(playing);
@@ -44,6 +48,14 @@ public class AnimComposer {
         return false;
     }
 
+    private static boolean isSame(AnimData a, AnimData b) {
+        if (a == b)
+            return true;
+        AnimDataPool pool = AnimDataPool.of(b);
+        // Distinct canonical instances of the same pool are never equal
+        return (pool == null || pool != AnimDataPool.of(a)) && a.equals(b);
+    }
+
     public AnimData getPlaying() {
         return playing;
     }
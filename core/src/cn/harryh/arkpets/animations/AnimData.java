@@ -38,18 +38,26 @@ public record AnimData(
     }
 
     /** Derives a variation of this animation data by modifying the mobility property.
+     * If the animation clip belongs to an {@link AnimDataPool}, the canonical instance will be returned.
      * @param mobility New value for {@code mobility}.
      * @return New animation data.
      */
     public AnimData derive(int mobility) {
+        AnimDataPool pool = AnimDataPool.of(this);
+        if (pool != null)
+            return pool.derive(this, mobility);
         return new AnimData(this.animClip, this.animNext, this.isLoop, this.isStrict, mobility);
     }
 
     /** Joins another animation data, which would be applied after this animation ended, to this animation data.
+     * If the animation clip belongs to an {@link AnimDataPool}, the canonical instance will be returned.
      * @param animNext The given animation data.
      * @return New animation data.
      */
     public AnimData join(AnimData animNext) {
+        AnimDataPool pool = AnimDataPool.of(this);
+        if (pool != null)
+            return pool.join(this, animNext);
         if (this.animNext == null)
             return new AnimData(this.animClip, animNext, this.isLoop, this.isStrict, this.mobility);
         else
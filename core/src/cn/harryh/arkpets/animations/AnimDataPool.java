@@ -0,0 +1,187 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.animations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+
+/** The intern pool of {@link AnimData}, which maps every distinct animation sequence to a canonical instance.
+ * Each {@link AnimClipGroup} that creates its own animation clips owns a pool, so the pool lives as long as the character.
+ * <hr>
+ * A sequence is flattened into a table row of its animation clip, the id of its next sequence, its flags
+ * and its mobility. Since the next sequence of a canonical instance is also canonical, two canonical instances
+ * are equal if and only if they are the same object, which makes the comparisons O(1).
+ * The results of {@link #join(AnimData, AnimData)} and {@link #derive(AnimData, int)} are memoized by the ids,
+ * so repeating them returns the same canonical instance without allocation.
+ * <hr>
+ * The animation clips are compared by identity, because each animation clip is created only once
+ * by its {@link AnimClipGroup}. The pool is not thread-safe, and should only be used by the thread
+ * which owns the character.
+ * @since ArkPets 3.7
+ */
+final class AnimDataPool {
+    private final IdentityHashMap<AnimData, Integer> idMap = new IdentityHashMap<>();
+    private final ArrayList<AnimData> table = new ArrayList<>();
+    private final HashMap<Row, Integer> rowMap = new HashMap<>();
+    private final LongIntMap joinCache = new LongIntMap();
+    private final LongIntMap deriveCache = new LongIntMap();
+
+    /** Gets the pool which the animation clip of the given animation data belongs to.
+     * @param animData The animation data.
+     * @return The pool, or {@code null} if the animation data is empty or its clip does not belong to any pool.
+     */
+    static AnimDataPool of(AnimData animData) {
+        return animData == null || animData.animClip() == null ? null : animData.animClip().pool;
+    }
+
+    /** Gets the canonical instance of the given animation data.
+     * @param animData The animation data.
+     * @return The canonical instance, which equals to the given one.
+     */
+    AnimData intern(AnimData animData) {
+        return table.get(idOf(animData));
+    }
+
+    /** Joins the second animation data to the end of the first one.
+     * @param first The first animation data.
+     * @param second The animation data to join, may be {@code null}.
+     * @return The canonical instance of the joined animation data.
+     */
+    AnimData join(AnimData first, AnimData second) {
+        int firstId = idOf(first);
+        if (second == null)
+            return table.get(firstId);
+        return table.get(joinOf(firstId, idOf(second)));
+    }
+
+    /** Derives a variation of the animation data by modifying the mobility property.
+     * @param animData The animation data.
+     * @param mobility New value for {@code mobility}.
+     * @return The canonical instance of the derived animation data.
+     */
+    AnimData derive(AnimData animData, int mobility) {
+        int id = idOf(animData);
+        long key = ((long)id << 32) | (mobility & 0xffffffffL);
+        int result = deriveCache.get(key);
+        if (result < 0) {
+            AnimData a = table.get(id);
+            result = idOf(new AnimData(a.animClip(), a.animNext(), a.isLoop(), a.isStrict(), mobility));
+            deriveCache.put(key, result);
+        }
+        return table.get(result);
+    }
+
+    /** Gets the count of the canonical instances.
+     * @return The count.
+     */
+    int size() {
+        return table.size();
+    }
+
+    private int joinOf(int firstId, int secondId) {
+        long key = ((long)firstId << 32) | (secondId & 0xffffffffL);
+        int result = joinCache.get(key);
+        if (result < 0) {
+            AnimData a = table.get(firstId);
+            AnimData next = a.animNext() == null ? table.get(secondId) : table.get(joinOf(idOf(a.animNext()), secondId));
+            result = idOf(new AnimData(a.animClip(), next, a.isLoop(), a.isStrict(), a.mobility()));
+            joinCache.put(key, result);
+        }
+        return result;
+    }
+
+    private int idOf(AnimData animData) {
+        Integer id = idMap.get(animData);
+        if (id != null)
+            return id;
+        // Intern the next sequence first so that the row refers to a canonical instance
+        AnimData next = animData.animNext();
+        int nextId = next == null ? -1 : idOf(next);
+        Row row = new Row(animData.animClip(), nextId, animData.isLoop(), animData.isStrict(), animData.mobility());
+        id = rowMap.get(row);
+        if (id != null)
+            return id;
+        AnimData canonical = next == null || table.get(nextId) == next ? animData :
+                new AnimData(animData.animClip(), table.get(nextId), animData.isLoop(), animData.isStrict(), animData.mobility());
+        id = table.size();
+        table.add(canonical);
+        idMap.put(canonical, id);
+        rowMap.put(row, id);
+        return id;
+    }
+
+
+    /** The flattened row of an animation sequence, whose animation clip is compared by identity.
+     */
+    private record Row(AnimClip animClip, int nextId, boolean isLoop, boolean isStrict, int mobility) {
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Row row)) return false;
+            return animClip == row.animClip && nextId == row.nextId && isLoop == row.isLoop &&
+                    isStrict == row.isStrict && mobility == row.mobility;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(animClip);
+            result = 31 * result + nextId;
+            result = 31 * result + (isLoop ? 1 : 0);
+            result = 31 * result + (isStrict ? 1 : 0);
+            return 31 * result + mobility;
+        }
+    }
+
+
+    /** The open-addressing hash map from long keys to non-negative int values, which does not box its entries.
+     */
+    private static final class LongIntMap {
+        private long[] keys = new long[64];
+        private int[] values = new int[64];
+        private boolean[] used = new boolean[64];
+        private int size = 0;
+
+        private int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; used[i]; i = (i + 1) & mask)
+                if (keys[i] == key)
+                    return values[i];
+            return -1;
+        }
+
+        private void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length)
+                grow();
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (used[i] && keys[i] != key)
+                i = (i + 1) & mask;
+            if (!used[i])
+                size++;
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++)
+                if (oldUsed[i])
+                    put(oldKeys[i], oldValues[i]);
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.animations;
+
+import cn.harryh.arkpets.animations.AnimClip.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+
+/** The classifier that recognizes the type, modifier and stage of an animation by its name.
+ * <hr>
+ * The keywords declared in {@link AnimType} and {@link AnimModifier} are compiled into tables dispatched by the initial letter,
+ * so that a name can be classified in a single pass over its fragments without any regex matching.
+ * The result is exactly the same as matching the case-insensitive patterns built from the same keywords,
+ * as well as the patterns of {@code AnimCommonStage}, against the fragments split by {@code "_"}.
+ * @since ArkPets 3.7
+ */
+final class AnimNameClassifier {
+    private static final int tableSize = 128;
+    private static final List<List<Rule<AnimType>>> typeTable = compile(AnimType.values(), t -> t.keywords, t -> t.suffixed);
+    private static final List<List<Rule<AnimModifier>>> modifierTable = compile(AnimModifier.values(), m -> m.keywords, m -> false);
+    private static final AnimType[] exMatchingTypes = new AnimType[]{AnimType.IDLE, AnimType.MOVE/*, AnimType.ATTACK*/};
+
+    private AnimNameClassifier() {
+    }
+
+    /** Classifies an animation by its full name.
+     * @param name The full name of the animation.
+     * @return The classification result.
+     */
+    static Result classify(String name) {
+        // 1.Locate the fragments (the same as String.split("_"), whose trailing empty fragments are removed)
+        int length = name.length();
+        int count = 1;
+        for (int i = 0; i < length; i++)
+            if (name.charAt(i) == '_')
+                count++;
+        int[] bounds = new int[count + 1];
+        for (int i = 0, k = 1; i < length; i++)
+            if (name.charAt(i) == '_')
+                bounds[k++] = i + 1;
+        bounds[count] = length + 1;
+        if (count > 1)
+            while (count > 0 && bounds[count] - 1 == bounds[count - 1])
+                count--;
+
+        // 2.Recognize the type (the first matched fragment)
+        AnimType type = AnimType.NONE;
+        String baseName = "";
+        for (int i = 0; i < count; i++) {
+            AnimType t = match(typeTable, AnimType.NONE, name, bounds[i], bounds[i + 1] - 1);
+            if (t != null) {
+                type = t;
+                baseName = name.substring(bounds[i], bounds[i + 1] - 1);
+                break;
+            }
+        }
+
+        // 3.Recognize the modifier (the last matched fragment, which is excluded from the later recognition)
+        AnimModifier modifier = AnimModifier.NONE;
+        int removed = -1;
+        for (int i = count - 1; i >= 0; i--) {
+            AnimModifier m = match(modifierTable, AnimModifier.NONE, name, bounds[i], bounds[i + 1] - 1);
+            if (m != null) {
+                modifier = m;
+                removed = i;
+                break;
+            }
+        }
+
+        // 4.Recognize the stage
+        AnimStage stage = null;
+        for (int i = 0; i < count && stage == null; i++) {
+            if (i == removed)
+                continue;
+            stage = matchStage(name, bounds[i], bounds[i + 1] - 1, i + 1 == removed ? i + 2 : i + 1, count, bounds);
+        }
+        return new Result(type, baseName, modifier, stage != null ? stage : new AnimStage(0));
+    }
+
+    private static AnimStage matchStage(String name, int begin, int end, int next, int count, int[] bounds) {
+        /* Simple matching */
+        int len = end - begin;
+        if (len == 0)
+            return new AnimStage(0);
+        char c0 = name.charAt(begin);
+        if (len == 2 && (c0 == 'C' || c0 == 'c') && isAsciiDigit(name.charAt(begin + 1)))
+            return new AnimStage(name.charAt(begin + 1) - '0');
+        if (len == 1 && isAsciiLetter(c0))
+            return new AnimStage(name.substring(begin, end));
+        /* Extensive matching : Since the naming system of Arknights' animation is so f**king a mess,
+        it is necessary to do additional matching in order to figure out their stage's info correctly. */
+        int coreBegin = begin;
+        while (coreBegin < end && Character.isDigit(name.charAt(coreBegin)))
+            coreBegin++;
+        int coreEnd = end;
+        while (coreEnd > begin && Character.isDigit(name.charAt(coreEnd - 1)))
+            coreEnd--;
+        int s1Begin, s1End;
+        if (coreBegin == end) {
+            // All the chars are digits, so there is no number fragment
+            coreBegin = begin;
+            coreEnd = end;
+            s1Begin = s1End = -1;
+        } else if (coreBegin > begin) {
+            s1Begin = begin;
+            s1End = coreBegin;
+        } else if (coreEnd < end) {
+            s1Begin = coreEnd;
+            s1End = end;
+        } else {
+            s1Begin = s1End = -1;
+        }
+        for (AnimType t : exMatchingTypes) {
+            if (match(typeTable, AnimType.NONE, name, coreBegin, coreEnd) == t) {
+                if (s1Begin < 0) {
+                    if (next >= count)
+                        break;
+                    s1Begin = bounds[next];
+                    s1End = bounds[next + 1] - 1;
+                }
+                if (s1End - s1Begin == 1 && isAsciiDigit(name.charAt(s1Begin)))
+                    return new AnimStage(name.charAt(s1Begin) - '0');
+            }
+        }
+        return null;
+    }
+
+    private static <T> T match(List<List<Rule<T>>> table, T emptyTarget, String name, int begin, int end) {
+        if (begin == end)
+            return emptyTarget;
+        char c0 = name.charAt(begin);
+        if (c0 >= tableSize)
+            return null;
+        List<Rule<T>> rules = table.get(c0);
+        for (int i = 0, n = rules.size(); i < n; i++) {
+            Rule<T> rule = rules.get(i);
+            if (rule.matches(name, begin, end))
+                return rule.target;
+        }
+        return null;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static <T extends Enum<T>> List<List<Rule<T>>> compile(T[] targets, Function<T, List<String>> keywords,
+                                                                  Predicate<T> suffixed) {
+        // Build the rules from the keywords declared by the targets, in the declaring order of the targets
+        ArrayList<Rule<T>> rules = new ArrayList<>();
+        for (T target : targets)
+            for (String keyword : keywords.apply(target))
+                rules.add(new Rule<>(target, keyword.toLowerCase(Locale.ROOT), suffixed.test(target)));
+        // Group the rules by their initial letters
+        ArrayList<List<Rule<T>>> table = new ArrayList<>(tableSize);
+        for (int c = 0; c < tableSize; c++) {
+            ArrayList<Rule<T>> group = new ArrayList<>();
+            for (Rule<T> rule : rules) {
+                char c0 = rule.keyword.charAt(0);
+                if (c == c0 || c == Character.toUpperCase(c0))
+                    group.add(rule);
+            }
+            table.add(List.copyOf(group));
+        }
+        return List.copyOf(table);
+    }
+
+
+    /** The classification result of an animation name.
+     * @param type The animation type.
+     * @param baseName The fragment according to which the type was recognized.
+     * @param modifier The animation modifier.
+     * @param stage The animation stage.
+     */
+    record Result(AnimType type, String baseName, AnimModifier modifier, AnimStage stage) {
+    }
+
+
+    /** A keyword rule, which matches the keyword case-insensitively (ASCII only),
+     * optionally followed by one arbitrary code point except the line terminators.
+     */
+    private record Rule<T>(T target, String keyword, boolean allowSuffix) {
+        boolean matches(String name, int begin, int end) {
+            int len = keyword.length();
+            if (end - begin < len)
+                return false;
+            for (int i = 0; i < len; i++) {
+                char k = keyword.charAt(i);
+                char c = name.charAt(begin + i);
+                if (c != k && c != (char)(k - ('a' - 'A')))
+                    return false;
+            }
+            int rest = end - begin - len;
+            if (rest == 0)
+                return true;
+            if (!allowSuffix)
+                return false;
+            int offset = begin + len;
+            if (rest == 1)
+                return !isLineTerminator(name.charAt(offset));
+            return rest == 2 && Character.isHighSurrogate(name.charAt(offset)) &&
+                    Character.isLowSurrogate(name.charAt(offset + 1));
+        }
+    }
+}
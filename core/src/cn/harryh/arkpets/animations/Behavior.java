@@ -5,15 +5,21 @@ package cn.harryh.arkpets.animations;
 
 import cn.harryh.arkpets.ArkConfig;
 
+import java.util.SplittableRandom;
+
 
 abstract public class Behavior {
     protected AnimDataWeight[] action_list;
     protected AnimClipGroup anim_list;
     protected ArkConfig config;
+    protected BehaviorGraph graph;
     protected float deltaMin;
     protected float timeRec;
     protected float duraRec;
     protected int idxRec;
+    private SplittableRandom random;
+    private AnimDataWeight[] aliasSource;
+    private AliasTable aliasTable;
 
     /** Character Behavior Controller Instance.
      * @param config ArkConfig object.
@@ -23,10 +29,19 @@ abstract public class Behavior {
         action_list = null;
         anim_list = animList;
         this.config = config;
+        graph = BehaviorGraph.getDefault();
         deltaMin = 0.5f;
+        random = new SplittableRandom();
         autoCtrlReset();
     }
 
+    /** Sets a fixed seed of the random generator, so that the random actions will be reproducible.
+     * @param seed The seed.
+     */
+    public void setRandomSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
     /** Gets a random animation.
      * @param deltaTime The delta time.
      * @return AnimData object.
@@ -54,25 +69,26 @@ abstract public class Behavior {
         idxRec = 0;
     }
 
-    /** Selects an action to play randomly.
+    /** Selects an action to play randomly, where the probability of each action is proportional to its weight.
      * @return The index of the action.
      */
     protected final int getRandomAction() {
-        // Calculate the sum of all action's weight
-        int weight_sum = 0;
-        for (AnimDataWeight i: action_list) {
-            weight_sum += i.weight();
-        }
-        // Random select a weight
-        int weight_select = (int)Math.ceil(Math.random() * weight_sum);
-        // Figure out which action the weight referred
-        weight_sum = 0;
-        for (int j = 0; j < action_list.length; j++) {
-            weight_sum += action_list[j].weight();
-            if (weight_select <= weight_sum)
-                return j;
+        if (action_list.length == 0)
+            return -1;
+        if (aliasSource != action_list) {
+            // Rebuild the alias table only if the action list was replaced
+            aliasTable = new AliasTable(action_list);
+            aliasSource = action_list;
         }
-        return -1;
+        return aliasTable.sample(random);
+    }
+
+    /** Decides where the animation of the next frame comes from, according to the rules of the behavior graph.
+     * @param guardMask The bitmask of the guards that currently hold, see {@link BehaviorGraph.Guard#bit()}.
+     * @return The reaction to apply.
+     */
+    public final BehaviorGraph.Reaction arbitrate(int guardMask) {
+        return graph.lookup(guardMask);
     }
 
     /** Gets the default animation.
@@ -109,4 +125,58 @@ abstract public class Behavior {
     public AnimData dropped() {
         return new AnimData(null);
     }
+
+
+    /** The alias table (Vose's alias method) for O(1) weighted sampling, computed in exact integer arithmetic.
+     */
+    private static final class AliasTable {
+        private final long total;
+        private final long[] prob;
+        private final int[] alias;
+
+        private AliasTable(AnimDataWeight[] actions) {
+            int n = actions.length;
+            long sum = 0;
+            for (AnimDataWeight i : actions)
+                sum += Math.max(0, i.weight());
+            total = sum;
+            prob = new long[n];
+            alias = new int[n];
+            // Scale the weights so that the average equals the total
+            long[] scaled = new long[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallSize = 0, largeSize = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = Math.max(0, actions[i].weight()) * (long)n;
+                alias[i] = i;
+                if (scaled[i] < total)
+                    small[smallSize++] = i;
+                else
+                    large[largeSize++] = i;
+            }
+            while (smallSize > 0 && largeSize > 0) {
+                int l = small[--smallSize];
+                int g = large[--largeSize];
+                prob[l] = scaled[l];
+                alias[l] = g;
+                scaled[g] = scaled[g] + scaled[l] - total;
+                if (scaled[g] < total)
+                    small[smallSize++] = g;
+                else
+                    large[largeSize++] = g;
+            }
+            while (largeSize > 0)
+                prob[large[--largeSize]] = total;
+            while (smallSize > 0)
+                prob[small[--smallSize]] = total;
+        }
+
+        private int sample(SplittableRandom random) {
+            if (total <= 0)
+                return 0;
+            int i = random.nextInt(prob.length);
+            return random.nextLong(total) < prob[i] ? i : alias[i];
+        }
+    }
 }
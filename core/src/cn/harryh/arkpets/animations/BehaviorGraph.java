@@ -0,0 +1,312 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.animations;
+
+import cn.harryh.arkpets.ArkConfig;
+import cn.harryh.arkpets.animations.AnimClip.AnimType;
+import cn.harryh.arkpets.utils.IOUtils.FileUtil;
+import cn.harryh.arkpets.utils.Logger;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static cn.harryh.arkpets.Const.*;
+
+
+/** The declarative definition of a character's behavior, which can be shipped with a model asset.
+ * <hr>
+ * A behavior graph consists of:
+ * <ul>
+ *     <li>{@code actions}: The weighted actions which are randomly chosen by the AI.</li>
+ *     <li>{@code clickEnd} and {@code dropped}: The candidate animation types of the reactions.</li>
+ *     <li>{@code rules}: The prioritized rules which decide the animation source according to the guards.</li>
+ * </ul>
+ * The graph is compiled by {@link #compile()}, where the rules are expanded into a dense table indexed by the
+ * bitmask of the guards, so that the arbitration on every frame is merely an array lookup.
+ * @since ArkPets 3.7
+ */
+public class BehaviorGraph {
+    public ArrayList<Action> actions;
+    public ArrayList<String> clickEnd;
+    public ArrayList<String> dropped;
+    public ArrayList<Rule> rules;
+
+    private Reaction[] ruleTable;
+
+    /** Gets the built-in behavior graph, which is used when the model asset does not define one.
+     * @return A compiled behavior graph.
+     */
+    public static BehaviorGraph getDefault() {
+        BehaviorGraph graph = new BehaviorGraph();
+        graph.actions = new ArrayList<>(List.of(
+                new Action("IDLE", Action.MODE_LOOP, 0, null, behaviorBaseWeight, true, null),
+                new Action("SIT", Action.MODE_LOOP, 0, null, 1 << 6, false, "sit"),
+                new Action("SLEEP", Action.MODE_LOOP, 0, null, 1 << 5, false, "sleep"),
+                new Action("MOVE", Action.MODE_LOOP, +1, null, 1 << 5, false, "walk"),
+                new Action("MOVE", Action.MODE_LOOP, -1, null, 1 << 5, false, "walk"),
+                new Action("SPECIAL", Action.MODE_STRICT, 0, "IDLE", 1 << 4, false, "special")
+        ));
+        graph.clickEnd = new ArrayList<>(List.of("INTERACT", "ATTACK"));
+        graph.dropped = null;
+        graph.rules = new ArrayList<>(List.of(
+                new Rule(List.of(Guard.DROPPING), Reaction.DEFAULT),
+                new Rule(List.of(Guard.DROPPED), Reaction.DROPPED),
+                new Rule(List.of(Guard.KEEPING), Reaction.KEEP),
+                new Rule(List.of(Guard.DRAGGING), Reaction.DRAGGING)
+        ));
+        return graph.compile();
+    }
+
+    /** Gets the behavior graph of the model asset specified in the config.
+     * The built-in one will be returned if the asset does not define one or its definition is invalid.
+     * @param config The ArkConfig object.
+     * @return A compiled behavior graph.
+     */
+    public static BehaviorGraph getFrom(ArkConfig config) {
+        return getFrom(config.character_asset);
+    }
+
+    /** Gets the behavior graph of the given model asset.
+     * The built-in one will be returned if the asset does not define one or its definition is invalid.
+     * @param assetDir The path of the model asset directory, may be {@code null}.
+     * @return A compiled behavior graph.
+     */
+    static BehaviorGraph getFrom(String assetDir) {
+        if (assetDir != null && !assetDir.isEmpty()) {
+            File file = new File(assetDir, behaviorFile);
+            if (file.isFile()) {
+                try {
+                    BehaviorGraph graph = JSONObject.parseObject(FileUtil.readString(file, charsetDefault), BehaviorGraph.class);
+                    if (graph == null)
+                        throw new IllegalArgumentException("JSON parsing returns null.");
+                    Logger.info("Behavior", "Using the behavior graph defined in the model asset");
+                    return graph.compile();
+                } catch (IOException | RuntimeException e) {
+                    Logger.warn("Behavior", "Failed to load the behavior graph of the model asset, using the built-in one: " + e);
+                }
+            }
+        }
+        return getDefault();
+    }
+
+    /** Validates this behavior graph and compiles its rules into the lookup table.
+     * @return This behavior graph.
+     * @throws IllegalArgumentException If the definition is invalid.
+     */
+    public BehaviorGraph compile() {
+        if (actions == null || actions.isEmpty())
+            throw new IllegalArgumentException("No action was defined.");
+        for (Action action : actions)
+            action.validate();
+        if (clickEnd == null || clickEnd.isEmpty())
+            throw new IllegalArgumentException("No clickEnd animation type was defined.");
+        clickEnd.forEach(BehaviorGraph::toAnimType);
+        if (dropped != null)
+            dropped.forEach(BehaviorGraph::toAnimType);
+
+        // Expand the prioritized rules into a table covering every combination of the guards
+        Reaction[] table = new Reaction[1 << Guard.values().length];
+        for (int mask = 0; mask < table.length; mask++) {
+            table[mask] = Reaction.AUTO;
+            if (rules != null) {
+                for (Rule rule : rules) {
+                    if (rule.then == null)
+                        throw new IllegalArgumentException("A rule has no reaction.");
+                    if ((mask & rule.getMask()) == rule.getMask()) {
+                        table[mask] = rule.then;
+                        break;
+                    }
+                }
+            }
+        }
+        ruleTable = table;
+        return this;
+    }
+
+    /** Decides the animation source according to the guards that currently hold.
+     * @param guardMask The bitmask of the guards, see {@link Guard#bit()}.
+     * @return The reaction to apply.
+     */
+    public Reaction lookup(int guardMask) {
+        return ruleTable[guardMask];
+    }
+
+    /** Draws the reaction animation data from the given animation clip group.
+     * The first non-empty streamed animation among the candidates will be played once,
+     * and then followed by the given default animation.
+     * @param animList The animation clip group.
+     * @param candidates The candidate animation types.
+     * @param defaultAnim The default animation data.
+     * @return The animation data.
+     */
+    static AnimData getReactionAnimData(AnimClipGroup animList, List<String> candidates, AnimData defaultAnim) {
+        AnimData anim = new AnimData(null);
+        for (String candidate : candidates) {
+            anim = animList.getStreamedAnimData(toAnimType(candidate));
+            if (!anim.isEmpty())
+                break;
+        }
+        return new AnimData(anim.animClip(), anim.animNext(), false, true, anim.mobility()).join(defaultAnim);
+    }
+
+    private static AnimType toAnimType(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("Animation type was null.");
+        return AnimType.valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+
+    /** The weighted action definition.
+     */
+    public static class Action {
+        public static final String MODE_LOOP = "loop";
+        public static final String MODE_STRICT = "strict";
+        public static final String MODE_STREAMED = "streamed";
+
+        /** The animation type. */
+        public String type;
+        /** The mode to draw the animation, one of {@code loop}, {@code strict} and {@code streamed}. */
+        public String mode;
+        /** The root motion. 0=None, 1=GoRight, -1=GoLeft. */
+        public int mobility;
+        /** The animation type to play in loop after this animation ended, may be {@code null}. */
+        public String next;
+        /** The weight to call this action. */
+        public int weight;
+        /** Whether to scale the weight by the reciprocal of the square root of the AI activation. */
+        public boolean activationScaled;
+        /** The behavior switch in the config that enables this action,
+         * one of {@code sit}, {@code sleep}, {@code walk} and {@code special}, may be {@code null}. */
+        public String enabledBy;
+
+        public Action() {
+        }
+
+        public Action(String type, String mode, int mobility, String next, int weight,
+                      boolean activationScaled, String enabledBy) {
+            this.type = type;
+            this.mode = mode;
+            this.mobility = mobility;
+            this.next = next;
+            this.weight = weight;
+            this.activationScaled = activationScaled;
+            this.enabledBy = enabledBy;
+        }
+
+        /** Draws the animation data of this action from the given animation clip group.
+         * @param animList The animation clip group.
+         * @return The animation data whose animation clip will be none if not found.
+         */
+        public AnimData getAnimData(AnimClipGroup animList) {
+            AnimType animType = toAnimType(type);
+            AnimData anim = switch (mode == null ? MODE_LOOP : mode) {
+                case MODE_STRICT -> animList.getStrictAnimData(animType);
+                case MODE_STREAMED -> animList.getStreamedAnimData(animType);
+                default -> animList.getLoopAnimData(animType);
+            };
+            if (mobility != 0)
+                anim = anim.derive(mobility);
+            if (next != null)
+                anim = anim.join(animList.getLoopAnimData(toAnimType(next)));
+            return anim;
+        }
+
+        /** Gets the effective weight of this action.
+         * @param config The ArkConfig object.
+         * @return The weight, {@code 0} if this action was disabled.
+         */
+        public int getWeight(ArkConfig config) {
+            if (enabledBy != null) {
+                boolean enabled = switch (enabledBy) {
+                    case "sit" -> config.behavior_allow_sit;
+                    case "sleep" -> config.behavior_allow_sleep;
+                    case "walk" -> config.behavior_allow_walk;
+                    case "special" -> config.behavior_allow_special;
+                    default -> true;
+                };
+                if (!enabled)
+                    return 0;
+            }
+            return activationScaled ? Math.round(weight / (float)Math.sqrt(config.behavior_ai_activation)) : weight;
+        }
+
+        private void validate() {
+            toAnimType(type);
+            if (next != null)
+                toAnimType(next);
+            if (mode != null && !mode.equals(MODE_LOOP) && !mode.equals(MODE_STRICT) && !mode.equals(MODE_STREAMED))
+                throw new IllegalArgumentException("Unknown action mode " + mode);
+            if (weight < 0)
+                throw new IllegalArgumentException("Negative action weight " + weight);
+        }
+    }
+
+
+    /** The prioritized rule, which takes effect if all of its guards hold.
+     * The rules declared earlier have the higher priority.
+     */
+    public static class Rule {
+        /** The guards that should all hold, an empty list indicates always. */
+        public ArrayList<Guard> when;
+        /** The reaction to apply. */
+        public Reaction then;
+
+        public Rule() {
+        }
+
+        public Rule(List<Guard> when, Reaction then) {
+            this.when = new ArrayList<>(when);
+            this.then = then;
+        }
+
+        private int getMask() {
+            int mask = 0;
+            if (when != null)
+                for (Guard guard : when)
+                    mask |= guard.bit();
+            return mask;
+        }
+    }
+
+
+    /** The conditions about the physics and the mouse that a rule can depend on.
+     */
+    public enum Guard {
+        /** The user is dragging the character. */
+        DRAGGING,
+        /** The character is falling down. */
+        DROPPING,
+        /** The character has just landed. */
+        DROPPED,
+        /** The user has pinned an animation via the menu. */
+        KEEPING;
+
+        /** Gets the bit of this guard in a guard bitmask.
+         * @return The bit.
+         */
+        public int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+
+    /** The sources where the animation of the next frame comes from.
+     */
+    public enum Reaction {
+        /** The animation chosen by the AI. */
+        AUTO,
+        /** The animation when the user is dragging. */
+        DRAGGING,
+        /** The default animation. */
+        DEFAULT,
+        /** The animation when the character has just landed. */
+        DROPPED,
+        /** The animation pinned by the user. */
+        KEEP
+    }
+}
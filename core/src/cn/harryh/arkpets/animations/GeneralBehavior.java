@@ -7,8 +7,6 @@ import cn.harryh.arkpets.ArkConfig;
 import cn.harryh.arkpets.animations.AnimClip.*;
 import java.util.*;
 
-import static cn.harryh.arkpets.Const.behaviorBaseWeight;
-
 
 public class GeneralBehavior extends Behavior {
     protected AnimStage stageCur;
@@ -17,9 +15,12 @@ public class GeneralBehavior extends Behavior {
     protected final ArrayList<AnimStage> stageList;
     protected final HashMap<AnimStage, AnimClipGroup> stageAnimMap;
     protected final HashMap<AnimStage, AnimDataWeight[]> stageAnimWeightMap;
+    private AnimData clickEndAnim;
+    private AnimData droppedAnim;
 
     public GeneralBehavior(ArkConfig config, AnimClipGroup animList) {
         super(config, animList);
+        graph = BehaviorGraph.getFrom(config);
 
         stageAnimMap = anim_list.clusterByStage();
         stageAnimWeightMap = new HashMap<>();
@@ -45,6 +46,8 @@ public class GeneralBehavior extends Behavior {
         stageCur = stageItr.next();
         stageAnimList = stageAnimMap.get(stageCur);
         action_list = stageAnimWeightMap.get(stageCur);
+        clickEndAnim = null;
+        droppedAnim = null;
         autoCtrlReset();
     }
 
@@ -57,32 +60,9 @@ public class GeneralBehavior extends Behavior {
     }
 
     private AnimDataWeight[] getActionList(AnimClipGroup animList) {
-        ArrayList<AnimDataWeight> actionList = new ArrayList<>(List.of(
-                new AnimDataWeight(
-                        animList.getLoopAnimData(AnimType.IDLE),
-                        Math.round(behaviorBaseWeight / (float) Math.sqrt(config.behavior_ai_activation))
-                ),
-                new AnimDataWeight(
-                        animList.getLoopAnimData(AnimType.SIT),
-                        config.behavior_allow_sit  ? 1 << 6 : 0
-                ),
-                new AnimDataWeight(
-                        animList.getLoopAnimData(AnimType.SLEEP),
-                        config.behavior_allow_sleep ? 1 << 5 : 0
-                ),
-                new AnimDataWeight(
-                        animList.getLoopAnimData(AnimType.MOVE).derive(+1),
-                        config.behavior_allow_walk ? 1 << 5 : 0
-                ),
-                new AnimDataWeight(
-                        animList.getLoopAnimData(AnimType.MOVE).derive(-1),
-                        config.behavior_allow_walk ? 1 << 5 : 0),
-                new AnimDataWeight(
-                        animList.getStrictAnimData(AnimType.SPECIAL)
-                                .join(animList.getLoopAnimData(AnimType.IDLE)),
-                        config.behavior_allow_special ? 1 << 4 : 0
-                )
-        ));
+        ArrayList<AnimDataWeight> actionList = new ArrayList<>();
+        for (BehaviorGraph.Action action : graph.actions)
+            actionList.add(new AnimDataWeight(action.getAnimData(animList), action.getWeight(config)));
         actionList.removeIf(e -> e.anim().isEmpty());
         return actionList.toArray(new AnimDataWeight[0]);
     }
@@ -94,14 +74,19 @@ public class GeneralBehavior extends Behavior {
 
     @Override
     public AnimData clickEnd() {
-        AnimData a1 = stageAnimList.getStreamedAnimData(AnimType.ATTACK);
-        AnimData a2 = stageAnimList.getStreamedAnimData(AnimType.INTERACT);
-        AnimData a3 = a2.isEmpty() ? a1 : a2;
-        return new AnimData(a3.animClip(), a3.animNext(), false, true, a3.mobility()).join(defaultAnim());
+        if (clickEndAnim == null) {
+            // Memoize the result since it only depends on the current stage
+            clickEndAnim = BehaviorGraph.getReactionAnimData(stageAnimList, graph.clickEnd, defaultAnim());
+        }
+        return clickEndAnim;
     }
 
     @Override
     public AnimData dropped() {
-        return clickEnd();
+        if (graph.dropped == null)
+            return clickEnd();
+        if (droppedAnim == null)
+            droppedAnim = BehaviorGraph.getReactionAnimData(stageAnimList, graph.dropped, defaultAnim());
+        return droppedAnim;
     }
 }
@@ -0,0 +1,295 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import cn.harryh.arkpets.utils.IOUtils.FileUtil;
+import cn.harryh.arkpets.utils.Logger;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static cn.harryh.arkpets.Const.PathConfig;
+import static cn.harryh.arkpets.Const.charsetDefault;
+
+
+/** The content-addressed storage of the model asset files.
+ * <hr>
+ * The byte-identical asset files (e.g. the atlas pages shared by the skins) are stored only once in the store directory,
+ * named by their SHA-256 hash. The files in the model directories are the hard links to the stored objects,
+ * so that every model directory still contains all of its asset files, and the loading paths are unchanged.
+ * Each model directory has a manifest which maps its stored file names to the hashes,
+ * so that a missing file can be restored from the store.
+ * <hr>
+ * If the file system does not support hard links, the asset files will be kept as they are.
+ * @since ArkPets 3.7
+ */
+public class ModelAssetStore {
+    private static final int bufferSize = 64 * 1024;
+    private static final ModelAssetStore defaultStore = new ModelAssetStore();
+
+    private final File storeDir;
+
+    /** Initializes a model asset store in the given directory.
+     * @param storeDir The store directory which will be created if it is not existed.
+     */
+    public ModelAssetStore(File storeDir) {
+        this.storeDir = storeDir;
+    }
+
+    /** Initializes a model asset store in the default directory.
+     */
+    public ModelAssetStore() {
+        this(new File(PathConfig.modelsStoreDirPath));
+    }
+
+    /** Deduplicates the asset files in the given storage directories using the store in the default directory.
+     * @param storageDirs The storage directories, each sub-directory of which is a model directory.
+     * @return The report of the deduplication.
+     * @throws IOException If I/O error occurs.
+     * @see #deduplicate(Collection)
+     */
+    public static Report deduplicateFiles(Collection<File> storageDirs)
+            throws IOException {
+        return defaultStore.deduplicate(storageDirs);
+    }
+
+    /** Restores the missing asset files of the given model directory using the store in the default directory.
+     * @param modelDir The model directory.
+     * @return The count of the restored files.
+     * @see #restore(File)
+     */
+    public static int restoreFiles(File modelDir) {
+        return defaultStore.restore(modelDir);
+    }
+
+    /** Deduplicates the asset files in the given storage directories, and prunes the unreferenced stored objects.
+     * The storage directories should cover all the models using this store, otherwise their objects may be pruned.
+     * @param storageDirs The storage directories, each sub-directory of which is a model directory.
+     * @return The report of the deduplication.
+     * @throws IOException If I/O error occurs.
+     */
+    public Report deduplicate(Collection<File> storageDirs)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        Files.createDirectories(storeDir.toPath());
+        // 1.Collect the files which have not been stored
+        HashMap<File, HashMap<String, String>> manifests = new HashMap<>();
+        ArrayList<File> candidates = new ArrayList<>();
+        for (File storageDir : storageDirs) {
+            File[] modelDirs = storageDir.listFiles(File::isDirectory);
+            if (modelDirs == null)
+                continue;
+            for (File modelDir : modelDirs) {
+                HashMap<String, String> manifest = readManifest(modelDir);
+                HashMap<String, String> kept = new HashMap<>();
+                File[] files = modelDir.listFiles(f -> f.isFile() && !f.getName().equals(PathConfig.fileModelManifestName));
+                if (files == null)
+                    continue;
+                for (File file : files) {
+                    String hash = manifest.get(file.getName());
+                    File object = hash == null ? null : getObject(hash);
+                    if (object != null && object.isFile() && Files.isSameFile(file.toPath(), object.toPath()))
+                        kept.put(file.getName(), hash);
+                    else
+                        candidates.add(file);
+                }
+                manifests.put(modelDir, kept);
+            }
+        }
+
+        // 2.Hash the candidates whose sizes are not unique
+        HashMap<Long, Integer> sizeCount = new HashMap<>();
+        for (File object : listObjects())
+            sizeCount.merge(object.length(), 1, Integer::sum);
+        for (File file : candidates)
+            sizeCount.merge(file.length(), 1, Integer::sum);
+        ConcurrentHashMap<File, String> hashes = new ConcurrentHashMap<>();
+        candidates.parallelStream().filter(file -> sizeCount.get(file.length()) > 1).forEach(file -> {
+            try {
+                hashes.put(file, getHash(file));
+            } catch (IOException e) {
+                Logger.warn("ModelStore", "Failed to hash the file " + file + ": " + e);
+            }
+        });
+
+        // 3.Link the hashed candidates to the store
+        int linkedFiles = 0;
+        long savedBytes = 0;
+        for (File file : candidates) {
+            String hash = hashes.get(file);
+            if (hash == null)
+                continue;
+            File object = getObject(hash);
+            Path temp = new File(file.getPath() + ".link").toPath();
+            try {
+                if (!object.isFile()) {
+                    Files.createDirectories(object.getParentFile().toPath());
+                    link(object.toPath(), file.toPath());
+                } else if (!Files.isSameFile(object.toPath(), file.toPath())) {
+                    // Replace the file by a link atomically, so that the file is never absent
+                    Files.deleteIfExists(temp);
+                    link(temp, object.toPath());
+                    Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    linkedFiles++;
+                    savedBytes += object.length();
+                }
+            } catch (UnsupportedOperationException | IOException e) {
+                // Typically the file system does not support hard links
+                Logger.warn("ModelStore", "Failed to link the file " + file + ", the deduplication is stopped: " + e);
+                Files.deleteIfExists(temp);
+                break;
+            }
+            manifests.get(file.getParentFile()).put(file.getName(), hash);
+        }
+
+        // 4.Write the manifests and prune the unreferenced objects
+        HashMap<String, Integer> references = new HashMap<>();
+        for (Map.Entry<File, HashMap<String, String>> entry : manifests.entrySet()) {
+            writeManifest(entry.getKey(), entry.getValue());
+            entry.getValue().values().forEach(hash -> references.merge(hash, 1, Integer::sum));
+        }
+        int prunedObjects = 0;
+        long sharedBytes = 0;
+        for (File object : listObjects()) {
+            Integer count = references.get(object.getName());
+            if (count == null) {
+                Files.deleteIfExists(object.toPath());
+                prunedObjects++;
+            } else {
+                sharedBytes += object.length() * (count - 1);
+            }
+        }
+
+        Report report = new Report(linkedFiles, savedBytes, references.size(), sharedBytes, prunedObjects);
+        Logger.info("ModelStore", "Deduplicated in " + (System.currentTimeMillis() - start) + "ms: " + report);
+        return report;
+    }
+
+    /** Restores the missing asset files of the given model directory from the store, according to its manifest.
+     * @param modelDir The model directory.
+     * @return The count of the restored files.
+     */
+    public int restore(File modelDir) {
+        int restored = 0;
+        for (Map.Entry<String, String> entry : readManifest(modelDir).entrySet()) {
+            File file = new File(modelDir, entry.getKey());
+            File object = getObject(entry.getValue());
+            if (file.exists() || !object.isFile())
+                continue;
+            try {
+                try {
+                    link(file.toPath(), object.toPath());
+                } catch (UnsupportedOperationException e) {
+                    Files.copy(object.toPath(), file.toPath());
+                }
+                restored++;
+                Logger.info("ModelStore", "Restored the asset file " + entry.getKey() + " (" + modelDir.getName() + ")");
+            } catch (IOException e) {
+                Logger.warn("ModelStore", "Failed to restore the asset file " + file + ": " + e);
+            }
+        }
+        return restored;
+    }
+
+    /** Creates a hard link to an existing file.
+     * @param link The path of the link to create.
+     * @param existing The path of the existing file.
+     * @throws UnsupportedOperationException If the file system does not support hard links.
+     * @throws IOException If I/O error occurs.
+     */
+    void link(Path link, Path existing)
+            throws IOException {
+        Files.createLink(link, existing);
+    }
+
+    private File getObject(String hash) {
+        return new File(new File(storeDir, hash.substring(0, 2)), hash);
+    }
+
+    private List<File> listObjects() {
+        ArrayList<File> list = new ArrayList<>();
+        File[] prefixDirs = storeDir.listFiles(File::isDirectory);
+        if (prefixDirs != null)
+            for (File prefixDir : prefixDirs) {
+                File[] objects = prefixDir.listFiles(File::isFile);
+                if (objects != null)
+                    list.addAll(List.of(objects));
+            }
+        return list;
+    }
+
+    private static HashMap<String, String> readManifest(File modelDir) {
+        File file = new File(modelDir, PathConfig.fileModelManifestName);
+        if (file.isFile()) {
+            try {
+                HashMap<String, String> manifest = JSONObject.parseObject(FileUtil.readString(file, charsetDefault),
+                        new TypeReference<HashMap<String, String>>() {});
+                if (manifest != null) {
+                    manifest.values().removeIf(hash -> hash == null || hash.length() < 2);
+                    return manifest;
+                }
+            } catch (Exception e) {
+                Logger.warn("ModelStore", "Failed to read the manifest of " + modelDir + ": " + e);
+            }
+        }
+        return new HashMap<>();
+    }
+
+    private static void writeManifest(File modelDir, HashMap<String, String> manifest)
+            throws IOException {
+        File file = new File(modelDir, PathConfig.fileModelManifestName);
+        if (manifest.isEmpty())
+            Files.deleteIfExists(file.toPath());
+        else
+            FileUtil.writeString(file, charsetDefault, JSON.toJSONString(new TreeMap<>(manifest)), false);
+    }
+
+    private static String getHash(File file)
+            throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        byte[] buffer = new byte[bufferSize];
+        try (InputStream stream = Files.newInputStream(file.toPath())) {
+            int len;
+            while ((len = stream.read(buffer)) > 0)
+                md.update(buffer, 0, len);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+
+    /** The report of a deduplication.
+     * @param linkedFiles The count of the files which were newly replaced by the links.
+     * @param savedBytes The bytes saved by this deduplication.
+     * @param storedObjects The count of the objects referenced by the manifests.
+     * @param sharedBytes The total bytes saved by the store, namely the bytes of the shared files excluding one copy.
+     * @param prunedObjects The count of the unreferenced objects which were pruned.
+     */
+    public record Report(int linkedFiles, long savedBytes, int storedObjects, long sharedBytes, int prunedObjects) {
+        @Override
+        public String toString() {
+            return "linked " + linkedFiles + " files (saved " + savedBytes / 1024 + " KB), " +
+                    storedObjects + " objects stored (sharing " + sharedBytes / 1024 + " KB in total), " +
+                    prunedObjects + " objects pruned";
+        }
+    }
+}
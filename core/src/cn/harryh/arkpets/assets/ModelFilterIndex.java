@@ -0,0 +1,133 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import cn.harryh.arkpets.assets.ModelItem.PropertyExtractor;
+
+import java.util.*;
+
+
+/** The bitmap index for filtering the Model Items by their properties.
+ * <hr>
+ * Each Model Item is identified by its ordinal, namely its position in the indexed group.
+ * For every property extractor that has been queried, each property value maps to a bitmap of the ordinals
+ * of the Model Items having that value, so that the extractor is applied only once per Model Item.
+ * Combined filters then become the AND/OR/ANDNOT operations on the bitmaps,
+ * and the UI can consume the resulting bitmap without materializing the intermediate groups.
+ * @since ArkPets 3.7
+ */
+public class ModelFilterIndex {
+    private final ModelItem[] items;
+    private final HashMap<PropertyExtractor<?>, HashMap<Object, BitSet>> bitmaps = new HashMap<>();
+    private HashMap<ModelItem, Integer> ordinals;
+
+    /** Builds the index of the given Model Items.
+     * @param modelItems The Model Items, whose positions become their ordinals.
+     */
+    public ModelFilterIndex(List<ModelItem> modelItems) {
+        items = modelItems.toArray(new ModelItem[0]);
+    }
+
+    /** Gets the count of the indexed Model Items.
+     * @return The count.
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /** Gets the Model Item of the given ordinal.
+     * @param ordinal The ordinal.
+     * @return The Model Item.
+     */
+    public ModelItem get(int ordinal) {
+        return items[ordinal];
+    }
+
+    /** Gets the bitmap of all the Model Items.
+     * @return A new bitmap.
+     */
+    public BitSet all() {
+        BitSet result = new BitSet(items.length);
+        result.set(0, items.length);
+        return result;
+    }
+
+    /** Gets the bitmap of the Model Items whose property satisfied the requirements,
+     * which has the same semantics as {@link ModelItemGroup#filter(PropertyExtractor, Set, int)}.
+     * @param property A property extractor.
+     * @param filterValues The property values to be matched.
+     * @param mode The {@link ModelItemGroup.FilterMode}.
+     * @return A new bitmap.
+     * @param <T> The type of the property value.
+     */
+    public synchronized <T> BitSet match(PropertyExtractor<T> property, Set<T> filterValues, int mode) {
+        HashMap<Object, BitSet> valueMap = getValueMap(property);
+        BitSet result;
+        if ((mode & ModelItemGroup.FilterMode.MATCH_ANY) != 0) {
+            // Any value matched: OR
+            result = new BitSet(items.length);
+            for (T value : filterValues) {
+                BitSet bitmap = valueMap.get(value);
+                if (bitmap != null)
+                    result.or(bitmap);
+            }
+        } else {
+            // All values matched: AND
+            result = all();
+            for (T value : filterValues) {
+                BitSet bitmap = valueMap.get(value);
+                if (bitmap == null) {
+                    result.clear();
+                    break;
+                }
+                result.and(bitmap);
+            }
+        }
+        if ((mode & ModelItemGroup.FilterMode.MATCH_REVERSE) != 0)
+            result.flip(0, items.length);
+        return result;
+    }
+
+    /** Gets the bitmap of the given Model Items. The Model Items that are not indexed will be ignored.
+     * @param modelItems The Model Items.
+     * @return A new bitmap.
+     */
+    public synchronized BitSet of(Collection<ModelItem> modelItems) {
+        if (ordinals == null) {
+            ordinals = new HashMap<>(items.length * 2);
+            for (int i = items.length - 1; i >= 0; i--)
+                ordinals.put(items[i], i);
+        }
+        BitSet result = new BitSet(items.length);
+        for (ModelItem item : modelItems) {
+            Integer ordinal = ordinals.get(item);
+            if (ordinal != null)
+                result.set(ordinal);
+        }
+        return result;
+    }
+
+    /** Materializes the Model Items of the given bitmap.
+     * @param bitmap The bitmap of the ordinals.
+     * @return A Model Item Group in the order of the ordinals.
+     */
+    public ModelItemGroup toGroup(BitSet bitmap) {
+        ArrayList<ModelItem> list = new ArrayList<>(bitmap.cardinality());
+        for (int i = bitmap.nextSetBit(0); i >= 0 && i < items.length; i = bitmap.nextSetBit(i + 1))
+            list.add(items[i]);
+        return new ModelItemGroup(list);
+    }
+
+    private HashMap<Object, BitSet> getValueMap(PropertyExtractor<?> property) {
+        HashMap<Object, BitSet> valueMap = bitmaps.get(property);
+        if (valueMap == null) {
+            valueMap = new HashMap<>();
+            for (int i = 0; i < items.length; i++)
+                for (Object value : property.apply(items[i]))
+                    valueMap.computeIfAbsent(value, v -> new BitSet(items.length)).set(i);
+            bitmaps.put(property, valueMap);
+        }
+        return valueMap;
+    }
+}
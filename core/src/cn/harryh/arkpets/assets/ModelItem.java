@@ -50,7 +50,7 @@ public class ModelItem implements Serializable {
 
     protected static final String[] extensions = {".atlas", ".png", ".skel"};
 
-    private ModelItem() {
+    ModelItem() {
     }
 
     /** Gets the directory where the asset files located in.
@@ -77,7 +77,7 @@ public class ModelItem implements Serializable {
     @JSONField(serialize = false)
     public String getPinyinQuanpin() {
         if (pinyinQuanpin == null)
-            pinyinQuanpin = Pinyin.toPinyin(name, "");
+            pinyinQuanpin = toPinyinQuanpin(name);
         return pinyinQuanpin;
     }
 
@@ -86,19 +86,43 @@ public class ModelItem implements Serializable {
      */
     @JSONField(serialize = false)
     public String getPinyinSuoxie() {
-        if (pinyinSuoxie == null) {
-            String quanpin = Pinyin.toPinyin(name, " ").trim();
-            if (!quanpin.isEmpty()) {
-                StringBuilder builder = new StringBuilder();
-                for (String word : quanpin.split("\\s+")) {
-                    builder.append(word.charAt(0));
-                }
-                pinyinSuoxie = builder.toString();
-            } else {
-                pinyinSuoxie = "";
+        if (pinyinSuoxie == null)
+            pinyinSuoxie = toPinyinSuoxie(name);
+        return pinyinSuoxie;
+    }
+
+    /** Sets the precomputed Pinyin transcriptions of the model's name, so that they will not be computed again.
+     * @param quanpin The Pinyin Quanpin.
+     * @param suoxie The Pinyin Suoxie.
+     * @since ArkPets 3.7
+     */
+    void setPinyin(String quanpin, String suoxie) {
+        pinyinQuanpin = quanpin;
+        pinyinSuoxie = suoxie;
+    }
+
+    /** Returns true if the Pinyin transcriptions of the model's name have been computed.
+     * @since ArkPets 3.7
+     */
+    boolean hasPinyin() {
+        return pinyinQuanpin != null && pinyinSuoxie != null;
+    }
+
+    static String toPinyinQuanpin(String name) {
+        return Pinyin.toPinyin(name, "");
+    }
+
+    static String toPinyinSuoxie(String name) {
+        String quanpin = Pinyin.toPinyin(name, " ").trim();
+        if (!quanpin.isEmpty()) {
+            StringBuilder builder = new StringBuilder();
+            for (String word : quanpin.split("\\s+")) {
+                builder.append(word.charAt(0));
             }
+            return builder.toString();
+        } else {
+            return "";
         }
-        return pinyinSuoxie;
     }
 
     /** Verifies the integrity of the necessary fields of this {@code ModelItem}.
@@ -128,20 +152,29 @@ public class ModelItem implements Serializable {
      */
     @JSONField(serialize = false)
     public boolean isChecked() {
-        if (isExisted()) {
+        return isValid() && isChecked(assetDir);
+    }
+
+    /** Verifies the integrity of the related files in the given directory.
+     * @param dir The actual directory of the model, namely the {@code assetDir} resolved against a base directory.
+     * @return {@code true} if the directory exists and all the files exist in it, otherwise {@code false}.
+     */
+    boolean isChecked(File dir) {
+        if (dir.isDirectory()) {
             try {
-                ArrayList<String> existed = new ArrayList<>(List.of(Objects.requireNonNull(assetDir.list())));
-                existed.replaceAll(String::toLowerCase);
+                HashSet<String> existed = new HashSet<>();
+                for (String name : Objects.requireNonNull(dir.list()))
+                    existed.add(name.toLowerCase());
                 for (String fileName : getAccessor().getAllFiles()) {
                     fileName = fileName.toLowerCase();
                     if (!existed.contains(fileName)) {
-                        Logger.warn("Asset", "The asset file " + fileName + " (" + assetDir.getName() + ") is missing.");
+                        Logger.warn("Asset", "The asset file " + fileName + " (" + dir.getName() + ") is missing.");
                         return false;
                     }
                 }
                 return true;
             } catch (Exception e) {
-                Logger.warn("Asset", "Failed to check the asset " + assetDir.getName());
+                Logger.warn("Asset", "Failed to check the asset " + dir.getName());
                 return false;
             }
         } else {
@@ -30,6 +30,8 @@ import java.util.function.Predicate;
  */
 public class ModelItemGroup implements Collection<ModelItem> {
     protected final ArrayList<ModelItem> modelItemList;
+    private ModelSearchIndex searchIndex;
+    private ModelFilterIndex filterIndex;
 
     public ModelItemGroup(Collection<ModelItem> modelItemList) {
         this.modelItemList = new ArrayList<>(modelItemList);
@@ -46,6 +48,25 @@ public class ModelItemGroup implements Collection<ModelItem> {
     public ModelItemGroup searchByKeyWords(String keyWords) {
         if (keyWords == null || keyWords.isEmpty())
             return this;
+        ArrayList<ModelItem> result = new ArrayList<>();
+        search(keyWords, result);
+        return new ModelItemGroup(result);
+    }
+
+    /** Searches the Model Items whose {@code name} and {@code appellation} match the given keywords,
+     * without materializing the result.
+     * @param keyWords The given keywords. Each keyword should be separated by a blank.
+     * @return A new bitmap of the ordinals in the {@link #getFilterIndex() filter index}.
+     *         Returns the bitmap of all the Model Items if the parameter {@code keyWords} is {@code null} or empty.
+     * @since ArkPets 3.7
+     */
+    public BitSet searchBitmapByKeyWords(String keyWords) {
+        if (keyWords == null || keyWords.isEmpty())
+            return getFilterIndex().all();
+        return search(keyWords, null);
+    }
+
+    private BitSet search(String keyWords, List<ModelItem> result) {
         // Word list: uppercase and deduplicate
         String[] wordList = deduplicateArray(keyWords.toUpperCase().split(" "));
         // Word list: extend with zh-Hans and zh-Hant conversions
@@ -54,74 +75,16 @@ public class ModelItemGroup implements Collection<ModelItem> {
                 ZhConverterUtil.toSimple(keyWords).toUpperCase().split(" "),
                 ZhConverterUtil.toTraditional(keyWords).toUpperCase().split(" ")
         ));
-        ModelItemGroup result = new ModelItemGroup();
-
-        // Rule: match name
-        for (ModelItem model : this) {
-            if (!result.contains(model) && model.name != null) {
-                String upper = model.name.toUpperCase();
-                for (String word : wordListST) {
-                    if (upper.contains(word)) {
-                        result.add(model);
-                        break;
-                    }
-                }
-            }
-        }
-
-        // Rule: match appellation
-        for (ModelItem model : this) {
-            if (!result.contains(model) && model.appellation != null) {
-                String upper = model.appellation.toUpperCase();
-                for (String word : wordList) {
-                    if (upper.contains(word)) {
-                        result.add(model);
-                        break;
-                    }
-                }
-            }
-        }
-
-        // Rule: match Pinyin suoxie
-        for (ModelItem model : this) {
-            if (!result.contains(model) && model.getPinyinSuoxie() != null) {
-                String upper = model.getPinyinSuoxie().toUpperCase();
-                for (String word : wordList) {
-                    if (upper.contains(word)) {
-                        result.add(model);
-                        break;
-                    }
-                }
-            }
-        }
-
-        // Rule: match Pinyin quanpin
-        for (ModelItem model : this) {
-            if (!result.contains(model) && model.getPinyinQuanpin() != null) {
-                String upper = model.getPinyinQuanpin().toUpperCase();
-                for (String word : wordList) {
-                    if (upper.contains(word)) {
-                        result.add(model);
-                        break;
-                    }
-                }
-            }
-        }
-
-        // Rule: match skin group name
-        for (ModelItem model : this) {
-            if (!result.contains(model) && model.skinGroupName != null) {
-                String upper = model.skinGroupName.toUpperCase();
-                for (String word : wordListST) {
-                    if (upper.contains(word)) {
-                        result.add(model);
-                        break;
-                    }
-                }
-            }
-        }
-
-        return result;
+        ModelSearchIndex index = getSearchIndex();
+        BitSet added = new BitSet(index.size());
+
+        // Rules in the order of priority, where the matched items of each rule keep their original order
+        matchRule(index, ModelSearchIndex.FIELD_NAME, wordListST, added, result);
+        matchRule(index, ModelSearchIndex.FIELD_APPELLATION, wordList, added, result);
+        matchRule(index, ModelSearchIndex.FIELD_PINYIN_SUOXIE, wordList, added, result);
+        matchRule(index, ModelSearchIndex.FIELD_PINYIN_QUANPIN, wordList, added, result);
+        matchRule(index, ModelSearchIndex.FIELD_SKIN_GROUP_NAME, wordListST, added, result);
+        return added;
     }
 
     /** Searches the Model Item whose relative path provided by {@code getLocation} matches the given path string.
@@ -165,19 +128,8 @@ public class ModelItemGroup implements Collection<ModelItem> {
      * @param <T> The type of the property value.
      */
     public <T> ModelItemGroup filter(PropertyExtractor<T> property, Set<T> filterValues, int mode) {
-        final boolean TRUE = (mode & FilterMode.MATCH_REVERSE) == 0;
-        return filter(item -> {
-            Set<T> itemValues = property.apply(item);
-            if ((mode & FilterMode.MATCH_ANY) != 0) {
-                for (T value : itemValues)
-                    if (filterValues.contains(value))
-                        return TRUE;
-            } else {
-                if (itemValues.containsAll(filterValues))
-                    return TRUE;
-            }
-            return !TRUE;
-        });
+        ModelFilterIndex index = getFilterIndex();
+        return index.toGroup(index.match(property, filterValues, mode));
     }
 
     /** Returns a new Model Item Group consisting of the Model Items whose property satisfied the requirements.
@@ -193,9 +145,42 @@ public class ModelItemGroup implements Collection<ModelItem> {
     /** Sorts the Model Items by their {@code assetDir} in natural order.
      */
     public void sort() {
+        invalidateIndex();
         modelItemList.sort(Comparator.comparing(model -> model.assetDir, Comparator.naturalOrder()));
     }
 
+    /** Gets the bitmap index of this group, whose ordinals are the positions of the Model Items in this group.
+     * The index will be rebuilt after this group is modified.
+     * @return The filter index.
+     * @since ArkPets 3.7
+     */
+    public ModelFilterIndex getFilterIndex() {
+        if (filterIndex == null)
+            filterIndex = new ModelFilterIndex(modelItemList);
+        return filterIndex;
+    }
+
+    private ModelSearchIndex getSearchIndex() {
+        if (searchIndex == null)
+            searchIndex = new ModelSearchIndex(modelItemList);
+        return searchIndex;
+    }
+
+    private void invalidateIndex() {
+        searchIndex = null;
+        filterIndex = null;
+    }
+
+    private static void matchRule(ModelSearchIndex index, int field, String[] words, BitSet added, List<ModelItem> result) {
+        BitSet matched = new BitSet(index.size());
+        index.match(field, words, matched);
+        matched.andNot(added);
+        if (result != null)
+            for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1))
+                result.add(index.get(i));
+        added.or(matched);
+    }
+
     protected static String[] concatArrays(String[] array1, String[] array2, String[] array3) {
         String[] result = new String[array1.length + array2.length + array3.length];
         System.arraycopy(array1, 0, result, 0, array1.length);
@@ -217,11 +202,29 @@ public class ModelItemGroup implements Collection<ModelItem> {
 
     @Override
     public Iterator<ModelItem> iterator() {
-        return modelItemList.iterator();
+        Iterator<ModelItem> iterator = modelItemList.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public ModelItem next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                invalidateIndex();
+            }
+        };
     }
 
     @Override
     public boolean add(ModelItem modelItem) {
+        invalidateIndex();
         return !modelItemList.contains(modelItem) && modelItemList.add(modelItem);
     }
 
@@ -244,21 +247,25 @@ public class ModelItemGroup implements Collection<ModelItem> {
 
     @Override
     public boolean remove(Object o) {
+        invalidateIndex();
         return modelItemList.remove(o);
     }
 
     @Override
     public boolean removeAll(Collection<?> c) {
+        invalidateIndex();
         return modelItemList.removeAll(c);
     }
 
     @Override
     public boolean retainAll(Collection<?> c) {
+        invalidateIndex();
         return modelItemList.retainAll(c);
     }
 
     @Override
     public void clear() {
+        invalidateIndex();
         modelItemList.clear();
     }
 
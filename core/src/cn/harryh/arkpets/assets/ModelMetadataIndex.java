@@ -0,0 +1,298 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import cn.harryh.arkpets.animations.AnimClip;
+import cn.harryh.arkpets.animations.AnimClip.AnimStage;
+import cn.harryh.arkpets.animations.AnimClip.AnimType;
+import cn.harryh.arkpets.animations.AnimClipGroup;
+import cn.harryh.arkpets.utils.IOUtils.FileUtil;
+import cn.harryh.arkpets.utils.Logger;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+import com.alibaba.fastjson.annotation.JSONField;
+import com.badlogic.gdx.files.FileHandle;
+import com.esotericsoftware.spine.Animation;
+import com.esotericsoftware.spine.SkeletonBinary;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.SkeletonJson;
+import com.esotericsoftware.spine.Skin;
+import com.esotericsoftware.spine.attachments.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static cn.harryh.arkpets.Const.charsetDefault;
+
+
+/** The offline index of the animation metadata of the local models.
+ * <hr>
+ * The indexer reads only the animations in the skeleton files, while the textures and the atlases are never loaded.
+ * The animations are classified by {@link AnimClip}, and the results are persisted with the MD5 of the skeleton file,
+ * so that only the new or changed models need to be indexed again.
+ * Each update builds a new map which is swapped in only when the update completes,
+ * so an interrupted update never leaves its partial results in the index.
+ * @since ArkPets 3.7
+ */
+public class ModelMetadataIndex {
+    private final File file;
+    private volatile Map<String, Metadata> map;
+
+    /** Initializes a model metadata index backed by the given file.
+     * The persisted entries will be loaded if the file exists and is valid.
+     * @param file The file to persist the index.
+     */
+    public ModelMetadataIndex(File file) {
+        this.file = file;
+        HashMap<String, Metadata> initial = new HashMap<>();
+        if (file.isFile()) {
+            try {
+                HashMap<String, Metadata> loaded = JSONObject.parseObject(FileUtil.readString(file, charsetDefault),
+                        new TypeReference<HashMap<String, Metadata>>() {});
+                if (loaded != null)
+                    loaded.forEach((k, v) -> {
+                        if (k != null && v != null && v.hash != null)
+                            initial.put(k, v);
+                    });
+            } catch (Exception e) {
+                Logger.warn("ModelIndex", "Failed to load the model metadata index, it will be rebuilt: " + e);
+            }
+        }
+        map = Collections.unmodifiableMap(initial);
+    }
+
+    /** Indexes the given models in parallel, where the unchanged models will be skipped.
+     * The stale entries of the models that are not given will be removed.
+     * @param modelItems The models to index.
+     * @return {@code true} if the index was changed, namely some models were (re)indexed or removed.
+     * @throws InterruptedException If interrupted while waiting for the indexing, where the index is left unchanged.
+     */
+    public boolean update(Collection<ModelItem> modelItems)
+            throws InterruptedException {
+        long start = System.currentTimeMillis();
+        Map<String, Metadata> previous = map;
+        ConcurrentHashMap<String, Metadata> result = new ConcurrentHashMap<>();
+        ArrayList<Callable<Boolean>> tasks = new ArrayList<>();
+        for (ModelItem item : modelItems) {
+            if (item.key == null || !item.isExisted() || result.containsKey(item.key))
+                continue;
+            Metadata cached = previous.get(item.key);
+            if (cached != null)
+                result.put(item.key, cached);
+            tasks.add(() -> updateItem(item, result));
+        }
+
+        int threads = Math.max(1, Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ModelMetadataIndexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int updated = 0;
+        try {
+            for (Future<Boolean> future : executor.invokeAll(tasks)) {
+                try {
+                    if (future.get())
+                        updated++;
+                } catch (ExecutionException e) {
+                    Logger.warn("ModelIndex", "Failed to index a model: " + e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (Thread.currentThread().isInterrupted())
+            throw new InterruptedException();
+        int removed = 0;
+        for (String key : previous.keySet())
+            if (!result.containsKey(key))
+                removed++;
+        map = Collections.unmodifiableMap(result);
+        Logger.info("ModelIndex", "Indexed " + updated + " of " + tasks.size() + " models and removed " + removed +
+                " stale entries in " + (System.currentTimeMillis() - start) + "ms");
+        return updated > 0 || removed > 0;
+    }
+
+    /** Saves the index to the backing file.
+     */
+    public synchronized void save() {
+        try {
+            FileUtil.writeString(file, charsetDefault, JSON.toJSONString(new TreeMap<>(map)), false);
+        } catch (IOException e) {
+            Logger.warn("ModelIndex", "Failed to save the model metadata index: " + e);
+        }
+    }
+
+    /** Gets the metadata of the given model.
+     * @param modelItem The model.
+     * @return The metadata, or {@code null} if the model was not indexed.
+     */
+    public Metadata get(ModelItem modelItem) {
+        return modelItem == null || modelItem.key == null ? null : map.get(modelItem.key);
+    }
+
+    /** Gets the count of the indexed models.
+     * @return The count.
+     */
+    public int size() {
+        return map.size();
+    }
+
+    private static boolean updateItem(ModelItem item, Map<String, Metadata> result)
+            throws IOException {
+        String skelName = item.getAccessor().getFirstFileOf(".skel");
+        if (skelName == null) {
+            // The model has no skeleton any longer
+            return result.remove(item.key) != null;
+        }
+        File skel = new File(item.assetDir, skelName);
+        String hash = FileUtil.getMD5(skel);
+        Metadata cached = result.get(item.key);
+        if (cached != null && hash.equals(cached.hash) && cached.format == Metadata.currentFormat)
+            return false;
+        result.put(item.key, Metadata.of(hash, readAnimations(skel)));
+        return true;
+    }
+
+    /** Reads the animations of a skeleton file without loading any texture.
+     * @param skel The skeleton file, either binary or JSON.
+     * @return An array of the animations.
+     */
+    public static Animation[] readAnimations(File skel) {
+        FileHandle handle = new FileHandle(skel);
+        SkeletonData skeletonData;
+        try {
+            skeletonData = new SkeletonBinary(new MetadataAttachmentLoader()).readSkeletonData(handle);
+        } catch (Exception e) {
+            // Try to load as json if the binary format is not matched
+            skeletonData = new SkeletonJson(new MetadataAttachmentLoader()).readSkeletonData(handle);
+        }
+        return skeletonData.getAnimations().toArray(Animation.class);
+    }
+
+
+    /** The animation metadata of a model.
+     */
+    public static class Metadata {
+        /** The format of the metadata, the entries in an older format will be indexed again. */
+        static final int currentFormat = 1;
+
+        /** The format of this metadata. */
+        public int format;
+        /** The MD5 of the skeleton file. */
+        public String hash;
+        /** The ids of the recognized animation stages in ascending order, or only {@code 0} if none was recognized. */
+        public ArrayList<Integer> stages;
+        /** The names of the animation types, in the declaring order of {@link AnimType}. */
+        public ArrayList<String> types;
+        /** The count of the animations. */
+        public int animationCount;
+        /** The total duration of the animations (second). */
+        public float totalDuration;
+
+        public Metadata() {
+        }
+
+        /** Creates the metadata of the given animations.
+         * @param hash The MD5 of the skeleton file.
+         * @param animations The animations.
+         * @return The metadata.
+         */
+        public static Metadata of(String hash, Animation[] animations) {
+            return of(hash, new AnimClipGroup(animations));
+        }
+
+        /** Creates the metadata of the given animation clips.
+         * @param hash The MD5 of the skeleton file.
+         * @param clips The animation clips.
+         * @return The metadata.
+         */
+        static Metadata of(String hash, Collection<AnimClip> clips) {
+            TreeSet<Integer> stageSet = new TreeSet<>();
+            EnumSet<AnimType> typeSet = EnumSet.noneOf(AnimType.class);
+            Metadata metadata = new Metadata();
+            for (AnimClip clip : clips) {
+                // The clips without a recognized stage do not make up a stage by themselves
+                if (clip.stage.id() > 0)
+                    stageSet.add(clip.stage.id());
+                if (clip.type != AnimType.NONE)
+                    typeSet.add(clip.type);
+                metadata.totalDuration += clip.duration;
+            }
+            if (stageSet.isEmpty() && !clips.isEmpty())
+                stageSet.add(0);
+            metadata.format = currentFormat;
+            metadata.hash = hash;
+            metadata.stages = new ArrayList<>(stageSet);
+            metadata.types = new ArrayList<>();
+            typeSet.forEach(t -> metadata.types.add(t.name()));
+            metadata.animationCount = clips.size();
+            return metadata;
+        }
+
+        /** Gets the count of the animation stages.
+         * @return The count.
+         */
+        @JSONField(serialize = false)
+        public int getStageCount() {
+            return stages == null ? 0 : stages.size();
+        }
+
+        /** Returns true if the model has the animations of the given type.
+         * @param type The animation type.
+         */
+        public boolean hasType(AnimType type) {
+            return types != null && types.contains(type.name());
+        }
+
+        /** Gets the ids of the animation stages as {@link AnimStage} objects.
+         * @return A list of the stages.
+         */
+        public List<AnimStage> toStages() {
+            ArrayList<AnimStage> list = new ArrayList<>();
+            if (stages != null)
+                stages.forEach(id -> list.add(new AnimStage(id)));
+            return list;
+        }
+    }
+
+
+    /** The attachment loader which creates the attachments without binding any texture region,
+     * so that a skeleton file can be read without its atlas.
+     */
+    private static class MetadataAttachmentLoader implements AttachmentLoader {
+        @Override
+        public RegionAttachment newRegionAttachment(Skin skin, String name, String path) {
+            return new RegionAttachment(name);
+        }
+
+        @Override
+        public MeshAttachment newMeshAttachment(Skin skin, String name, String path) {
+            return new MeshAttachment(name);
+        }
+
+        @Override
+        public BoundingBoxAttachment newBoundingBoxAttachment(Skin skin, String name) {
+            return new BoundingBoxAttachment(name);
+        }
+
+        @Override
+        public ClippingAttachment newClippingAttachment(Skin skin, String name) {
+            return new ClippingAttachment(name);
+        }
+
+        @Override
+        public PathAttachment newPathAttachment(Skin skin, String name) {
+            return new PathAttachment(name);
+        }
+
+        @Override
+        public PointAttachment newPointAttachment(Skin skin, String name) {
+            return new PointAttachment(name);
+        }
+    }
+}
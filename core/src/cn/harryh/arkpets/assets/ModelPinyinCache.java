@@ -0,0 +1,93 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import cn.harryh.arkpets.utils.IOUtils.FileUtil;
+import cn.harryh.arkpets.utils.Logger;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static cn.harryh.arkpets.Const.charsetDefault;
+
+
+/** The persisted cache of the Pinyin transcriptions of the model names.
+ * <hr>
+ * Computing the Pinyin of a name is slow, so the transcriptions of all the Model Items are computed
+ * in parallel when the dataset is loaded, and then saved so that the later launches can reuse them.
+ * The cache is keyed by the model name, whose transcriptions only depend on itself,
+ * and the names that no longer exist in the dataset will be pruned.
+ * @since ArkPets 3.7
+ */
+public final class ModelPinyinCache {
+    private ModelPinyinCache() {
+    }
+
+    /** Fills in the Pinyin transcriptions of the given Model Items, using and updating the cache file.
+     * This method should not be called on the JavaFX thread.
+     * @param modelItems The Model Items.
+     * @param cacheFile The cache file.
+     * @return The count of the names whose transcriptions were newly computed.
+     */
+    public static int precompute(Collection<ModelItem> modelItems, File cacheFile) {
+        long start = System.nanoTime();
+        ConcurrentHashMap<String, String[]> cache = load(cacheFile);
+        long loaded = System.nanoTime();
+        ArrayList<ModelItem> items = new ArrayList<>(modelItems);
+        HashSet<String> names = new HashSet<>();
+        items.forEach(item -> names.add(item.name));
+        boolean pruned = cache.keySet().retainAll(names);
+        int sizeBefore = cache.size();
+        items.parallelStream().forEach(item -> {
+            if (item.name == null || item.hasPinyin())
+                return;
+            String[] pinyin = cache.computeIfAbsent(item.name, name -> new String[] {
+                    ModelItem.toPinyinQuanpin(name), ModelItem.toPinyinSuoxie(name)
+            });
+            item.setPinyin(pinyin[0], pinyin[1]);
+        });
+        int computed = cache.size() - sizeBefore;
+        if (computed > 0 || pruned)
+            save(cacheFile, cache);
+        long end = System.nanoTime();
+        Logger.info("Dataset", "Prepared Pinyin of " + items.size() + " models (" + computed + " computed) in " +
+                (end - start) / 1000000 + "ms (loading cache " + (loaded - start) / 1000000 + "ms)");
+        return computed;
+    }
+
+    private static ConcurrentHashMap<String, String[]> load(File cacheFile) {
+        ConcurrentHashMap<String, String[]> cache = new ConcurrentHashMap<>();
+        if (cacheFile.isFile()) {
+            try {
+                HashMap<String, String[]> map = JSONObject.parseObject(FileUtil.readString(cacheFile, charsetDefault),
+                        new TypeReference<HashMap<String, String[]>>() {});
+                if (map != null)
+                    map.forEach((k, v) -> {
+                        if (k != null && v != null && v.length == 2 && v[0] != null && v[1] != null)
+                            cache.put(k, v);
+                    });
+            } catch (Exception e) {
+                Logger.warn("Dataset", "Failed to load the Pinyin cache, it will be rebuilt: " + e);
+            }
+        }
+        return cache;
+    }
+
+    private static void save(File cacheFile, ConcurrentHashMap<String, String[]> cache) {
+        try {
+            FileUtil.writeString(cacheFile, charsetDefault, JSON.toJSONString(new TreeMap<>(cache)), false);
+        } catch (IOException e) {
+            Logger.warn("Dataset", "Failed to save the Pinyin cache: " + e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import java.util.*;
+
+
+/** The inverted n-gram index for searching the Model Items by keywords.
+ * <hr>
+ * Each searchable field is uppercased once at index time, and then split into its unigrams and bigrams,
+ * each of which maps to the sorted posting list of the Model Items containing it.
+ * A keyword query intersects the posting lists of the keyword's bigrams, and verifies the few candidates by
+ * {@link String#contains(CharSequence)}, so the result is exactly the same as scanning all the Model Items.
+ * @since ArkPets 3.7
+ */
+final class ModelSearchIndex {
+    static final int FIELD_NAME = 0;
+    static final int FIELD_APPELLATION = 1;
+    static final int FIELD_PINYIN_SUOXIE = 2;
+    static final int FIELD_PINYIN_QUANPIN = 3;
+    static final int FIELD_SKIN_GROUP_NAME = 4;
+    private static final int fieldCount = 5;
+
+    private final ModelItem[] items;
+    private final String[][] fields;
+    private final ArrayList<HashMap<Integer, int[]>> unigrams;
+    private final ArrayList<HashMap<Long, int[]>> bigrams;
+
+    /** Builds the index of the given Model Items.
+     * @param modelItems The Model Items in the order to be searched.
+     */
+    ModelSearchIndex(List<ModelItem> modelItems) {
+        items = modelItems.toArray(new ModelItem[0]);
+        fields = new String[fieldCount][items.length];
+        unigrams = new ArrayList<>(fieldCount);
+        bigrams = new ArrayList<>(fieldCount);
+        for (int i = 0; i < items.length; i++) {
+            ModelItem model = items[i];
+            fields[FIELD_NAME][i] = upper(model.name);
+            fields[FIELD_APPELLATION][i] = upper(model.appellation);
+            fields[FIELD_PINYIN_SUOXIE][i] = upper(model.getPinyinSuoxie());
+            fields[FIELD_PINYIN_QUANPIN][i] = upper(model.getPinyinQuanpin());
+            fields[FIELD_SKIN_GROUP_NAME][i] = upper(model.skinGroupName);
+        }
+        for (int f = 0; f < fieldCount; f++) {
+            HashMap<Integer, PostingBuilder> uni = new HashMap<>();
+            HashMap<Long, PostingBuilder> bi = new HashMap<>();
+            for (int i = 0; i < items.length; i++) {
+                String s = fields[f][i];
+                if (s == null)
+                    continue;
+                for (int k = 0; k < s.length(); k++) {
+                    uni.computeIfAbsent((int)s.charAt(k), x -> new PostingBuilder()).add(i);
+                    if (k + 1 < s.length())
+                        bi.computeIfAbsent(bigram(s.charAt(k), s.charAt(k + 1)), x -> new PostingBuilder()).add(i);
+                }
+            }
+            HashMap<Integer, int[]> uniMap = new HashMap<>(uni.size() * 2);
+            uni.forEach((k, v) -> uniMap.put(k, v.toArray()));
+            HashMap<Long, int[]> biMap = new HashMap<>(bi.size() * 2);
+            bi.forEach((k, v) -> biMap.put(k, v.toArray()));
+            unigrams.add(uniMap);
+            bigrams.add(biMap);
+        }
+    }
+
+    /** Gets the count of the indexed Model Items.
+     * @return The count.
+     */
+    int size() {
+        return items.length;
+    }
+
+    /** Gets the indexed Model Item at the given position.
+     * @param index The position.
+     * @return The Model Item.
+     */
+    ModelItem get(int index) {
+        return items[index];
+    }
+
+    /** Marks the Model Items whose specified field contains any of the given uppercased keywords.
+     * @param field The field id.
+     * @param words The uppercased keywords.
+     * @param matched The bit set to mark the positions of the matched Model Items.
+     */
+    void match(int field, String[] words, BitSet matched) {
+        String[] values = fields[field];
+        for (String word : words) {
+            if (word.isEmpty()) {
+                // An empty keyword matches every non-null field
+                for (int i = 0; i < values.length; i++)
+                    if (values[i] != null)
+                        matched.set(i);
+            } else if (word.length() == 1) {
+                int[] posting = unigrams.get(field).get((int)word.charAt(0));
+                if (posting != null)
+                    for (int i : posting)
+                        matched.set(i);
+            } else {
+                for (int i : getCandidates(field, word))
+                    if (!matched.get(i) && values[i].contains(word))
+                        matched.set(i);
+            }
+        }
+    }
+
+    private int[] getCandidates(int field, String word) {
+        // Intersect the posting lists of all the bigrams, the shortest list first
+        HashMap<Long, int[]> map = bigrams.get(field);
+        int[][] postings = new int[word.length() - 1][];
+        for (int k = 0; k + 1 < word.length(); k++) {
+            int[] posting = map.get(bigram(word.charAt(k), word.charAt(k + 1)));
+            if (posting == null)
+                return new int[0];
+            postings[k] = posting;
+        }
+        Arrays.sort(postings, Comparator.comparingInt(p -> p.length));
+        int[] result = postings[0];
+        for (int k = 1; k < postings.length && result.length > 0; k++)
+            result = intersect(result, postings[k]);
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static long bigram(char c1, char c2) {
+        return ((long)c1 << 16) | c2;
+    }
+
+    private static String upper(String s) {
+        return s == null ? null : s.toUpperCase();
+    }
+
+
+    private static class PostingBuilder {
+        private int[] array = new int[4];
+        private int size = 0;
+
+        private void add(int i) {
+            // The positions are added in ascending order, so only the last one needs to be checked
+            if (size > 0 && array[size - 1] == i)
+                return;
+            if (size == array.length)
+                array = Arrays.copyOf(array, size * 2);
+            array[size++] = i;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(array, size);
+        }
+    }
+}
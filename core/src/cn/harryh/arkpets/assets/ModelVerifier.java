@@ -0,0 +1,253 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import cn.harryh.arkpets.utils.IOUtils.FileUtil;
+import cn.harryh.arkpets.utils.Logger;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+import static cn.harryh.arkpets.Const.charsetDefault;
+
+
+/** The verifier of the integrity of the local model asset files.
+ * <hr>
+ * The Model Items are verified in parallel on a bounded worker pool. Note that the current datasets record no checksum,
+ * so only the presence and the non-emptiness of the asset files are checked. An asset file is read to compute
+ * its MD5 checksum only if the dataset provides one (only the legacy datasets do) to compare.
+ * The checksums are cached by the path, the size and the modified time of the file,
+ * so that a re-verification only reads the changed files.
+ * @since ArkPets 3.7
+ */
+public class ModelVerifier {
+    private static final int bufferSize = 64 * 1024;
+    private static final int maxThreads = 8;
+
+    private final File file;
+    private final ConcurrentHashMap<String, Digest> cache;
+
+    /** Initializes a model verifier whose cache is backed by the given file.
+     * The persisted cache will be loaded if the file exists and is valid.
+     * @param file The file to persist the cache.
+     */
+    public ModelVerifier(File file) {
+        this.file = file;
+        cache = new ConcurrentHashMap<>();
+        if (file.isFile()) {
+            try {
+                HashMap<String, Digest> loaded = JSONObject.parseObject(FileUtil.readString(file, charsetDefault),
+                        new TypeReference<HashMap<String, Digest>>() {});
+                if (loaded != null)
+                    loaded.forEach((k, v) -> {
+                        if (k != null && v != null)
+                            cache.put(k, v);
+                    });
+            } catch (Exception e) {
+                Logger.warn("Checker", "Failed to load the verification cache, it will be rebuilt: " + e);
+            }
+        }
+    }
+
+    /** Verifies the given Model Items in parallel.
+     * @param modelItems The Model Items to verify.
+     * @param progress The callback receiving the count of the verified Model Items and the total count,
+     *                 which will be invoked on the calling thread.
+     * @param cancelled The supplier telling whether the verification should be cancelled.
+     * @return A list of the problems in the order of the given Model Items, which is empty if all of them are integral,
+     *         or {@code null} if the verification was cancelled.
+     * @throws InterruptedException If interrupted while waiting for the verification.
+     */
+    public List<Problem> verify(Collection<ModelItem> modelItems, BiConsumer<Integer, Integer> progress,
+                                BooleanSupplier cancelled)
+            throws InterruptedException {
+        long start = System.currentTimeMillis();
+        ArrayList<ModelItem> items = new ArrayList<>(modelItems);
+        int total = items.size();
+        int threads = Math.max(1, Math.min(total, Math.min(maxThreads, Runtime.getRuntime().availableProcessors())));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ModelVerifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Integer> service = new ExecutorCompletionService<>(executor);
+        Problem[] problems = new Problem[total];
+        try {
+            for (int i = 0; i < total; i++) {
+                final int index = i;
+                service.submit(() -> {
+                    if (cancelled.getAsBoolean())
+                        return index;
+                    ModelItem item = items.get(index);
+                    try {
+                        problems[index] = verifyItem(item);
+                    } catch (Exception e) {
+                        // An item that cannot be verified must not be regarded as integral
+                        Logger.warn("Checker", "Failed to verify the model " + item.assetDir + ": " + e);
+                        problems[index] = new Problem(item, ProblemType.VERIFY_FAILED, null);
+                    }
+                    return index;
+                });
+            }
+            int done = 0;
+            progress.accept(0, total);
+            while (done < total) {
+                if (cancelled.getAsBoolean())
+                    return null;
+                Future<Integer> future = service.poll(100, TimeUnit.MILLISECONDS);
+                if (future == null)
+                    continue;
+                progress.accept(++done, total);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ArrayList<Problem> result = new ArrayList<>();
+        for (Problem problem : problems)
+            if (problem != null)
+                result.add(problem);
+        Logger.info("Checker", "Verified " + total + " models in " + (System.currentTimeMillis() - start) + "ms (" +
+                result.size() + " problems)");
+        return result;
+    }
+
+    /** Saves the cache to the backing file. The entries of the files that no longer exist will be pruned.
+     */
+    public void save() {
+        cache.keySet().removeIf(path -> !new File(path).isFile());
+        try {
+            FileUtil.writeString(file, charsetDefault, JSON.toJSONString(new TreeMap<>(cache)), false);
+        } catch (IOException e) {
+            Logger.warn("Checker", "Failed to save the verification cache: " + e);
+        }
+    }
+
+    private Problem verifyItem(ModelItem item)
+            throws IOException {
+        if (!item.isExisted())
+            return new Problem(item, ProblemType.DIR_MISSING, null);
+        // Map the lowercase file names to the actual ones, since the file names are case-insensitive in the dataset
+        String[] existed = item.assetDir.list();
+        if (existed == null)
+            throw new IOException("Failed to list the directory " + item.assetDir);
+        HashMap<String, String> existedMap = new HashMap<>(existed.length * 2);
+        for (String name : existed)
+            existedMap.put(name.toLowerCase(), name);
+
+        for (String fileName : item.getAccessor().getAllFiles()) {
+            String actualName = existedMap.get(fileName.toLowerCase());
+            File assetFile = actualName == null ? null : new File(item.assetDir, actualName);
+            if (assetFile == null || !assetFile.isFile()) {
+                Logger.warn("Asset", "The asset file " + fileName + " (" + item.assetDir.getName() + ") is missing.");
+                return new Problem(item, ProblemType.FILE_MISSING, fileName);
+            }
+            String expectedMD5 = getExpectedMD5(item, fileName);
+            if (assetFile.length() == 0 || (expectedMD5 != null && !expectedMD5.equalsIgnoreCase(getDigest(assetFile).md5))) {
+                Logger.warn("Asset", "The asset file " + fileName + " (" + item.assetDir.getName() + ") is broken.");
+                return new Problem(item, ProblemType.FILE_BROKEN, fileName);
+            }
+        }
+        return null;
+    }
+
+    private Digest getDigest(File assetFile)
+            throws IOException {
+        String path = assetFile.getAbsolutePath();
+        long size = assetFile.length();
+        long modified = assetFile.lastModified();
+        Digest cached = cache.get(path);
+        if (cached != null && cached.size == size && cached.modified == modified && cached.md5 != null)
+            return cached;
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        try (FileChannel channel = FileChannel.open(assetFile.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+        }
+        Digest digest = new Digest();
+        digest.size = size;
+        digest.modified = modified;
+        digest.md5 = toHex(md.digest());
+        cache.put(path, digest);
+        return digest;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String getExpectedMD5(ModelItem item, String fileName) {
+        // Only the legacy datasets provide the checksums, keyed by either the file name or the file extension
+        if (item.checksum == null)
+            return null;
+        Object value = item.checksum.get(fileName);
+        if (value == null && fileName.lastIndexOf('.') >= 0)
+            value = item.checksum.get(fileName.substring(fileName.lastIndexOf('.')));
+        return value instanceof String s && s.matches("[0-9A-Fa-f]{32}") ? s : null;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+
+    /** The cached checksum of an asset file.
+     */
+    public static class Digest {
+        /** The size of the file (byte). */
+        public long size;
+        /** The modified time of the file. */
+        public long modified;
+        /** The MD5 checksum of the file. */
+        public String md5;
+
+        public Digest() {
+        }
+    }
+
+
+    public enum ProblemType {
+        /** Indicates that the asset directory is missing */
+        DIR_MISSING,
+        /** Indicates that an asset file is missing */
+        FILE_MISSING,
+        /** Indicates that an asset file is empty or mismatches its checksum */
+        FILE_BROKEN,
+        /** Indicates that the Model Item cannot be verified because of an error */
+        VERIFY_FAILED
+    }
+
+
+    /** The problem found in a Model Item.
+     * @param item The Model Item.
+     * @param type The type of the problem.
+     * @param fileName The name of the problematic file, or {@code null} if the problem is not about a file.
+     */
+    public record Problem(ModelItem item, ProblemType type, String fileName) {
+    }
+}
@@ -3,16 +3,22 @@
  */
 package cn.harryh.arkpets.assets;
 
+import cn.harryh.arkpets.utils.IOUtils.FileUtil;
+import cn.harryh.arkpets.utils.Logger;
 import cn.harryh.arkpets.utils.Version;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.annotation.JSONField;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.Serializable;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Objects;
 
+import static cn.harryh.arkpets.Const.charsetDefault;
+
 
 public class ModelsDataset {
     public final HashMap<String, File> storageDirectory;
@@ -65,6 +71,57 @@ public class ModelsDataset {
     }
 
 
+    ModelsDataset(HashMap<String, File> storageDirectory, HashMap<String, String> sortTags,
+                  String gameDataVersionDescription, String gameDataServerRegion,
+                  ModelItemGroup data, Version arkPetsCompatibility) {
+        if (storageDirectory == null || storageDirectory.isEmpty())
+            throw new DatasetKeyException("storageDirectory");
+        if (data == null || data.isEmpty())
+            throw new DatasetKeyException("data");
+        this.storageDirectory = storageDirectory;
+        this.sortTags = sortTags;
+        this.gameDataVersionDescription = gameDataVersionDescription;
+        this.gameDataServerRegion = gameDataServerRegion;
+        this.data = data;
+        this.arkPetsCompatibility = arkPetsCompatibility;
+    }
+
+    /** Loads the dataset from the given JSON file.
+     * <hr>
+     * A binary snapshot of the dataset is used as a cache, so the JSON file is parsed only if it was changed.
+     * The snapshot will be (re)generated after the JSON file was parsed.
+     * @param jsonFile The JSON dataset file.
+     * @param snapshotFile The snapshot file.
+     * @return A new dataset instance.
+     * @throws IOException If I/O error occurs. It may be FileNotFoundException if the JSON file does not exist.
+     * @since ArkPets 3.7
+     */
+    public static ModelsDataset fromFile(File jsonFile, File snapshotFile)
+            throws IOException {
+        if (!jsonFile.isFile())
+            throw new FileNotFoundException(jsonFile.getPath());
+        long start = System.nanoTime();
+        try {
+            ModelsDataset snapshot = ModelsDatasetSnapshot.read(snapshotFile, jsonFile, null);
+            if (snapshot != null) {
+                Logger.debug("Dataset", "Loaded dataset snapshot in " + (System.nanoTime() - start) / 1000000 + "ms");
+                return snapshot;
+            }
+        } catch (IOException | RuntimeException e) {
+            Logger.warn("Dataset", "Failed to read the dataset snapshot: " + e);
+        }
+        byte[] content = FileUtil.readByte(jsonFile);
+        ModelsDataset dataset = new ModelsDataset(JSONObject.parseObject(new String(content, charsetDefault)));
+        Logger.debug("Dataset", "Parsed dataset JSON in " + (System.nanoTime() - start) / 1000000 + "ms");
+        try {
+            ModelsDatasetSnapshot.write(snapshotFile, jsonFile, content, dataset);
+        } catch (IOException e) {
+            Logger.warn("Dataset", "Failed to write the dataset snapshot: " + e);
+        }
+        return dataset;
+    }
+
+
     public static class DatasetKeyException extends IllegalArgumentException {
         public DatasetKeyException(String keyName) {
             super("The key \"" + keyName + "\" not found or invalid.");
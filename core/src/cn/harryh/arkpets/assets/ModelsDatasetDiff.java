@@ -0,0 +1,106 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+
+/** The per-model difference between two versions of the {@link ModelsDataset}.
+ * <hr>
+ * A model is regarded as changed if its directory, its {@code assetList} or its legacy {@code checksum} differs,
+ * or if its local files are not integral. Since the dataset does not record the checksums of the asset files,
+ * a model whose files were changed in place under the same names can only be updated by a full download.
+ * @since ArkPets 3.7
+ */
+public class ModelsDatasetDiff {
+    /** The models that only exist in the new dataset. */
+    public final List<ModelItem> added;
+    /** The models of the new dataset whose old versions are different or not integral. */
+    public final List<ModelItem> changed;
+    /** The models of the old dataset whose directories are no longer used. */
+    public final List<ModelItem> removed;
+    /** The models whose entries are unchanged, though their files may still be changed in place. */
+    public final List<ModelItem> unchanged;
+
+    private ModelsDatasetDiff(List<ModelItem> added, List<ModelItem> changed, List<ModelItem> removed,
+                              List<ModelItem> unchanged) {
+        this.added = added;
+        this.changed = changed;
+        this.removed = removed;
+        this.unchanged = unchanged;
+    }
+
+    /** Computes the difference from the old dataset to the new dataset.
+     * @param oldDataset The old (local) dataset.
+     * @param newDataset The new (remote) dataset.
+     * @return The difference.
+     */
+    public static ModelsDatasetDiff of(ModelsDataset oldDataset, ModelsDataset newDataset) {
+        return of(oldDataset, newDataset, Path.of(""));
+    }
+
+    /** Computes the difference from the old dataset to the new dataset,
+     * where the local files of the old models are checked in the given working directory.
+     * @param oldDataset The old (local) dataset.
+     * @param newDataset The new (remote) dataset.
+     * @param workRoot The working directory which the asset directories are relative to.
+     * @return The difference.
+     */
+    public static ModelsDatasetDiff of(ModelsDataset oldDataset, ModelsDataset newDataset, Path workRoot) {
+        HashMap<String, ModelItem> oldMap = new HashMap<>();
+        for (ModelItem item : oldDataset.data)
+            oldMap.put(item.key, item);
+        ArrayList<ModelItem> added = new ArrayList<>();
+        ArrayList<ModelItem> changed = new ArrayList<>();
+        ArrayList<ModelItem> removed = new ArrayList<>();
+        ArrayList<ModelItem> unchanged = new ArrayList<>();
+        HashSet<File> usedDirs = new HashSet<>();
+
+        for (ModelItem item : newDataset.data) {
+            usedDirs.add(item.assetDir);
+            ModelItem old = oldMap.get(item.key);
+            if (old == null)
+                added.add(item);
+            else if (isModelChanged(old, item, workRoot))
+                changed.add(item);
+            else
+                unchanged.add(item);
+        }
+        for (ModelItem old : oldDataset.data)
+            if (!usedDirs.contains(old.assetDir))
+                removed.add(old);
+        return new ModelsDatasetDiff(added, changed, removed, unchanged);
+    }
+
+    /** Gets the models to be fetched, namely the added and the changed ones.
+     * @return A new list of the models.
+     */
+    public List<ModelItem> getToFetch() {
+        ArrayList<ModelItem> list = new ArrayList<>(added);
+        list.addAll(changed);
+        return list;
+    }
+
+    /** Returns true if there is no difference.
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean isModelChanged(ModelItem oldItem, ModelItem newItem, Path workRoot) {
+        return !Objects.equals(oldItem.assetDir, newItem.assetDir) ||
+                !Objects.equals(oldItem.assetList, newItem.assetList) ||
+                !Objects.equals(oldItem.checksum, newItem.checksum) ||
+                !oldItem.isValid() || !oldItem.isChecked(workRoot.resolve(oldItem.assetDir.getPath()).toFile());
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " added, " + changed.size() + " changed, " + removed.size() + " removed, " +
+                unchanged.size() + " unchanged";
+    }
+}
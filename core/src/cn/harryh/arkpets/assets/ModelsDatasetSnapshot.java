@@ -0,0 +1,337 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import cn.harryh.arkpets.utils.IOUtils.FileUtil;
+import cn.harryh.arkpets.utils.Version;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.parser.Feature;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+
+/** The binary snapshot of a {@link ModelsDataset}, which can be loaded without parsing the JSON dataset.
+ * <hr>
+ * The snapshot consists of a header, a string table and the fixed-width records of the Model Items.
+ * Every string is stored only once in the string table and referred by its index ({@code -1} indicates {@code null}),
+ * while the variable-length fields (the sort tags and the asset list) are stored in a shared int pool,
+ * and the legacy checksum object is stored as a JSON string.
+ * The snapshot is read into a heap buffer at once, so the file is never kept mapped and can be replaced at any time.
+ * <hr>
+ * A snapshot is valid only if it was generated from the same JSON dataset, which is validated by the size and
+ * the modified time of the JSON file, or by the MD5 of its content if the former ones are changed.
+ * @since ArkPets 3.7
+ */
+final class ModelsDatasetSnapshot {
+    private static final int magic = 0x41504453; // "APDS"
+    private static final int formatVersion = 2;
+    private static final int recordWidth = 12;
+
+    private ModelsDatasetSnapshot() {
+    }
+
+    /** Reads the snapshot if it is valid for the given JSON dataset file.
+     * @param snapshotFile The snapshot file.
+     * @param jsonFile The JSON dataset file.
+     * @param jsonContent The content of the JSON dataset file, or {@code null} if it has not been read.
+     * @return The dataset, or {@code null} if the snapshot is missing or invalid.
+     * @throws IOException If I/O error occurs.
+     */
+    static ModelsDataset read(File snapshotFile, File jsonFile, byte[] jsonContent)
+            throws IOException {
+        if (!snapshotFile.isFile())
+            return null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile.toPath()));
+            if (buffer.getInt() != magic || buffer.getInt() != formatVersion)
+                return null;
+            long sourceSize = buffer.getLong();
+            long sourceModified = buffer.getLong();
+            byte[] sourceHash = new byte[32];
+            buffer.get(sourceHash);
+            if (sourceSize != jsonFile.length() || sourceModified != jsonFile.lastModified()) {
+                // Fall back to the hash validation since the file may be merely touched
+                byte[] content = jsonContent != null ? jsonContent : Files.readAllBytes(jsonFile.toPath());
+                if (!Arrays.equals(sourceHash, getHash(content)))
+                    return null;
+            }
+            return new Reader(buffer).readDataset();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            // The snapshot is broken
+            return null;
+        }
+    }
+
+    /** Writes the snapshot of the given dataset atomically.
+     * @param snapshotFile The snapshot file.
+     * @param jsonFile The JSON dataset file which the dataset was parsed from.
+     * @param jsonContent The content of the JSON dataset file.
+     * @param dataset The dataset.
+     * @throws IOException If I/O error occurs.
+     */
+    @SuppressWarnings("deprecation")
+    static void write(File snapshotFile, File jsonFile, byte[] jsonContent, ModelsDataset dataset)
+            throws IOException {
+        Writer writer = new Writer();
+        // 1.Dataset fields
+        writer.putStringMap(dataset.storageDirectory == null ? null : toStringMap(dataset.storageDirectory));
+        writer.putStringMap(dataset.sortTags);
+        writer.ints.add(writer.putString(dataset.gameDataVersionDescription));
+        writer.ints.add(writer.putString(dataset.gameDataServerRegion));
+        int[] compatibility = dataset.arkPetsCompatibility.toArray();
+        writer.ints.add(compatibility.length);
+        for (int i : compatibility)
+            writer.ints.add(i);
+        // 2.Model Item records
+        writer.ints.add(dataset.data.size());
+        ArrayList<int[]> records = new ArrayList<>();
+        for (ModelItem item : dataset.data) {
+            records.add(new int[] {
+                    writer.putString(item.key),
+                    writer.putString(item.assetDir == null ? null : item.assetDir.getPath()),
+                    writer.putString(item.assetId),
+                    writer.putString(item.type),
+                    writer.putString(item.style),
+                    writer.putString(item.name),
+                    writer.putString(item.appellation),
+                    writer.putString(item.skinGroupId),
+                    writer.putString(item.skinGroupName),
+                    writer.putSortTags(item.sortTags),
+                    writer.putAssetList(item.assetList),
+                    writer.putString(item.checksum == null ? null : item.checksum.toJSONString())
+            });
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(magic);
+        out.writeInt(formatVersion);
+        out.writeLong(jsonFile.length());
+        out.writeLong(jsonFile.lastModified());
+        out.write(getHash(jsonContent));
+        // String table
+        out.writeInt(writer.strings.size());
+        ArrayList<byte[]> encoded = new ArrayList<>();
+        int offset = 0;
+        for (String s : writer.strings) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            encoded.add(b);
+            out.writeInt(offset);
+            offset += b.length;
+        }
+        out.writeInt(offset);
+        for (byte[] b : encoded)
+            out.write(b);
+        // Int pool
+        out.writeInt(writer.pool.size());
+        for (int i : writer.pool)
+            out.writeInt(i);
+        // Header ints
+        out.writeInt(writer.ints.size());
+        for (int i : writer.ints)
+            out.writeInt(i);
+        // Records
+        for (int[] record : records)
+            for (int i : record)
+                out.writeInt(i);
+        out.flush();
+
+        File temp = new File(snapshotFile.getPath() + ".tmp");
+        Files.write(temp.toPath(), bytes.toByteArray());
+        Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static HashMap<String, String> toStringMap(HashMap<String, File> map) {
+        HashMap<String, String> result = new HashMap<>();
+        map.forEach((k, v) -> result.put(k, v.getPath()));
+        return result;
+    }
+
+    private static byte[] getHash(byte[] content) {
+        return FileUtil.getMD5(content).getBytes(StandardCharsets.US_ASCII);
+    }
+
+
+    private static class Writer {
+        private final ArrayList<String> strings = new ArrayList<>();
+        private final HashMap<String, Integer> stringIds = new HashMap<>();
+        private final ArrayList<Integer> pool = new ArrayList<>();
+        private final ArrayList<Integer> ints = new ArrayList<>();
+
+        private int putString(String s) {
+            if (s == null)
+                return -1;
+            return stringIds.computeIfAbsent(s, k -> {
+                strings.add(k);
+                return strings.size() - 1;
+            });
+        }
+
+        private void putStringMap(Map<String, String> map) {
+            if (map == null) {
+                ints.add(-1);
+                return;
+            }
+            ints.add(map.size());
+            map.forEach((k, v) -> {
+                ints.add(putString(k));
+                ints.add(putString(v));
+            });
+        }
+
+        private int putSortTags(JSONArray sortTags) {
+            if (sortTags == null)
+                return -1;
+            int offset = pool.size();
+            pool.add(sortTags.size());
+            for (Object tag : sortTags)
+                pool.add(putString(tag == null ? null : tag.toString()));
+            return offset;
+        }
+
+        private int putAssetList(JSONObject assetList) {
+            if (assetList == null)
+                return -1;
+            int offset = pool.size();
+            pool.add(assetList.size());
+            for (Map.Entry<String, Object> entry : assetList.entrySet()) {
+                pool.add(putString(entry.getKey()));
+                if (entry.getValue() instanceof List<?> files) {
+                    // An array of file names
+                    pool.add(files.size());
+                    for (Object file : files)
+                        pool.add(putString(file == null ? null : file.toString()));
+                } else {
+                    // A single file name
+                    pool.add(-1);
+                    pool.add(putString(entry.getValue() == null ? null : entry.getValue().toString()));
+                }
+            }
+            return offset;
+        }
+    }
+
+
+    private static class Reader {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+        private final int[] pool;
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            int count = buffer.getInt();
+            int[] offsets = new int[count + 1];
+            for (int i = 0; i <= count; i++)
+                offsets[i] = buffer.getInt();
+            int base = buffer.position();
+            strings = new String[count];
+            byte[] temp = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int len = offsets[i + 1] - offsets[i];
+                if (temp.length < len)
+                    temp = new byte[len];
+                buffer.get(base + offsets[i], temp, 0, len);
+                strings[i] = new String(temp, 0, len, StandardCharsets.UTF_8);
+            }
+            buffer.position(base + offsets[count]);
+            pool = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(pool);
+            buffer.position(buffer.position() + pool.length * Integer.BYTES);
+        }
+
+        @SuppressWarnings("deprecation")
+        private ModelsDataset readDataset() {
+            buffer.getInt(); // The count of the header ints
+            HashMap<String, String> directories = readStringMap();
+            HashMap<String, File> storageDirectory = null;
+            if (directories != null) {
+                storageDirectory = new HashMap<>();
+                for (Map.Entry<String, String> entry : directories.entrySet())
+                    storageDirectory.put(entry.getKey(), new File(entry.getValue()));
+            }
+            HashMap<String, String> sortTags = readStringMap();
+            String description = string(buffer.getInt());
+            String region = string(buffer.getInt());
+            int[] compatibility = new int[buffer.getInt()];
+            for (int i = 0; i < compatibility.length; i++)
+                compatibility[i] = buffer.getInt();
+
+            int count = buffer.getInt();
+            int[] record = new int[recordWidth];
+            ArrayList<ModelItem> items = new ArrayList<>(count);
+            for (int n = 0; n < count; n++) {
+                buffer.asIntBuffer().get(record);
+                buffer.position(buffer.position() + recordWidth * Integer.BYTES);
+                ModelItem item = new ModelItem();
+                item.key = string(record[0]);
+                item.assetDir = record[1] < 0 ? null : new File(strings[record[1]]);
+                item.assetId = string(record[2]);
+                item.type = string(record[3]);
+                item.style = string(record[4]);
+                item.name = string(record[5]);
+                item.appellation = string(record[6]);
+                item.skinGroupId = string(record[7]);
+                item.skinGroupName = string(record[8]);
+                item.sortTags = readSortTags(record[9]);
+                item.assetList = readAssetList(record[10]);
+                item.checksum = record[11] < 0 ? null : JSON.parseObject(strings[record[11]], Feature.OrderedField);
+                items.add(item);
+            }
+            return new ModelsDataset(storageDirectory, sortTags, description, region,
+                    new ModelItemGroup(items), new Version(compatibility));
+        }
+
+        private HashMap<String, String> readStringMap() {
+            int size = buffer.getInt();
+            if (size < 0)
+                return null;
+            HashMap<String, String> map = new HashMap<>();
+            for (int i = 0; i < size; i++)
+                map.put(string(buffer.getInt()), string(buffer.getInt()));
+            return map;
+        }
+
+        private JSONArray readSortTags(int offset) {
+            if (offset < 0)
+                return null;
+            int size = pool[offset];
+            JSONArray array = new JSONArray(size);
+            for (int i = 1; i <= size; i++)
+                array.add(string(pool[offset + i]));
+            return array;
+        }
+
+        private JSONObject readAssetList(int offset) {
+            if (offset < 0)
+                return null;
+            int size = pool[offset++];
+            JSONObject object = new JSONObject(true);
+            for (int i = 0; i < size; i++) {
+                String key = string(pool[offset++]);
+                int length = pool[offset++];
+                if (length < 0) {
+                    object.put(key, string(pool[offset++]));
+                } else {
+                    JSONArray files = new JSONArray(length);
+                    for (int j = 0; j < length; j++)
+                        files.add(string(pool[offset++]));
+                    object.put(key, files);
+                }
+            }
+            return object;
+        }
+
+        private String string(int id) {
+            return id < 0 ? null : strings[id];
+        }
+    }
+}
@@ -8,22 +8,111 @@ import java.util.regex.Pattern;
 
 
 public abstract class HWndCtrl {
-    public final String windowText;
-    public final int posTop;
-    public final int posBottom;
-    public final int posLeft;
-    public final int posRight;
-    public final int windowWidth;
-    public final int windowHeight;
+    private String windowText;
+    private WindowRect windowRect;
 
+    /** Initializes an HWnd Controller whose attributes will be fetched lazily.
+     */
+    protected HWndCtrl() {
+    }
+
+    /** Initializes an HWnd Controller whose attributes are known.
+     * @param windowText The title of the window.
+     * @param windowRect The rectangle of the window.
+     */
     public HWndCtrl(String windowText, WindowRect windowRect) {
         this.windowText = windowText;
-        posTop = windowRect.top;
-        posBottom = windowRect.bottom;
-        posLeft = windowRect.left;
-        posRight = windowRect.right;
-        windowWidth = posRight - posLeft;
-        windowHeight = posBottom - posTop;
+        this.windowRect = windowRect;
+    }
+
+    /** Fetches the title of the window from the window system.
+     * @return The title string.
+     */
+    protected abstract String fetchWindowText();
+
+    /** Fetches the rectangle of the window from the window system.
+     * @return The window rect.
+     */
+    protected abstract WindowRect fetchWindowRect();
+
+    /** Gets the title of the window, which will be fetched on the first call and then be cached.
+     * @return The title string.
+     * @see #refresh()
+     */
+    public final String getWindowText() {
+        String text = windowText;
+        if (text == null)
+            windowText = text = fetchWindowText();
+        return text;
+    }
+
+    /** Gets the rectangle of the window, which will be fetched on the first call and then be cached.
+     * @return The window rect.
+     * @see #refresh()
+     */
+    public final WindowRect getWindowRect() {
+        WindowRect rect = windowRect;
+        if (rect == null)
+            windowRect = rect = fetchWindowRect();
+        return rect;
+    }
+
+    /** Sets the cached rectangle of the window, typically when it was fetched as a by-product of other operations.
+     * @param windowRect The window rect.
+     */
+    protected final void setWindowRect(WindowRect windowRect) {
+        this.windowRect = windowRect;
+    }
+
+    /** Discards all the cached attributes, so that they will be fetched again on the next call.
+     */
+    public void refresh() {
+        windowText = null;
+        windowRect = null;
+    }
+
+    /** Gets the top border position of the window.
+     * @return Y.
+     */
+    public final int getPosTop() {
+        return getWindowRect().top();
+    }
+
+    /** Gets the bottom border position of the window.
+     * @return Y.
+     */
+    public final int getPosBottom() {
+        return getWindowRect().bottom();
+    }
+
+    /** Gets the left border position of the window.
+     * @return X.
+     */
+    public final int getPosLeft() {
+        return getWindowRect().left();
+    }
+
+    /** Gets the right border position of the window.
+     * @return X.
+     */
+    public final int getPosRight() {
+        return getWindowRect().right();
+    }
+
+    /** Gets the width of the window.
+     * @return Width.
+     */
+    public final int getWidth() {
+        WindowRect rect = getWindowRect();
+        return rect.right() - rect.left();
+    }
+
+    /** Gets the height of the window.
+     * @return Height.
+     */
+    public final int getHeight() {
+        WindowRect rect = getWindowRect();
+        return rect.bottom() - rect.top();
     }
 
     /** Returns true if the window is a foreground window now.
@@ -38,14 +127,14 @@ public abstract class HWndCtrl {
      * @return X.
      */
     public float getCenterX() {
-        return posLeft + windowWidth / 2f;
+        return getPosLeft() + getWidth() / 2f;
     }
 
     /** Gets the center Y position.
      * @return Y.
      */
     public float getCenterY() {
-        return posTop + windowHeight / 2f;
+        return getPosTop() + getHeight() / 2f;
     }
 
     /** Requests to close the window.
@@ -99,6 +188,15 @@ public abstract class HWndCtrl {
      */
     public abstract void sendMouseEvent(MouseEvent msg, int x, int y);
 
+    /** Sends a mouse event message to the window, and waits for it to be processed within the given timeout.
+     * @param msg The window message value.
+     * @param x The X-axis coordinate, related to the left border of the window.
+     * @param y The Y-axis coordinate, related to the top border of the window.
+     * @param timeout The max time to wait (ms).
+     * @return true if the message was processed in time.
+     */
+    public abstract boolean sendMouseEvent(MouseEvent msg, int x, int y, int timeout);
+
     @Override
     public abstract boolean equals(Object o);
 
@@ -107,7 +205,7 @@ public abstract class HWndCtrl {
 
     @Override
     public String toString() {
-        return "‘" + windowText + "’ " + windowWidth + "*" + windowHeight;
+        return "‘" + getWindowText() + "’ " + getWidth() + "*" + getHeight();
     }
 
 
@@ -126,7 +224,7 @@ public abstract class HWndCtrl {
 
         public int getNumber(HWndCtrl hWndCtrl) {
             if (hWndCtrl == null) return -1;
-            return getNumber(hWndCtrl.windowText);
+            return getNumber(hWndCtrl.getWindowText());
         }
 
         public int getNumber(String windowText) {
@@ -0,0 +1,129 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import cn.harryh.arkpets.ArkConfig;
+import cn.harryh.arkpets.utils.Logger;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.glfw.GLFW;
+import org.lwjgl.glfw.GLFWMonitorCallback;
+import org.lwjgl.glfw.GLFWMonitorCallbackI;
+import org.lwjgl.glfw.GLFWVidMode;
+
+
+/** The registry that caches the monitor topology.
+ * <hr>
+ * The monitors are reloaded only when GLFW reports a monitor being connected or disconnected,
+ * or when the periodic polling finds the monitors' positions or display modes changed.
+ * Each reloading increases the version number, which can be used as the key of the downstream caches.
+ * <hr>
+ * All the methods should be called on the main thread, as required by GLFW.
+ * @since ArkPets 3.7
+ */
+public class MonitorRegistry {
+    private final long pollIntervalNanos;
+    private final int[] posXBuffer = new int[1];
+    private final int[] posYBuffer = new int[1];
+    private GLFWMonitorCallback previousCallback;
+    private boolean installed = false;
+    private volatile boolean dirty = true;
+    private long lastPollTime = 0;
+    private long signature = 0;
+    private int version = 0;
+    private ArkConfig.Monitor[] monitors = new ArkConfig.Monitor[0];
+
+    /** Initializes a monitor registry.
+     * @param pollIntervalMillis The interval of the fallback polling in milliseconds.
+     */
+    public MonitorRegistry(long pollIntervalMillis) {
+        this.pollIntervalNanos = Math.max(0, pollIntervalMillis) * 1000000L;
+    }
+
+    /** Subscribes to the monitor connection events of GLFW.
+     * The previously installed callback will still be invoked.
+     */
+    public void install() {
+        if (installed)
+            return;
+        GLFWMonitorCallbackI callback = (monitor, event) -> {
+            dirty = true;
+            if (previousCallback != null)
+                previousCallback.invoke(monitor, event);
+        };
+        previousCallback = GLFW.glfwSetMonitorCallback(callback);
+        installed = true;
+    }
+
+    /** Unsubscribes from the monitor connection events of GLFW, and restores the previous callback.
+     */
+    public void uninstall() {
+        if (!installed)
+            return;
+        GLFWMonitorCallback callback = GLFW.glfwSetMonitorCallback(previousCallback);
+        if (callback != null)
+            callback.free();
+        previousCallback = null;
+        installed = false;
+    }
+
+    /** Reloads the monitors if they may have been changed.
+     * @return true if the monitors were reloaded and the version number increased.
+     */
+    public boolean refresh() {
+        long now = System.nanoTime();
+        if (!dirty && now - lastPollTime < pollIntervalNanos)
+            return false;
+        lastPollTime = now;
+        dirty = false;
+        long newSignature = getSignature();
+        if (newSignature == signature && version > 0)
+            return false;
+        ArkConfig.Monitor[] newMonitors = ArkConfig.Monitor.getMonitors();
+        if (newMonitors.length == 0) {
+            Logger.warn("System", "No monitor has been found");
+            return false;
+        }
+        signature = newSignature;
+        monitors = newMonitors;
+        version++;
+        Logger.debug("System", "Monitor topology v" + version + " with " + monitors.length + " monitor(s)");
+        return true;
+    }
+
+    /** Gets the cached monitors.
+     * @return An array of the Monitor objects, the primary monitor first. Do not modify it.
+     */
+    public ArkConfig.Monitor[] getMonitors() {
+        return monitors;
+    }
+
+    /** Gets the version number of the cached monitors, which increases on every reloading.
+     * @return The version number, {@code 0} indicates not loaded yet.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    private long getSignature() {
+        // A cheap hash of the monitor handles, positions and display modes
+        PointerBuffer handles = GLFW.glfwGetMonitors();
+        if (handles == null)
+            return 0;
+        long hash = handles.limit();
+        for (int i = 0; i < handles.limit(); i++) {
+            long handle = handles.get(i);
+            GLFW.glfwGetMonitorPos(handle, posXBuffer, posYBuffer);
+            hash = hash * 31 + handle;
+            hash = hash * 31 + posXBuffer[0];
+            hash = hash * 31 + posYBuffer[0];
+            GLFWVidMode mode = GLFW.glfwGetVideoMode(handle);
+            if (mode != null) {
+                hash = hash * 31 + mode.width();
+                hash = hash * 31 + mode.height();
+                hash = hash * 31 + mode.refreshRate();
+            }
+        }
+        return hash;
+    }
+}
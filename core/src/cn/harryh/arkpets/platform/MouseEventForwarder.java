@@ -0,0 +1,183 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import cn.harryh.arkpets.utils.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+
+/** The asynchronous forwarder that delivers mouse events to the other windows.
+ * <hr>
+ * The events are queued by the caller without blocking, and then delivered by a worker thread in order.
+ * A {@code MOUSEMOVE} event replaces the queued {@code MOUSEMOVE} event right before it (if they have the same target),
+ * so that only the latest position is delivered, while the button events are never coalesced or reordered.
+ * When the queue is full, the oldest {@code MOUSEMOVE} event will be dropped to make room for the new one,
+ * but the button events are never dropped, so that every button-down event will be followed by its button-up event.
+ * @since ArkPets 3.7
+ */
+public class MouseEventForwarder {
+    private final int capacity;
+    private final int timeout;
+    private final ArrayDeque<Event> queue;
+    private Thread thread;
+    private long deliveredCount = 0;
+    private long coalescedCount = 0;
+    private long droppedCount = 0;
+    private long timeoutCount = 0;
+    private int maxDepth = 0;
+
+    /** Initializes a mouse event forwarder.
+     * @param capacity The max count of the queued events, which can only be exceeded by the button events.
+     * @param timeout The max time to wait for a target window to process an event (ms).
+     */
+    public MouseEventForwarder(int capacity, int timeout) {
+        this.capacity = Math.max(1, capacity);
+        this.timeout = Math.max(0, timeout);
+        queue = new ArrayDeque<>(this.capacity);
+    }
+
+    /** Starts the worker thread if it is not started.
+     */
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        thread = new Thread(this::run, "MouseEventForwarder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops the worker thread. The queued events will be discarded.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        queue.clear();
+    }
+
+    /** Queues a mouse event, which will be delivered to the target window asynchronously.
+     * @param target The target window.
+     * @param msg The mouse event.
+     * @param x The X-axis coordinate, related to the left border of the window.
+     * @param y The Y-axis coordinate, related to the top border of the window.
+     */
+    public synchronized void offer(HWndCtrl target, HWndCtrl.MouseEvent msg, int x, int y) {
+        if (target == null || msg == HWndCtrl.MouseEvent.EMPTY)
+            return;
+        if (msg == HWndCtrl.MouseEvent.MOUSEMOVE) {
+            Event last = queue.peekLast();
+            if (last != null && last.msg == HWndCtrl.MouseEvent.MOUSEMOVE && last.target.equals(target)) {
+                // Coalesce the consecutive moves
+                queue.pollLast();
+                queue.offerLast(new Event(target, msg, x, y));
+                coalescedCount++;
+                return;
+            }
+        }
+        if (queue.size() >= capacity && !dropOldestMove() && msg == HWndCtrl.MouseEvent.MOUSEMOVE) {
+            // All the queued events are button events, drop the new move
+            droppedCount++;
+            return;
+        }
+        queue.offerLast(new Event(target, msg, x, y));
+        maxDepth = Math.max(maxDepth, queue.size());
+        notifyAll();
+    }
+
+    /** Gets the count of the queued events.
+     * @return The queue depth.
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** Gets the max count of the queued events ever reached.
+     * @return The max queue depth.
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxDepth;
+    }
+
+    /** Gets the count of the events that were delivered to and processed by their targets in time.
+     * @return The count.
+     */
+    public synchronized long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /** Gets the count of the events that were merged into the later ones.
+     * @return The count.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /** Gets the count of the events that were dropped since the queue was full.
+     * @return The count.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /** Gets the count of the events that were not processed by their targets in time, or failed to be sent.
+     * @return The count.
+     */
+    public synchronized long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MouseEventForwarder depth=" + queue.size() + " maxDepth=" + maxDepth + " delivered=" + deliveredCount +
+                " coalesced=" + coalescedCount + " dropped=" + droppedCount + " timeout=" + timeoutCount;
+    }
+
+    private boolean dropOldestMove() {
+        Iterator<Event> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().msg == HWndCtrl.MouseEvent.MOUSEMOVE) {
+                iterator.remove();
+                droppedCount++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Event event;
+            synchronized (this) {
+                while (queue.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                event = queue.pollFirst();
+            }
+            boolean processed;
+            try {
+                processed = event.target.sendMouseEvent(event.msg, event.x, event.y, timeout);
+            } catch (Exception e) {
+                Logger.warn("Input", "Failed to forward mouse event " + event.msg + ": " + e);
+                processed = false;
+            }
+            synchronized (this) {
+                if (processed)
+                    deliveredCount++;
+                else
+                    timeoutCount++;
+            }
+        }
+    }
+
+
+    private record Event(HWndCtrl target, HWndCtrl.MouseEvent msg, int x, int y) {
+    }
+}
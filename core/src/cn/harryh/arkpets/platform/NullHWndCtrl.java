@@ -9,6 +9,16 @@ public class NullHWndCtrl extends HWndCtrl {
         super("", new WindowRect());
     }
 
+    @Override
+    protected String fetchWindowText() {
+        return "";
+    }
+
+    @Override
+    protected WindowRect fetchWindowRect() {
+        return new WindowRect();
+    }
+
     @Override
     public boolean isForeground() {
         return false;
@@ -57,6 +67,11 @@ public class NullHWndCtrl extends HWndCtrl {
     public void sendMouseEvent(MouseEvent msg, int x, int y) {
     }
 
+    @Override
+    public boolean sendMouseEvent(MouseEvent msg, int x, int y, int timeout) {
+        return false;
+    }
+
     @Override
     public boolean equals(Object o) {
         return false;
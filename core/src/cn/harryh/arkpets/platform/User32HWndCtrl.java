@@ -3,11 +3,11 @@
  */
 package cn.harryh.arkpets.platform;
 
-import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.User32;
 import com.sun.jna.platform.win32.WinDef;
 import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinDef.LRESULT;
 import com.sun.jna.platform.win32.WinDef.RECT;
 import com.sun.jna.platform.win32.WinUser;
 
@@ -35,12 +35,16 @@ public class User32HWndCtrl extends HWndCtrl {
     private static final int MK_RBUTTON  = 0x0002;
     private static final int MK_MBUTTON  = 0x0010;
 
+    private static final int maxWindowTextLength = 1024;
+    private static final ThreadLocal<char[]> textBuffer = ThreadLocal.withInitial(() -> new char[maxWindowTextLength]);
+    private static final ThreadLocal<RECT> rectBuffer = ThreadLocal.withInitial(RECT::new);
+    private static volatile User32 user32;
 
     /** HWnd Controller instance.
      * @param hWnd The handle of the window.
      */
     protected User32HWndCtrl(HWND hWnd) {
-        super(getWindowText(hWnd), getWindowRect(hWnd));
+        super();
         this.hWnd = hWnd;
     }
 
@@ -49,16 +53,26 @@ public class User32HWndCtrl extends HWndCtrl {
      * @param windowName The title of the window.
      */
     public static HWndCtrl find(String className, String windowName) {
-        HWND hwnd = User32.INSTANCE.FindWindow(className, windowName);
+        HWND hwnd = getUser32().FindWindow(className, windowName);
         if (hwnd != null) {
             return new User32HWndCtrl(hwnd);
         }
         return null;
     }
 
+    @Override
+    protected String fetchWindowText() {
+        return getWindowText(hWnd);
+    }
+
+    @Override
+    protected WindowRect fetchWindowRect() {
+        return getWindowRect(hWnd);
+    }
+
     @Override
     public boolean isForeground() {
-        return hWnd.equals(User32.INSTANCE.GetForegroundWindow());
+        return hWnd.equals(getUser32().GetForegroundWindow());
     }
 
     @Override
@@ -68,7 +82,7 @@ public class User32HWndCtrl extends HWndCtrl {
 
     @Override
     public boolean close(int timeout) {
-        return User32.INSTANCE.SendMessageTimeout(hWnd, 0x10, null, null, timeout, WinUser.SMTO_NORMAL, null).intValue() == 0;
+        return getUser32().SendMessageTimeout(hWnd, 0x10, null, null, timeout, WinUser.SMTO_NORMAL, null).intValue() == 0;
     }
 
     @Override
@@ -78,12 +92,12 @@ public class User32HWndCtrl extends HWndCtrl {
 
     @Override
     public void setForeground() {
-        User32.INSTANCE.SetForegroundWindow(hWnd);
+        getUser32().SetForegroundWindow(hWnd);
     }
 
     @Override
     public void setWindowPosition(HWndCtrl insertAfter, int x, int y, int w, int h) {
-        User32.INSTANCE.SetWindowPos(hWnd, insertAfter != null ? ((User32HWndCtrl) insertAfter).hWnd : null, x, y, w, h, WinUser.SWP_NOACTIVATE);
+        getUser32().SetWindowPos(hWnd, insertAfter != null ? ((User32HWndCtrl) insertAfter).hWnd : null, x, y, w, h, WinUser.SWP_NOACTIVATE);
     }
 
     @Override
@@ -121,24 +135,15 @@ public class User32HWndCtrl extends HWndCtrl {
 
     @Override
     public void sendMouseEvent(MouseEvent msg, int x, int y) {
-        int wmsg = switch (msg) {
-            case MOUSEMOVE -> WM_MOUSEMOVE;
-            case LBUTTONDOWN -> WM_LBUTTONDOWN;
-            case LBUTTONUP -> WM_LBUTTONUP;
-            case RBUTTONDOWN -> WM_RBUTTONDOWN;
-            case RBUTTONUP -> WM_RBUTTONUP;
-            case MBUTTONDOWN -> WM_MBUTTONDOWN;
-            case MBUTTONUP -> WM_MBUTTONUP;
-            default -> 0;
-        };
-        int wParam = switch (msg) {
-            case LBUTTONDOWN -> MK_LBUTTON;
-            case RBUTTONDOWN -> MK_RBUTTON;
-            case MBUTTONDOWN -> MK_MBUTTON;
-            default -> 0;
-        };
-        int lParam = (y << 16) | x;
-        User32.INSTANCE.SendMessage(hWnd, wmsg, new WinDef.WPARAM(wParam), new WinDef.LPARAM(lParam));
+        getUser32().SendMessage(hWnd, getMouseMessage(msg), getMouseWParam(msg), getMouseLParam(x, y));
+    }
+
+    @Override
+    public boolean sendMouseEvent(MouseEvent msg, int x, int y, int timeout) {
+        // Abort immediately if the window is hung, otherwise wait for at most the given timeout
+        LRESULT result = getUser32().SendMessageTimeout(hWnd, getMouseMessage(msg), getMouseWParam(msg), getMouseLParam(x, y),
+                WinUser.SMTO_ABORTIFHUNG, timeout, null);
+        return result.intValue() != 0;
     }
 
     /** Gets the current list of windows.
@@ -146,13 +151,7 @@ public class User32HWndCtrl extends HWndCtrl {
      * @return An ArrayList consists of HWndCtrls.
      */
     public static ArrayList<User32HWndCtrl> getWindowList(boolean only_visible) {
-        ArrayList<User32HWndCtrl> windowList = new ArrayList<>();
-        User32.INSTANCE.EnumWindows((hWnd, arg1) -> {
-            if (User32.INSTANCE.IsWindow(hWnd) && (!only_visible || isVisible(hWnd)))
-                windowList.add(new User32HWndCtrl(hWnd));
-            return true;
-        }, null);
-        return windowList;
+        return getWindowList(only_visible, 0);
     }
 
     /** Gets the current list of windows. (Advanced)
@@ -161,22 +160,51 @@ public class User32HWndCtrl extends HWndCtrl {
      * @return An ArrayList consists of HWndCtrls.
      */
     public static ArrayList<User32HWndCtrl> getWindowList(boolean only_visible, long exclude_ws_ex) {
+        // Each enumeration creates its own HWndCtrl instances, which are cheap since their attributes are fetched lazily,
+        // so that a list which was handed to another thread never changes under the reader.
         ArrayList<User32HWndCtrl> windowList = new ArrayList<>();
-        User32.INSTANCE.EnumWindows((hWnd, arg1) -> {
-            if (User32.INSTANCE.IsWindow(hWnd) && (!only_visible || isVisible(hWnd))
-                    && (User32.INSTANCE.GetWindowLong(hWnd, WinUser.GWL_EXSTYLE) & exclude_ws_ex) != exclude_ws_ex)
-                windowList.add(new User32HWndCtrl(hWnd));
+        getUser32().EnumWindows((hWnd, arg1) -> {
+            if (!getUser32().IsWindow(hWnd))
+                return true;
+            if (exclude_ws_ex != 0 && (getUser32().GetWindowLong(hWnd, WinUser.GWL_EXSTYLE) & exclude_ws_ex) == exclude_ws_ex)
+                return true;
+            WindowRect rect = null;
+            if (only_visible && (rect = getVisibleWindowRect(hWnd)) == null)
+                return true;
+            User32HWndCtrl hWndCtrl = new User32HWndCtrl(hWnd);
+            if (rect != null)
+                hWndCtrl.setWindowRect(rect);
+            windowList.add(hWndCtrl);
             return true;
         }, null);
         return windowList;
     }
 
+    /** Gets the User32 library, which is loaded on the first call.
+     * @return The User32 instance.
+     * @since ArkPets 3.7
+     */
+    static User32 getUser32() {
+        User32 api = user32;
+        if (api == null)
+            user32 = api = User32.INSTANCE;
+        return api;
+    }
+
+    /** Replaces the User32 library, typically by a stub when the real one is unavailable.
+     * @param api The User32 instance, {@code null} to use the real one.
+     * @since ArkPets 3.7
+     */
+    static void setUser32(User32 api) {
+        user32 = api;
+    }
+
     /** Gets the value of the window's extended styles.
      * @return EX_STYLE value.
      * @see WinUser
      */
     protected int getWindowExStyle() {
-        return User32.INSTANCE.GetWindowLong(hWnd, WinUser.GWL_EXSTYLE);
+        return getUser32().GetWindowLong(hWnd, WinUser.GWL_EXSTYLE);
     }
 
     /** Sets the window's extended styles.
@@ -184,7 +212,15 @@ public class User32HWndCtrl extends HWndCtrl {
      * @see WinUser
      */
     protected void setWindowExStyle(int newLong) {
-        User32.INSTANCE.SetWindowLong(hWnd, WinUser.GWL_EXSTYLE, newLong);
+        getUser32().SetWindowLong(hWnd, WinUser.GWL_EXSTYLE, newLong);
+    }
+
+    /** Gets the foreground window.
+     * @return The foreground window's HWndCtrl, or {@code null} if there is no foreground window.
+     */
+    protected static User32HWndCtrl getForegroundWindow() {
+        HWND hWnd = getUser32().GetForegroundWindow();
+        return hWnd == null ? null : new User32HWndCtrl(hWnd);
     }
 
     /** Gets the topmost window.
@@ -194,29 +230,66 @@ public class User32HWndCtrl extends HWndCtrl {
         return new User32HWndCtrl(new HWND(Pointer.createConstant(-1)));
     }
 
+    private static int getMouseMessage(MouseEvent msg) {
+        return switch (msg) {
+            case MOUSEMOVE -> WM_MOUSEMOVE;
+            case LBUTTONDOWN -> WM_LBUTTONDOWN;
+            case LBUTTONUP -> WM_LBUTTONUP;
+            case RBUTTONDOWN -> WM_RBUTTONDOWN;
+            case RBUTTONUP -> WM_RBUTTONUP;
+            case MBUTTONDOWN -> WM_MBUTTONDOWN;
+            case MBUTTONUP -> WM_MBUTTONUP;
+            default -> 0;
+        };
+    }
+
+    private static WinDef.WPARAM getMouseWParam(MouseEvent msg) {
+        int wParam = switch (msg) {
+            case LBUTTONDOWN -> MK_LBUTTON;
+            case RBUTTONDOWN -> MK_RBUTTON;
+            case MBUTTONDOWN -> MK_MBUTTON;
+            default -> 0;
+        };
+        return new WinDef.WPARAM(wParam);
+    }
+
+    private static WinDef.LPARAM getMouseLParam(int x, int y) {
+        int lParam = (y << 16) | x;
+        return new WinDef.LPARAM(lParam);
+    }
+
     protected static String getWindowText(HWND hWnd) {
-        char[] text = new char[1024];
-        User32.INSTANCE.GetWindowText(hWnd, text, 1024);
-        return Native.toString(text);
+        char[] text = textBuffer.get();
+        int length = getUser32().GetWindowText(hWnd, text, maxWindowTextLength);
+        return length > 0 ? new String(text, 0, Math.min(length, maxWindowTextLength)) : "";
     }
 
     protected static WindowRect getWindowRect(HWND hWnd) {
-        RECT rect = new RECT();
-        User32.INSTANCE.GetWindowRect(hWnd, rect);
+        RECT rect = rectBuffer.get();
+        if (!getUser32().GetWindowRect(hWnd, rect))
+            return new WindowRect();
         return new WindowRect(rect.top, rect.bottom, rect.left, rect.right);
     }
 
     protected static boolean isVisible(HWND hWnd) {
+        return getVisibleWindowRect(hWnd) != null;
+    }
+
+    /** Gets the rectangle of the window if it is visible.
+     * @param hWnd The handle of the window.
+     * @return The window rect, or {@code null} if the window is invisible.
+     */
+    protected static WindowRect getVisibleWindowRect(HWND hWnd) {
         try {
-            if (!User32.INSTANCE.IsWindowVisible(hWnd) || !User32.INSTANCE.IsWindowEnabled(hWnd))
-                return false;
+            if (!getUser32().IsWindowVisible(hWnd) || !getUser32().IsWindowEnabled(hWnd))
+                return null;
             WindowRect rect = getWindowRect(hWnd);
             if (rect.top() == rect.bottom() || rect.left() == rect.right())
-                return false;
+                return null;
+            return rect;
         } catch (Exception e) {
-            return false;
+            return null;
         }
-        return true;
     }
 
     @Override
@@ -235,7 +308,7 @@ public class User32HWndCtrl extends HWndCtrl {
 
     @Override
     public String toString() {
-        return "‘" + windowText + "’ " + windowWidth + "*" + windowHeight +
+        return "‘" + getWindowText() + "’ " + getWidth() + "*" + getHeight() +
                 " ex-style=0x" + Integer.toHexString(getWindowExStyle());
     }
 }
@@ -0,0 +1,181 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import java.util.List;
+
+
+/** The immutable spatial index of some windows, which is used to perform z-ordered hit testing.
+ * <hr>
+ * The windows' rectangles are cached and distributed into a uniform grid when building the index,
+ * so that a lookup only needs to scan the few windows sharing the same grid cell,
+ * without calling any window system functions or allocating any objects.
+ * @since ArkPets 3.7
+ */
+public final class WindowHitIndex {
+    private static final int minCellSize = 256;
+    private static final int maxCellsPerAxis = 64;
+
+    private final HWndCtrl[] windows;
+    private final int[] lefts;
+    private final int[] tops;
+    private final int[] rights;
+    private final int[] bottoms;
+    private final int gridLeft;
+    private final int gridTop;
+    private final int gridCols;
+    private final int gridRows;
+    private final int cellSize;
+    private final int[] cellStarts;
+    private final int[] cellItems;
+
+    /** Builds a hit index of the given windows.
+     * @param windows The windows sorted in z-order, the topmost one first.
+     */
+    public WindowHitIndex(List<? extends HWndCtrl> windows) {
+        int n = windows.size();
+        this.windows = windows.toArray(new HWndCtrl[0]);
+        lefts = new int[n];
+        tops = new int[n];
+        rights = new int[n];
+        bottoms = new int[n];
+
+        // 1.Cache the geometry and figure out the bounding box
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            HWndCtrl w = this.windows[i];
+            HWndCtrl.WindowRect rect = w.getWindowRect();
+            lefts[i] = rect.left();
+            tops[i] = rect.top();
+            rights[i] = rect.right();
+            bottoms[i] = rect.bottom();
+            minX = Math.min(minX, rect.left());
+            minY = Math.min(minY, rect.top());
+            maxX = Math.max(maxX, rect.right());
+            maxY = Math.max(maxY, rect.bottom());
+        }
+        if (n == 0 || minX >= maxX || minY >= maxY) {
+            gridLeft = gridTop = 0;
+            gridCols = gridRows = 0;
+            cellSize = minCellSize;
+            cellStarts = new int[1];
+            cellItems = new int[0];
+            return;
+        }
+
+        // 2.Determine the grid geometry
+        long span = Math.max((long)maxX - minX, (long)maxY - minY);
+        cellSize = (int)Math.max(minCellSize, (span + maxCellsPerAxis - 1) / maxCellsPerAxis);
+        gridLeft = minX;
+        gridTop = minY;
+        gridCols = (int)(((long)maxX - minX + cellSize - 1) / cellSize);
+        gridRows = (int)(((long)maxY - minY + cellSize - 1) / cellSize);
+
+        // 3.Distribute the windows into the cells (compressed rows, z-order preserved)
+        int[] counts = new int[gridCols * gridRows + 1];
+        for (int i = 0; i < n; i++)
+            forEachCell(i, counts, null);
+        cellStarts = new int[counts.length];
+        for (int c = 1; c < counts.length; c++)
+            cellStarts[c] = cellStarts[c - 1] + counts[c - 1];
+        cellItems = new int[cellStarts[cellStarts.length - 1]];
+        int[] cursors = cellStarts.clone();
+        for (int i = 0; i < n; i++)
+            forEachCell(i, null, cursors);
+    }
+
+    /** Finds the topmost window which contains the given point.
+     * @param x The X-axis coordinate of the point, in screen coordinates.
+     * @param y The Y-axis coordinate of the point, in screen coordinates.
+     * @return The index of the window in this hit index, or {@code -1} if not found.
+     */
+    public int find(int x, int y) {
+        if (x < gridLeft || y < gridTop)
+            return -1;
+        int col = (x - gridLeft) / cellSize;
+        int row = (y - gridTop) / cellSize;
+        if (col >= gridCols || row >= gridRows)
+            return -1;
+        int cell = row * gridCols + col;
+        for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+            int i = cellItems[k];
+            if (lefts[i] <= x && x < rights[i] && tops[i] <= y && y < bottoms[i])
+                return i;
+        }
+        return -1;
+    }
+
+    /** Gets the window at the given index.
+     * @param index The index returned by {@link #find(int, int)}.
+     * @return The window's HWndCtrl.
+     */
+    public HWndCtrl get(int index) {
+        return windows[index];
+    }
+
+    /** Gets the cached left border position of the window at the given index.
+     * @param index The index returned by {@link #find(int, int)}.
+     * @return X.
+     */
+    public int getLeft(int index) {
+        return lefts[index];
+    }
+
+    /** Gets the cached top border position of the window at the given index.
+     * @param index The index returned by {@link #find(int, int)}.
+     * @return Y.
+     */
+    public int getTop(int index) {
+        return tops[index];
+    }
+
+    /** Returns the count of the indexed windows.
+     */
+    public int size() {
+        return windows.length;
+    }
+
+    /** Returns true if this index was built from exactly the same windows (in the same order and geometry).
+     * It can be used to determine whether a rebuilding is necessary.
+     * @param windows The windows sorted in z-order, the topmost one first.
+     */
+    public boolean matches(List<? extends HWndCtrl> windows) {
+        if (windows.size() != this.windows.length)
+            return false;
+        for (int i = 0; i < this.windows.length; i++) {
+            HWndCtrl w = windows.get(i);
+            if (!w.equals(this.windows[i]))
+                return false;
+            HWndCtrl.WindowRect rect = w.getWindowRect();
+            if (rect.left() != lefts[i] || rect.top() != tops[i] ||
+                    rect.right() != rights[i] || rect.bottom() != bottoms[i])
+                return false;
+        }
+        return true;
+    }
+
+    private void forEachCell(int i, int[] counts, int[] cursors) {
+        if (lefts[i] >= rights[i] || tops[i] >= bottoms[i])
+            return;
+        int col0 = (lefts[i] - gridLeft) / cellSize;
+        int col1 = (rights[i] - 1 - gridLeft) / cellSize;
+        int row0 = (tops[i] - gridTop) / cellSize;
+        int row1 = (bottoms[i] - 1 - gridTop) / cellSize;
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                int cell = row * gridCols + col;
+                if (counts != null)
+                    counts[cell]++;
+                else
+                    cellItems[cursors[cell]++] = i;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WindowHitIndex " + windows.length + " windows in " + gridCols + "*" + gridRows + " cells";
+    }
+}
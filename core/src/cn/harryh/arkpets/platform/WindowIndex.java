@@ -0,0 +1,138 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import cn.harryh.arkpets.platform.HWndCtrl.NumberedTitleManager;
+import cn.harryh.arkpets.platform.HWndCtrl.WindowRect;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+
+/** The immutable snapshot of the windows around the app,
+ * which contains everything the render thread needs to know about the other windows.
+ * @param query The query which this snapshot was built for.
+ * @param barriers The windows that can support the app, sorted by their top border, the uppermost one first.
+ * @param peers The windows of the other ArkPets instances.
+ * @param insertAfter The window that the app should be placed after in the z-order, may be {@code null}.
+ * @param hitIndex The hit index of the non-peer windows.
+ * @param occluder The foreground window that covers the whole monitor or the whole app, may be {@code null}.
+ * @since ArkPets 3.7
+ */
+public record WindowIndex(Query query, List<WindowRect> barriers, List<WindowRect> peers,
+                          HWndCtrl insertAfter, WindowHitIndex hitIndex, HWndCtrl occluder) {
+    /** Builds a window index from the given windows.
+     * @param windows The windows sorted in z-order, the topmost one first.
+     * @param query The information of the app.
+     * @param foreground The current foreground window, may be {@code null}.
+     * @param topmost The sentinel window which stands for the top of the z-order.
+     * @param titleManager The title manager to identify the peer windows.
+     * @param lastHitIndex The hit index of the last snapshot, which will be reused if the non-peer windows were not changed.
+     * @return The new window index.
+     */
+    public static WindowIndex build(List<? extends HWndCtrl> windows, Query query,
+                                    HWndCtrl foreground, HWndCtrl topmost,
+                                    NumberedTitleManager titleManager, WindowHitIndex lastHitIndex) {
+        ArrayList<HWndCtrl> nonPeers = new ArrayList<>();
+        ArrayList<WindowRect> covers = new ArrayList<>();
+        ArrayList<WindowRect> barriers = new ArrayList<>();
+        ArrayList<WindowRect> peers = new ArrayList<>();
+        ArrayList<HWndCtrl> occluders = new ArrayList<>();
+        HWndCtrl minWindow = null;
+        HWndCtrl self = null;
+        int minNum = 2048;
+        for (HWndCtrl hWndCtrl : windows) {
+            int wndNum = titleManager.getNumber(hWndCtrl);
+            // Distinguish non-peer windows from peers.
+            if (wndNum == -1) {
+                nonPeers.add(hWndCtrl);
+                WindowRect rect = hWndCtrl.getWindowRect();
+                if (self == null && query.monitor != null && contains(rect, query.monitor))
+                    occluders.add(hWndCtrl); // This window is above the app and covers the whole monitor.
+                if (rect.left() <= query.centerX && query.centerX <= rect.right() && rect.top() < rect.bottom() &&
+                        -rect.bottom() < query.borderTop && -rect.top() > query.borderBottom) {
+                    // This window is "under" the app, and its top border becomes a barrier
+                    // if it is not covered by any upper window that is also "under" the app.
+                    boolean covered = false;
+                    for (WindowRect cover : covers) {
+                        if (cover.top() <= rect.top() && rect.top() < cover.bottom()) {
+                            covered = true;
+                            break;
+                        }
+                    }
+                    if (!covered)
+                        barriers.add(rect);
+                    covers.add(rect);
+                }
+            } else {
+                if (self == null && wndNum == query.selfNumber) {
+                    self = hWndCtrl;
+                    // Check the windows above the app that also cover the whole app.
+                    WindowRect selfRect = self.getWindowRect();
+                    for (HWndCtrl hWndAbove : nonPeers)
+                        if (!occluders.contains(hWndAbove) && contains(hWndAbove.getWindowRect(), selfRect))
+                            occluders.add(hWndAbove);
+                }
+                if (query.peerRepulsion && wndNum != query.selfNumber)
+                    peers.add(hWndCtrl.getWindowRect());
+                // Find the last peer window to handle the z-index.
+                if (wndNum > query.selfNumber && wndNum < minNum) {
+                    minNum = wndNum;
+                    minWindow = hWndCtrl;
+                }
+            }
+        }
+        barriers.sort(Comparator.comparingInt(WindowRect::top));
+        if (minWindow == null) {
+            // Set as the top window if there is no peer.
+            minWindow = topmost;
+        }
+        HWndCtrl occluder = null;
+        if (self != null && foreground != null) {
+            // Only the foreground window is regarded as an occluder,
+            // because some invisible windows may still be reported as visible ones by the window system.
+            for (HWndCtrl hWndCtrl : occluders) {
+                if (foreground.equals(hWndCtrl)) {
+                    occluder = hWndCtrl;
+                    break;
+                }
+            }
+        }
+        WindowHitIndex hitIndex = lastHitIndex != null && lastHitIndex.matches(nonPeers) ?
+                lastHitIndex : new WindowHitIndex(nonPeers);
+        return new WindowIndex(query, List.copyOf(barriers), List.copyOf(peers),
+                query.topmost ? minWindow : null, hitIndex, occluder);
+    }
+
+    /** Returns true if the given snapshot describes the same layout as this one.
+     * @param other The other snapshot.
+     */
+    public boolean isSameLayout(WindowIndex other) {
+        return other != null && query.equals(other.query) && hitIndex == other.hitIndex &&
+                barriers.equals(other.barriers) && peers.equals(other.peers) &&
+                (insertAfter == null ? other.insertAfter == null : insertAfter.equals(other.insertAfter)) &&
+                (occluder == null ? other.occluder == null : occluder.equals(other.occluder));
+    }
+
+    private static boolean contains(WindowRect outer, WindowRect inner) {
+        return inner.left() < inner.right() && inner.top() < inner.bottom() &&
+                outer.left() <= inner.left() && inner.right() <= outer.right() &&
+                outer.top() <= inner.top() && inner.bottom() <= outer.bottom();
+    }
+
+
+    /** The information of the app, which is needed to build a window index.
+     * @param centerX The X-position of the app's vertical center line, in screen coordinates.
+     * @param borderTop The Y-position of the top border in the plane.
+     * @param borderBottom The Y-position of the bottom border in the plane, regardless of the barriers.
+     * @param selfNumber The title number of the app.
+     * @param peerRepulsion Whether to collect the peer windows.
+     * @param topmost Whether the app is a topmost window.
+     * @param monitor The rectangle of the monitor where the app is, in screen coordinates, may be {@code null}.
+     */
+    public record Query(int centerX, float borderTop, float borderBottom, int selfNumber,
+                        boolean peerRepulsion, boolean topmost, WindowRect monitor) {
+    }
+}
@@ -0,0 +1,181 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import cn.harryh.arkpets.platform.HWndCtrl.NumberedTitleManager;
+import cn.harryh.arkpets.utils.Logger;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/** The background worker that enumerates the windows and publishes {@link WindowIndex} snapshots.
+ * <hr>
+ * Since enumerating windows may block when some application is not responding,
+ * the render thread should never do it by itself, but read the latest snapshot via {@link #getSnapshot()}.
+ * The refresh interval of the worker is extended when the layout keeps unchanged,
+ * and is reset to the minimal one as soon as a change is detected.
+ * While the app is covered by an occluder, the worker only polls the foreground window between two refreshes,
+ * and refreshes at once when the occluder is no longer the foreground window.
+ * @since ArkPets 3.7
+ */
+public class WindowIndexWorker {
+    private static final int maxIntervalMultiplier = 8;
+
+    private final NumberedTitleManager titleManager;
+    private final WindowSource source;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final AtomicReference<WindowIndex> snapshot = new AtomicReference<>();
+    private volatile WindowIndex.Query query;
+    private volatile Runnable onUpdated;
+    private Thread thread;
+
+    /** Initializes a window index worker which queries the current window system.
+     * @param titleManager The title manager to identify the peer windows.
+     * @param minIntervalMillis The minimal refresh interval in milliseconds.
+     */
+    public WindowIndexWorker(NumberedTitleManager titleManager, long minIntervalMillis) {
+        this(titleManager, WindowSource.SYSTEM, minIntervalMillis);
+    }
+
+    /** Initializes a window index worker.
+     * @param titleManager The title manager to identify the peer windows.
+     * @param source The source of the windows.
+     * @param minIntervalMillis The minimal refresh interval in milliseconds.
+     */
+    public WindowIndexWorker(NumberedTitleManager titleManager, WindowSource source, long minIntervalMillis) {
+        this.titleManager = titleManager;
+        this.source = source;
+        this.minIntervalMillis = Math.max(1, minIntervalMillis);
+        this.maxIntervalMillis = this.minIntervalMillis * maxIntervalMultiplier;
+    }
+
+    /** Starts the worker thread if it is not started.
+     */
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        thread = new Thread(this::run, "WindowIndexWorker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops the worker thread.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /** Publishes the latest information of the app, which will be used in the next refresh.
+     * @param query The query.
+     */
+    public void setQuery(WindowIndex.Query query) {
+        this.query = query;
+    }
+
+    /** Sets the callback which will be invoked on the worker thread each time a new snapshot is published.
+     * @param onUpdated The callback, {@code null} to remove.
+     */
+    public void setOnUpdated(Runnable onUpdated) {
+        this.onUpdated = onUpdated;
+    }
+
+    /** Gets the latest snapshot.
+     * @return The window index, or {@code null} if no snapshot has been built.
+     */
+    public WindowIndex getSnapshot() {
+        return snapshot.get();
+    }
+
+    private void run() {
+        long interval = minIntervalMillis;
+        while (!Thread.currentThread().isInterrupted()) {
+            WindowIndex.Query curQuery = query;
+            HWndCtrl occluder = null;
+            if (curQuery != null) {
+                try {
+                    WindowIndex last = snapshot.get();
+                    List<? extends HWndCtrl> windows = source.getWindowList();
+                    WindowIndex next = WindowIndex.build(windows, curQuery,
+                            source.getForegroundWindow(), source.getTopmostWindow(), titleManager,
+                            last != null ? last.hitIndex() : null);
+                    occluder = next.occluder();
+                    snapshot.set(next);
+                    Runnable callback = onUpdated;
+                    if (callback != null)
+                        callback.run();
+                    // Adapt the interval to how often the layout changes.
+                    interval = next.isSameLayout(last) ? Math.min(interval * 2, maxIntervalMillis) : minIntervalMillis;
+                } catch (Exception e) {
+                    Logger.error("Window", "Failed to refresh the window index, details see below.", e);
+                    interval = maxIntervalMillis;
+                }
+            }
+            try {
+                await(interval, occluder);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void await(long interval, HWndCtrl occluder) throws InterruptedException {
+        if (occluder == null) {
+            Thread.sleep(interval);
+            return;
+        }
+        long deadline = System.currentTimeMillis() + interval;
+        long remaining = interval;
+        while (remaining > 0) {
+            Thread.sleep(Math.min(remaining, minIntervalMillis));
+            // The foreground window is cheap to query, so the resuming does not wait for the next refresh.
+            if (!occluder.equals(source.getForegroundWindow()))
+                return;
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+
+    /** The source of the windows, which is the window system by default.
+     */
+    public interface WindowSource {
+        /** The source that queries the current window system.
+         */
+        WindowSource SYSTEM = new WindowSource() {
+            @Override
+            public List<? extends HWndCtrl> getWindowList() {
+                return WindowSystem.getWindowList(true);
+            }
+
+            @Override
+            public HWndCtrl getForegroundWindow() {
+                return WindowSystem.getForegroundWindow();
+            }
+
+            @Override
+            public HWndCtrl getTopmostWindow() {
+                return WindowSystem.getTopmostWindow();
+            }
+        };
+
+        /** Gets the visible windows.
+         * @return The windows sorted in z-order, the topmost one first.
+         */
+        List<? extends HWndCtrl> getWindowList();
+
+        /** Gets the current foreground window.
+         * @return The foreground window, may be {@code null}.
+         */
+        HWndCtrl getForegroundWindow();
+
+        /** Gets the sentinel window which stands for the top of the z-order.
+         * @return The topmost window.
+         */
+        HWndCtrl getTopmostWindow();
+    }
+}
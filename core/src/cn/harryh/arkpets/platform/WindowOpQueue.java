@@ -0,0 +1,175 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import java.util.Objects;
+
+
+/** The change-detecting operation queue of a window.
+ * <hr>
+ * The window operations are not performed immediately when they are requested,
+ * but they are recorded as the desired state of the window.
+ * Calling {@link #apply()} performs only the operations whose desired state differs from the last applied state,
+ * so that redundant window system calls are avoided.
+ * <hr>
+ * Since the z-order can be changed by other windows without notifying this queue,
+ * {@link #invalidate()} should be called periodically to re-assert the desired position.
+ * @since ArkPets 3.7
+ */
+public class WindowOpQueue {
+    private final HWndCtrl hWndCtrl;
+
+    private final WindowState desired = new WindowState();
+    private final WindowState applied = new WindowState();
+    private long appliedCount = 0;
+    private long skippedCount = 0;
+    private int requestedCount = 0;
+
+    /** Initializes a window operation queue.
+     * @param hWndCtrl The window to operate.
+     */
+    public WindowOpQueue(HWndCtrl hWndCtrl) {
+        this.hWndCtrl = Objects.requireNonNull(hWndCtrl);
+    }
+
+    /** Requests to set the window's position, size and z-order.
+     * @param insertAfter The window to precede the positioned window in the z-order, {@code null} to keep unchanged.
+     * @param x The new X-position of the window.
+     * @param y The new Y-position of the window.
+     * @param w The new width of the window.
+     * @param h The new height of the window.
+     */
+    public void setWindowPosition(HWndCtrl insertAfter, int x, int y, int w, int h) {
+        desired.insertAfter = insertAfter;
+        desired.x = x;
+        desired.y = y;
+        desired.w = w;
+        desired.h = h;
+        desired.hasPosition = true;
+        requestedCount++;
+    }
+
+    /** Requests to set the window's taskbar icon.
+     * @param enable Whether to show the taskbar icon.
+     */
+    public void setTaskbar(boolean enable) {
+        desired.taskbar = enable;
+        requestedCount++;
+    }
+
+    /** Requests to set the window's layered style.
+     * @param enable Whether to enable the layered style.
+     */
+    public void setLayered(boolean enable) {
+        desired.layered = enable;
+        requestedCount++;
+    }
+
+    /** Requests to set the window's topmost style.
+     * @param enable Whether to enable the topmost style.
+     */
+    public void setTopmost(boolean enable) {
+        desired.topmost = enable;
+        requestedCount++;
+    }
+
+    /** Requests to set the window's transparent style.
+     * @param enable Whether to enable the transparent style.
+     */
+    public void setTransparent(boolean enable) {
+        desired.transparent = enable;
+        requestedCount++;
+    }
+
+    /** Discards the last applied position,
+     * so that the requested position and z-order will be set again on the next {@link #apply()}.
+     */
+    public void invalidate() {
+        applied.hasPosition = false;
+    }
+
+    /** Performs the requested operations which differ from the last applied state.
+     * @return The count of the performed operations.
+     */
+    public int apply() {
+        int count = 0;
+        // Styles go first, since they may affect how the window is positioned
+        if (desired.taskbar != null && !desired.taskbar.equals(applied.taskbar)) {
+            hWndCtrl.setTaskbar(desired.taskbar);
+            applied.taskbar = desired.taskbar;
+            count++;
+        }
+        if (desired.layered != null && !desired.layered.equals(applied.layered)) {
+            hWndCtrl.setLayered(desired.layered);
+            applied.layered = desired.layered;
+            count++;
+        }
+        if (desired.topmost != null && !desired.topmost.equals(applied.topmost)) {
+            hWndCtrl.setTopmost(desired.topmost);
+            applied.topmost = desired.topmost;
+            count++;
+        }
+        if (desired.transparent != null && !desired.transparent.equals(applied.transparent)) {
+            hWndCtrl.setTransparent(desired.transparent);
+            applied.transparent = desired.transparent;
+            count++;
+        }
+        if (desired.hasPosition && !desired.positionEquals(applied)) {
+            hWndCtrl.setWindowPosition(desired.insertAfter, desired.x, desired.y, desired.w, desired.h);
+            applied.copyPositionFrom(desired);
+            count++;
+        }
+        appliedCount += count;
+        skippedCount += Math.max(0, requestedCount - count);
+        requestedCount = 0;
+        return count;
+    }
+
+    /** Gets the total count of the performed operations.
+     * @return The count.
+     */
+    public long getAppliedCount() {
+        return appliedCount;
+    }
+
+    /** Gets the total count of the operations skipped since they were redundant.
+     * @return The count.
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "WindowOpQueue applied=" + appliedCount + " skipped=" + skippedCount;
+    }
+
+
+    private static class WindowState {
+        private HWndCtrl insertAfter;
+        private int x;
+        private int y;
+        private int w;
+        private int h;
+        private boolean hasPosition;
+        private Boolean taskbar;
+        private Boolean layered;
+        private Boolean topmost;
+        private Boolean transparent;
+
+        private boolean positionEquals(WindowState other) {
+            return other.hasPosition && Objects.equals(insertAfter, other.insertAfter) &&
+                    x == other.x && y == other.y && w == other.w && h == other.h;
+        }
+
+        private void copyPositionFrom(WindowState other) {
+            insertAfter = other.insertAfter;
+            x = other.x;
+            y = other.y;
+            w = other.w;
+            h = other.h;
+            hasPosition = other.hasPosition;
+        }
+    }
+}
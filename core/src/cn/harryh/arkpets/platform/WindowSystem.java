@@ -78,6 +78,21 @@ public enum WindowSystem {
         }
     }
 
+    /** Gets the current foreground window.
+     * @return The foreground window's HWndCtrl, or {@code null} if there is no foreground window.
+     * @since ArkPets 3.7
+     */
+    public static HWndCtrl getForegroundWindow() {
+        switch (PLATFORM) {
+            case USER32 -> {
+                return User32HWndCtrl.getForegroundWindow();
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
     /** Gets the topmost window.
      * @return The topmost window's HWndCtrl.
      */
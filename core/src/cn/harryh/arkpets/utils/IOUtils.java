@@ -4,6 +4,7 @@
 package cn.harryh.arkpets.utils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -11,10 +12,17 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Enumeration;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import static cn.harryh.arkpets.Const.zipBufferSizeDefault;
@@ -172,6 +180,8 @@ public class IOUtils {
 
 
     public static class ZipUtil {
+        private static final String[] compressedExtensions = {".png", ".jpg", ".jpeg", ".gif", ".webp", ".zip", ".gz", ".7z"};
+
         /** Unzips the entire zip file into the given directory.
          * @param zipFilePath The path of the zip file.
          * @param destDirPath The path of the destination directory which will be created if it is not existed.
@@ -181,48 +191,185 @@ public class IOUtils {
          */
         public static void unzip(String zipFilePath, String destDirPath, boolean overwrite)
                 throws IOException {
-            BufferedInputStream bis;
-            BufferedOutputStream bos;
-            ZipEntry entry;
-            ZipFile zipfile = new ZipFile(zipFilePath);
-            File destDir = new File(destDirPath);
+            unzip(zipFilePath, destDirPath, overwrite, Runtime.getRuntime().availableProcessors(), (d, t) -> {}, () -> false);
+        }
 
+        /** Unzips the entire zip file into the given directory in parallel.
+         * <hr>
+         * The directories are created once in advance. The file entries are partitioned across the workers
+         * by their compressed sizes, and each worker reads the zip file through its own {@link ZipFile} instance.
+         * Each file is preallocated with its uncompressed size before being written.
+         * @param zipFilePath The path of the zip file.
+         * @param destDirPath The path of the destination directory which will be created if it is not existed.
+         * @param overwrite If true, the existed destination directory will be deleted before unzipping.
+         * @param threads The maximum count of the workers.
+         * @param progress The callback receiving the unzipped bytes and the total bytes,
+         *                 which will be invoked on the calling thread.
+         * @param cancelled The supplier telling whether the unzipping should be stopped.
+         * @return {@code true} if finished, or {@code false} if stopped.
+         * @throws IOException If I/O error occurs.
+         * @since ArkPets 3.7
+         */
+        public static boolean unzip(String zipFilePath, String destDirPath, boolean overwrite, int threads,
+                                    BiConsumer<Long, Long> progress, BooleanSupplier cancelled)
+                throws IOException {
+            Path destDir = new File(destDirPath).toPath().toAbsolutePath().normalize();
             if (overwrite)
-                FileUtil.delete(destDir.toPath(), true);
-            if (!destDir.exists())
-                Files.createDirectories(destDir.toPath());
-
-            // Create every directory
-            Enumeration<? extends ZipEntry> dir = zipfile.entries();
-            String name;
-            while (dir.hasMoreElements()) {
-                entry = dir.nextElement();
-                if (entry.isDirectory()) {
-                    name = entry.getName();
-                    name = name.substring(0, name.length() - 1);
-                    File fileObject = new File(destDirPath + name);
-                    //noinspection ResultOfMethodCallIgnored
-                    fileObject.mkdir();
+                FileUtil.delete(destDir, true);
+            Files.createDirectories(destDir);
+
+            // Collect the entries and create every directory
+            ArrayList<ZipEntry> entries = new ArrayList<>();
+            TreeSet<Path> dirs = new TreeSet<>();
+            long total = 0;
+            try (ZipFile zipFile = new ZipFile(zipFilePath)) {
+                Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+                while (enumeration.hasMoreElements()) {
+                    ZipEntry entry = enumeration.nextElement();
+                    Path path = resolveEntry(destDir, entry);
+                    if (entry.isDirectory()) {
+                        dirs.add(path);
+                    } else {
+                        dirs.add(path.getParent());
+                        entries.add(entry);
+                        total += Math.max(0, entry.getSize());
+                    }
+                }
+            }
+            for (Path dir : dirs)
+                Files.createDirectories(dir);
+
+            // Partition the entries, the largest first to the least loaded worker
+            int workers = Math.max(1, Math.min(threads, entries.size()));
+            entries.sort(Comparator.comparingLong(ZipEntry::getCompressedSize).reversed());
+            ArrayList<ArrayList<ZipEntry>> parts = new ArrayList<>();
+            long[] loads = new long[workers];
+            for (int i = 0; i < workers; i++)
+                parts.add(new ArrayList<>());
+            for (ZipEntry entry : entries) {
+                int min = 0;
+                for (int i = 1; i < workers; i++)
+                    if (loads[i] < loads[min])
+                        min = i;
+                parts.get(min).add(entry);
+                loads[min] += Math.max(1, entry.getCompressedSize());
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+                Thread thread = new Thread(r, "Unzipper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            CompletionService<Boolean> service = new ExecutorCompletionService<>(executor);
+            AtomicLong done = new AtomicLong();
+            try {
+                for (ArrayList<ZipEntry> part : parts)
+                    service.submit(() -> {
+                        byte[] bytes = new byte[zipBufferSizeDefault];
+                        try (ZipFile zipFile = new ZipFile(zipFilePath)) {
+                            for (ZipEntry entry : part)
+                                if (cancelled.getAsBoolean() || !extractEntry(zipFile, entry, resolveEntry(destDir, entry), bytes, done, cancelled))
+                                    return false;
+                        }
+                        return true;
+                    });
+                boolean finished = true;
+                for (int i = 0; i < workers; ) {
+                    Future<Boolean> future = service.poll(100, TimeUnit.MILLISECONDS);
+                    progress.accept(done.get(), total);
+                    if (future == null)
+                        continue;
+                    i++;
+                    try {
+                        finished &= future.get();
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof IOException ex ? ex : new IOException(e.getCause());
+                    }
+                }
+                return finished && !cancelled.getAsBoolean();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Unzipping was interrupted");
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private static boolean extractEntry(ZipFile zipFile, ZipEntry entry, Path path, byte[] bytes, AtomicLong done,
+                                            BooleanSupplier cancelled)
+                throws IOException {
+            try (InputStream is = zipFile.getInputStream(entry);
+                 RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+                if (entry.getSize() > 0)
+                    raf.setLength(entry.getSize());
+                int len;
+                while ((len = is.read(bytes, 0, bytes.length)) != -1) {
+                    raf.write(bytes, 0, len);
+                    done.addAndGet(len);
+                    if (cancelled.getAsBoolean())
+                        return false;
                 }
+                // Trim the file in case the declared size is larger
+                raf.setLength(raf.getFilePointer());
             }
+            return true;
+        }
+
+        private static Path resolveEntry(Path destDir, ZipEntry entry)
+                throws ZipException {
+            Path path = destDir.resolve(entry.getName()).normalize();
+            if (!path.startsWith(destDir))
+                throw new ZipException("Illegal entry path: " + entry.getName());
+            return path;
+        }
 
-            // Extract every file
-            Enumeration<? extends ZipEntry> item = zipfile.entries();
-            while (item.hasMoreElements()) {
-                entry = item.nextElement();
-                if (!entry.isDirectory()) {
+        /** Unzips a zip stream into the given directory while the stream is being read,
+         * so that the zip content needs not to be saved as a file before unzipping.
+         * The CRC of each entry is verified as soon as the entry is read.
+         * After the last entry, the stream is read to its end, which must be the end record of the central directory,
+         * so that a stream truncated at an entry boundary is not regarded as complete.
+         * @param zipStream The input stream of the zip content, which will not be closed by this method.
+         * @param destDirPath The path of the destination directory which will be created if it is not existed.
+         * @param cancelled The supplier telling whether the unzipping should be stopped.
+         * @return The total size of the unzipped files, or {@code -1} if the unzipping was stopped.
+         * @throws IOException If I/O error occurs. It may be ZipException if an entry is broken or the stream is truncated.
+         * @since ArkPets 3.7
+         */
+        public static long unzip(InputStream zipStream, String destDirPath, BooleanSupplier cancelled)
+                throws IOException {
+            Path destDir = new File(destDirPath).toPath().toAbsolutePath().normalize();
+            Files.createDirectories(destDir);
+            TailInputStream tail = new TailInputStream(zipStream);
+            ZipInputStream zis = new ZipInputStream(tail, StandardCharsets.UTF_8);
+            byte[] bytes = new byte[zipBufferSizeDefault];
+            long total = 0;
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                Path path = resolveEntry(destDir, entry);
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                    continue;
+                }
+                Files.createDirectories(path.getParent());
+                try (OutputStream os = Files.newOutputStream(path)) {
                     int len;
-                    byte[] bytes = new byte[zipBufferSizeDefault];
-                    FileOutputStream fos = new FileOutputStream(destDirPath + entry.getName());
-                    bos = new BufferedOutputStream(fos, zipBufferSizeDefault);
-                    bis = new BufferedInputStream(zipfile.getInputStream(entry));
-                    while ((len = bis.read(bytes, 0, zipBufferSizeDefault)) != -1)
-                        bos.write(bytes, 0, len);
-                    bos.flush();
-                    bos.close();
-                    bis.close();
+                    while ((len = zis.read(bytes, 0, bytes.length)) != -1) {
+                        os.write(bytes, 0, len);
+                        total += len;
+                        if (cancelled.getAsBoolean())
+                            return -1;
+                    }
                 }
             }
+            // The getNextEntry() also returns null if the stream ends before a local header,
+            // so the remaining central directory is drained and its end record is required
+            while (tail.read(bytes, 0, bytes.length) != -1) {
+                if (cancelled.getAsBoolean())
+                    return -1;
+            }
+            if (!tail.endsWithEndRecord())
+                throw new ZipException("Unexpected end of the zip stream, the central directory is missing");
+            return total;
         }
 
         /** Zips some files or directories into a zip file.
@@ -234,35 +381,172 @@ public class IOUtils {
          */
         public static void zip(String zipFilePath, Map<String, String> contents, boolean overwrite)
                 throws IOException {
+            zip(zipFilePath, contents, overwrite, Runtime.getRuntime().availableProcessors(), false, (d, t) -> {}, () -> false);
+        }
+
+        /** Zips some files or directories into a zip file in parallel.
+         * <hr>
+         * Each file is compressed independently by the workers into a raw deflate block, while the calling thread
+         * writes the finished blocks into the zip file in the original order, so the workers never wait for each other.
+         * At most a few blocks per worker are held in memory. A file which cannot be shrunk by deflating,
+         * or an already-compressed file (e.g. a PNG) if {@code storeCompressed} is true, is written as a STORED entry.
+         * <hr>
+         * If the zip file would exceed the limits of the ZIP format without the ZIP64 extension,
+         * the files will be zipped sequentially instead.
+         * Note that {@code UTF-8} encoding and {@code DEFAULT_COMPRESSION} level will be used to create the zip file.
+         * @param zipFilePath The path of the zip file.
+         * @param contents The map whose keys are the source paths and whose values are the zipped paths.
+         * @param overwrite If true, the existed zip file will be deleted before zipping.
+         * @param threads The maximum count of the workers.
+         * @param storeCompressed If true, the already-compressed files will be stored without deflating.
+         * @param progress The callback receiving the zipped bytes and the total bytes of the source files,
+         *                 which will be invoked on the calling thread.
+         * @param cancelled The supplier telling whether the zipping should be stopped.
+         * @return {@code true} if finished, or {@code false} if stopped, in which case the zip file is incomplete.
+         * @throws IOException If I/O error occurs.
+         * @since ArkPets 3.7
+         */
+        public static boolean zip(String zipFilePath, Map<String, String> contents, boolean overwrite, int threads,
+                                  boolean storeCompressed, BiConsumer<Long, Long> progress, BooleanSupplier cancelled)
+                throws IOException {
+            return zip(zipFilePath, contents, overwrite, threads, storeCompressed, file -> true, progress, cancelled);
+        }
+
+        /** Zips some files or directories into a zip file in parallel, where only the accepted files are zipped.
+         * @param zipFilePath The path of the zip file.
+         * @param contents The map whose keys are the source paths and whose values are the zipped paths.
+         * @param overwrite If true, the existed zip file will be deleted before zipping.
+         * @param threads The maximum count of the workers.
+         * @param storeCompressed If true, the already-compressed files will be stored without deflating.
+         * @param filter The filter telling whether a source file should be zipped.
+         * @param progress The callback receiving the zipped bytes and the total bytes of the source files,
+         *                 which will be invoked on the calling thread.
+         * @param cancelled The supplier telling whether the zipping should be stopped.
+         * @return {@code true} if finished, or {@code false} if stopped, in which case the zip file is incomplete.
+         * @throws IOException If I/O error occurs.
+         * @see #zip(String, Map, boolean, int, boolean, BiConsumer, BooleanSupplier)
+         * @since ArkPets 3.7
+         */
+        public static boolean zip(String zipFilePath, Map<String, String> contents, boolean overwrite, int threads,
+                                  boolean storeCompressed, FileFilter filter, BiConsumer<Long, Long> progress,
+                                  BooleanSupplier cancelled)
+                throws IOException {
             if (contents.isEmpty())
-                return;
+                return true;
             if (overwrite)
                 FileUtil.delete(new File(zipFilePath), false);
 
-            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFilePath))) {
-                IOException[] error = new IOException[]{null};
-                for (String sourcePath : contents.keySet()) {
-                    File sourceFile = new File(sourcePath);
-                    String zippedPath = contents.get(sourcePath).replaceAll("(^/+)|(/+$)", "");
-                    if (sourceFile.isDirectory()) {
-                        //noinspection resource
-                        Files.walk(sourceFile.toPath())
-                                .filter(path -> !Files.isDirectory(path))
-                                .forEach(path -> {
-                                    try {
-                                        String relativePath = path.toString().substring(sourcePath.length() + 1);
-                                        copyFileToZip(zos, path.toFile(), zippedPath + "/" + relativePath);
-                                    } catch (IOException e) {
-                                        error[0] = e;
-                                    }
-                                });
-                        if (error[0] != null)
-                            throw error[0];
-                    } else if (sourceFile.isFile()) {
-                        copyFileToZip(zos, new File(sourcePath), zippedPath);
+            // Collect the files to zip
+            ArrayList<File> files = new ArrayList<>();
+            ArrayList<String> names = new ArrayList<>();
+            long total = 0;
+            long headers = 22;
+            for (String sourcePath : contents.keySet()) {
+                File sourceFile = new File(sourcePath);
+                String zippedPath = contents.get(sourcePath).replaceAll("(^/+)|(/+$)", "");
+                if (sourceFile.isDirectory()) {
+                    try (var stream = Files.walk(sourceFile.toPath())) {
+                        for (Path path : (Iterable<Path>)stream.filter(path -> !Files.isDirectory(path))::iterator) {
+                            if (!filter.accept(path.toFile()))
+                                continue;
+                            StringJoiner name = new StringJoiner("/", zippedPath + "/", "");
+                            sourceFile.toPath().relativize(path).forEach(p -> name.add(p.toString()));
+                            files.add(path.toFile());
+                            names.add(name.toString());
+                        }
                     }
+                } else if (sourceFile.isFile() && filter.accept(sourceFile)) {
+                    files.add(sourceFile);
+                    names.add(zippedPath);
                 }
             }
+            for (int i = 0; i < files.size(); i++) {
+                total += files.get(i).length();
+                headers += 76 + 2L * names.get(i).getBytes(StandardCharsets.UTF_8).length;
+            }
+
+            if (exceedsZip32(files.size(), total, headers) || threads <= 1)
+                return zipSequentially(zipFilePath, files, names, total, progress, cancelled);
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "Zipper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ArrayDeque<Future<ZippedBlock>> pending = new ArrayDeque<>();
+            int window = threads * 2;
+            int submitted = 0;
+            long done = 0;
+            try (CountingOutputStream os = new CountingOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(zipFilePath), zipBufferSizeDefault * 4))) {
+                ByteArrayOutputStream central = new ByteArrayOutputStream();
+                for (int i = 0; i < files.size(); i++) {
+                    // Keep the window of the pending blocks filled
+                    while (submitted < files.size() && pending.size() < window) {
+                        File file = files.get(submitted);
+                        boolean store = storeCompressed && isCompressedFile(names.get(submitted));
+                        pending.add(executor.submit(() -> compressFile(file, store)));
+                        submitted++;
+                    }
+                    Future<ZippedBlock> future = pending.poll();
+                    ZippedBlock block = null;
+                    while (block == null) {
+                        if (cancelled.getAsBoolean())
+                            return false;
+                        try {
+                            block = future.get(100, TimeUnit.MILLISECONDS);
+                        } catch (TimeoutException ignored) {
+                            progress.accept(done, total);
+                        } catch (ExecutionException e) {
+                            throw e.getCause() instanceof IOException ex ? ex : new IOException(e.getCause());
+                        }
+                    }
+                    byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+                    long offset = os.getCount();
+                    writeEntryHeader(os, 0x04034b50, block, name, -1);
+                    os.write(name);
+                    os.write(block.data, 0, block.length);
+                    writeEntryHeader(central, 0x02014b50, block, name, offset);
+                    central.write(name);
+                    done += block.size;
+                    progress.accept(done, total);
+                }
+                long centralOffset = os.getCount();
+                central.writeTo(os);
+                writeEndHeader(os, files.size(), central.size(), centralOffset);
+                return !cancelled.getAsBoolean();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Zipping was interrupted");
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        /** Returns true if a zip file of the given entries would exceed the limits of the ZIP format
+         * without the ZIP64 extension.
+         * @param entries The count of the entries.
+         * @param total The total size of the entry data.
+         * @param headers The total size of the headers and the end record.
+         */
+        static boolean exceedsZip32(int entries, long total, long headers) {
+            return entries >= 0xFFFF || total + headers >= 0xFFFFFFFFL;
+        }
+
+        private static boolean zipSequentially(String zipFilePath, List<File> files, List<String> names, long total,
+                                               BiConsumer<Long, Long> progress, BooleanSupplier cancelled)
+                throws IOException {
+            long done = 0;
+            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFilePath))) {
+                for (int i = 0; i < files.size(); i++) {
+                    if (cancelled.getAsBoolean())
+                        return false;
+                    copyFileToZip(zos, files.get(i), names.get(i));
+                    done += files.get(i).length();
+                    progress.accept(done, total);
+                }
+            }
+            return true;
         }
 
         private static void copyFileToZip(ZipOutputStream zos, File sourceFile, String zippedPath)
@@ -276,5 +560,185 @@ public class IOUtils {
             }
             zos.closeEntry();
         }
+
+        private static ZippedBlock compressFile(File file, boolean store)
+                throws IOException {
+            byte[] raw = Files.readAllBytes(file.toPath());
+            CRC32 crc = new CRC32();
+            crc.update(raw);
+            long time = toDosTime(file.lastModified());
+            if (!store && raw.length > 0) {
+                Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                try {
+                    deflater.setInput(raw);
+                    deflater.finish();
+                    // A deflated block larger than the raw data is useless
+                    byte[] out = new byte[raw.length];
+                    int length = 0;
+                    while (!deflater.finished() && length < out.length)
+                        length += deflater.deflate(out, length, out.length - length);
+                    if (deflater.finished() && length < raw.length)
+                        return new ZippedBlock(out, length, raw.length, crc.getValue(), ZipEntry.DEFLATED, time);
+                } finally {
+                    deflater.end();
+                }
+            }
+            return new ZippedBlock(raw, raw.length, raw.length, crc.getValue(), ZipEntry.STORED, time);
+        }
+
+        private static boolean isCompressedFile(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            for (String extension : compressedExtensions)
+                if (lower.endsWith(extension))
+                    return true;
+            return false;
+        }
+
+        private static long toDosTime(long millis) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(millis);
+            int year = calendar.get(Calendar.YEAR);
+            if (year < 1980)
+                return (1 << 21) | (1 << 16);
+            return (long)(year - 1980) << 25 | (long)(calendar.get(Calendar.MONTH) + 1) << 21 |
+                    (long)calendar.get(Calendar.DAY_OF_MONTH) << 16 | (long)calendar.get(Calendar.HOUR_OF_DAY) << 11 |
+                    (long)calendar.get(Calendar.MINUTE) << 5 | (long)calendar.get(Calendar.SECOND) >> 1;
+        }
+
+        private static void writeEntryHeader(OutputStream os, int signature, ZippedBlock block, byte[] name, long offset)
+                throws IOException {
+            boolean central = offset >= 0;
+            writeInt(os, signature, 4);
+            if (central)
+                writeInt(os, 20, 2);        // version made by
+            writeInt(os, 20, 2);            // version needed to extract
+            writeInt(os, 0x0800, 2);        // general purpose flag: UTF-8 names
+            writeInt(os, block.method, 2);
+            writeInt(os, block.time, 4);
+            writeInt(os, block.crc, 4);
+            writeInt(os, block.length, 4);
+            writeInt(os, block.size, 4);
+            writeInt(os, name.length, 2);
+            writeInt(os, 0, 2);             // extra field length
+            if (central) {
+                writeInt(os, 0, 2);         // comment length
+                writeInt(os, 0, 2);         // disk number start
+                writeInt(os, 0, 2);         // internal attributes
+                writeInt(os, 0, 4);         // external attributes
+                writeInt(os, offset, 4);
+            }
+        }
+
+        private static void writeEndHeader(OutputStream os, int entries, long centralSize, long centralOffset)
+                throws IOException {
+            writeInt(os, 0x06054b50, 4);
+            writeInt(os, 0, 2);             // number of this disk
+            writeInt(os, 0, 2);             // disk where central directory starts
+            writeInt(os, entries, 2);
+            writeInt(os, entries, 2);
+            writeInt(os, centralSize, 4);
+            writeInt(os, centralOffset, 4);
+            writeInt(os, 0, 2);             // comment length
+        }
+
+        private static void writeInt(OutputStream os, long value, int bytes)
+                throws IOException {
+            for (int i = 0; i < bytes; i++)
+                os.write((int)(value >>> (i * 8)) & 0xFF);
+        }
+
+
+        private record ZippedBlock(byte[] data, int length, long size, long crc, int method, long time) {
+        }
+
+
+        private static class TailInputStream extends FilterInputStream {
+            // The end record of the central directory is 22 bytes long, followed by a comment of at most 65535 bytes
+            private static final int endRecordSize = 22;
+            private final byte[] ring = new byte[endRecordSize + 0xFFFF];
+            private long count;
+
+            TailInputStream(InputStream is) {
+                super(is);
+            }
+
+            @Override
+            public int read()
+                    throws IOException {
+                int b = in.read();
+                if (b != -1)
+                    ring[(int)(count++ % ring.length)] = (byte)b;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len)
+                    throws IOException {
+                int n = in.read(b, off, len);
+                if (n > 0) {
+                    // Only the last bytes that fit in the ring are kept, which are copied in at most two pieces
+                    int keep = Math.min(n, ring.length);
+                    int pos = (int)((count + n - keep) % ring.length);
+                    int first = Math.min(keep, ring.length - pos);
+                    System.arraycopy(b, off + n - keep, ring, pos, first);
+                    System.arraycopy(b, off + n - keep + first, ring, 0, keep - first);
+                    count += n;
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n)
+                    throws IOException {
+                // Skipped bytes must be recorded as well
+                byte[] buffer = new byte[(int)Math.min(Math.max(n, 0), zipBufferSizeDefault)];
+                int len = read(buffer, 0, buffer.length);
+                return Math.max(len, 0);
+            }
+
+            boolean endsWithEndRecord() {
+                int n = (int)Math.min(count, ring.length);
+                byte[] tail = new byte[n];
+                int pos = (int)((count - n) % ring.length);
+                int first = Math.min(n, ring.length - pos);
+                System.arraycopy(ring, pos, tail, 0, first);
+                System.arraycopy(ring, 0, tail, first, n - first);
+                for (int p = n - endRecordSize; p >= 0; p--) {
+                    if (tail[p] == 0x50 && tail[p + 1] == 0x4b && tail[p + 2] == 0x05 && tail[p + 3] == 0x06) {
+                        int commentLength = (tail[p + 20] & 0xFF) | (tail[p + 21] & 0xFF) << 8;
+                        if (p + endRecordSize + commentLength == n)
+                            return true;
+                    }
+                }
+                return false;
+            }
+        }
+
+
+        private static class CountingOutputStream extends FilterOutputStream {
+            private long count;
+
+            CountingOutputStream(OutputStream os) {
+                super(os);
+            }
+
+            @Override
+            public void write(int b)
+                    throws IOException {
+                out.write(b);
+                count++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+                    throws IOException {
+                out.write(b, off, len);
+                count += len;
+            }
+
+            long getCount() {
+                return count;
+            }
+        }
     }
 }
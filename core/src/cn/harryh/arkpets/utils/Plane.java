@@ -292,7 +292,13 @@ public class Plane {
             if (i.x <= position.x + obj.x && position.x <= i.x + i.z)
                 if (position.y + obj.y > i.y && borderTop() - obj.y > i.y)
                     return i.y;
+        return borderBottomOfWorld();
+    }
 
+    /** Gets the position of the bottom border, regardless of the barriers.
+     * @return Y (px).
+     */
+    public float borderBottomOfWorld() {
         float t = Float.MAX_VALUE;
         for (RectArea a : world)
             if (a.isXInOrthographic(position.x, obj.x))
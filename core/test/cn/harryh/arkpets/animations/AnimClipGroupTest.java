@@ -0,0 +1,119 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.animations;
+
+import cn.harryh.arkpets.animations.AnimClip.AnimModifier;
+import cn.harryh.arkpets.animations.AnimClip.AnimType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class AnimClipGroupTest {
+    private final AnimClip idle = new AnimClip("Idle", 1);
+    private final AnimClip moveBegin = new AnimClip("Move_Begin", 1);
+    private final AnimClip move = new AnimClip("Move_Loop", 1);
+    private final AnimClip moveEnd = new AnimClip("Move_End", 1);
+    private final AnimClip sit = new AnimClip("Sit", 1);
+    private final AnimClip relax = new AnimClip("Relax", 1);
+
+    private AnimClipGroup group;
+
+    @BeforeEach
+    public void setUp() {
+        group = new AnimClipGroup(List.of(idle, moveBegin, move, moveEnd));
+    }
+
+    @Test
+    public void testIndexAndMemoizedResults() {
+        assertSame(move, group.findFirstAnimation(AnimType.MOVE, AnimModifier.LOOP));
+        assertSame(moveBegin, group.findFirstAnimation(AnimType.MOVE, AnimModifier.BEGIN));
+        assertNull(group.findFirstAnimation(AnimType.SIT, AnimModifier.NONE));
+        assertEquals(new AnimData(moveBegin).join(new AnimData(move)).join(new AnimData(moveEnd)),
+                group.getStreamedAnimData(AnimType.MOVE));
+        assertSame(group.getLoopAnimData(AnimType.MOVE), group.getLoopAnimData(AnimType.MOVE));
+        assertTrue(group.getStrictAnimData(AnimType.SIT).isEmpty());
+        assertConsistent();
+    }
+
+    @Test
+    public void testAdd() {
+        assertRebuiltAfter(g -> g.add(sit));
+        assertSame(sit, group.findFirstAnimation(AnimType.SIT, AnimModifier.NONE));
+        assertFalse(group.getStrictAnimData(AnimType.SIT).isEmpty());
+    }
+
+    @Test
+    public void testAddAll() {
+        assertRebuiltAfter(g -> g.addAll(List.of(sit, relax)));
+        // The first matched animation is kept
+        assertSame(idle, group.findFirstAnimation(AnimType.IDLE, AnimModifier.NONE));
+        assertSame(sit, group.findFirstAnimation(AnimType.SIT, AnimModifier.NONE));
+        assertFalse(group.getLoopAnimData(AnimType.SIT).isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        assertRebuiltAfter(g -> g.remove(move));
+        assertNull(group.findFirstAnimation(AnimType.MOVE, AnimModifier.LOOP));
+        assertTrue(group.getLoopAnimData(AnimType.MOVE).isEmpty());
+    }
+
+    @Test
+    public void testRemoveAll() {
+        assertRebuiltAfter(g -> g.removeAll(List.of(moveBegin, moveEnd)));
+        assertEquals(new AnimData(move), group.getStreamedAnimData(AnimType.MOVE));
+    }
+
+    @Test
+    public void testRetainAll() {
+        assertRebuiltAfter(g -> g.retainAll(List.of(idle)));
+        assertTrue(group.getStreamedAnimData(AnimType.MOVE).isEmpty());
+        assertFalse(group.getLoopAnimData(AnimType.IDLE).isEmpty());
+    }
+
+    @Test
+    public void testClear() {
+        assertRebuiltAfter(AnimClipGroup::clear);
+        assertTrue(group.getLoopAnimData(AnimType.IDLE).isEmpty());
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        assertRebuiltAfter(g -> {
+            Iterator<AnimClip> iterator = g.iterator();
+            while (iterator.hasNext())
+                if (iterator.next() == moveBegin)
+                    iterator.remove();
+        });
+        assertNull(group.findFirstAnimation(AnimType.MOVE, AnimModifier.BEGIN));
+        assertEquals(new AnimData(move).join(new AnimData(moveEnd)), group.getStreamedAnimData(AnimType.MOVE));
+    }
+
+    private void assertRebuiltAfter(Consumer<AnimClipGroup> mutator) {
+        // Build the index and memoize the results before the mutation
+        assertConsistent();
+        mutator.accept(group);
+        assertConsistent();
+    }
+
+    private void assertConsistent() {
+        // A new group over the same clips has neither index nor memoized results
+        AnimClipGroup fresh = new AnimClipGroup(new ArrayList<>(group.animClipList));
+        for (AnimType type : AnimType.values()) {
+            for (AnimModifier modifier : AnimModifier.values())
+                assertSame(fresh.findFirstAnimation(type, modifier), group.findFirstAnimation(type, modifier),
+                        type + " " + modifier);
+            assertEquals(fresh.getStreamedAnimData(type), group.getStreamedAnimData(type), "Streamed " + type);
+            assertEquals(fresh.getLoopAnimData(type), group.getLoopAnimData(type), "Loop " + type);
+            assertEquals(fresh.getStrictAnimData(type), group.getStrictAnimData(type), "Strict " + type);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.animations;
+
+import cn.harryh.arkpets.animations.AnimClip.AnimType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class AnimDataPoolTest {
+    private AnimDataPool pool;
+    private AnimClip idle;
+    private AnimClip moveBegin;
+    private AnimClip move;
+    private AnimClip moveEnd;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new AnimDataPool();
+        idle = createClip("Idle", pool);
+        moveBegin = createClip("Move_Begin", pool);
+        move = createClip("Move_Loop", pool);
+        moveEnd = createClip("Move_End", pool);
+    }
+
+    @Test
+    public void testValueEquality() {
+        AnimData canonical = new AnimData(move, null, true, false, 1).derive(-1);
+        AnimData plain = new AnimData(move, null, true, false, -1);
+        AnimData other = new AnimData(move, null, true, false, -1);
+        assertNotSame(canonical, plain);
+        assertEquals(canonical, plain);
+        assertEquals(plain, canonical);
+        assertEquals(plain, other);
+        assertEquals(canonical, other);
+        assertEquals(canonical.hashCode(), plain.hashCode());
+        assertNotEquals(canonical, canonical.derive(1));
+    }
+
+    @Test
+    public void testCanonicalOperations() {
+        AnimData walk = new AnimData(moveBegin).join(new AnimData(move, null, true, false));
+        AnimData joined = walk.join(new AnimData(idle));
+        assertSame(pool.intern(walk), walk);
+        assertSame(joined, walk.join(new AnimData(idle)));
+        assertEquals(new AnimData(moveBegin, new AnimData(move, new AnimData(idle), true, false), false, false), joined);
+
+        AnimData right = joined.derive(1);
+        AnimData left = right.derive(-1);
+        assertSame(left, joined.derive(-1));
+        assertSame(right, left.derive(1));
+        assertSame(joined, left.derive(0));
+        assertSame(joined.animNext(), right.animNext());
+    }
+
+    @Test
+    public void testCanonicalOperationsAllocation() {
+        AnimData walk = new AnimData(move, null, true, false, 1).join(new AnimData(moveEnd));
+        AnimData rest = pool.intern(new AnimData(idle, null, true, false));
+        AnimData turned = walk;
+        for (int i = 0; i < 1000; i++)
+            turned = walk.derive(-turned.mobility()).join(rest);
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++)
+            turned = pool.intern(walk.derive(-turned.mobility()).join(rest));
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(allocated < 4096, "Allocated " + allocated + " bytes");
+        assertEquals(walk.mobility(), turned.mobility());
+        assertSame(walk.join(rest), turned);
+    }
+
+    @Test
+    public void testGroupCachesAreCanonical() {
+        AnimClipGroup group = new AnimClipGroup(List.of(idle, moveBegin, move, moveEnd));
+        AnimData loop = group.getLoopAnimData(AnimType.MOVE);
+        assertSame(loop, pool.intern(new AnimData(move, null, true, false, 0)));
+        AnimData streamed = group.getStreamedAnimData(AnimType.MOVE);
+        assertSame(streamed, pool.intern(new AnimData(moveBegin, new AnimData(move, new AnimData(moveEnd), false, false), false, false)));
+        assertSame(group.getStrictAnimData(AnimType.IDLE), new AnimData(idle, null, false, true).derive(0));
+    }
+
+    @Test
+    public void testPoolsAreScoped() {
+        AnimDataPool another = new AnimDataPool();
+        AnimClip anotherIdle = createClip("Idle", another);
+        AnimData a = new AnimData(idle).derive(0);
+        AnimData b = new AnimData(anotherIdle).derive(0);
+        assertNotSame(a, b);
+        assertEquals(a, b);
+        assertEquals(1, pool.size());
+        assertEquals(1, another.size());
+    }
+
+    private static AnimClip createClip(String name, AnimDataPool pool) {
+        AnimClip clip = new AnimClip(name, 1f);
+        clip.pool = pool;
+        return clip;
+    }
+}
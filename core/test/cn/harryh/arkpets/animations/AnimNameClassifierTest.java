@@ -0,0 +1,208 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.animations;
+
+import cn.harryh.arkpets.animations.AnimClip.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The compatibility check and the benchmark of {@link AnimNameClassifier},
+ * which compares it with the original regex-based recognition.
+ */
+public class AnimNameClassifierTest {
+    /** The animation names collected from the models, with some malformed names. */
+    private static final String[] corpus = {
+            "Default", "Default_1", "Default2", "Idle", "Idle_1", "Idle_2", "Idle2", "Idle_C2", "Idle_B",
+            "Relax", "Relax_1", "Relax_C2", "Move", "Move_1", "Move_2", "Move2", "Move_C2", "Move_Begin",
+            "Move_Loop", "Move_End", "Move_Start", "Sit", "Sit_C2", "Sleep", "Sleep_C2", "Special",
+            "Special_C2", "Interact", "Interact_C2", "Attack", "Attack_1", "Attack2", "Attack_Begin",
+            "Attack_Loop", "Attack_End", "Attack_Down", "Attack_Up", "Attack_C2", "Attack_B", "Combat",
+            "Combat_Begin", "Combat_End", "Skill", "Skill_1", "Skill_2", "Skill2", "Skill_Begin",
+            "Skill_Loop", "Skill_End", "Skill_2_Begin", "Skill_2_Loop", "Skill_2_End", "Skill2_Begin",
+            "Skill_3_Idle", "Skill_3_Idle_Loop", "Skill_3_Move", "Skill_Appear", "Skill_Disappear",
+            "Start", "Start_1", "Start_C2", "Die", "Die_1", "Die_C2", "Die_B", "Revive", "Revive_Begin",
+            "Reborn", "Reborn_Loop", "Idle_Skill", "Idle_Skill_1", "Move_Skill_2", "B_Idle", "B_Move",
+            "C2_Idle", "C2_Move", "C2_Attack_Begin", "A_Idle_Loop", "Idle1_C2", "1Idle", "Move12",
+            "Idle_12", "Move_A", "Idle__1", "_Idle", "Idle_", "Idle__", "__", "_", "", "idle", "MOVE",
+            "iDlE_lOoP", "Default_Begin", "Attack_Begin_C2", "Attack_End_B", "Skill_1_Down",
+            "Skill_Up_1", "Interact_Loop", "Sleep_Begin", "Sleep_End", "Sit_End", "Idle一",
+            "Moveé", "Idle😀", "Idle\n", "Move\r", "Skill ", "Idle١", "٢Move",
+            "Idle_٣", "Attack_Start_End", "End", "Loop", "Begin", "Up_Down", "C9", "c3", "Z", "z",
+            "Die_Loop_Revive", "Relax_Relax", "Default_Default"
+    };
+    private static final String[] fragments = {
+            "Default", "Idle", "Relax", "Move", "Sit", "Sleep", "Special", "Interact", "Attack", "Combat",
+            "Skill", "Start", "Die", "Revive", "Reborn", "Begin", "Up", "Appear", "Loop", "End", "Down",
+            "Disappear", "C2", "c1", "B", "a", "1", "2", "12", "Idle2", "2Move", "Move_", "", "X", "IdleX",
+            "١", "Idleé", "SKILL", "loop"
+    };
+    private static final int generatedCount = 200000;
+    private static final int benchmarkRounds = 5;
+
+    @Test
+    public void testPatternsBuiltFromKeywords() {
+        // The patterns used by the legacy recognition, which must not be changed by the keywords
+        assertEquals("", AnimType.NONE.pattern.pattern());
+        assertEquals("^Default.?$", AnimType.DEFAULT.pattern.pattern());
+        assertEquals("^((Idle)|(Relax)).?$", AnimType.IDLE.pattern.pattern());
+        assertEquals("^Sit$", AnimType.SIT.pattern.pattern());
+        assertEquals("^((Attack)|(Combat)).?$", AnimType.ATTACK.pattern.pattern());
+        assertEquals("^((Revive)|(Reborn)).?$", AnimType.REVIVE.pattern.pattern());
+        assertEquals("", AnimModifier.NONE.pattern.pattern());
+        assertEquals("^((Begin)|(Start)|(Up)|(Appear))$", AnimModifier.BEGIN.pattern.pattern());
+        assertEquals("^Loop$", AnimModifier.LOOP.pattern.pattern());
+        assertEquals("^((End)|(Down)|(Disappear))$", AnimModifier.END.pattern.pattern());
+    }
+
+    @Test
+    public void testCorpusCompatibility() {
+        for (String name : corpus)
+            assertCompatible(name);
+    }
+
+    @Test
+    public void testGeneratedCompatibility() {
+        for (String name : generate(generatedCount, 20250101L))
+            assertCompatible(name);
+    }
+
+    @Test
+    public void testBenchmark() {
+        List<String> names = generate(generatedCount, 20250102L);
+        names.addAll(List.of(corpus));
+        long legacyNanos = Long.MAX_VALUE;
+        long classifierNanos = Long.MAX_VALUE;
+        int checksum = 0;
+        for (int round = 0; round < benchmarkRounds; round++) {
+            long start = System.nanoTime();
+            for (String name : names)
+                checksum += LegacyRecognizer.recognize(name).type().ordinal();
+            legacyNanos = Math.min(legacyNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (String name : names)
+                checksum -= AnimNameClassifier.classify(name).type().ordinal();
+            classifierNanos = Math.min(classifierNanos, System.nanoTime() - start);
+        }
+        assertEquals(0, checksum);
+        long legacy = legacyNanos, classifier = classifierNanos;
+        assertTrue(classifier < legacy, () -> "The classifier (" + classifier + " ns) is slower than the regex recognition (" + legacy + " ns)");
+    }
+
+    private static void assertCompatible(String name) {
+        AnimNameClassifier.Result expected = LegacyRecognizer.recognize(name);
+        AnimNameClassifier.Result actual = AnimNameClassifier.classify(name);
+        assertEquals(expected.type(), actual.type(), () -> "Type of " + name);
+        assertEquals(expected.baseName(), actual.baseName(), () -> "Base name of " + name);
+        assertEquals(expected.modifier(), actual.modifier(), () -> "Modifier of " + name);
+        assertEquals(expected.stage(), actual.stage(), () -> "Stage of " + name);
+    }
+
+    private static List<String> generate(int count, long seed) {
+        Random random = new Random(seed);
+        ArrayList<String> names = new ArrayList<>(count);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.setLength(0);
+            int n = 1 + random.nextInt(4);
+            for (int j = 0; j < n; j++) {
+                if (j > 0)
+                    builder.append('_');
+                builder.append(fragments[random.nextInt(fragments.length)]);
+            }
+            names.add(builder.toString());
+        }
+        return names;
+    }
+
+
+    /** The original regex-based recognition, which is kept as the reference of the compatibility.
+     */
+    private static final class LegacyRecognizer {
+        private static final Pattern cNumberPattern = Pattern.compile("^C\\d$", Pattern.CASE_INSENSITIVE);
+        private static final Pattern alphabetPattern = Pattern.compile("^[A-Z]$", Pattern.CASE_INSENSITIVE);
+        private static final AnimType[] exMatchingTypes = new AnimType[]{AnimType.IDLE, AnimType.MOVE};
+
+        static AnimNameClassifier.Result recognize(String name) {
+            ArrayList<String> elements = new ArrayList<>(List.of(name.split("_")));
+            AnimType type = AnimType.NONE;
+            String baseName = "";
+            for (String s : elements) {
+                AnimType t = matchType(s);
+                if (t != null) {
+                    type = t;
+                    baseName = s;
+                    break;
+                }
+            }
+            AnimModifier modifier = AnimModifier.NONE;
+            for (int i = elements.size() - 1; i >= 0; i--) {
+                AnimModifier m = matchModifier(elements.get(i));
+                if (m != null) {
+                    modifier = m;
+                    elements.remove(i);
+                    break;
+                }
+            }
+            return new AnimNameClassifier.Result(type, baseName, modifier, recognizeStage(elements));
+        }
+
+        private static AnimType matchType(String s) {
+            for (AnimType a : AnimType.values())
+                if (a.matcher(s).matches())
+                    return a;
+            return null;
+        }
+
+        private static AnimModifier matchModifier(String s) {
+            for (AnimModifier a : AnimModifier.values())
+                if (a.matcher(s).matches())
+                    return a;
+            return null;
+        }
+
+        private static AnimStage recognizeStage(List<String> elements) {
+            for (int i = 0; i < elements.size(); i++) {
+                String s = elements.get(i);
+                if (s.isEmpty() || cNumberPattern.matcher(s).matches() || alphabetPattern.matcher(s).matches())
+                    return new AnimStage(s);
+                // Separate the leading or the trailing digits
+                int headTo = -1;
+                for (int j = 0; j < s.length(); j++) {
+                    if (!Character.isDigit(s.charAt(j))) {
+                        headTo = j - 1;
+                        break;
+                    }
+                }
+                int tailBegin = s.length();
+                for (int j = s.length() - 1; j >= 0; j--) {
+                    if (!Character.isDigit(s.charAt(j))) {
+                        tailBegin = j + 1;
+                        break;
+                    }
+                }
+                String fragment = headTo > -1 ? s.substring(0, headTo + 1) :
+                        tailBegin < s.length() ? s.substring(tailBegin) : null;
+                String core = s.substring(headTo + 1, Math.max(headTo + 1, tailBegin));
+                for (AnimType t : exMatchingTypes) {
+                    if (t.matcher(core).matches()) {
+                        String s1;
+                        if (fragment != null) s1 = fragment;
+                        else if (i + 1 < elements.size()) s1 = elements.get(i + 1);
+                        else break;
+                        if (s1.length() == 1 && s1.charAt(0) >= '0' && s1.charAt(0) <= '9')
+                            return new AnimStage("C" + s1);
+                    }
+                }
+            }
+            return new AnimStage(0);
+        }
+    }
+}
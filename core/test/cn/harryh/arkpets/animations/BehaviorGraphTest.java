@@ -0,0 +1,159 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.animations;
+
+import cn.harryh.arkpets.animations.AnimClip.AnimType;
+import cn.harryh.arkpets.animations.BehaviorGraph.Guard;
+import cn.harryh.arkpets.animations.BehaviorGraph.Reaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static cn.harryh.arkpets.Const.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The tests of {@link BehaviorGraph}, which compare the built-in graph with the original hard-coded behavior.
+ */
+public class BehaviorGraphTest {
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testDefaultRulesMatchLegacyChain() {
+        BehaviorGraph graph = BehaviorGraph.getDefault();
+        for (int mask = 0; mask < 1 << Guard.values().length; mask++)
+            assertEquals(legacyReaction(mask), graph.lookup(mask), "Guard mask " + Integer.toBinaryString(mask));
+    }
+
+    @Test
+    public void testDefaultRulesPriority() {
+        BehaviorGraph graph = BehaviorGraph.getDefault();
+        int all = Guard.DROPPING.bit() | Guard.DROPPED.bit() | Guard.KEEPING.bit() | Guard.DRAGGING.bit();
+        assertEquals(Reaction.DEFAULT, graph.lookup(all));
+        assertEquals(Reaction.DROPPED, graph.lookup(all & ~Guard.DROPPING.bit()));
+        assertEquals(Reaction.KEEP, graph.lookup(Guard.KEEPING.bit() | Guard.DRAGGING.bit()));
+        assertEquals(Reaction.DRAGGING, graph.lookup(Guard.DRAGGING.bit()));
+        assertEquals(Reaction.AUTO, graph.lookup(0));
+    }
+
+    @Test
+    public void testDefaultClickEndMatchesLegacy() {
+        AnimClip idle = new AnimClip("Idle", 1);
+        AnimClip interact = new AnimClip("Interact", 1);
+        AnimClip attack = new AnimClip("Attack", 1);
+        AnimClip attackBegin = new AnimClip("Attack_Begin", 1);
+        AnimClip attackEnd = new AnimClip("Attack_End", 1);
+        List<List<AnimClip>> cases = List.of(
+                List.of(idle, interact, attack),
+                List.of(idle, attackBegin, attack, attackEnd),
+                List.of(idle, interact),
+                List.of(idle)
+        );
+        BehaviorGraph graph = BehaviorGraph.getDefault();
+        assertNull(graph.dropped);
+        for (List<AnimClip> clips : cases) {
+            AnimClipGroup group = new AnimClipGroup(clips);
+            AnimData defaultAnim = group.getLoopAnimData(AnimType.IDLE);
+            assertEquals(legacyClickEnd(group, defaultAnim),
+                    BehaviorGraph.getReactionAnimData(group, graph.clickEnd, defaultAnim), clips.toString());
+        }
+    }
+
+    @Test
+    public void testDefaultActionsMatchLegacy() {
+        AnimClipGroup group = new AnimClipGroup(List.of(
+                new AnimClip("Idle", 1), new AnimClip("Sit", 1), new AnimClip("Sleep", 1),
+                new AnimClip("Move", 1), new AnimClip("Special", 1)
+        ));
+        List<AnimData> expected = List.of(
+                group.getLoopAnimData(AnimType.IDLE),
+                group.getLoopAnimData(AnimType.SIT),
+                group.getLoopAnimData(AnimType.SLEEP),
+                group.getLoopAnimData(AnimType.MOVE).derive(+1),
+                group.getLoopAnimData(AnimType.MOVE).derive(-1),
+                group.getStrictAnimData(AnimType.SPECIAL).join(group.getLoopAnimData(AnimType.IDLE))
+        );
+        List<Integer> weights = List.of(behaviorBaseWeight, 1 << 6, 1 << 5, 1 << 5, 1 << 5, 1 << 4);
+        List<BehaviorGraph.Action> actions = BehaviorGraph.getDefault().actions;
+        assertEquals(expected.size(), actions.size());
+        for (int i = 0; i < actions.size(); i++) {
+            assertEquals(expected.get(i), actions.get(i).getAnimData(group), "Animation of action " + i);
+            assertEquals(weights.get(i), actions.get(i).weight, "Weight of action " + i);
+        }
+    }
+
+    @Test
+    public void testOverrideLoadedFromAsset()
+            throws IOException {
+        Files.writeString(new File(tempDir, behaviorFile).toPath(), """
+                {
+                  "actions": [{"type": "IDLE", "mode": "loop", "weight": 1}],
+                  "clickEnd": ["SKILL"],
+                  "dropped": ["DIE", "IDLE"],
+                  "rules": [
+                    {"when": ["DRAGGING"], "then": "DRAGGING"},
+                    {"when": ["DROPPED"], "then": "DROPPED"}
+                  ]
+                }
+                """, StandardCharsets.UTF_8);
+        BehaviorGraph graph = BehaviorGraph.getFrom(tempDir.getPath());
+        assertEquals(1, graph.actions.size());
+        assertEquals(List.of("SKILL"), graph.clickEnd);
+        assertEquals(List.of("DIE", "IDLE"), graph.dropped);
+        // The rules of the asset replace the built-in ones
+        assertEquals(Reaction.DRAGGING, graph.lookup(Guard.DRAGGING.bit() | Guard.DROPPED.bit()));
+        assertEquals(Reaction.DROPPED, graph.lookup(Guard.DROPPED.bit()));
+        assertEquals(Reaction.AUTO, graph.lookup(Guard.DROPPING.bit()));
+        assertEquals(Reaction.AUTO, graph.lookup(Guard.KEEPING.bit()));
+    }
+
+    @Test
+    public void testInvalidOverrideFallsBack()
+            throws IOException {
+        Files.writeString(new File(tempDir, behaviorFile).toPath(),
+                "{\"actions\": [{\"type\": \"FLY\"}], \"clickEnd\": [\"ATTACK\"]}", StandardCharsets.UTF_8);
+        assertDefault(BehaviorGraph.getFrom(tempDir.getPath()));
+        Files.writeString(new File(tempDir, behaviorFile).toPath(), "{", StandardCharsets.UTF_8);
+        assertDefault(BehaviorGraph.getFrom(tempDir.getPath()));
+        // No definition in the asset, or no asset
+        assertDefault(BehaviorGraph.getFrom(new File(tempDir, "none").getPath()));
+        assertDefault(BehaviorGraph.getFrom((String)null));
+    }
+
+    private static void assertDefault(BehaviorGraph graph) {
+        BehaviorGraph expected = BehaviorGraph.getDefault();
+        assertEquals(expected.actions.size(), graph.actions.size());
+        assertEquals(expected.clickEnd, graph.clickEnd);
+        for (int mask = 0; mask < 1 << Guard.values().length; mask++)
+            assertEquals(expected.lookup(mask), graph.lookup(mask));
+    }
+
+    /** The original if-chain in {@code ArkPets.render()}, where the later assignment overrides the former.
+     */
+    private static Reaction legacyReaction(int mask) {
+        Reaction reaction = (mask & Guard.DRAGGING.bit()) != 0 ? Reaction.DRAGGING : Reaction.AUTO;
+        if ((mask & Guard.DROPPING.bit()) != 0)
+            reaction = Reaction.DEFAULT;
+        else if ((mask & Guard.DROPPED.bit()) != 0)
+            reaction = Reaction.DROPPED;
+        else if ((mask & Guard.KEEPING.bit()) != 0)
+            reaction = Reaction.KEEP;
+        return reaction;
+    }
+
+    /** The original {@code GeneralBehavior.clickEnd()}, which prefers the interact animation to the attack one.
+     */
+    private static AnimData legacyClickEnd(AnimClipGroup group, AnimData defaultAnim) {
+        AnimData a1 = group.getStreamedAnimData(AnimType.ATTACK);
+        AnimData a2 = group.getStreamedAnimData(AnimType.INTERACT);
+        AnimData a3 = a2.isEmpty() ? a1 : a2;
+        return new AnimData(a3.animClip(), a3.animNext(), false, true, a3.mobility()).join(defaultAnim);
+    }
+}
@@ -0,0 +1,108 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.animations;
+
+import org.junit.jupiter.api.Test;
+
+import static cn.harryh.arkpets.Const.behaviorBaseWeight;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The tests of the weighted random action selection of {@link Behavior}.
+ */
+public class BehaviorTest {
+    private static final int draws = 200000;
+    /** The critical values of the chi-square distribution at the significance level 0.001, indexed by the degree of freedom. */
+    private static final double[] chiSquareCritical = {0, 10.83, 13.82, 16.27, 18.47, 20.52, 22.46, 24.32, 26.12};
+
+    @Test
+    public void testDefaultWeights() {
+        // The same weights as the actions of the built-in behavior graph
+        assertDistribution(behaviorBaseWeight, 1 << 6, 1 << 5, 1 << 5, 1 << 5, 1 << 4);
+    }
+
+    @Test
+    public void testUnevenWeights() {
+        assertDistribution(1, 1000, 0, 7, 1, 250, 0, 3);
+    }
+
+    @Test
+    public void testSingleAction() {
+        TestBehavior behavior = new TestBehavior(5);
+        for (int i = 0; i < 100; i++)
+            assertEquals(0, behavior.getRandomAction());
+    }
+
+    @Test
+    public void testAllWeightsZero() {
+        TestBehavior behavior = new TestBehavior(0, 0, 0);
+        for (int i = 0; i < 100; i++)
+            assertEquals(0, behavior.getRandomAction());
+    }
+
+    @Test
+    public void testEmptyActionList() {
+        assertEquals(-1, new TestBehavior().getRandomAction());
+    }
+
+    @Test
+    public void testReplacedActionList() {
+        TestBehavior behavior = new TestBehavior(1, 0);
+        for (int i = 0; i < 100; i++)
+            assertEquals(0, behavior.getRandomAction());
+        // The alias table should be rebuilt for the new action list
+        behavior.setWeights(0, 1);
+        for (int i = 0; i < 100; i++)
+            assertEquals(1, behavior.getRandomAction());
+    }
+
+    @Test
+    public void testSeedIsReproducible() {
+        TestBehavior a = new TestBehavior(3, 1, 4, 1, 5);
+        TestBehavior b = new TestBehavior(3, 1, 4, 1, 5);
+        a.setRandomSeed(42);
+        b.setRandomSeed(42);
+        for (int i = 0; i < 1000; i++)
+            assertEquals(a.getRandomAction(), b.getRandomAction());
+    }
+
+    private static void assertDistribution(int... weights) {
+        TestBehavior behavior = new TestBehavior(weights);
+        behavior.setRandomSeed(20250101L);
+        int[] counts = new int[weights.length];
+        for (int i = 0; i < draws; i++)
+            counts[behavior.getRandomAction()]++;
+
+        long total = 0;
+        for (int w : weights)
+            total += w;
+        double chiSquare = 0;
+        int freedom = -1;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] == 0) {
+                assertEquals(0, counts[i], "Action " + i + " has no weight but was selected");
+                continue;
+            }
+            double expected = (double)draws * weights[i] / total;
+            chiSquare += (counts[i] - expected) * (counts[i] - expected) / expected;
+            freedom++;
+        }
+        assertTrue(chiSquare < chiSquareCritical[freedom],
+                "Chi-square " + chiSquare + " exceeds the critical value with " + freedom + " degrees of freedom");
+    }
+
+
+    private static class TestBehavior extends Behavior {
+        TestBehavior(int... weights) {
+            super(null, null);
+            setWeights(weights);
+        }
+
+        void setWeights(int... weights) {
+            action_list = new AnimDataWeight[weights.length];
+            for (int i = 0; i < weights.length; i++)
+                action_list[i] = new AnimDataWeight(new AnimData(null), weights[i]);
+        }
+    }
+}
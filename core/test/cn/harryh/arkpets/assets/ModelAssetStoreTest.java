@@ -0,0 +1,200 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static cn.harryh.arkpets.Const.PathConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The tests of the deduplication and the restoration of {@link ModelAssetStore}.
+ */
+public class ModelAssetStoreTest {
+    private static final int sharedSize = 4000;
+
+    @TempDir
+    File tempDir;
+
+    private File storeDir;
+    private File storageDir;
+    private byte[] shared;
+    private byte[] sameSize;
+
+    @BeforeEach
+    public void setUp()
+            throws IOException {
+        storeDir = new File(tempDir, "store");
+        storageDir = new File(tempDir, "models");
+        Random random = new Random(42);
+        shared = new byte[sharedSize];
+        random.nextBytes(shared);
+        sameSize = new byte[sharedSize];
+        random.nextBytes(sameSize);
+        // The shared atlas page is used by 3 models
+        write("a", "page.png", shared);
+        write("b", "page.png", shared);
+        write("c", "skin.png", shared);
+        // A different file with the same size, which is hashed but not shared
+        write("b", "b.atlas", sameSize);
+        // The files with unique sizes, which are never hashed
+        write("a", "a.skel", new byte[10]);
+        write("c", "c.skel", new byte[20]);
+    }
+
+    @Test
+    public void testIdenticalFilesLinked()
+            throws IOException {
+        ModelAssetStore.Report report = new ModelAssetStore(storeDir).deduplicate(List.of(storageDir));
+        // The first copy becomes the stored object, and the other two are replaced by links
+        assertEquals(2, report.linkedFiles());
+        assertEquals(2L * sharedSize, report.savedBytes());
+        assertEquals(2, report.storedObjects());
+        assertEquals(2L * sharedSize, report.sharedBytes());
+        assertEquals(0, report.prunedObjects());
+
+        assertTrue(Files.isSameFile(file("a", "page.png"), file("b", "page.png")));
+        assertTrue(Files.isSameFile(file("a", "page.png"), file("c", "skin.png")));
+        assertFalse(Files.isSameFile(file("b", "page.png"), file("b", "b.atlas")));
+        assertArrayEquals(shared, Files.readAllBytes(file("c", "skin.png")));
+        assertArrayEquals(sameSize, Files.readAllBytes(file("b", "b.atlas")));
+        for (String model : List.of("a", "b", "c"))
+            assertTrue(Files.isRegularFile(file(model, PathConfig.fileModelManifestName)));
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void testUnchangedSecondRun()
+            throws IOException {
+        ModelAssetStore store = new ModelAssetStore(storeDir);
+        store.deduplicate(List.of(storageDir));
+        ModelAssetStore.Report report = store.deduplicate(List.of(storageDir));
+        assertEquals(0, report.linkedFiles());
+        assertEquals(0, report.savedBytes());
+        assertEquals(2, report.storedObjects());
+        assertEquals(2L * sharedSize, report.sharedBytes());
+        assertEquals(0, report.prunedObjects());
+    }
+
+    @Test
+    public void testMissingFileRestored()
+            throws IOException {
+        ModelAssetStore store = new ModelAssetStore(storeDir);
+        store.deduplicate(List.of(storageDir));
+        Files.delete(file("b", "page.png"));
+        Files.delete(file("b", "b.atlas"));
+
+        assertEquals(2, store.restore(file("b", "").toFile()));
+        assertArrayEquals(shared, Files.readAllBytes(file("b", "page.png")));
+        assertArrayEquals(sameSize, Files.readAllBytes(file("b", "b.atlas")));
+        assertTrue(Files.isSameFile(file("a", "page.png"), file("b", "page.png")));
+        // Nothing is missing any longer
+        assertEquals(0, store.restore(file("b", "").toFile()));
+        // The files which were not stored cannot be restored
+        Files.delete(file("a", "a.skel"));
+        assertEquals(0, store.restore(file("a", "").toFile()));
+    }
+
+    @Test
+    public void testUnreferencedObjectsPruned()
+            throws IOException {
+        ModelAssetStore store = new ModelAssetStore(storeDir);
+        store.deduplicate(List.of(storageDir));
+        assertEquals(2, countObjects());
+
+        // The only reference of the atlas object is removed
+        Files.delete(file("b", "b.atlas"));
+        ModelAssetStore.Report report = store.deduplicate(List.of(storageDir));
+        assertEquals(1, report.prunedObjects());
+        assertEquals(1, report.storedObjects());
+        assertEquals(1, countObjects());
+
+        // All the references of the shared object are removed
+        for (String model : List.of("a", "b", "c"))
+            deleteDir(file(model, "").toFile());
+        report = store.deduplicate(List.of(storageDir));
+        assertEquals(1, report.prunedObjects());
+        assertEquals(0, report.storedObjects());
+        assertEquals(0, countObjects());
+    }
+
+    @Test
+    public void testHardLinksUnsupported()
+            throws IOException {
+        ModelAssetStore store = new ModelAssetStore(storeDir) {
+            @Override
+            void link(Path link, Path existing) {
+                throw new UnsupportedOperationException("Hard links are not supported");
+            }
+        };
+        ModelAssetStore.Report report = store.deduplicate(List.of(storageDir));
+        // The deduplication stops gracefully and leaves the files as they are
+        assertEquals(0, report.linkedFiles());
+        assertEquals(0, report.storedObjects());
+        assertEquals(0, countObjects());
+        assertFalse(Files.isSameFile(file("a", "page.png"), file("b", "page.png")));
+        assertArrayEquals(shared, Files.readAllBytes(file("b", "page.png")));
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void testRestoreCopiesIfHardLinksUnsupported()
+            throws IOException {
+        new ModelAssetStore(storeDir).deduplicate(List.of(storageDir));
+        ModelAssetStore store = new ModelAssetStore(storeDir) {
+            @Override
+            void link(Path link, Path existing) {
+                throw new UnsupportedOperationException("Hard links are not supported");
+            }
+        };
+        Files.delete(file("c", "skin.png"));
+        assertEquals(1, store.restore(file("c", "").toFile()));
+        assertArrayEquals(shared, Files.readAllBytes(file("c", "skin.png")));
+        assertFalse(Files.isSameFile(file("a", "page.png"), file("c", "skin.png")));
+    }
+
+    private Path file(String model, String name) {
+        return new File(new File(storageDir, model), name).toPath();
+    }
+
+    private void write(String model, String name, byte[] content)
+            throws IOException {
+        Files.createDirectories(file(model, "").toAbsolutePath());
+        Files.write(file(model, name), content);
+    }
+
+    private long countObjects()
+            throws IOException {
+        if (!storeDir.isDirectory())
+            return 0;
+        try (var stream = Files.walk(storeDir.toPath())) {
+            return stream.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private void assertNoTempFiles()
+            throws IOException {
+        try (var stream = Files.walk(storageDir.toPath())) {
+            assertTrue(stream.noneMatch(p -> p.getFileName().toString().endsWith(".link")));
+        }
+    }
+
+    private static void deleteDir(File dir)
+            throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                Files.delete(file.toPath());
+        Files.delete(dir.toPath());
+    }
+}
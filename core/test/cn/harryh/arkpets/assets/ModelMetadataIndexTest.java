@@ -0,0 +1,117 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import cn.harryh.arkpets.animations.AnimClip;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ModelMetadataIndexTest {
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testPruningIsPersisted()
+            throws IOException, InterruptedException {
+        File file = new File(tempDir, "models_metadata.json");
+        Files.writeString(file.toPath(), """
+                {"a":{"hash":"1","stages":[0],"types":["IDLE"],"animationCount":1,"totalDuration":1.0},
+                 "b":{"hash":"2","stages":[0,1],"types":["MOVE"],"animationCount":2,"totalDuration":2.0}}
+                """, StandardCharsets.UTF_8);
+        ModelMetadataIndex index = new ModelMetadataIndex(file);
+        assertEquals(2, index.size());
+
+        // Removing the stale entries is a change that should be saved
+        assertTrue(index.update(List.of()));
+        assertEquals(0, index.size());
+        index.save();
+        assertEquals(0, new ModelMetadataIndex(file).size());
+
+        // Nothing changed
+        assertFalse(index.update(List.of()));
+    }
+
+    @Test
+    public void testStagesOfSingleStageModel() {
+        ModelMetadataIndex.Metadata metadata = metadataOf("Default", "Idle", "Move", "Sit", "Die");
+        assertEquals(List.of(0), metadata.stages);
+        assertEquals(1, metadata.getStageCount());
+        assertEquals(List.of("DEFAULT", "IDLE", "MOVE", "SIT", "DIE"), metadata.types);
+        assertEquals(5, metadata.animationCount);
+    }
+
+    @Test
+    public void testStagesSkipUnrecognized() {
+        // The clips without a stage, such as "Default" and "Die", do not count as another stage
+        ModelMetadataIndex.Metadata metadata = metadataOf("Default", "Idle_C1", "Move_C1", "Idle_C2", "Move_C2", "Die");
+        assertEquals(List.of(1, 2), metadata.stages);
+        assertEquals(2, metadata.getStageCount());
+
+        metadata = metadataOf("Default", "Idle", "Skill_2_Begin", "Skill_C2");
+        assertEquals(List.of(2), metadata.stages);
+        assertEquals(1, metadata.getStageCount());
+
+        metadata = metadataOf("A_Idle", "B_Idle", "Idle");
+        assertEquals(List.of(1, 2), metadata.stages);
+    }
+
+    @Test
+    public void testStagesOfEmptyModel() {
+        ModelMetadataIndex.Metadata metadata = metadataOf();
+        assertEquals(0, metadata.getStageCount());
+        assertEquals(0, metadata.animationCount);
+    }
+
+    @Test
+    public void testOutdatedFormatIsNotTrusted()
+            throws IOException {
+        File file = new File(tempDir, "models_metadata.json");
+        Files.writeString(file.toPath(), """
+                {"a":{"hash":"1","stages":[0,1],"types":["IDLE"],"animationCount":2,"totalDuration":2.0}}
+                """, StandardCharsets.UTF_8);
+        // The entries saved before the format was introduced are loaded, but will be indexed again
+        assertEquals(0, new ModelMetadataIndex(file).get(modelItem("a")).format);
+        assertNotEquals(0, ModelMetadataIndex.Metadata.currentFormat);
+    }
+
+    @Test
+    public void testInterruptedUpdateKeepsIndex()
+            throws IOException {
+        File file = new File(tempDir, "models_metadata.json");
+        Files.writeString(file.toPath(), """
+                {"a":{"hash":"1","stages":[0],"types":["IDLE"],"animationCount":1,"totalDuration":1.0}}
+                """, StandardCharsets.UTF_8);
+        ModelMetadataIndex index = new ModelMetadataIndex(file);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedException.class, () -> index.update(List.of()));
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(1, index.size());
+    }
+
+    private static ModelMetadataIndex.Metadata metadataOf(String... names) {
+        ArrayList<AnimClip> clips = new ArrayList<>();
+        for (String name : names)
+            clips.add(new AnimClip(name, 1));
+        return ModelMetadataIndex.Metadata.of("0", clips);
+    }
+
+    private static ModelItem modelItem(String key) {
+        ModelItem item = new ModelItem();
+        item.key = key;
+        return item;
+    }
+}
@@ -0,0 +1,145 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import com.github.houbb.opencc4j.util.ZhConverterUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The equivalence check of the keyword search through {@link ModelSearchIndex},
+ * which compares it with the original five-pass scan.
+ */
+public class ModelSearchIndexTest {
+    /** The characters to generate the fields and the keywords, including some simplified and traditional pairs. */
+    private static final String alphabet = "abcABC12 风風龙龍阿米娅娅";
+    private static final int itemCount = 300;
+    private static final int queryCount = 2000;
+
+    @Test
+    public void testRandomQueries() {
+        Random random = new Random(20250101L);
+        ModelItemGroup group = new ModelItemGroup(generateItems(random));
+        for (int i = 0; i < queryCount; i++)
+            assertEquivalent(group, randomString(random, 1 + random.nextInt(6)));
+    }
+
+    @Test
+    public void testEmptyAndShortKeywords() {
+        Random random = new Random(20250102L);
+        ModelItemGroup group = new ModelItemGroup(generateItems(random));
+        // An empty keyword (between two blanks) matches every non-null field
+        for (String query : List.of(" ", "  ", "a  b", " a", "a ", "A", "1", "风", "風", "娅", "x", "a b c", "ab", "龙龍"))
+            assertEquivalent(group, query);
+        for (char c : alphabet.toCharArray())
+            assertEquivalent(group, String.valueOf(c));
+    }
+
+    @Test
+    public void testIndexIsRebuiltAfterMutation() {
+        Random random = new Random(20250103L);
+        ModelItemGroup group = new ModelItemGroup(generateItems(random));
+        assertEquivalent(group, "a");
+        List<ModelItem> extra = generateItems(random).subList(0, 10);
+        extra.forEach(item -> item.assetDir = new File("extra", item.key));
+        group.addAll(extra);
+        assertEquivalent(group, "a");
+        group.removeIf(item -> item.name != null && item.name.contains("b"));
+        assertEquivalent(group, "a");
+        group.sort();
+        assertEquivalent(group, "a");
+    }
+
+    private static void assertEquivalent(ModelItemGroup group, String keyWords) {
+        List<ModelItem> items = new ArrayList<>(group);
+        List<ModelItem> expected = LegacySearch.search(items, keyWords);
+        List<ModelItem> actual = new ArrayList<>(group.searchByKeyWords(keyWords));
+        assertEquals(expected.size(), actual.size(), () -> "Count of \"" + keyWords + "\"");
+        for (int i = 0; i < expected.size(); i++)
+            assertSame(expected.get(i), actual.get(i), "Item " + i + " of \"" + keyWords + "\"");
+
+        BitSet expectedBitmap = new BitSet();
+        for (ModelItem item : expected)
+            expectedBitmap.set(indexOf(items, item));
+        assertEquals(expectedBitmap, group.searchBitmapByKeyWords(keyWords), () -> "Bitmap of \"" + keyWords + "\"");
+    }
+
+    private static int indexOf(List<ModelItem> items, ModelItem item) {
+        for (int i = 0; i < items.size(); i++)
+            if (items.get(i) == item)
+                return i;
+        return -1;
+    }
+
+    private static List<ModelItem> generateItems(Random random) {
+        ArrayList<ModelItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            ModelItem item = new ModelItem();
+            item.key = "model_" + i;
+            item.assetDir = new File("models", item.key);
+            item.name = randomField(random);
+            item.appellation = randomField(random);
+            item.skinGroupName = randomField(random);
+            item.setPinyin(randomString(random, random.nextInt(8)), randomString(random, random.nextInt(4)));
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static String randomField(Random random) {
+        return random.nextInt(10) == 0 ? null : randomString(random, random.nextInt(10));
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return builder.toString();
+    }
+
+
+    /** The original search, which scans all the Model Items once for each rule.
+     */
+    private static final class LegacySearch {
+        static List<ModelItem> search(List<ModelItem> items, String keyWords) {
+            String[] wordList = distinct(keyWords.toUpperCase().split(" "));
+            ArrayList<String> st = new ArrayList<>(List.of(wordList));
+            st.addAll(List.of(ZhConverterUtil.toSimple(keyWords).toUpperCase().split(" ")));
+            st.addAll(List.of(ZhConverterUtil.toTraditional(keyWords).toUpperCase().split(" ")));
+            String[] wordListST = distinct(st.toArray(new String[0]));
+
+            ArrayList<ModelItem> result = new ArrayList<>();
+            scan(items, m -> m.name, wordListST, result);
+            scan(items, m -> m.appellation, wordList, result);
+            scan(items, ModelItem::getPinyinSuoxie, wordList, result);
+            scan(items, ModelItem::getPinyinQuanpin, wordList, result);
+            scan(items, m -> m.skinGroupName, wordListST, result);
+            return result;
+        }
+
+        private static void scan(List<ModelItem> items, java.util.function.Function<ModelItem, String> field,
+                                 String[] words, List<ModelItem> result) {
+            for (ModelItem model : items) {
+                String value = field.apply(model);
+                if (!result.contains(model) && value != null) {
+                    String upper = value.toUpperCase();
+                    for (String word : words) {
+                        if (upper.contains(word)) {
+                            result.add(model);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        private static String[] distinct(String[] array) {
+            return Arrays.stream(array).distinct().toArray(String[]::new);
+        }
+    }
+}
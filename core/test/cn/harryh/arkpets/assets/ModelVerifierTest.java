@@ -0,0 +1,80 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ModelVerifierTest {
+    @TempDir
+    File tempDir;
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testProblems()
+            throws IOException, InterruptedException {
+        ModelItem okay = createItem("okay", "x.skel", "content");
+        ModelItem empty = createItem("empty", "x.skel", "");
+        ModelItem missing = createItem("missing", "x.skel", null);
+        ModelItem mismatched = createItem("mismatched", "x.skel", "content");
+        mismatched.checksum = new JSONObject();
+        mismatched.checksum.put(".skel", "00000000000000000000000000000000");
+
+        List<ModelVerifier.Problem> problems = verify(List.of(okay, empty, missing, mismatched));
+        assertEquals(3, problems.size());
+        assertEquals(ModelVerifier.ProblemType.FILE_BROKEN, problems.get(0).type());
+        assertSame(empty, problems.get(0).item());
+        assertEquals(ModelVerifier.ProblemType.FILE_MISSING, problems.get(1).type());
+        assertSame(missing, problems.get(1).item());
+        assertEquals(ModelVerifier.ProblemType.FILE_BROKEN, problems.get(2).type());
+        assertSame(mismatched, problems.get(2).item());
+    }
+
+    @Test
+    public void testFailureIsProblem()
+            throws IOException, InterruptedException {
+        ModelItem okay = createItem("okay", "x.skel", "content");
+        // A null file name makes the verification of this item throw
+        ModelItem failing = createItem("failing", "x.skel", "content");
+        JSONArray files = new JSONArray();
+        files.add(null);
+        failing.assetList.put(".skel", files);
+
+        List<ModelVerifier.Problem> problems = verify(List.of(okay, failing));
+        assertEquals(1, problems.size());
+        assertEquals(ModelVerifier.ProblemType.VERIFY_FAILED, problems.get(0).type());
+        assertSame(failing, problems.get(0).item());
+    }
+
+    private List<ModelVerifier.Problem> verify(List<ModelItem> items)
+            throws InterruptedException {
+        ModelVerifier verifier = new ModelVerifier(new File(tempDir, "verify_cache.json"));
+        return verifier.verify(items, (done, total) -> {}, () -> false);
+    }
+
+    private ModelItem createItem(String dirName, String fileName, String content)
+            throws IOException {
+        File dir = new File(tempDir, dirName);
+        assertTrue(dir.mkdirs());
+        if (content != null)
+            Files.writeString(new File(dir, fileName).toPath(), content, StandardCharsets.UTF_8);
+        ModelItem item = new ModelItem();
+        item.assetDir = dir;
+        item.type = "Operator";
+        item.assetList = new JSONObject();
+        item.assetList.put(".skel", fileName);
+        return item;
+    }
+}
@@ -0,0 +1,132 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The tests of the classification of {@link ModelsDatasetDiff}.
+ */
+public class ModelsDatasetDiffTest {
+    @TempDir
+    Path workRoot;
+
+    @Test
+    public void testClassification()
+            throws IOException {
+        ModelsDataset oldDataset = dataset(Map.of(
+                "char_a", List.of("a.png"),
+                "char_b", List.of("b.png"),
+                "char_c", List.of("c.png"),
+                "char_d", List.of("d.png", "d2.png")
+        ));
+        ModelsDataset newDataset = dataset(Map.of(
+                "char_a", List.of("a.png"),
+                "char_b", List.of("b.png", "b2.png"),
+                "char_d", List.of("d.png", "d2.png"),
+                "char_e", List.of("e.png")
+        ));
+        for (ModelItem item : oldDataset.data)
+            writeModel(item);
+        // The second page of the model d is lost locally
+        Files.delete(workRoot.resolve("models/char_d/d2.png"));
+
+        ModelsDatasetDiff diff = ModelsDatasetDiff.of(oldDataset, newDataset, workRoot);
+        assertEquals(List.of("char_e"), keys(diff.added));
+        assertEquals(List.of("char_b", "char_d"), keys(diff.changed));
+        assertEquals(List.of("char_c"), keys(diff.removed));
+        assertEquals(List.of("char_a"), keys(diff.unchanged));
+        assertEquals(List.of("char_b", "char_d", "char_e"), keys(diff.getToFetch()));
+        assertFalse(diff.isEmpty());
+        // The changed models are taken from the new dataset
+        assertSame(find(newDataset, "char_b"), find(diff.changed, "char_b"));
+    }
+
+    @Test
+    public void testFileNamesCaseInsensitive()
+            throws IOException {
+        ModelsDataset oldDataset = dataset(Map.of("char_a", List.of("a.png")));
+        ModelsDataset newDataset = dataset(Map.of("char_a", List.of("a.png")));
+        for (ModelItem item : oldDataset.data)
+            writeModel(item);
+        Path dir = workRoot.resolve("models/char_a");
+        Files.move(dir.resolve("a.png"), dir.resolve("A.PNG"));
+
+        ModelsDatasetDiff diff = ModelsDatasetDiff.of(oldDataset, newDataset, workRoot);
+        assertTrue(diff.isEmpty());
+        assertEquals(List.of("char_a"), keys(diff.unchanged));
+    }
+
+    @Test
+    public void testMissingLocalDirectory() {
+        ModelsDataset oldDataset = dataset(Map.of("char_a", List.of("a.png")));
+        ModelsDataset newDataset = dataset(Map.of("char_a", List.of("a.png")));
+        // Nothing is written locally
+        ModelsDatasetDiff diff = ModelsDatasetDiff.of(oldDataset, newDataset, workRoot);
+        assertEquals(List.of("char_a"), keys(diff.changed));
+        assertTrue(diff.unchanged.isEmpty());
+    }
+
+    @Test
+    public void testMovedModelNotRemoved() {
+        ModelsDataset oldDataset = dataset(Map.of("char_a", List.of("a.png")));
+        ModelsDataset newDataset = dataset(Map.of("char_a", List.of("a.png"), "char_b", List.of("b.png")));
+        // A key is replaced by another one of the same directory
+        ModelItem moved = find(newDataset, "char_b");
+        moved.assetDir = find(oldDataset, "char_a").assetDir;
+        newDataset.data.removeIf(item -> item.key.equals("char_a"));
+
+        ModelsDatasetDiff diff = ModelsDatasetDiff.of(oldDataset, newDataset, workRoot);
+        assertEquals(List.of("char_b"), keys(diff.added));
+        assertTrue(diff.removed.isEmpty());
+    }
+
+    static ModelsDataset dataset(Map<String, List<String>> models) {
+        JSONObject data = new JSONObject();
+        models.forEach((key, pages) -> data.put(key, JSONObject.parseObject("""
+                {"assetId": "build_%1$s", "type": "Operator", "name": "%1$s",
+                 "assetList": {".atlas": "build_%1$s.atlas", ".png": %2$s, ".skel": "build_%1$s.skel"}}
+                """.formatted(key, JSONObject.toJSONString(pages)))));
+        JSONObject json = JSONObject.parseObject("""
+                {"storageDirectory": {"Operator": "models"}, "sortTags": {"Operator": "干员"},
+                 "gameDataVersionDescription": "Test dataset", "gameDataServerRegion": "zh_CN",
+                 "arkPetsCompatibility": [3, 7, 0]}
+                """);
+        json.put("data", data);
+        return new ModelsDataset(json);
+    }
+
+    private void writeModel(ModelItem item)
+            throws IOException {
+        Path dir = workRoot.resolve(item.assetDir.getPath());
+        Files.createDirectories(dir);
+        for (String fileName : item.getAccessor().getAllFiles())
+            Files.writeString(dir.resolve(fileName), item.key + "/" + fileName);
+    }
+
+    private static ModelItem find(Iterable<ModelItem> items, String key) {
+        for (ModelItem item : items)
+            if (item.key.equals(key))
+                return item;
+        return null;
+    }
+
+    private static ModelItem find(ModelsDataset dataset, String key) {
+        return find(dataset.data, key);
+    }
+
+    private static List<String> keys(List<ModelItem> items) {
+        return items.stream().map(item -> item.key).sorted().toList();
+    }
+}
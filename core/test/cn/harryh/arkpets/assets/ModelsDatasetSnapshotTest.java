@@ -0,0 +1,178 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.assets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ModelsDatasetSnapshotTest {
+    private static final String datasetJson = """
+            {
+              "storageDirectory": {"Operator": "models", "Enemy": "models_enemies"},
+              "sortTags": {"Operator": "干员", "Enemy": "敌人", "Special": "特殊"},
+              "gameDataVersionDescription": "Test dataset",
+              "gameDataServerRegion": "zh_CN",
+              "arkPetsCompatibility": [3, 7, 0],
+              "data": {
+                "char_002_amiya": {
+                  "assetId": "build_char_002_amiya", "type": "Operator", "style": "BUILDING",
+                  "name": "阿米娅", "appellation": "Amiya", "skinGroupId": "DEFAULT", "skinGroupName": "默认服装",
+                  "sortTags": ["Operator", "Special"],
+                  "assetList": {".atlas": "build_char_002_amiya.atlas", ".png": ["build_char_002_amiya.png", "build_char_002_amiya2.png"], ".skel": "build_char_002_amiya.skel"}
+                },
+                "enemy_1007_slime": {
+                  "assetId": "enemy_1007_slime", "type": "Enemy", "name": "源石虫",
+                  "checksum": {".atlas": "0123456789abcdef", ".png": "fedcba9876543210", ".skel": "00112233445566778899"}
+                }
+              }
+            }
+            """;
+
+    private static final int benchmarkRounds = 3;
+
+    private File jsonFile;
+    private File snapshotFile;
+
+    @BeforeEach
+    public void setUp(@TempDir File tempDir)
+            throws IOException {
+        jsonFile = new File(tempDir, "models_data.json");
+        snapshotFile = new File(tempDir, "models_data.snapshot");
+        Files.writeString(jsonFile.toPath(), datasetJson, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRoundTrip()
+            throws IOException {
+        ModelsDataset parsed = ModelsDataset.fromFile(jsonFile, snapshotFile);
+        assertTrue(snapshotFile.isFile());
+        ModelsDataset restored = ModelsDatasetSnapshot.read(snapshotFile, jsonFile, null);
+        assertNotNull(restored);
+
+        assertEquals(parsed.storageDirectory, restored.storageDirectory);
+        assertEquals(parsed.sortTags, restored.sortTags);
+        assertEquals(parsed.gameDataVersionDescription, restored.gameDataVersionDescription);
+        assertEquals(parsed.gameDataServerRegion, restored.gameDataServerRegion);
+        assertEquals(parsed.arkPetsCompatibility.toString(), restored.arkPetsCompatibility.toString());
+        ArrayList<ModelItem> expected = new ArrayList<>(parsed.data);
+        ArrayList<ModelItem> actual = new ArrayList<>(restored.data);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertItemEquals(expected.get(i), actual.get(i));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testChecksumIsKept()
+            throws IOException {
+        ModelsDataset.fromFile(jsonFile, snapshotFile);
+        ModelsDataset restored = ModelsDatasetSnapshot.read(snapshotFile, jsonFile, null);
+        assertNotNull(restored);
+        ModelItem slime = restored.data.searchByRelPath(new File("models_enemies", "enemy_1007_slime").getPath());
+        assertNotNull(slime);
+        assertNotNull(slime.checksum);
+        assertEquals("0123456789abcdef", slime.checksum.getString(".atlas"));
+    }
+
+    @Test
+    public void testOldFormatIsRejected()
+            throws IOException {
+        ModelsDataset.fromFile(jsonFile, snapshotFile);
+        byte[] bytes = Files.readAllBytes(snapshotFile.toPath());
+        ByteBuffer.wrap(bytes).putInt(4, 1);
+        Files.write(snapshotFile.toPath(), bytes);
+        assertNull(ModelsDatasetSnapshot.read(snapshotFile, jsonFile, null));
+    }
+
+    @Test
+    public void testSnapshotCanBeReplacedAfterRead()
+            throws IOException {
+        ModelsDataset parsed = ModelsDataset.fromFile(jsonFile, snapshotFile);
+        assertNotNull(ModelsDatasetSnapshot.read(snapshotFile, jsonFile, null));
+        // The snapshot must not be held open by the reader
+        byte[] content = Files.readAllBytes(jsonFile.toPath());
+        ModelsDatasetSnapshot.write(snapshotFile, jsonFile, content, parsed);
+        assertNotNull(ModelsDatasetSnapshot.read(snapshotFile, jsonFile, content));
+    }
+
+    @Test
+    public void testWarmStartIsFasterThanColdStart(@TempDir File tempDir)
+            throws IOException {
+        for (int size : new int[] {1000, 10000}) {
+            File json = new File(tempDir, "models_data_" + size + ".json");
+            File snapshot = new File(tempDir, "models_data_" + size + ".snapshot");
+            Files.writeString(json.toPath(), generateDataset(size), StandardCharsets.UTF_8);
+            long coldNanos = Long.MAX_VALUE;
+            long warmNanos = Long.MAX_VALUE;
+            ModelsDataset cold = null, warm = null;
+            for (int round = 0; round < benchmarkRounds; round++) {
+                // Cold start: parse the JSON and write the snapshot
+                Files.deleteIfExists(snapshot.toPath());
+                long start = System.nanoTime();
+                cold = ModelsDataset.fromFile(json, snapshot);
+                coldNanos = Math.min(coldNanos, System.nanoTime() - start);
+                // Warm start: load the snapshot
+                start = System.nanoTime();
+                warm = ModelsDataset.fromFile(json, snapshot);
+                warmNanos = Math.min(warmNanos, System.nanoTime() - start);
+            }
+            assertEquals(size, warm.data.size());
+            ArrayList<ModelItem> expected = new ArrayList<>(cold.data);
+            ArrayList<ModelItem> actual = new ArrayList<>(warm.data);
+            for (int i = 0; i < size; i++)
+                assertItemEquals(expected.get(i), actual.get(i));
+            long c = coldNanos, w = warmNanos;
+            assertTrue(w < c, () -> "Loading the snapshot of " + size + " models (" + w + " ns) is not faster than parsing the JSON (" + c + " ns)");
+        }
+    }
+
+    private static String generateDataset(int size) {
+        StringBuilder builder = new StringBuilder("""
+                {"storageDirectory": {"Operator": "models", "Enemy": "models_enemies"},
+                 "sortTags": {"Operator": "干员", "Enemy": "敌人"},
+                 "gameDataVersionDescription": "Generated dataset", "gameDataServerRegion": "zh_CN",
+                 "arkPetsCompatibility": [3, 7, 0], "data": {""");
+        for (int i = 0; i < size; i++) {
+            String type = i % 4 == 0 ? "Enemy" : "Operator";
+            String id = (type.equals("Enemy") ? "enemy_" : "char_") + i;
+            if (i > 0)
+                builder.append(',');
+            builder.append("\"").append(id).append("\": {\"assetId\": \"build_").append(id)
+                    .append("\", \"type\": \"").append(type).append("\", \"style\": \"BUILDING\", \"name\": \"名称")
+                    .append(i).append("\", \"appellation\": \"Name").append(i)
+                    .append("\", \"skinGroupId\": \"DEFAULT\", \"skinGroupName\": \"默认服装\", \"sortTags\": [\"")
+                    .append(type).append("\"], \"assetList\": {\".atlas\": \"build_").append(id)
+                    .append(".atlas\", \".png\": [\"build_").append(id).append(".png\"], \".skel\": \"build_")
+                    .append(id).append(".skel\"}}");
+        }
+        return builder.append("}}").toString();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void assertItemEquals(ModelItem expected, ModelItem actual) {
+        assertEquals(expected.key, actual.key);
+        assertEquals(expected.assetDir, actual.assetDir);
+        assertEquals(expected.assetId, actual.assetId);
+        assertEquals(expected.type, actual.type);
+        assertEquals(expected.style, actual.style);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.appellation, actual.appellation);
+        assertEquals(expected.skinGroupId, actual.skinGroupId);
+        assertEquals(expected.skinGroupName, actual.skinGroupName);
+        assertEquals(expected.sortTags, actual.sortTags);
+        assertEquals(expected.assetList, actual.assetList);
+        assertEquals(expected.checksum, actual.checksum);
+    }
+}
@@ -0,0 +1,160 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import cn.harryh.arkpets.platform.HWndCtrl.MouseEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class MouseEventForwarderTest {
+    private static final int timeout = 5;
+    private static final int delay = 20;
+
+    private MouseEventForwarder forwarder;
+
+    @AfterEach
+    public void tearDown() {
+        if (forwarder != null)
+            forwarder.stop();
+    }
+
+    @Test
+    public void testOfferNeverBlocks() {
+        SlowHWndCtrl target = new SlowHWndCtrl(delay);
+        forwarder = new MouseEventForwarder(8, timeout);
+        forwarder.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            forwarder.offer(target, MouseEvent.MOUSEMOVE, i, i);
+            forwarder.offer(target, i % 2 == 0 ? MouseEvent.LBUTTONDOWN : MouseEvent.LBUTTONUP, i, i);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // The worker would need 2000 * 20 ms to deliver them, so the caller must not wait for it
+        assertTrue(elapsed < delay * 10, "Offering took " + elapsed + " ms");
+    }
+
+    @Test
+    public void testCoalesceAndDropOldestMove()
+            throws InterruptedException {
+        SlowHWndCtrl target = new SlowHWndCtrl(0);
+        forwarder = new MouseEventForwarder(4, timeout);
+        // The worker is not started, so that the queue is kept
+        forwarder.offer(target, MouseEvent.MOUSEMOVE, 1, 1);
+        forwarder.offer(target, MouseEvent.MOUSEMOVE, 2, 2);
+        assertEquals(1, forwarder.getQueueDepth());
+        assertEquals(1, forwarder.getCoalescedCount());
+
+        forwarder.offer(target, MouseEvent.LBUTTONDOWN, 2, 2);
+        forwarder.offer(target, MouseEvent.MOUSEMOVE, 3, 3);
+        forwarder.offer(target, MouseEvent.RBUTTONDOWN, 3, 3);
+        assertEquals(4, forwarder.getQueueDepth());
+        // The queue is full, so the oldest move is dropped for the new event
+        forwarder.offer(target, MouseEvent.LBUTTONUP, 3, 3);
+        assertEquals(4, forwarder.getQueueDepth());
+        assertEquals(1, forwarder.getDroppedCount());
+
+        forwarder.start();
+        target.await(4);
+        assertEquals(List.of("LBUTTONDOWN 2", "MOUSEMOVE 3", "RBUTTONDOWN 3", "LBUTTONUP 3"), target.getReceived());
+        awaitProcessed(4);
+        assertEquals(4, forwarder.getDeliveredCount());
+        assertEquals(0, forwarder.getTimeoutCount());
+    }
+
+    @Test
+    public void testButtonsNeverDroppedOrReordered()
+            throws InterruptedException {
+        SlowHWndCtrl target = new SlowHWndCtrl(delay);
+        forwarder = new MouseEventForwarder(4, timeout);
+        forwarder.start();
+        ArrayList<String> buttons = new ArrayList<>();
+        MouseEvent[] pairs = {MouseEvent.LBUTTONDOWN, MouseEvent.LBUTTONUP, MouseEvent.RBUTTONDOWN, MouseEvent.RBUTTONUP};
+        for (int i = 0; i < 40; i++) {
+            for (int j = 0; j < 5; j++)
+                forwarder.offer(target, MouseEvent.MOUSEMOVE, i, j);
+            MouseEvent button = pairs[i % pairs.length];
+            forwarder.offer(target, button, i, 0);
+            buttons.add(button + " " + i);
+        }
+        target.awaitButtons(buttons.size());
+
+        ArrayList<String> received = new ArrayList<>(target.getReceived());
+        awaitProcessed(received.size());
+        received.removeIf(s -> s.startsWith("MOUSEMOVE"));
+        assertEquals(buttons, received);
+        assertTrue(forwarder.getDroppedCount() > 0);
+        // Every send exceeded the timeout, so none of them counts as delivered
+        assertEquals(0, forwarder.getDeliveredCount());
+        assertEquals(target.getReceived().size(), forwarder.getTimeoutCount());
+    }
+
+    private void awaitProcessed(int count)
+            throws InterruptedException {
+        // The counters are updated after the target returns
+        long deadline = System.currentTimeMillis() + 10000;
+        while (forwarder.getDeliveredCount() + forwarder.getTimeoutCount() < count && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+    }
+
+
+    private static class SlowHWndCtrl extends NullHWndCtrl {
+        private final int delay;
+        private final ArrayList<String> received = new ArrayList<>();
+
+        SlowHWndCtrl(int delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public boolean sendMouseEvent(MouseEvent msg, int x, int y, int timeout) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                received.add(msg + " " + x);
+                notifyAll();
+            }
+            return delay <= timeout;
+        }
+
+        synchronized List<String> getReceived() {
+            return new ArrayList<>(received);
+        }
+
+        synchronized void await(int count)
+                throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (received.size() < count && System.currentTimeMillis() < deadline)
+                wait(100);
+            assertEquals(count, received.size());
+        }
+
+        synchronized void awaitButtons(int count)
+                throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (received.stream().filter(s -> !s.startsWith("MOUSEMOVE")).count() < count &&
+                    System.currentTimeMillis() < deadline)
+                wait(100);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.User32;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinDef.RECT;
+import com.sun.jna.platform.win32.WinUser.WNDENUMPROC;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The allocation benchmark of the window enumeration, which runs against a stub User32.
+ * The stub is a proxy of the User32 interface, whose initialization still needs the real library to be loadable.
+ */
+@EnabledOnOs(OS.WINDOWS)
+public class User32HWndCtrlAllocationTest {
+    private static final int windowCount = 500;
+    private static final int rounds = 200;
+
+    private final HWND[] handles = new HWND[windowCount];
+    private int offset;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < windowCount; i++)
+            handles[i] = new HWND(Pointer.createConstant(i + 1));
+        User32HWndCtrl.setUser32(createStub());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        User32HWndCtrl.setUser32(null);
+    }
+
+    @Test
+    public void testEnumerationAllocation() {
+        for (int i = 0; i < rounds; i++)
+            consume(User32HWndCtrl.getWindowList(true), false);
+
+        long lazy = measure(false);
+        long eager = measure(true);
+        System.out.println("Allocation per window: " + lazy + " bytes (rect only), " +
+                eager + " bytes (rect and title)");
+        // The title buffer is reused, so no 1024-char buffer should be allocated per window
+        assertTrue(lazy < 512, "Too much allocation per window: " + lazy);
+        assertTrue(lazy <= eager);
+    }
+
+    @Test
+    public void testSnapshotIsolation() {
+        ArrayList<User32HWndCtrl> first = User32HWndCtrl.getWindowList(true);
+        int left = first.get(0).getPosLeft();
+        offset = 100;
+        ArrayList<User32HWndCtrl> second = User32HWndCtrl.getWindowList(true);
+
+        assertEquals(windowCount, second.size());
+        assertNotSame(first.get(0), second.get(0));
+        assertEquals(first.get(0), second.get(0));
+        // The previous snapshot must not be changed by the new enumeration
+        assertEquals(left, first.get(0).getPosLeft());
+        assertEquals(left + 100, second.get(0).getPosLeft());
+    }
+
+    private long measure(boolean withTitle) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < rounds; i++)
+            consume(User32HWndCtrl.getWindowList(true), withTitle);
+        return (bean.getThreadAllocatedBytes(threadId) - before) / rounds / windowCount;
+    }
+
+    private static int consume(List<User32HWndCtrl> windows, boolean withTitle) {
+        int sum = 0;
+        for (User32HWndCtrl window : windows) {
+            sum += window.getPosLeft();
+            if (withTitle)
+                sum += window.getWindowText().length();
+        }
+        return sum;
+    }
+
+    private User32 createStub() {
+        return (User32)Proxy.newProxyInstance(User32.class.getClassLoader(), new Class<?>[] {User32.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "EnumWindows" -> {
+                        WNDENUMPROC callback = (WNDENUMPROC)args[0];
+                        for (HWND handle : handles)
+                            if (!callback.callback(handle, (Pointer)args[1]))
+                                break;
+                        yield true;
+                    }
+                    case "IsWindow", "IsWindowVisible", "IsWindowEnabled" -> true;
+                    case "GetWindowLong" -> 0;
+                    case "GetWindowRect" -> {
+                        int i = (int)Pointer.nativeValue(((HWND)args[0]).getPointer());
+                        RECT rect = (RECT)args[1];
+                        rect.left = i + offset;
+                        rect.top = i;
+                        rect.right = i + offset + 200;
+                        rect.bottom = i + 100;
+                        yield true;
+                    }
+                    case "GetWindowText" -> {
+                        char[] text = (char[])args[1];
+                        "Window".getChars(0, 6, text, 0);
+                        yield 6;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
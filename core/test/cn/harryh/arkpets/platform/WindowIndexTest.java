@@ -0,0 +1,144 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import cn.harryh.arkpets.platform.HWndCtrl.NumberedTitleManager;
+import cn.harryh.arkpets.platform.HWndCtrl.WindowRect;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class WindowIndexTest {
+    private static final NumberedTitleManager titleManager = new NumberedTitleManager("ArkPets");
+    private static final WindowRect monitor = new WindowRect(0, 1080, 0, 1920);
+
+    private final FakeHWndCtrl topmost = new FakeHWndCtrl("", new WindowRect());
+    private final FakeHWndCtrl fullscreen = new FakeHWndCtrl("Game", monitor);
+    private final FakeHWndCtrl self = new FakeHWndCtrl("ArkPets", new WindowRect(800, 1000, 900, 1100));
+    private final FakeHWndCtrl editor = new FakeHWndCtrl("Editor", new WindowRect(900, 1040, 0, 1920));
+
+    @Test
+    public void testOccluderIsForegroundOnly() {
+        List<FakeHWndCtrl> windows = List.of(fullscreen, self, editor);
+        WindowIndex covered = WindowIndex.build(windows, query(), fullscreen, topmost, titleManager, null);
+        assertSame(fullscreen, covered.occluder());
+
+        WindowIndex background = WindowIndex.build(windows, query(), editor, topmost, titleManager, null);
+        assertNull(background.occluder());
+
+        WindowIndex noForeground = WindowIndex.build(windows, query(), null, topmost, titleManager, null);
+        assertNull(noForeground.occluder());
+    }
+
+    @Test
+    public void testBarriersAndInsertAfter() {
+        List<FakeHWndCtrl> windows = List.of(self, editor);
+        WindowIndex index = WindowIndex.build(windows, query(), editor, topmost, titleManager, null);
+        assertNull(index.occluder());
+        assertSame(topmost, index.insertAfter());
+        assertEquals(List.of(editor.getWindowRect()), index.barriers());
+
+        WindowIndex reused = WindowIndex.build(windows, query(), editor, topmost, titleManager, index.hitIndex());
+        assertSame(index.hitIndex(), reused.hitIndex());
+        assertTrue(reused.isSameLayout(index));
+    }
+
+    @Test
+    public void testWorkerResumesWhenForegroundChanges()
+            throws InterruptedException {
+        final long minInterval = 50;
+        FakeSource source = new FakeSource(List.of(fullscreen, self, editor));
+        source.foreground = fullscreen;
+        WindowIndexWorker worker = new WindowIndexWorker(titleManager, source, minInterval);
+        CountDownLatch resumed = new CountDownLatch(1);
+        worker.setOnUpdated(() -> {
+            WindowIndex snapshot = worker.getSnapshot();
+            if (snapshot.occluder() == null)
+                resumed.countDown();
+        });
+        worker.setQuery(query());
+        worker.start();
+        try {
+            // Wait until the interval has been extended to the maximal one
+            Thread.sleep(minInterval * 16);
+            assertSame(fullscreen, worker.getSnapshot().occluder());
+
+            long start = System.nanoTime();
+            source.foreground = editor;
+            assertTrue(resumed.await(minInterval * 8, TimeUnit.MILLISECONDS));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // The resuming should be bounded by the polling of the foreground window, not by the refresh interval
+            assertTrue(elapsed < minInterval * 4, "Resumed after " + elapsed + " ms");
+        } finally {
+            worker.stop();
+        }
+    }
+
+    private static WindowIndex.Query query() {
+        return new WindowIndex.Query(1000, -800, -1080, 0, false, true, monitor);
+    }
+
+
+    private static class FakeSource implements WindowIndexWorker.WindowSource {
+        private final List<? extends HWndCtrl> windows;
+        private final HWndCtrl topmost = new FakeHWndCtrl("", new WindowRect());
+        private volatile HWndCtrl foreground;
+
+        FakeSource(List<? extends HWndCtrl> windows) {
+            this.windows = windows;
+        }
+
+        @Override
+        public List<? extends HWndCtrl> getWindowList() {
+            return windows;
+        }
+
+        @Override
+        public HWndCtrl getForegroundWindow() {
+            return foreground;
+        }
+
+        @Override
+        public HWndCtrl getTopmostWindow() {
+            return topmost;
+        }
+    }
+
+
+    private static class FakeHWndCtrl extends NullHWndCtrl {
+        private final String windowText;
+        private final WindowRect windowRect;
+
+        FakeHWndCtrl(String windowText, WindowRect windowRect) {
+            this.windowText = windowText;
+            this.windowRect = windowRect;
+            refresh();
+        }
+
+        @Override
+        protected String fetchWindowText() {
+            return windowText;
+        }
+
+        @Override
+        protected WindowRect fetchWindowRect() {
+            return windowRect;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.platform;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class WindowOpQueueTest {
+    private final RecordingHWndCtrl window = new RecordingHWndCtrl();
+    private final WindowOpQueue queue = new WindowOpQueue(window);
+
+    @Test
+    public void testUnchangedStateIsSkipped() {
+        queue.setTopmost(true);
+        queue.setWindowPosition(null, 10, 20, 300, 400);
+        assertEquals(2, queue.apply());
+        assertEquals(List.of("topmost true", "position 10,20,300,400"), window.calls);
+
+        // The same desired state should not call the window system again
+        window.calls.clear();
+        for (int i = 0; i < 10; i++) {
+            queue.setTopmost(true);
+            queue.setWindowPosition(null, 10, 20, 300, 400);
+            assertEquals(0, queue.apply());
+        }
+        assertTrue(window.calls.isEmpty());
+        assertEquals(2, queue.getAppliedCount());
+        assertEquals(20, queue.getSkippedCount());
+    }
+
+    @Test
+    public void testChangedStateIsAppliedOnce() {
+        queue.setWindowPosition(null, 10, 20, 300, 400);
+        queue.apply();
+        window.calls.clear();
+
+        // Only the last request before an apply takes effect
+        queue.setWindowPosition(null, 11, 20, 300, 400);
+        queue.setWindowPosition(null, 12, 20, 300, 400);
+        queue.setTransparent(true);
+        assertEquals(2, queue.apply());
+        assertEquals(List.of("transparent true", "position 12,20,300,400"), window.calls);
+
+        window.calls.clear();
+        assertEquals(0, queue.apply());
+        assertTrue(window.calls.isEmpty());
+    }
+
+    @Test
+    public void testInvalidateForcesReapply() {
+        queue.setLayered(true);
+        queue.setWindowPosition(null, 10, 20, 300, 400);
+        queue.apply();
+        window.calls.clear();
+
+        queue.invalidate();
+        assertEquals(1, queue.apply());
+        // Only the position is re-asserted, not the styles
+        assertEquals(List.of("position 10,20,300,400"), window.calls);
+
+        window.calls.clear();
+        assertEquals(0, queue.apply());
+        assertTrue(window.calls.isEmpty());
+    }
+
+
+    private static class RecordingHWndCtrl extends NullHWndCtrl {
+        private final ArrayList<String> calls = new ArrayList<>();
+
+        @Override
+        public void setWindowPosition(HWndCtrl insertAfter, int x, int y, int w, int h) {
+            calls.add("position " + x + "," + y + "," + w + "," + h);
+        }
+
+        @Override
+        public void setTaskbar(boolean enable) {
+            calls.add("taskbar " + enable);
+        }
+
+        @Override
+        public void setLayered(boolean enable) {
+            calls.add("layered " + enable);
+        }
+
+        @Override
+        public void setTopmost(boolean enable) {
+            calls.add("topmost " + enable);
+        }
+
+        @Override
+        public void setTransparent(boolean enable) {
+            calls.add("transparent " + enable);
+        }
+    }
+}
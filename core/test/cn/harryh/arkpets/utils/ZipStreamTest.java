@@ -0,0 +1,99 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ZipStreamTest {
+    @TempDir
+    File tempDir;
+
+    private int[] boundaries;
+
+    @Test
+    public void testCompleteStream()
+            throws IOException {
+        byte[] zip = createZip("comment");
+        long total = IOUtils.ZipUtil.unzip(new ByteArrayInputStream(zip), tempDir.getPath(), () -> false);
+        assertEquals(8, total);
+        assertEquals("aaaa", Files.readString(new File(tempDir, "models/a.txt").toPath(), StandardCharsets.UTF_8));
+        assertEquals("bbbb", Files.readString(new File(tempDir, "models/b.txt").toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTruncatedAtEntryBoundary()
+            throws IOException {
+        byte[] zip = createZip(null);
+        // Truncated after the first entry, and before the central directory respectively
+        for (int boundary : boundaries)
+            assertThrows(ZipException.class, () -> IOUtils.ZipUtil.unzip(
+                    new ByteArrayInputStream(Arrays.copyOf(zip, boundary)), tempDir.getPath(), () -> false));
+        // Truncated inside the end record
+        assertThrows(ZipException.class, () -> IOUtils.ZipUtil.unzip(
+                new ByteArrayInputStream(Arrays.copyOf(zip, zip.length - 1)), tempDir.getPath(), () -> false));
+    }
+
+    @Test
+    public void testLargeStreamWithLongComment()
+            throws IOException {
+        // The archives are several times larger than the recorded tail, so the tail wraps around at various offsets
+        Random random = new Random(42);
+        for (int commentLength : new int[] {0, 1, 21, 22, 4000, 30000, 0xFFFF - 23, 0xFFFF - 1}) {
+            byte[] data = new byte[200 * 1024 + random.nextInt(0xFFFF)];
+            random.nextBytes(data);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (ZipOutputStream zos = new ZipOutputStream(bos, StandardCharsets.UTF_8)) {
+                zos.setComment("c".repeat(commentLength));
+                zos.putNextEntry(new ZipEntry("models/large.bin"));
+                zos.write(data);
+                zos.closeEntry();
+            }
+            byte[] zip = bos.toByteArray();
+            long total = IOUtils.ZipUtil.unzip(new ByteArrayInputStream(zip), tempDir.getPath(), () -> false);
+            assertEquals(data.length, total, "Comment length " + commentLength);
+            assertArrayEquals(data, Files.readAllBytes(new File(tempDir, "models/large.bin").toPath()));
+            // Truncated inside the end record or the comment
+            assertThrows(ZipException.class, () -> IOUtils.ZipUtil.unzip(
+                    new ByteArrayInputStream(Arrays.copyOf(zip, zip.length - 1)), tempDir.getPath(), () -> false),
+                    "Comment length " + commentLength);
+        }
+    }
+
+    private byte[] createZip(String comment)
+            throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        boundaries = new int[2];
+        try (ZipOutputStream zos = new ZipOutputStream(bos, StandardCharsets.UTF_8)) {
+            if (comment != null)
+                zos.setComment(comment);
+            zos.putNextEntry(new ZipEntry("models/a.txt"));
+            zos.write("aaaa".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+            zos.flush();
+            boundaries[0] = bos.size();
+            zos.putNextEntry(new ZipEntry("models/b.txt"));
+            zos.write("bbbb".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+            zos.flush();
+            boundaries[1] = bos.size();
+        }
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,178 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The round-trip tests of the parallel zipping of {@link IOUtils.ZipUtil}, read back through {@link ZipFile}.
+ */
+public class ZipUtilTest {
+    private static final int smallFiles = 40;
+
+    @TempDir
+    Path tempDir;
+
+    private Path source;
+    private Path single;
+    private Path zipFile;
+    /** The expected contents, whose keys are the zipped paths. */
+    private final TreeMap<String, byte[]> expected = new TreeMap<>();
+
+    @BeforeEach
+    public void setUp()
+            throws IOException {
+        source = tempDir.resolve("source");
+        single = tempDir.resolve("single.txt");
+        zipFile = tempDir.resolve("out.zip");
+        Random random = new Random(42);
+        byte[] noise = new byte[100 * 1024];
+        random.nextBytes(noise);
+        write("text.txt", "ArkPets ".repeat(4096).getBytes(StandardCharsets.UTF_8));
+        write("noise.bin", noise);
+        write("page.png", "not really a png ".repeat(1024).getBytes(StandardCharsets.UTF_8));
+        write("empty.txt", new byte[0]);
+        write("阿米娅/默认 服装/char 002.atlas", "阿米娅 ".repeat(512).getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < smallFiles; i++) {
+            byte[] content = new byte[random.nextInt(2048)];
+            random.nextBytes(content);
+            write("small/" + i + ".bin", content);
+        }
+        Files.writeString(single, "single ".repeat(100), StandardCharsets.UTF_8);
+        expected.put("single.txt", Files.readAllBytes(single));
+    }
+
+    @Test
+    public void testParallelRoundTrip()
+            throws IOException {
+        AtomicLong done = new AtomicLong();
+        AtomicLong total = new AtomicLong();
+        assertTrue(IOUtils.ZipUtil.zip(zipFile.toString(), contents(), true, 4, true, (d, t) -> {
+            done.set(d);
+            total.set(t);
+        }, () -> false));
+        assertZipped(expected);
+        assertEquals(total.get(), done.get());
+        assertEquals(expected.values().stream().mapToLong(b -> b.length).sum(), total.get());
+
+        try (ZipFile zip = new ZipFile(zipFile.toFile(), StandardCharsets.UTF_8)) {
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("models/text.txt").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("models/阿米娅/默认 服装/char 002.atlas").getMethod());
+            // The incompressible file, the already-compressed file and the empty file are stored
+            assertEquals(ZipEntry.STORED, zip.getEntry("models/noise.bin").getMethod());
+            assertEquals(ZipEntry.STORED, zip.getEntry("models/page.png").getMethod());
+            assertEquals(ZipEntry.STORED, zip.getEntry("models/empty.txt").getMethod());
+            assertEquals(0, zip.getEntry("models/empty.txt").getSize());
+        }
+    }
+
+    @Test
+    public void testCompressedFilesDeflatedIfNotStored()
+            throws IOException {
+        assertTrue(IOUtils.ZipUtil.zip(zipFile.toString(), contents(), true, 4, false, (d, t) -> {}, () -> false));
+        assertZipped(expected);
+        try (ZipFile zip = new ZipFile(zipFile.toFile(), StandardCharsets.UTF_8)) {
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("models/page.png").getMethod());
+            assertEquals(ZipEntry.STORED, zip.getEntry("models/noise.bin").getMethod());
+        }
+    }
+
+    @Test
+    public void testFilter()
+            throws IOException {
+        assertTrue(IOUtils.ZipUtil.zip(zipFile.toString(), contents(), true, 4, true,
+                file -> !file.getName().endsWith(".txt"), (d, t) -> {}, () -> false));
+        expected.keySet().removeIf(name -> name.endsWith(".txt"));
+        assertZipped(expected);
+    }
+
+    @Test
+    public void testSequentialFallback()
+            throws IOException {
+        // A single worker falls back to the sequential zipping, which deflates every entry
+        assertTrue(IOUtils.ZipUtil.zip(zipFile.toString(), contents(), true, 1, true, (d, t) -> {}, () -> false));
+        assertZipped(expected);
+        try (ZipFile zip = new ZipFile(zipFile.toFile(), StandardCharsets.UTF_8)) {
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("models/noise.bin").getMethod());
+        }
+    }
+
+    @Test
+    public void testZip32Limits() {
+        assertFalse(IOUtils.ZipUtil.exceedsZip32(0xFFFE, 0, 22));
+        assertTrue(IOUtils.ZipUtil.exceedsZip32(0xFFFF, 0, 22));
+        assertFalse(IOUtils.ZipUtil.exceedsZip32(1, 0xFFFFFFFFL - 100, 99));
+        assertTrue(IOUtils.ZipUtil.exceedsZip32(1, 0xFFFFFFFFL - 100, 100));
+        assertTrue(IOUtils.ZipUtil.exceedsZip32(1, 1L << 32, 22));
+    }
+
+    @Test
+    public void testTooManyEntriesFallBack()
+            throws IOException {
+        // The entry count of the end record cannot hold so many entries, so ZIP64 is required
+        Path many = tempDir.resolve("many");
+        Files.createDirectories(many);
+        for (int i = 0; i < 0xFFFF; i++)
+            Files.createFile(many.resolve(i + ".txt"));
+        assertTrue(IOUtils.ZipUtil.zip(zipFile.toString(), Map.of(many.toString(), "many"), true, 4, true,
+                (d, t) -> {}, () -> false));
+        try (ZipFile zip = new ZipFile(zipFile.toFile(), StandardCharsets.UTF_8)) {
+            assertEquals(0xFFFF, zip.size());
+            assertNotNull(zip.getEntry("many/0.txt"));
+            assertNotNull(zip.getEntry("many/" + (0xFFFF - 1) + ".txt"));
+        }
+    }
+
+    private Map<String, String> contents() {
+        LinkedHashMap<String, String> contents = new LinkedHashMap<>();
+        contents.put(source.toString(), "/models/");
+        contents.put(single.toString(), "single.txt");
+        return contents;
+    }
+
+    private void write(String name, byte[] content)
+            throws IOException {
+        Path path = source.resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+        expected.put("models/" + name, content);
+    }
+
+    private void assertZipped(Map<String, byte[]> expected)
+            throws IOException {
+        try (ZipFile zip = new ZipFile(zipFile.toFile(), StandardCharsets.UTF_8)) {
+            TreeSet<String> names = new TreeSet<>();
+            zip.stream().forEach(entry -> names.add(entry.getName()));
+            assertEquals(expected.keySet(), names);
+            for (Map.Entry<String, byte[]> file : expected.entrySet()) {
+                ZipEntry entry = zip.getEntry(file.getKey());
+                byte[] content;
+                try (InputStream is = zip.getInputStream(entry)) {
+                    content = is.readAllBytes();
+                }
+                assertArrayEquals(file.getValue(), content, file.getKey());
+                CRC32 crc = new CRC32();
+                crc.update(content);
+                assertEquals(crc.getValue(), entry.getCrc(), file.getKey());
+                assertEquals(content.length, entry.getSize(), file.getKey());
+            }
+        }
+    }
+}
@@ -1,17 +1,22 @@
-/** Copyright (c) 2022-2024, Harry Huang
+/** Copyright (c) 2022-2025, Harry Huang
  * At GPL-3.0 License
  */
 package cn.harryh.arkpets.controllers;
 
 import cn.harryh.arkpets.ArkHomeFX;
+import cn.harryh.arkpets.animations.AnimClip.AnimType;
+import cn.harryh.arkpets.assets.ModelFilterIndex;
 import cn.harryh.arkpets.assets.ModelItem;
 import cn.harryh.arkpets.assets.ModelItemGroup;
+import cn.harryh.arkpets.assets.ModelMetadataIndex;
+import cn.harryh.arkpets.assets.ModelPinyinCache;
 import cn.harryh.arkpets.assets.ModelsDataset;
 import cn.harryh.arkpets.guitasks.*;
 import cn.harryh.arkpets.utils.*;
 import cn.harryh.arkpets.utils.GuiComponents.*;
 import com.alibaba.fastjson.JSONObject;
 import com.jfoenix.controls.*;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableSet;
@@ -33,8 +38,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -111,7 +120,12 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
     private ModelItemGroup assetItemList;
     private JFXListCell<ModelItem> selectedModelCell;
     private ArrayList<JFXListCell<ModelItem>> modelCellList = new ArrayList<>();
+    private IdentityHashMap<ModelItem, JFXListCell<ModelItem>> modelCellMap = new IdentityHashMap<>();
     private ObservableSet<String> filterTagSet = FXCollections.observableSet();
+    private final EnumMap<ModelCapability, JFXButton> filterCapabilityTags = new EnumMap<>(ModelCapability.class);
+    private final EnumSet<ModelCapability> filterCapabilitySet = EnumSet.noneOf(ModelCapability.class);
+    private ModelMetadataIndex metadataIndex;
+    private Thread metadataIndexer;
 
     private GuiPrefabs.PeerNodeComposer infoPaneComposer;
     private GuiPrefabs.PeerNodeComposer mngBtnComposer;
@@ -153,10 +167,9 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
         try {
             try {
                 // Read and initialize the dataset
-                app.modelsDataset = new ModelsDataset(
-                        JSONObject.parseObject(
-                                IOUtils.FileUtil.readString(new File(PathConfig.fileModelsDataPath), charsetDefault)
-                        )
+                app.modelsDataset = ModelsDataset.fromFile(
+                        new File(PathConfig.fileModelsDataPath),
+                        new File(PathConfig.fileModelsSnapshotPath)
                 );
                 app.modelsDataset.data.removeIf(Predicate.not(ModelItem::isValid));
                 try {
@@ -242,6 +255,7 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
             searchModelInput.clear();
             searchModelInput.requestFocus();
             filterTagSet.clear();
+            clearFilterCapabilities();
             modelSearch("");
             infoPaneComposer.activate(0);
         }));
@@ -261,6 +275,7 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
     private void initModelFilter() {
         filterPaneTagClear.setOnMouseClicked(e -> app.popLoading(ev -> {
             filterTagSet.clear();
+            clearFilterCapabilities();
             modelSearch(searchModelInput.getText());
             infoPaneComposer.activate(0);
         }));
@@ -307,28 +322,12 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
 
         EventHandler<ActionEvent> modelFetchEventHandler = e -> {
             /* Foreground fetch models */
-            // Go to [Step 1/3]:
-            new DownloadModelsTask(app.body, GuiTask.GuiTaskStyle.COMMON) {
+            // Download, unzip and apply in a single pipelined pass
+            new StreamModelsTask(app.body, GuiTask.GuiTaskStyle.COMMON, app.config.launcher_models_dedup) {
                 @Override
-                protected void onSucceeded(boolean result){
-                    // Go to [Step 2/3]:
-                    new UnzipModelsTask(parent, GuiTaskStyle.STRICT, PathConfig.tempModelsZipCachePath) {
-                        @Override
-                        protected void onSucceeded(boolean result) {
-                            // Go to [Step 3/3]:
-                            new PostUnzipModelTask(parent, GuiTaskStyle.STRICT) {
-                                @Override
-                                protected void onSucceeded(boolean result) {
-                                    try {
-                                        IOUtils.FileUtil.delete(new File(PathConfig.tempModelsZipCachePath).toPath(), false);
-                                    } catch (IOException ex) {
-                                        Logger.warn("Task", "The zip file cannot be deleted, because " + ex.getMessage());
-                                    }
-                                    app.modelsModule.modelReload(true);
-                                }
-                            }.start();
-                        }
-                    }.start();
+                protected void onSucceeded(boolean result) {
+                    if (result)
+                        app.modelsModule.modelReload(true);
                 }
             }.start();
         };
@@ -337,7 +336,19 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
             /* Foreground check models update */
             if (!app.modelsModule.initModelsDataset(true))
                 return;
-            new CheckModelUpdateTask(app.body, GuiTask.GuiTaskStyle.COMMON).start();
+            new CheckModelUpdateTask(app.body, GuiTask.GuiTaskStyle.COMMON) {
+                @Override
+                protected Runnable getSyncAction() {
+                    return () -> new SyncModelsTask(parent, GuiTaskStyle.COMMON) {
+                        @Override
+                        protected void onSucceeded(boolean result) {
+                            super.onSucceeded(result);
+                            if (result)
+                                app.modelsModule.modelReload(true);
+                        }
+                    }.start();
+                }
+            }.start();
         });
 
         modelFetch.setOnAction(modelFetchEventHandler);
@@ -367,9 +378,10 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
                     @Override
                     protected void onSucceeded(boolean result) {
                         // Go to [Step 2/2]:
-                        new PostUnzipModelTask(parent, GuiTaskStyle.STRICT) {
+                        new PostUnzipModelTask(parent, GuiTaskStyle.STRICT, app.config.launcher_models_dedup) {
                             @Override
                             protected void onSucceeded(boolean result) {
+                                super.onSucceeded(result);
                                 app.modelsModule.modelReload(true);
                             }
                         }.start();
@@ -392,7 +404,9 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
                 contents.put(fileModelsDataPath, fileModelsZipName + "/" + fileModelsDataPath);
                 for (File dir : app.modelsDataset.storageDirectory.values())
                     contents.put(dir.toString(), fileModelsZipName + "/" + dir);
-                new ZipTask(app.body, GuiTask.GuiTaskStyle.STRICT, zipFile.toString(), contents).start();
+                // The manifests of the asset store are local to this installation
+                new ZipTask(app.body, GuiTask.GuiTaskStyle.STRICT, zipFile.toString(), contents, true,
+                        file -> !file.getName().equals(PathConfig.fileModelManifestName)).start();
             }
         });
 
@@ -447,22 +461,27 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
         searchModelView.getItems().clear();
         searchModelStatus.setText("");
         if (assertModelLoaded(false)) {
-            // Filter assets
-            int rawSize = assetItemList.size();
-            ModelItemGroup favoured = !filterFavorite ? assetItemList :
-                    assetItemList.filter(ModelItem.PropertyExtractor.ASSET_ITEM_KEY, app.config.character_favorites.keySet(), ModelItemGroup.FilterMode.MATCH_ANY);
-            ModelItemGroup filtered = filterTagSet.isEmpty() ? favoured :
-                    favoured.filter(ModelItem.PropertyExtractor.ASSET_ITEM_SORT_TAGS, filterTagSet);
-            // Search assets
+            // Search assets (on the whole list so that its indexes can be reused)
+            ModelFilterIndex index = assetItemList.getFilterIndex();
+            int rawSize = index.size();
             long tStart = System.nanoTime();
-            ModelItemGroup searched = filtered.searchByKeyWords(keyWords);
+            BitSet filtered = assetItemList.searchBitmapByKeyWords(keyWords);
             long tEnd = System.nanoTime();
-            int curSize = searched.size();
+            // Filter assets
+            if (filterFavorite)
+                filtered.and(index.match(ModelItem.PropertyExtractor.ASSET_ITEM_KEY, app.config.character_favorites.keySet(), ModelItemGroup.FilterMode.MATCH_ANY));
+            if (!filterTagSet.isEmpty())
+                filtered.and(index.match(ModelItem.PropertyExtractor.ASSET_ITEM_SORT_TAGS, filterTagSet, 0));
+            if (!filterCapabilitySet.isEmpty())
+                filtered.and(matchCapabilities(index));
+            int curSize = filtered.cardinality();
             searchModelStatus.setText((rawSize == curSize ? rawSize : curSize + " / " + rawSize) + " 个模型");
-            // Add cells
-            for (JFXListCell<ModelItem> cell : modelCellList)
-                if (searched.contains(cell.getItem()))
+            // Add cells (the ordinals are mapped to their cells through the items)
+            for (int i = filtered.nextSetBit(0); i >= 0; i = filtered.nextSetBit(i + 1)) {
+                JFXListCell<ModelItem> cell = modelCellMap.get(index.get(i));
+                if (cell != null)
                     searchModelView.getItems().add(cell);
+            }
             Logger.info("ModelManager", "Search \"%s\" (%d results, %.1f ms)"
                     .formatted(keyWords, curSize, (tEnd - tStart) / 1000000f));
         }
@@ -483,6 +502,7 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
             Logger.info("ModelManager", "Reloading");
             boolean willGc = modelCellList != null;
             modelCellList = new ArrayList<>();
+            modelCellMap = new IdentityHashMap<>();
             assetItemList = new ModelItemGroup();
 
             if (initModelsDataset(doPopNotice)) {
@@ -500,12 +520,20 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
                     );
                     searchModelView.setFixedCellSize(30);
                     // Write models to menu items.
-                    assetItemList.forEach(assetItem -> modelCellList.add(getMenuItem(assetItem, searchModelView)));
+                    assetItemList.forEach(assetItem -> {
+                        JFXListCell<ModelItem> cell = getMenuItem(assetItem, searchModelView);
+                        modelCellList.add(cell);
+                        modelCellMap.put(assetItem, cell);
+                    });
                     Logger.debug("ModelManager", "Initialized model assets successfully.");
+                    // Precompute the Pinyin and index the animation metadata in background.
+                    startPinyinPrecomputing(assetItemList);
+                    startMetadataIndexing(assetItemList);
                 } catch (IOException ex) {
                     // Explicitly set all lists to empty.
                     Logger.error("ModelManager", "Failed to initialize model assets due to unknown reasons, details see below.", ex);
                     modelCellList = new ArrayList<>();
+                    modelCellMap = new IdentityHashMap<>();
                     assetItemList = new ModelItemGroup();
                     if (doPopNotice)
                         GuiPrefabs.Dialogs.createCommonDialog(app.body,
@@ -549,6 +577,25 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
                         filterPaneTagFlow.getChildren().add(tag);
                     });
                 }
+                // Capability tags, which take effect after the animation metadata is indexed
+                filterCapabilityTags.clear();
+                filterCapabilitySet.clear();
+                for (ModelCapability capability : ModelCapability.values()) {
+                    JFXButton tag = new JFXButton(capability.label);
+                    tag.getStyleClass().add("info-tag-badge");
+                    GuiPrefabs.addTooltip(tag, "仅显示" + capability.label + "的模型");
+                    tag.setOnAction(ev -> {
+                        boolean active = !filterCapabilitySet.remove(capability);
+                        if (active)
+                            filterCapabilitySet.add(capability);
+                        GuiPrefabs.replaceStyleClass(tag,
+                                active ? "info-tag-badge" : "info-tag-badge-active",
+                                active ? "info-tag-badge-active" : "info-tag-badge");
+                        modelSearch(searchModelInput.getText());
+                    });
+                    filterCapabilityTags.put(capability, tag);
+                    filterPaneTagFlow.getChildren().add(tag);
+                }
                 toggleFilterPane.getStyleClass().add("btn-noticeable");
 
                 // 3. Update model list:
@@ -628,7 +675,7 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
         GuiPrefabs.addTooltip(selectedModelName, asset.name);
         GuiPrefabs.addTooltip(selectedModelAppellation, asset.appellation);
         GuiPrefabs.addTooltip(selectedModelSkinGroupName, asset.skinGroupName);
-        GuiPrefabs.addTooltip(selectedModelType, asset.type);
+        GuiPrefabs.addTooltip(selectedModelType, getMetadataSummary(asset));
         // Setup tag flow pane
         infoPaneTagFlow.getChildren().clear();
         asset.sortTags.forEach(o -> {
@@ -660,6 +707,70 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
         app.config.character_label = asset.name;
     }
 
+    private void startPinyinPrecomputing(ModelItemGroup modelItems) {
+        ArrayList<ModelItem> items = new ArrayList<>(modelItems);
+        Thread thread = new Thread(() -> ModelPinyinCache.precompute(items, new File(fileModelsPinyinPath)),
+                "ModelPinyinPrecomputer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void startMetadataIndexing(ModelItemGroup modelItems) {
+        if (metadataIndexer != null)
+            metadataIndexer.interrupt();
+        if (metadataIndex == null)
+            metadataIndex = new ModelMetadataIndex(new File(fileModelsMetadataPath));
+        ModelMetadataIndex index = metadataIndex;
+        ArrayList<ModelItem> items = new ArrayList<>(modelItems);
+        metadataIndexer = new Thread(() -> {
+            try {
+                if (index.update(items))
+                    index.save();
+                Platform.runLater(() -> {
+                    // Refresh the details of the selected model.
+                    if (selectedModelCell != null && selectedModelCell.getItem() != null)
+                        GuiPrefabs.addTooltip(selectedModelType, getMetadataSummary(selectedModelCell.getItem()));
+                    // Refresh the results filtered by the capabilities.
+                    if (!filterCapabilitySet.isEmpty())
+                        modelSearch(searchModelInput.getText());
+                });
+            } catch (InterruptedException ignored) {
+            }
+        }, "ModelMetadataIndexer");
+        metadataIndexer.setDaemon(true);
+        metadataIndexer.start();
+    }
+
+    private BitSet matchCapabilities(ModelFilterIndex index) {
+        BitSet result = new BitSet(index.size());
+        if (metadataIndex == null)
+            return result;
+        for (int i = 0; i < index.size(); i++) {
+            ModelMetadataIndex.Metadata metadata = metadataIndex.get(index.get(i));
+            if (metadata == null)
+                continue;
+            boolean matched = true;
+            for (ModelCapability capability : filterCapabilitySet)
+                matched &= capability.test(metadata);
+            result.set(i, matched);
+        }
+        return result;
+    }
+
+    private void clearFilterCapabilities() {
+        filterCapabilitySet.clear();
+        filterCapabilityTags.values().forEach(tag ->
+                GuiPrefabs.replaceStyleClass(tag, "info-tag-badge-active", "info-tag-badge"));
+    }
+
+    private String getMetadataSummary(ModelItem asset) {
+        ModelMetadataIndex.Metadata metadata = metadataIndex == null ? null : metadataIndex.get(asset);
+        if (metadata == null)
+            return asset.type;
+        return asset.type + "\n形态数：" + metadata.getStageCount() +
+                "\n动作：" + String.join(" ", metadata.types).toLowerCase();
+    }
+
     private boolean assertModelLoaded(boolean doPopNotice) {
         if (app.modelsDataset == null) {
             // Not loaded:
@@ -676,4 +787,27 @@ public final class ModelsModule implements Controller<ArkHomeFX> {
             return true;
         }
     }
+
+
+    /** The animation capabilities of the models, which can be used as the filter conditions.
+     */
+    private enum ModelCapability {
+        MULTI_STAGE("多形态", m -> m.getStageCount() > 1),
+        SIT("可坐下", m -> m.hasType(AnimType.SIT)),
+        SLEEP("可睡觉", m -> m.hasType(AnimType.SLEEP)),
+        INTERACT("可互动", m -> m.hasType(AnimType.INTERACT)),
+        SPECIAL("有特殊动作", m -> m.hasType(AnimType.SPECIAL));
+
+        private final String label;
+        private final Predicate<ModelMetadataIndex.Metadata> predicate;
+
+        ModelCapability(String label, Predicate<ModelMetadataIndex.Metadata> predicate) {
+            this.label = label;
+            this.predicate = predicate;
+        }
+
+        private boolean test(ModelMetadataIndex.Metadata metadata) {
+            return predicate.test(metadata);
+        }
+    }
 }
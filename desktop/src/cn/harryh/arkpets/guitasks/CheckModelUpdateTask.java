@@ -8,6 +8,8 @@ import cn.harryh.arkpets.utils.GuiPrefabs;
 import cn.harryh.arkpets.utils.IOUtils;
 import cn.harryh.arkpets.utils.Logger;
 import com.alibaba.fastjson.JSONObject;
+import com.jfoenix.controls.JFXButton;
+import com.jfoenix.controls.JFXDialog;
 import javafx.scene.layout.StackPane;
 
 import java.io.File;
@@ -41,6 +43,14 @@ public class CheckModelUpdateTask extends FetchGitHubRemoteTask {
         return "正在下载模型版本信息...";
     }
 
+    /** Gets the action to sync the models incrementally, which will be offered when the models can be updated.
+     * @return The action, or {@code null} if it is not offered.
+     * @since ArkPets 3.7
+     */
+    protected Runnable getSyncAction() {
+        return null;
+    }
+
     @Override
     protected void onSucceeded(boolean result) {
         // When finished downloading the remote repo models info:
@@ -91,12 +101,25 @@ public class CheckModelUpdateTask extends FetchGitHubRemoteTask {
                             "因发生错误，无法解析本地模型库的版本。",
                             null).show();
                 }
-                GuiPrefabs.Dialogs.createCommonDialog(parent,
+                Runnable syncAction = getSyncAction();
+                JFXDialog dialog = GuiPrefabs.Dialogs.createCommonDialog(parent,
                         GuiPrefabs.Icons.getIcon(GuiPrefabs.Icons.SVG_INFO_ALT, GuiPrefabs.COLOR_INFO),
                         "检查模型更新",
                         "模型库似乎有更新！",
-                        "您可以 [重新下载] 模型，以更新模型库版本。",
-                        "远程模型库版本描述：\n" + versionDescription + "\n\n本地模型库版本描述：\n" + oldVersionDescription).show();
+                        syncAction == null ? "您可以 [重新下载] 模型，以更新模型库版本。" :
+                                "您可以 [重新下载] 全部模型，以更新模型库版本。" +
+                                        "也可以 [增量更新] 仅下载文件列表有变化的模型，但它无法发现同名文件的内容变化。",
+                        "远程模型库版本描述：\n" + versionDescription + "\n\n本地模型库版本描述：\n" + oldVersionDescription);
+                if (syncAction != null) {
+                    JFXButton syncButton = GuiPrefabs.Dialogs.getGotoButton(dialog);
+                    syncButton.setText("增量更新");
+                    syncButton.setOnAction(e -> {
+                        GuiPrefabs.Dialogs.disposeDialog(dialog);
+                        syncAction.run();
+                    });
+                    GuiPrefabs.Dialogs.attachAction(dialog, syncButton, 0);
+                }
+                dialog.show();
                 Logger.info("Checker", "Model repo version check finished (not up-to-dated)");
             }
         } catch (IOException e) {
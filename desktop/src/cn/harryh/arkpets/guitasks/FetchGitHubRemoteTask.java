@@ -7,16 +7,12 @@ import cn.harryh.arkpets.utils.GuiPrefabs;
 import cn.harryh.arkpets.utils.Logger;
 import cn.harryh.arkpets.utils.NetUtils;
 import cn.harryh.arkpets.utils.NetUtils.GitHubSource;
+import cn.harryh.arkpets.utils.RangedDownloader;
 import javafx.concurrent.Task;
 import javafx.scene.layout.StackPane;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.*;
+import java.io.File;
 import java.net.URL;
-import java.nio.file.Files;
-
-import static cn.harryh.arkpets.Const.httpBufferSizeDefault;
-import static cn.harryh.arkpets.Const.httpTimeoutDefault;
 
 
 abstract public class FetchGitHubRemoteTask extends GuiTask {
@@ -41,7 +37,9 @@ abstract public class FetchGitHubRemoteTask extends GuiTask {
             protected Boolean call() throws Exception {
                 this.updateMessage("正在选择最佳线路");
                 Logger.info("Network", "Testing real delay");
-                GitHubSource.sortByOverallAvailability(NetUtils.ghSources);
+                // The archive is large, so the throughput of the sources is also considered
+                GitHubSource.sortByOverallAvailability(NetUtils.ghSources, !isArchive ? null :
+                        source -> ((GitHubSource)source).archivePreUrl + remotePathSuffix);
                 selectedSource = (GitHubSource)NetUtils.ghSources.get(0);
 
                 Logger.info("Network", "Selected the most available " + selectedSource);
@@ -51,39 +49,18 @@ abstract public class FetchGitHubRemoteTask extends GuiTask {
                 Logger.info("Network", "Fetching " + remotePath + " to " + destPath);
                 this.updateMessage("正在尝试与 " + selectedSource.tag + " 建立连接");
 
-                NetUtils.BufferLog log = new NetUtils.BufferLog(httpBufferSizeDefault);
-                HttpsURLConnection connection = NetUtils.ConnectionUtil.createHttpsConnection(new URL(remotePath),
-                        httpTimeoutDefault,
-                        httpTimeoutDefault,
-                        isHttpsTrustAll);
-                final InputStream is = connection.getInputStream();
-                final OutputStream os = Files.newOutputStream(new File(destPath).toPath());
-                final BufferedInputStream  bis = new BufferedInputStream(is, httpBufferSizeDefault);
-                final BufferedOutputStream bos = new BufferedOutputStream(os, httpBufferSizeDefault);
-
-                try (bis; bos; is; os) {
-                    int len = httpBufferSizeDefault;
-                    long sum = 0;
-                    long max = connection.getContentLengthLong();
-                    byte[] bytes = new byte[len];
-                    while ((len = bis.read(bytes)) != -1) {
-                        bos.write(bytes, 0, len);
-                        sum += len;
-                        log.receive();
-                        long speed = log.getSpeedPerSecond(500);
-                        this.updateMessage("当前已下载：" + NetUtils.getFormattedSizeString(sum) +
-                                (speed != 0 ? " (" + NetUtils.getFormattedSizeString(speed) + "/s)" : ""));
-                        this.updateProgress(sum, max);
-                        if (this.isCancelled()) {
-                            this.updateMessage("下载进程已被取消");
-                            selectedSource.receiveError();
-                            break;
-                        }
-                    }
-                    this.updateProgress(max, max);
-                    bos.flush();
-                    Logger.info("Network", "Fetched to " + destPath + " , size: " + sum);
+                RangedDownloader downloader = new RangedDownloader(new URL(remotePath), new File(destPath), isHttpsTrustAll);
+                boolean finished = downloader.download((done, max) -> {
+                    long speed = downloader.getSpeedPerSecond();
+                    this.updateMessage("当前已下载：" + NetUtils.getFormattedSizeString(done) +
+                            (speed != 0 ? " (" + NetUtils.getFormattedSizeString(speed) + "/s)" : ""));
+                    this.updateProgress(done, max);
+                }, this::isCancelled);
+                if (!finished) {
+                    this.updateMessage("下载进程已被取消");
+                    return false;
                 }
+                Logger.info("Network", "Fetched to " + destPath + " , size: " + new File(destPath).length());
                 return this.isDone() && !this.isCancelled();
             }
         };
@@ -4,9 +4,12 @@
 package cn.harryh.arkpets.guitasks;
 
 import cn.harryh.arkpets.Const.PathConfig;
+import cn.harryh.arkpets.assets.ModelAssetStore;
+import cn.harryh.arkpets.assets.ModelsDataset;
 import cn.harryh.arkpets.utils.GuiPrefabs;
 import cn.harryh.arkpets.utils.IOUtils;
 import cn.harryh.arkpets.utils.Logger;
+import cn.harryh.arkpets.utils.NetUtils;
 import javafx.concurrent.Task;
 import javafx.scene.layout.StackPane;
 
@@ -20,11 +23,24 @@ import java.nio.file.attribute.BasicFileAttributes;
 public class PostUnzipModelTask extends GuiTask {
     private final String rootPath;
     private final String modelsDataPath;
+    private final boolean deduplicate;
+    protected ModelAssetStore.Report dedupReport;
 
     public PostUnzipModelTask(StackPane parent, GuiTaskStyle style) {
+        this(parent, style, false);
+    }
+
+    /** Initializes a task that applies the unzipped models.
+     * @param parent The parent node of the UI.
+     * @param style The {@link GuiTaskStyle} of this instance.
+     * @param deduplicate If true, the identical asset files will be deduplicated by the {@link ModelAssetStore}.
+     * @since ArkPets 3.7
+     */
+    public PostUnzipModelTask(StackPane parent, GuiTaskStyle style, boolean deduplicate) {
         super(parent, style);
         this.rootPath = PathConfig.tempModelsUnzipDirPath;
         this.modelsDataPath = PathConfig.fileModelsDataPath;
+        this.deduplicate = deduplicate;
     }
 
     @Override
@@ -78,6 +94,16 @@ public class PostUnzipModelTask extends GuiTask {
                     Logger.warn("Task", "The unzipped cache cannot be deleted, because " + e.getMessage());
                 }
                 Logger.info("Task", "Moved required files from unzipped files, finished");
+                if (deduplicate) {
+                    this.updateMessage("正在整理重复的模型文件");
+                    try {
+                        ModelsDataset dataset = ModelsDataset.fromFile(new File(modelsDataPath), new File(PathConfig.fileModelsSnapshotPath));
+                        dedupReport = ModelAssetStore.deduplicateFiles(dataset.storageDirectory.values());
+                    } catch (IOException | RuntimeException e) {
+                        // The deduplication is optional, so its failure should not fail the task
+                        Logger.warn("Task", "The model files cannot be deduplicated, because " + e);
+                    }
+                }
                 return true;
             }
         };
@@ -88,4 +114,16 @@ public class PostUnzipModelTask extends GuiTask {
         if (style != GuiTaskStyle.HIDDEN)
             GuiPrefabs.Dialogs.createErrorDialog(parent, e).show();
     }
+
+    @Override
+    protected void onSucceeded(boolean result) {
+        if (result && dedupReport != null && style != GuiTaskStyle.HIDDEN)
+            GuiPrefabs.Dialogs.createCommonDialog(parent,
+                    GuiPrefabs.Icons.getIcon(GuiPrefabs.Icons.SVG_SUCCESS_ALT, GuiPrefabs.COLOR_SUCCESS),
+                    "导入模型",
+                    "模型库已更新。",
+                    "整理了 " + dedupReport.linkedFiles() + " 个重复的模型文件，共节省了约 " +
+                            NetUtils.getFormattedSizeString(dedupReport.sharedBytes()) + " 的磁盘空间。",
+                    dedupReport.toString()).show();
+    }
 }
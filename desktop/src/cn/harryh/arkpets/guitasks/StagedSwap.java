@@ -0,0 +1,101 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.guitasks;
+
+import cn.harryh.arkpets.utils.IOUtils;
+import cn.harryh.arkpets.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/** The helper that replaces the local files or directories by the staged ones as a whole.
+ * <hr>
+ * Each target is first moved into the trash directory, and then the staged one is moved to the target,
+ * where both moves are atomic renames. If any move fails, the applied replacements will be rolled back in reverse order,
+ * so the targets are either all replaced or all kept. The trash directory can be deleted afterwards.
+ * @since ArkPets 3.7
+ */
+final class StagedSwap {
+    private StagedSwap() {
+    }
+
+    /** Applies the replacements.
+     * @param entries The replacements, which will be applied in order.
+     * @param trash The trash directory, which should be on the same file system as the targets.
+     * @throws IOException If I/O error occurs, after the applied replacements were rolled back.
+     */
+    static void apply(List<Entry> entries, File trash)
+            throws IOException {
+        ArrayList<Path[]> applied = new ArrayList<>(); // {target, trashed or null, replaced or null}
+        try {
+            Files.createDirectories(trash.toPath());
+            for (Entry entry : entries) {
+                Path target = entry.target;
+                Path trashed = null;
+                if (Files.exists(target)) {
+                    // Prefix the index to avoid the name conflicts
+                    trashed = trash.toPath().resolve(applied.size() + "_" + target.getFileName());
+                    Files.move(target, trashed, StandardCopyOption.ATOMIC_MOVE);
+                }
+                applied.add(new Path[] {target, trashed, null});
+                if (entry.staged != null) {
+                    Path parent = target.toAbsolutePath().getParent();
+                    if (parent != null)
+                        Files.createDirectories(parent);
+                    Files.move(entry.staged, target, StandardCopyOption.ATOMIC_MOVE);
+                    applied.get(applied.size() - 1)[2] = target;
+                }
+            }
+        } catch (IOException e) {
+            Logger.error("Task", "Failed to apply the staged files, rolling back");
+            for (int i = applied.size() - 1; i >= 0; i--) {
+                Path[] record = applied.get(i);
+                try {
+                    if (record[2] != null)
+                        IOUtils.FileUtil.delete(record[2], false);
+                    if (record[1] != null)
+                        Files.move(record[1], record[0], StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ex) {
+                    Logger.error("Task", "Failed to roll back " + record[0] + ": " + ex);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /** Resolves a relative path against the given root directory, rejecting the path escaping from the root.
+     * @param root The root directory.
+     * @param other The relative path, typically provided by a remote dataset.
+     * @return The normalized absolute path inside the root.
+     * @throws IOException If the path is absolute, or it is not strictly inside the root after normalization.
+     */
+    static Path resolveWithin(Path root, String other)
+            throws IOException {
+        Path base = root.toAbsolutePath().normalize();
+        Path path;
+        try {
+            path = base.resolve(other).normalize();
+        } catch (InvalidPathException e) {
+            throw new IOException("Illegal path: " + other, e);
+        }
+        if (Path.of(other).isAbsolute() || !path.startsWith(base) || path.equals(base))
+            throw new IOException("Illegal path: " + other);
+        return path;
+    }
+
+
+    /** A replacement.
+     * @param staged The staged file or directory, or {@code null} to delete the target.
+     * @param target The target file or directory.
+     */
+    record Entry(Path staged, Path target) {
+    }
+}
@@ -0,0 +1,176 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.guitasks;
+
+import cn.harryh.arkpets.assets.ModelAssetStore;
+import cn.harryh.arkpets.assets.ModelsDataset;
+import cn.harryh.arkpets.utils.GuiPrefabs;
+import cn.harryh.arkpets.utils.IOUtils;
+import cn.harryh.arkpets.utils.Logger;
+import cn.harryh.arkpets.utils.NetUtils;
+import cn.harryh.arkpets.utils.NetUtils.GitHubSource;
+import javafx.concurrent.Task;
+import javafx.scene.layout.StackPane;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.zip.ZipException;
+
+import static cn.harryh.arkpets.Const.*;
+
+
+/** The task that downloads and applies the models repository in a single pipelined pass.
+ * <hr>
+ * The downloaded archive is unzipped while it is being received, so it is never saved as a zip file,
+ * and the CRC of each entry is verified as soon as the entry is received. The archive must be received completely,
+ * namely up to its central directory and as long as the declared length, otherwise nothing is applied.
+ * The entries are written into a staging
+ * directory, which finally replaces the local models (see {@link StagedSwap}). Compared to the three-step fetching
+ * ({@link DownloadModelsTask}, {@link UnzipModelsTask} and {@link PostUnzipModelTask}),
+ * the archive is neither written to nor read from the disk.
+ * @since ArkPets 3.7
+ */
+public class StreamModelsTask extends GuiTask {
+    private final boolean deduplicate;
+    protected GitHubSource selectedSource;
+
+    /** Initializes a task that downloads and applies the models repository.
+     * @param parent The parent node of the UI.
+     * @param style The {@link GuiTaskStyle} of this instance.
+     * @param deduplicate If true, the identical asset files will be deduplicated by the {@link ModelAssetStore}.
+     */
+    public StreamModelsTask(StackPane parent, GuiTaskStyle style, boolean deduplicate) {
+        super(parent, style);
+        this.deduplicate = deduplicate;
+    }
+
+    @Override
+    protected String getHeader() {
+        return "正在下载模型资源文件...";
+    }
+
+    @Override
+    protected Task<Boolean> getTask() {
+        return new Task<>() {
+            @Override
+            protected Boolean call() throws Exception {
+                this.updateMessage("正在选择最佳线路");
+                Logger.info("Network", "Testing real delay");
+                // The archive is large, so the throughput of the sources is also considered
+                GitHubSource.sortByOverallAvailability(NetUtils.ghSources,
+                        source -> ((GitHubSource)source).archivePreUrl + PathConfig.urlModelsZip);
+                selectedSource = (GitHubSource)NetUtils.ghSources.get(0);
+                Logger.info("Network", "Selected the most available " + selectedSource);
+                String remotePath = selectedSource.archivePreUrl + PathConfig.urlModelsZip;
+
+                File staging = new File(PathConfig.tempModelsStagingDirPath);
+                File trash = new File(PathConfig.tempModelsTrashDirPath);
+                IOUtils.FileUtil.delete(staging, false);
+                IOUtils.FileUtil.delete(trash, false);
+
+                Logger.info("Network", "Streaming " + remotePath + " to " + staging);
+                this.updateMessage("正在尝试与 " + selectedSource.tag + " 建立连接");
+                long start = System.currentTimeMillis();
+                NetUtils.BufferLog log = new NetUtils.BufferLog(httpBufferSizeDefault);
+                long[] received = {0};
+                boolean[] transferFailed = {true}; // Whether a failure is caused by the transfer rather than the disk
+                long unzipped;
+                HttpURLConnection connection = null;
+                try {
+                    connection = NetUtils.ConnectionUtil.createConnection(new URL(remotePath),
+                            httpTimeoutDefault,
+                            httpTimeoutDefault,
+                            isHttpsTrustAll);
+                    long max = connection.getContentLengthLong();
+                    try (InputStream is = new BufferedInputStream(connection.getInputStream(), httpBufferSizeDefault)) {
+                        transferFailed[0] = false;
+                        InputStream counting = new FilterInputStream(is) {
+                            @Override
+                            public int read(byte[] b, int off, int len) throws IOException {
+                                int n;
+                                try {
+                                    n = super.read(b, off, len);
+                                } catch (IOException e) {
+                                    transferFailed[0] = true;
+                                    throw e;
+                                }
+                                if (n > 0) {
+                                    received[0] += n;
+                                    log.receive();
+                                }
+                                return n;
+                            }
+                        };
+                        unzipped = IOUtils.ZipUtil.unzip(counting, staging.getPath(), () -> {
+                            long speed = log.getSpeedPerSecond(500);
+                            this.updateMessage("当前已下载：" + NetUtils.getFormattedSizeString(received[0]) +
+                                    (speed != 0 ? " (" + NetUtils.getFormattedSizeString(speed) + "/s)" : ""));
+                            this.updateProgress(received[0], max);
+                            return this.isCancelled();
+                        });
+                    }
+                    // The unzipping has required the central directory, and the declared length is checked if known
+                    if (unzipped >= 0 && max >= 0 && received[0] != max)
+                        throw new EOFException("Received " + received[0] + " bytes, but " + max + " bytes were expected");
+                } catch (IOException e) {
+                    // Only a failed transfer or a broken archive is regarded as the error of the source,
+                    // rather than a cancellation or a local disk error
+                    if (!this.isCancelled() && (transferFailed[0] || e instanceof ZipException || e instanceof EOFException))
+                        selectedSource.receiveError();
+                    throw e;
+                } finally {
+                    if (connection != null)
+                        connection.disconnect();
+                }
+                if (unzipped < 0) {
+                    this.updateMessage("下载进程已被取消");
+                    IOUtils.FileUtil.delete(staging, true);
+                    return false;
+                }
+                long transferTime = System.currentTimeMillis() - start;
+
+                // Replace the local models by the staged ones, where the dataset is replaced at last
+                this.updateMessage("正在应用模型更新");
+                File[] roots = staging.listFiles(File::isDirectory);
+                if (roots == null || roots.length != 1)
+                    throw new FileNotFoundException("The root directory of the models archive not found.");
+                File datasetFile = new File(roots[0], PathConfig.fileModelsDataPath);
+                if (!datasetFile.isFile())
+                    throw new FileNotFoundException("The file " + PathConfig.fileModelsDataPath + " not found.");
+                ArrayList<StagedSwap.Entry> entries = new ArrayList<>();
+                File[] dirs = roots[0].listFiles(File::isDirectory);
+                if (dirs != null)
+                    for (File dir : dirs)
+                        entries.add(new StagedSwap.Entry(dir.toPath(), new File(dir.getName()).toPath()));
+                entries.add(new StagedSwap.Entry(datasetFile.toPath(), new File(PathConfig.fileModelsDataPath).toPath()));
+                StagedSwap.apply(entries, trash);
+                IOUtils.FileUtil.delete(staging, true);
+                IOUtils.FileUtil.delete(trash, true);
+                Logger.info("Task", "Streamed " + received[0] + " bytes and wrote " + unzipped + " bytes in " +
+                        transferTime + "ms, applied in " + (System.currentTimeMillis() - start - transferTime) +
+                        "ms (skipped writing and reading a " + received[0] + " bytes archive)");
+
+                if (deduplicate) {
+                    this.updateMessage("正在整理重复的模型文件");
+                    try {
+                        ModelsDataset dataset = ModelsDataset.fromFile(new File(PathConfig.fileModelsDataPath), new File(PathConfig.fileModelsSnapshotPath));
+                        ModelAssetStore.deduplicateFiles(dataset.storageDirectory.values());
+                    } catch (IOException | RuntimeException e) {
+                        // The deduplication is optional, so its failure should not fail the task
+                        Logger.warn("Task", "The model files cannot be deduplicated, because " + e);
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    @Override
+    protected void onFailed(Throwable e) {
+        if (style != GuiTaskStyle.HIDDEN)
+            GuiPrefabs.Dialogs.createErrorDialog(parent, e).show();
+    }
+}
@@ -0,0 +1,291 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.guitasks;
+
+import cn.harryh.arkpets.assets.ModelItem;
+import cn.harryh.arkpets.assets.ModelsDataset;
+import cn.harryh.arkpets.assets.ModelsDatasetDiff;
+import cn.harryh.arkpets.utils.GuiPrefabs;
+import cn.harryh.arkpets.utils.IOUtils;
+import cn.harryh.arkpets.utils.Logger;
+import cn.harryh.arkpets.utils.NetUtils;
+import cn.harryh.arkpets.utils.NetUtils.GitHubSource;
+import com.alibaba.fastjson.JSONObject;
+import javafx.concurrent.Task;
+import javafx.scene.layout.StackPane;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static cn.harryh.arkpets.Const.*;
+
+
+/** The task that updates the local models incrementally.
+ * <hr>
+ * The task fetches the remote dataset, diffs it with the local dataset per model, and then fetches only the files of
+ * the added or changed models into a staging directory. Nothing local is touched until all the files are fetched.
+ * Since the dataset records no checksum of the files, the content changed under the same file names cannot be detected,
+ * so this task is not a full replacement of re-downloading (see {@link ModelsDatasetDiff}).
+ * All the paths provided by the remote dataset are resolved within their root directories before use.
+ * Then the staged models replace the old ones, the removed models are deleted, and the dataset is replaced at last.
+ * If any step of the replacement fails, the replaced models will be rolled back (see {@link StagedSwap}).
+ * @since ArkPets 3.7
+ */
+public class SyncModelsTask extends GuiTask {
+    private static final int fetchThreads = 4;
+
+    protected final String remoteRoot;
+    protected GitHubSource selectedSource;
+    protected SyncReport report;
+
+    /** Initializes a task that syncs the models from the most available GitHub source.
+     * @param parent The parent node of the UI.
+     * @param style The {@link GuiTaskStyle} of this instance.
+     */
+    public SyncModelsTask(StackPane parent, GuiTaskStyle style) {
+        this(parent, style, null);
+    }
+
+    /** Initializes a task that syncs the models from the given remote root.
+     * @param parent The parent node of the UI.
+     * @param style The {@link GuiTaskStyle} of this instance.
+     * @param remoteRoot The URL of the remote models repository root ended with a slash,
+     *                   or {@code null} to use the most available GitHub source.
+     */
+    public SyncModelsTask(StackPane parent, GuiTaskStyle style, String remoteRoot) {
+        super(parent, style);
+        this.remoteRoot = remoteRoot;
+    }
+
+    @Override
+    protected String getHeader() {
+        return "正在增量更新模型...";
+    }
+
+    @Override
+    protected String getInitialContent() {
+        return "正在比较模型库版本";
+    }
+
+    @Override
+    protected Task<Boolean> getTask() {
+        return new Task<>() {
+            @Override
+            protected Boolean call() throws Exception {
+                String root = remoteRoot;
+                if (root == null) {
+                    this.updateMessage("正在选择最佳线路");
+                    GitHubSource.sortByOverallAvailability(NetUtils.ghSources);
+                    selectedSource = (GitHubSource)NetUtils.ghSources.get(0);
+                    Logger.info("Network", "Selected the most available " + selectedSource);
+                    root = selectedSource.rawPreUrl + PathConfig.urlModelsRoot;
+                }
+                report = sync(Path.of(""), root, this::updateMessage, (done, total) -> this.updateProgress(done, total),
+                        this::isCancelled);
+                return report != null;
+            }
+        };
+    }
+
+    /** Syncs the models in the given working directory from the given remote root.
+     * @param workRoot The working directory which the paths of the dataset and the models are relative to.
+     * @param root The URL of the remote models repository root ended with a slash.
+     * @param message The callback receiving the status message.
+     * @param progress The callback receiving the count of the fetched files and the total count.
+     * @param cancelled The supplier telling whether the sync should be stopped.
+     * @return The report of the sync, or {@code null} if stopped before anything local was changed.
+     * @throws IOException If I/O error occurs.
+     * @throws InterruptedException If interrupted while fetching.
+     */
+    SyncReport sync(Path workRoot, String root, Consumer<String> message, BiConsumer<Long, Long> progress,
+                    BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        File staging = workRoot.resolve(PathConfig.tempModelsSyncDirPath).toFile();
+        File trash = workRoot.resolve(PathConfig.tempModelsTrashDirPath).toFile();
+        IOUtils.FileUtil.delete(staging, false);
+        IOUtils.FileUtil.delete(trash, false);
+        Files.createDirectories(staging.toPath());
+
+        // 1.Fetch the remote dataset and diff it with the local one
+        File newDatasetFile = new File(staging, PathConfig.fileModelsDataPath);
+        AtomicLong fetchedBytes = new AtomicLong(fetch(root + PathConfig.fileModelsDataPath, newDatasetFile));
+        ModelsDataset oldDataset = ModelsDataset.fromFile(workRoot.resolve(PathConfig.fileModelsDataPath).toFile(),
+                workRoot.resolve(PathConfig.fileModelsSnapshotPath).toFile());
+        ModelsDataset newDataset = new ModelsDataset(JSONObject.parseObject(
+                IOUtils.FileUtil.readString(newDatasetFile, charsetDefault)));
+        ModelsDatasetDiff diff = ModelsDatasetDiff.of(oldDataset, newDataset, workRoot);
+        Logger.info("Sync", "Dataset diff: " + diff);
+
+        // 2.Fetch the files of the added and changed models into the staging directory
+        // The paths come from the remote dataset, so none of them may escape from its root directory
+        Path stagingRoot = staging.toPath().toAbsolutePath().normalize();
+        ArrayList<String[]> files = new ArrayList<>();
+        for (ModelItem item : diff.getToFetch()) {
+            Path stagedDir = StagedSwap.resolveWithin(stagingRoot, item.assetDir.getPath());
+            for (String fileName : item.getAccessor().getAllFiles()) {
+                Path stagedFile = StagedSwap.resolveWithin(stagedDir, fileName);
+                files.add(new String[] {toRemotePath(stagingRoot.relativize(stagedFile)), stagedFile.toString()});
+            }
+        }
+        long fetchStart = System.currentTimeMillis();
+        if (!fetchAll(root, files, fetchedBytes, message, progress, cancelled))
+            return null;
+        long fetchTime = System.currentTimeMillis() - fetchStart;
+
+        // 3.Apply the staged models
+        message.accept("正在应用模型更新");
+        apply(workRoot, diff, staging, trash, newDatasetFile);
+        IOUtils.FileUtil.delete(staging, true);
+        IOUtils.FileUtil.delete(trash, true);
+
+        long savedBytes = 0;
+        for (ModelItem item : diff.unchanged)
+            for (String fileName : item.getAccessor().getAllFiles())
+                savedBytes += workRoot.resolve(item.assetDir.getPath()).resolve(fileName).toFile().length();
+        SyncReport result = new SyncReport(diff, fetchedBytes.get(), savedBytes, fetchTime,
+                System.currentTimeMillis() - start);
+        Logger.info("Sync", "Synced models: " + result);
+        return result;
+    }
+
+    private boolean fetchAll(String root, ArrayList<String[]> files, AtomicLong fetchedBytes, Consumer<String> message,
+                             BiConsumer<Long, Long> progress, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(fetchThreads, r -> {
+            Thread thread = new Thread(r, "ModelSync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Long> service = new ExecutorCompletionService<>(executor);
+        try {
+            for (String[] file : files)
+                service.submit(() -> {
+                    File dest = new File(file[1]);
+                    Files.createDirectories(dest.getParentFile().toPath());
+                    return fetch(root + file[0], dest);
+                });
+            int done = 0;
+            while (done < files.size()) {
+                if (cancelled.getAsBoolean()) {
+                    message.accept("更新进程已被取消");
+                    return false;
+                }
+                Future<Long> future = service.poll(100, TimeUnit.MILLISECONDS);
+                if (future == null)
+                    continue;
+                try {
+                    fetchedBytes.addAndGet(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException ex ? ex : new IOException(e.getCause());
+                }
+                done++;
+                message.accept("当前已下载：" + NetUtils.getFormattedSizeString(fetchedBytes.get()) +
+                        "（" + done + " / " + files.size() + " 个文件）");
+                progress.accept((long)done, (long)files.size());
+            }
+            return true;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Fetches a remote file.
+     * @param url The URL of the remote file.
+     * @param dest The destination file.
+     * @return The count of the fetched bytes.
+     * @throws IOException If I/O error occurs.
+     */
+    protected long fetch(String url, File dest)
+            throws IOException {
+        HttpURLConnection connection = NetUtils.ConnectionUtil.createConnection(new URL(url),
+                httpTimeoutDefault,
+                httpTimeoutDefault,
+                isHttpsTrustAll);
+        try (InputStream is = connection.getInputStream();
+             OutputStream os = Files.newOutputStream(dest.toPath())) {
+            return is.transferTo(os);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void apply(Path workRoot, ModelsDatasetDiff diff, File staging, File trash, File newDatasetFile)
+            throws IOException {
+        ArrayList<StagedSwap.Entry> entries = new ArrayList<>();
+        for (ModelItem item : diff.getToFetch())
+            entries.add(new StagedSwap.Entry(StagedSwap.resolveWithin(staging.toPath(), item.assetDir.getPath()),
+                    StagedSwap.resolveWithin(workRoot, item.assetDir.getPath())));
+        for (ModelItem item : diff.removed)
+            entries.add(new StagedSwap.Entry(null, StagedSwap.resolveWithin(workRoot, item.assetDir.getPath())));
+        // The dataset is replaced at last
+        entries.add(new StagedSwap.Entry(newDatasetFile.toPath(), workRoot.resolve(PathConfig.fileModelsDataPath)));
+        StagedSwap.apply(entries, trash);
+    }
+
+    private static String toRemotePath(Path relativePath) {
+        ArrayList<String> segments = new ArrayList<>();
+        for (Path name : relativePath)
+            segments.add(URLEncoder.encode(name.toString(), StandardCharsets.UTF_8).replace("+", "%20"));
+        return String.join("/", segments);
+    }
+
+    @Override
+    protected void onFailed(Throwable e) {
+        if (style != GuiTaskStyle.HIDDEN)
+            GuiPrefabs.Dialogs.createErrorDialog(parent, e).show();
+        if (selectedSource != null)
+            selectedSource.receiveError();
+    }
+
+    @Override
+    protected void onSucceeded(boolean result) {
+        if (result && report != null && style != GuiTaskStyle.HIDDEN)
+            GuiPrefabs.Dialogs.createCommonDialog(parent,
+                    GuiPrefabs.Icons.getIcon(GuiPrefabs.Icons.SVG_SUCCESS_ALT, GuiPrefabs.COLOR_SUCCESS),
+                    "增量更新模型",
+                    "模型库已更新。",
+                    "下载了 " + NetUtils.getFormattedSizeString(report.fetchedBytes) + "，节省了约 " +
+                            NetUtils.getFormattedSizeString(report.savedBytes) + " 的下载流量。" +
+                            "增量更新无法发现同名文件的内容变化，如果模型显示异常，请 [重新下载] 模型。",
+                    report.toString()).show();
+    }
+
+
+    /** The report of a sync.
+     * @param diff The difference of the datasets.
+     * @param fetchedBytes The bytes fetched.
+     * @param savedBytes The bytes of the unchanged models, which did not need to be fetched.
+     * @param fetchTime The time spent in fetching the model files (ms).
+     * @param totalTime The total time spent (ms).
+     */
+    public record SyncReport(ModelsDatasetDiff diff, long fetchedBytes, long savedBytes, long fetchTime, long totalTime) {
+        /** Estimates the time saved by not fetching the unchanged models, according to the measured throughput.
+         * @return The estimated time (ms), or {@code -1} if the throughput is unknown.
+         */
+        public long getEstimatedSavedTime() {
+            if (fetchTime <= 0 || fetchedBytes <= 0)
+                return -1;
+            return (long)((double)savedBytes / fetchedBytes * fetchTime);
+        }
+
+        @Override
+        public String toString() {
+            return "Models: " + diff + "\nFetched: " + fetchedBytes + " bytes in " + fetchTime + " ms" +
+                    "\nSaved: " + savedBytes + " bytes, about " + getEstimatedSavedTime() + " ms" +
+                    "\nTotal time: " + totalTime + " ms";
+        }
+    }
+}
@@ -26,8 +26,17 @@ abstract public class UnzipTask extends GuiTask {
             @Override
             protected Boolean call() throws Exception {
                 Logger.info("Unzip", "Unzipping " + zipPath + " to " + destPath);
-                IOUtils.ZipUtil.unzip(zipPath, destPath, true);
-                Logger.info("Unzip", "Unzipped to " + destPath + " , finished");
+                long start = System.currentTimeMillis();
+                int threads = Runtime.getRuntime().availableProcessors();
+                boolean finished = IOUtils.ZipUtil.unzip(zipPath, destPath, true, threads,
+                        (done, total) -> this.updateProgress(done, total),
+                        this::isCancelled);
+                if (!finished) {
+                    Logger.info("Unzip", "Unzipping was cancelled");
+                    return false;
+                }
+                Logger.info("Unzip", "Unzipped to " + destPath + " with " + threads + " threads in " +
+                        (System.currentTimeMillis() - start) + "ms, finished");
                 return this.isDone() && !this.isCancelled();
             }
         };
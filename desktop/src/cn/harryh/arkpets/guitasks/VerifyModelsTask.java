@@ -5,6 +5,7 @@ package cn.harryh.arkpets.guitasks;
 
 import cn.harryh.arkpets.assets.ModelItem;
 import cn.harryh.arkpets.assets.ModelItemGroup;
+import cn.harryh.arkpets.assets.ModelVerifier;
 import cn.harryh.arkpets.assets.ModelsDataset;
 import cn.harryh.arkpets.utils.GuiPrefabs;
 import cn.harryh.arkpets.utils.Logger;
@@ -12,6 +13,11 @@ import javafx.concurrent.Task;
 import javafx.scene.Node;
 import javafx.scene.layout.StackPane;
 
+import java.io.File;
+import java.util.List;
+
+import static cn.harryh.arkpets.Const.PathConfig;
+
 
 public class VerifyModelsTask extends GuiTask {
     protected final ModelsDataset modelsDataset;
@@ -38,42 +44,48 @@ public class VerifyModelsTask extends GuiTask {
     protected Task<Boolean> getTask() {
         return new Task<>() {
             @Override
-            protected Boolean call() {
+            protected Boolean call() throws InterruptedException {
                 ModelItemGroup validModelAssets = modelsDataset.data.filter(ModelItem::isValid);
-                int currentProgress = 0;
-                int totalProgress = validModelAssets.size();
+                ModelVerifier verifier = new ModelVerifier(new File(PathConfig.fileModelsVerifyCachePath));
+                List<ModelVerifier.Problem> problems = verifier.verify(validModelAssets, this::updateProgress, this::isCancelled);
+                verifier.save();
 
-                boolean flag = false;
-                for (ModelItem item : validModelAssets) {
-                    this.updateProgress(currentProgress++, totalProgress);
-                    if (this.isCancelled()) {
-                        // Cancelled:
-                        Logger.info("Checker", "Model repo check was cancelled in verification stage.");
-                        return false;
-                    } else if (!item.isChecked()) {
-                        if (!item.isExisted()) {
+                if (problems == null) {
+                    // Cancelled:
+                    Logger.info("Checker", "Model repo check was cancelled in verification stage.");
+                    return false;
+                } else if (!problems.isEmpty()) {
+                    ModelVerifier.Problem problem = problems.get(0);
+                    String more = problems.size() > 1 ? "（共 " + problems.size() + " 个资源存在问题）" : "";
+                    dialogGraphic[0] = GuiPrefabs.Icons.getIcon(GuiPrefabs.Icons.SVG_WARNING_ALT, GuiPrefabs.COLOR_WARNING);
+                    dialogHeader[0] = "已发现问题，模型资源可能不完整";
+                    switch (problem.type()) {
+                        case DIR_MISSING -> {
                             // Dir missing:
                             Logger.info("Checker", "Model repo check finished (dir not integral)");
-                            dialogGraphic[0] = GuiPrefabs.Icons.getIcon(GuiPrefabs.Icons.SVG_WARNING_ALT, GuiPrefabs.COLOR_WARNING);
-                            dialogHeader[0] = "已发现问题，模型资源可能不完整";
-                            dialogContent[0] = "资源 " + item.assetDir + " 不存在。重新下载模型文件可能解决此问题。";
-                        } else {
-                            // Dir existing but file missing
+                            dialogContent[0] = "资源 " + problem.item().assetDir + " 不存在" + more + "。重新下载模型文件可能解决此问题。";
+                        }
+                        case FILE_MISSING -> {
+                            // Dir existing but file missing:
                             Logger.info("Checker", "Model repo check finished (file not integral)");
-                            dialogGraphic[0] = GuiPrefabs.Icons.getIcon(GuiPrefabs.Icons.SVG_WARNING_ALT, GuiPrefabs.COLOR_WARNING);
-                            dialogHeader[0] = "已发现问题，模型资源可能不完整";
-                            dialogContent[0] = "资源 " + item.assetDir + " 缺少部分文件。重新下载模型文件可能解决此问题。";
+                            dialogContent[0] = "资源 " + problem.item().assetDir + " 缺少部分文件" + more + "。重新下载模型文件可能解决此问题。";
+                        }
+                        case FILE_BROKEN -> {
+                            // File existing but broken:
+                            Logger.info("Checker", "Model repo check finished (file broken)");
+                            dialogContent[0] = "资源 " + problem.item().assetDir + " 的文件 " + problem.fileName() + " 已损坏" + more + "。重新下载模型文件可能解决此问题。";
+                        }
+                        case VERIFY_FAILED -> {
+                            // Failed to verify:
+                            Logger.info("Checker", "Model repo check finished (verification failed)");
+                            dialogContent[0] = "资源 " + problem.item().assetDir + " 无法被验证" + more + "。请检查文件的访问权限，或重新下载模型文件。";
                         }
-                        flag = true;
-                        break;
                     }
-                }
-
-                if (!flag) {
+                } else {
                     Logger.info("Checker", "Model repo check finished (okay)");
                     dialogGraphic[0] = GuiPrefabs.Icons.getIcon(GuiPrefabs.Icons.SVG_SUCCESS_ALT, GuiPrefabs.COLOR_SUCCESS);
                     dialogHeader[0] = "模型资源是完整的。";
-                    dialogContent[0] = "这只能说明本地的模型资源是完整的，但不一定是最新的。";
+                    dialogContent[0] = "所有模型文件均存在且非空。这只能说明本地的模型资源是完整的，但不一定是最新的。";
                 }
                 return true;
             }
@@ -6,10 +6,12 @@ package cn.harryh.arkpets.guitasks;
 import cn.harryh.arkpets.utils.GuiPrefabs;
 import cn.harryh.arkpets.utils.IOUtils;
 import cn.harryh.arkpets.utils.Logger;
+import cn.harryh.arkpets.utils.NetUtils;
 import javafx.concurrent.Task;
 import javafx.scene.layout.StackPane;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
@@ -19,11 +21,42 @@ import java.util.stream.Collectors;
 public class ZipTask extends GuiTask {
     protected final String zipPath;
     protected final Map<String, String> contents;
+    protected final boolean storeCompressed;
+    protected final FileFilter filter;
 
     public ZipTask(StackPane parent, GuiTaskStyle style, String zipPath, Map<String, String> contents) {
+        this(parent, style, zipPath, contents, false);
+    }
+
+    /** Initializes a task that zips the given contents.
+     * @param parent The parent node of the UI.
+     * @param style The {@link GuiTaskStyle} of this instance.
+     * @param zipPath The path of the zip file.
+     * @param contents The map whose keys are the source paths and whose values are the zipped paths.
+     * @param storeCompressed If true, the already-compressed files (e.g. PNGs) will be stored without deflating.
+     * @since ArkPets 3.7
+     */
+    public ZipTask(StackPane parent, GuiTaskStyle style, String zipPath, Map<String, String> contents,
+                   boolean storeCompressed) {
+        this(parent, style, zipPath, contents, storeCompressed, file -> true);
+    }
+
+    /** Initializes a task that zips the accepted files of the given contents.
+     * @param parent The parent node of the UI.
+     * @param style The {@link GuiTaskStyle} of this instance.
+     * @param zipPath The path of the zip file.
+     * @param contents The map whose keys are the source paths and whose values are the zipped paths.
+     * @param storeCompressed If true, the already-compressed files (e.g. PNGs) will be stored without deflating.
+     * @param filter The filter telling whether a source file should be zipped.
+     * @since ArkPets 3.7
+     */
+    public ZipTask(StackPane parent, GuiTaskStyle style, String zipPath, Map<String, String> contents,
+                   boolean storeCompressed, FileFilter filter) {
         super(parent, style);
         this.zipPath = zipPath;
         this.contents = contents;
+        this.storeCompressed = storeCompressed;
+        this.filter = filter;
     }
 
     public ZipTask(StackPane parent, GuiTaskStyle style, String zipPath, List<String> contents) {
@@ -34,6 +67,8 @@ public class ZipTask extends GuiTask {
                         path -> path,
                         path -> Paths.get(path).getFileName().toString()
                 ));
+        this.storeCompressed = false;
+        this.filter = file -> true;
     }
 
     @Override
@@ -53,8 +88,25 @@ public class ZipTask extends GuiTask {
             protected Boolean call() throws Exception {
                 Logger.info("Zip", "Zipping " + contents.size() + " entries into " + zipPath);
                 IOUtils.FileUtil.delete(new File(zipPath), false);
-                IOUtils.ZipUtil.zip(zipPath, contents, false);
-                Logger.info("Zip", "Zipped into " + zipPath + " , finished");
+                long start = System.currentTimeMillis();
+                int threads = Runtime.getRuntime().availableProcessors();
+                boolean finished = IOUtils.ZipUtil.zip(zipPath, contents, false, threads, storeCompressed, filter,
+                        (done, total) -> {
+                            long elapsed = System.currentTimeMillis() - start;
+                            long speed = elapsed > 0 ? done * 1000 / elapsed : 0;
+                            this.updateMessage("当前已压缩：" + NetUtils.getFormattedSizeString(done) + " / " +
+                                    NetUtils.getFormattedSizeString(total) +
+                                    (speed != 0 ? " (" + NetUtils.getFormattedSizeString(speed) + "/s)" : ""));
+                            this.updateProgress(done, total);
+                        },
+                        this::isCancelled);
+                if (!finished) {
+                    Logger.info("Zip", "Zipping was cancelled");
+                    IOUtils.FileUtil.delete(new File(zipPath), false);
+                    return false;
+                }
+                Logger.info("Zip", "Zipped into " + zipPath + " with " + threads + " threads in " +
+                        (System.currentTimeMillis() - start) + "ms, finished");
                 return this.isDone() && !this.isCancelled();
             }
         };
@@ -3,22 +3,39 @@
  */
 package cn.harryh.arkpets.utils;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+
 import javax.net.ssl.*;
 import java.awt.Desktop;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static cn.harryh.arkpets.Const.PathConfig;
+import static cn.harryh.arkpets.Const.charsetDefault;
+import static cn.harryh.arkpets.Const.isHttpsTrustAll;
 
 
 public class NetUtils {
     private static final int k = 1024;
     private static final int delayTestPort = 443;
     private static final int delayUpThreshold = 1500;
+    private static final int throughputTestSize = 256 * k;
+    private static final long probeCacheTTL = 10 * 60 * 1000L;
+    private static final long errorHistoryTTL = 24 * 60 * 60 * 1000L;
     private static final DecimalFormat df = new DecimalFormat("0.0");
 
     public static final ArrayList<Source> ghSources;
@@ -105,6 +122,36 @@ public class NetUtils {
             return delayMillis;
         }
 
+        /** Tests the throughput of the given URL by downloading its beginning.
+         * @param url The URL to be tested.
+         * @param maxBytes The maximum bytes to download.
+         * @param timeoutMillis Timeout (ms).
+         * @return The throughput (byte/s). {@code -1} when connection failed or timeout.
+         * @since ArkPets 3.7
+         */
+        public static long testThroughput(String url, long maxBytes, int timeoutMillis) {
+            HttpURLConnection connection = null;
+            try {
+                connection = createConnection(new URL(url), timeoutMillis, timeoutMillis, isHttpsTrustAll,
+                        Map.of("Range", "bytes=0-" + (maxBytes - 1)));
+                long start = System.currentTimeMillis();
+                long received = 0;
+                byte[] bytes = new byte[16 * k];
+                try (InputStream is = connection.getInputStream()) {
+                    int len;
+                    while (received < maxBytes && System.currentTimeMillis() - start < timeoutMillis &&
+                            (len = is.read(bytes)) != -1)
+                        received += len;
+                }
+                return received * 1000 / Math.max(1, System.currentTimeMillis() - start);
+            } catch (IOException e) {
+                return -1;
+            } finally {
+                if (connection != null)
+                    connection.disconnect();
+            }
+        }
+
         /** Creates an HTTPS connection of the given URL, and then try to connect it.
          * @param url The URL to connect.
          * @param connectTimeout The timeout of the connection (ms).
@@ -139,6 +186,56 @@ public class NetUtils {
             }
         }
 
+        /** Creates an HTTP or HTTPS connection of the given URL, and then try to connect it.
+         * @param url The URL to connect.
+         * @param connectTimeout The timeout of the connection (ms).
+         * @param readTimeout The timeout of the reading operation (ms).
+         * @param trustAll Whether to ignore SSL verification (unsafe), which only applies on HTTPS.
+         * @return The connection instance which has finished connecting.
+         * @throws IOException If I/O error occurs. Typically, when a timeout occurred or the response code wasn't like 2XX.
+         * @since ArkPets 3.7
+         */
+        public static HttpURLConnection createConnection(URL url, int connectTimeout, int readTimeout, boolean trustAll)
+                throws IOException {
+            return createConnection(url, connectTimeout, readTimeout, trustAll, Map.of());
+        }
+
+        /** Creates an HTTP or HTTPS connection of the given URL with the given request headers,
+         * and then try to connect it.
+         * @param url The URL to connect.
+         * @param connectTimeout The timeout of the connection (ms).
+         * @param readTimeout The timeout of the reading operation (ms).
+         * @param trustAll Whether to ignore SSL verification (unsafe), which only applies on HTTPS.
+         * @param headers The request headers, e.g. {@code Range}.
+         * @return The connection instance which has finished connecting.
+         * @throws IOException If I/O error occurs. Typically, when a timeout occurred or the response code wasn't like 2XX.
+         * @since ArkPets 3.7
+         */
+        public static HttpURLConnection createConnection(URL url, int connectTimeout, int readTimeout, boolean trustAll,
+                                                         Map<String, String> headers)
+                throws IOException {
+            HttpURLConnection connection = null;
+            try {
+                connection = (HttpURLConnection)url.openConnection();
+                if (trustAll && connection instanceof HttpsURLConnection https) {
+                    https.setSSLSocketFactory(getTrustAnySSLSocketFactory());
+                    https.setHostnameVerifier(getTrustAnyHostnameVerifier());
+                }
+                connection.setConnectTimeout(connectTimeout);
+                connection.setReadTimeout(readTimeout);
+                headers.forEach(connection::setRequestProperty);
+                connection.connect();
+                HttpResponseCode responseCode = new HttpResponseCode(connection);
+                if (responseCode.type != HttpResponseCodeType.SUCCESS)
+                    throw new HttpResponseCodeException(responseCode);
+                return connection;
+            } catch (IOException e) {
+                if (connection != null)
+                    connection.disconnect();
+                throw e;
+            }
+        }
+
         /** Gets Socket Factory which trusts all.
          * @return SocketFactory instance.
          */
@@ -302,16 +399,32 @@ public class NetUtils {
     public static class Source {
         public final String tag;
         public final String preUrl;
-        public int delay = -1;
-        public long lastErrorTime = -1;
+        public volatile int delay = -1;
+        public volatile long lastErrorTime = -1;
+        /** The download speed measured by the throughput probe (byte/s), {@code -1} if unknown.
+         * @since ArkPets 3.7 */
+        public volatile long throughput = -1;
+        /** The timestamp of the last delay probe, {@code -1} if never probed.
+         * @since ArkPets 3.7 */
+        public volatile long lastProbeTime = -1;
+        /** The timestamp of the last throughput probe, {@code -1} if never probed.
+         * @since ArkPets 3.7 */
+        public volatile long lastThroughputTime = -1;
 
         public Source(String tag, String preUrl) {
             this.tag= tag;
             this.preUrl = preUrl;
+            ProbeCache.restore(this);
         }
 
         public void receiveError() {
             lastErrorTime = System.currentTimeMillis();
+            // The cached probe results are no longer trusted
+            lastProbeTime = -1;
+            lastThroughputTime = -1;
+            ProbeCache.update(this);
+            // The error may be received on the JavaFX application thread, so the file is written in background
+            ProbeCache.saveLater();
             Logger.debug("Network", "Marked source \"" + tag + "\" as historical unavailable with timestamp " + lastErrorTime);
         }
 
@@ -321,35 +434,198 @@ public class NetUtils {
 
         public void testDelay(int port, int timeoutMillis) {
             delay = ConnectionUtil.testDelay(preUrl, port, timeoutMillis);
+            lastProbeTime = System.currentTimeMillis();
+            // The result is saved by the batch probing methods, or by the next save
+            ProbeCache.update(this);
             Logger.debug("Network", "Real delay for \"" + tag + "\" is " + delay + "ms");
         }
 
+        /** Tests the throughput of this source by downloading the beginning of the given URL.
+         * @param url The URL to download, which should be a large file of this source.
+         * @since ArkPets 3.7
+         */
+        public void testThroughput(String url) {
+            throughput = ConnectionUtil.testThroughput(url, throughputTestSize, delayUpThreshold * 2);
+            lastThroughputTime = System.currentTimeMillis();
+            ProbeCache.update(this);
+            Logger.debug("Network", "Throughput for \"" + tag + "\" is " + getFormattedSizeString(throughput) + "/s");
+        }
+
+        /** Returns true if the last delay probe is recent enough to be reused.
+         * @since ArkPets 3.7
+         */
+        public boolean isProbeFresh() {
+            return lastProbeTime >= 0 && System.currentTimeMillis() - lastProbeTime < probeCacheTTL;
+        }
+
+        /** Returns true if this source has received an error recently.
+         * @since ArkPets 3.7
+         */
+        public boolean hasRecentError() {
+            return lastErrorTime >= 0 && System.currentTimeMillis() - lastErrorTime < errorHistoryTTL;
+        }
+
+        /** Tests the delay of all the given sources concurrently, and waits for all of them.
+         * @param sources The sources to test.
+         */
         public static void testDelay(List<Source> sources) {
-            sources.forEach(Source::testDelay);
+            testDelay(sources, sources.size(), false);
         }
 
-        public static void sortByDelay(List<Source> sources) {
-            testDelay(sources);
-            sources.sort((o1, o2) -> {
-                if (o1.delay == o2.delay)
-                    return 0;
-                if (o1.delay < 0 && o2.delay >= 0)
-                    return 1;
-                if (o1.delay >= 0 && o2.delay < 0)
-                    return -1;
-                return (o1.delay > o2.delay) ? 1 : -1;
+        /** Tests the delay of the given sources concurrently, and returns as soon as enough sources responded.
+         * <hr>
+         * Since the probes start at the same time, the first responders are also the ones with the lowest delays.
+         * The probes which have not finished keep running in background, and their results will be cached.
+         * The probe cache is saved once when this method returns, and once more after the background probes finished.
+         * The sources probed within the TTL are not tested again, unless {@code force} is true.
+         * @param sources The sources to test.
+         * @param quorum The count of the responders without recent errors to wait for.
+         * @param force Whether to ignore the cached results.
+         * @since ArkPets 3.7
+         */
+        public static void testDelay(List<Source> sources, int quorum, boolean force) {
+            int responded = 0;
+            ArrayList<Source> toTest = new ArrayList<>();
+            for (Source source : sources) {
+                if (!force && source.isProbeFresh()) {
+                    if (source.delay >= 0 && !source.hasRecentError())
+                        responded++;
+                } else {
+                    toTest.add(source);
+                }
+            }
+            if (toTest.isEmpty() || responded >= quorum)
+                return;
+            // The stale results should not be used if the probes do not finish in time
+            toTest.forEach(source -> source.delay = -1);
+
+            ExecutorService executor = Executors.newFixedThreadPool(toTest.size(), r -> {
+                Thread thread = new Thread(r, "SourceProbe");
+                thread.setDaemon(true);
+                return thread;
+            });
+            CompletionService<Source> service = new ExecutorCompletionService<>(executor);
+            for (Source source : toTest)
+                service.submit(() -> {
+                    source.testDelay();
+                    return source;
+                });
+            executor.shutdown();
+            long deadline = System.currentTimeMillis() + delayUpThreshold * 2L;
+            try {
+                for (int i = 0; i < toTest.size() && responded < quorum; i++) {
+                    Future<Source> future = service.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    if (future == null)
+                        break;
+                    Source source = future.get();
+                    if (source.delay >= 0 && !source.hasRecentError())
+                        responded++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Logger.warn("Network", "Failed to test the delay: " + e.getCause());
+            }
+            ProbeCache.save();
+            if (!executor.isTerminated()) {
+                // Save the results of the background probes when they are finished
+                Thread saver = new Thread(() -> {
+                    try {
+                        if (executor.awaitTermination(delayUpThreshold * 2L, TimeUnit.MILLISECONDS))
+                            ProbeCache.save();
+                    } catch (InterruptedException ignored) {
+                    }
+                }, "SourceProbe");
+                saver.setDaemon(true);
+                saver.start();
+            }
+        }
+
+        /** Tests the throughput of the given sources which are available concurrently, and waits for all of them.
+         * The sources whose throughput was probed within the TTL are not tested again.
+         * @param sources The sources to test.
+         * @param urlGetter The function giving the URL to download of each source.
+         * @since ArkPets 3.7
+         */
+        public static void testThroughput(List<Source> sources, Function<Source, String> urlGetter) {
+            ArrayList<Source> toTest = new ArrayList<>();
+            for (Source source : sources)
+                if (source.delay >= 0 && (source.lastThroughputTime < 0 ||
+                        System.currentTimeMillis() - source.lastThroughputTime >= probeCacheTTL))
+                    toTest.add(source);
+            if (toTest.isEmpty())
+                return;
+            ExecutorService executor = Executors.newFixedThreadPool(toTest.size(), r -> {
+                Thread thread = new Thread(r, "SourceProbe");
+                thread.setDaemon(true);
+                return thread;
             });
+            for (Source source : toTest)
+                executor.execute(() -> source.testThroughput(urlGetter.apply(source)));
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(delayUpThreshold * 3L, TimeUnit.MILLISECONDS))
+                    Logger.warn("Network", "Throughput test timeout");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ProbeCache.save();
+        }
+
+        public static void sortByDelay(List<Source> sources) {
+            testDelay(sources, 1, false);
+            // Sort by a snapshot, since the background probes may still update the sources
+            HashMap<Source, Integer> delays = new HashMap<>();
+            sources.forEach(source -> delays.put(source, source.delay));
+            sources.sort((o1, o2) -> compareDelay(delays.get(o1), delays.get(o2)));
         }
 
         public static void sortByOverallAvailability(List<Source> sources) {
-            sortByDelay(sources);
+            sortByOverallAvailability(sources, null);
+        }
+
+        /** Sorts the sources by their overall availability, the most available first.
+         * <hr>
+         * The responded sources come first, and then the ones without recent errors, the ones with higher throughput
+         * if the throughput is probed, and finally the ones with lower delays.
+         * @param sources The sources to sort.
+         * @param throughputUrlGetter The function giving the URL to download of each source for the throughput probe,
+         *                            or {@code null} to skip the throughput probe.
+         * @since ArkPets 3.7
+         */
+        public static void sortByOverallAvailability(List<Source> sources, Function<Source, String> throughputUrlGetter) {
+            testDelay(sources, 1, false);
+            if (throughputUrlGetter != null)
+                testThroughput(sources, throughputUrlGetter);
+            // Sort by a snapshot, since the background probes may still update the sources
+            HashMap<Source, long[]> snapshot = new HashMap<>();
+            for (Source source : sources)
+                snapshot.put(source, new long[] {source.delay,
+                        source.hasRecentError() ? source.lastErrorTime : -1,
+                        throughputUrlGetter != null ? source.throughput : -1});
             sources.sort((o1, o2) -> {
-                if (o1.lastErrorTime != o2.lastErrorTime)
-                    return (o1.lastErrorTime > o2.lastErrorTime) ? 1 : -1;
-                return 0;
+                long[] s1 = snapshot.get(o1);
+                long[] s2 = snapshot.get(o2);
+                if ((s1[0] >= 0) != (s2[0] >= 0))
+                    return s1[0] >= 0 ? -1 : 1;
+                if (s1[1] != s2[1])
+                    return Long.compare(s1[1], s2[1]);
+                if (s1[2] != s2[2])
+                    return Long.compare(s2[2], s1[2]);
+                return compareDelay((int)s1[0], (int)s2[0]);
             });
         }
 
+        private static int compareDelay(int d1, int d2) {
+            if (d1 == d2)
+                return 0;
+            if (d1 < 0 && d2 >= 0)
+                return 1;
+            if (d1 >= 0 && d2 < 0)
+                return -1;
+            return (d1 > d2) ? 1 : -1;
+        }
+
         @Override
         public String toString() {
             return getClass().getSimpleName() + " \"" + tag + "\" (" + delay + "ms)";
@@ -357,6 +633,91 @@ public class NetUtils {
     }
 
 
+    /** The persisted probe results and error history of the sources, which are shared across the launcher runs.
+     * The results are updated in memory, and saved in a batch through a temporary file which replaces the file atomically.
+     * @since ArkPets 3.7
+     */
+    static class ProbeCache {
+        /** The file to save the cache to, which is not final only for testing. */
+        static File file = new File(PathConfig.fileSourcesProbeCachePath);
+        private static final HashMap<String, Record> records = load();
+        private static final ExecutorService saver = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ProbeCacheSaver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private static boolean dirty;
+
+        static synchronized void restore(Source source) {
+            Record record = records.get(source.preUrl);
+            if (record == null)
+                return;
+            source.delay = record.delay;
+            source.lastProbeTime = record.probeTime;
+            source.throughput = record.throughput;
+            source.lastThroughputTime = record.throughputTime;
+            source.lastErrorTime = record.errorTime;
+        }
+
+        static synchronized void update(Source source) {
+            Record record = new Record();
+            record.delay = source.delay;
+            record.probeTime = source.lastProbeTime;
+            record.throughput = source.throughput;
+            record.throughputTime = source.lastThroughputTime;
+            record.errorTime = source.lastErrorTime;
+            records.put(source.preUrl, record);
+            dirty = true;
+        }
+
+        static synchronized void save() {
+            if (!dirty)
+                return;
+            File temp = new File(file.getPath() + ".tmp");
+            try {
+                IOUtils.FileUtil.writeString(temp, charsetDefault, JSON.toJSONString(new TreeMap<>(records)), false);
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                dirty = false;
+            } catch (IOException e) {
+                Logger.warn("Network", "Failed to save the probe cache: " + e);
+            }
+        }
+
+        /** Saves the cache on a background thread, where the writes are done one by one in order.
+         * @return The future of the write.
+         */
+        static Future<?> saveLater() {
+            return saver.submit(ProbeCache::save);
+        }
+
+        private static HashMap<String, Record> load() {
+            if (file.isFile()) {
+                try {
+                    HashMap<String, Record> loaded = JSONObject.parseObject(
+                            IOUtils.FileUtil.readString(file, charsetDefault),
+                            new TypeReference<HashMap<String, Record>>() {});
+                    if (loaded != null) {
+                        loaded.values().removeIf(Objects::isNull);
+                        return loaded;
+                    }
+                } catch (Exception e) {
+                    Logger.warn("Network", "Failed to read the probe cache: " + e);
+                }
+            }
+            return new HashMap<>();
+        }
+
+
+        public static class Record {
+            public int delay = -1;
+            public long probeTime = -1;
+            public long throughput = -1;
+            public long throughputTime = -1;
+            public long errorTime = -1;
+        }
+    }
+
+
     public static class GitHubSource extends Source {
         public final String rawPreUrl;
         public final String archivePreUrl;
@@ -0,0 +1,546 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.annotation.JSONField;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static cn.harryh.arkpets.Const.*;
+
+
+/** The downloader that fetches a remote file through concurrent HTTP range requests, and resumes after failures.
+ * <hr>
+ * The downloader first requests the file with an open range. If the server answers a partial content whose
+ * total length is known, and the file is large enough, the file is split into segments which are downloaded
+ * concurrently into a part file. A segment whose connection drops is requested again from where it stopped.
+ * The progress of the segments is persisted beside the part file, so that a cancelled, failed or relaunched download
+ * resumes from where it stopped, as long as the remote file is unchanged (judged by its length and its
+ * {@code ETag} or {@code Last-Modified}). Otherwise, the file is downloaded through the first connection as a whole.
+ * If the remote file is found changed during a ranged download (the {@code If-Range} validator no longer matches),
+ * the download fails and its progress is dropped, since the downloaded segments cannot be mixed with the new file.
+ * <hr>
+ * Before the part file is moved to the destination, its length and its digest are verified. The expected digest
+ * is either given by {@link #setExpectedDigest(String, String)} or announced by the server through
+ * the {@code Content-MD5}, {@code Digest} or {@code Repr-Digest} header of the first response.
+ * @since ArkPets 3.7
+ */
+public class RangedDownloader {
+    private static final String partSuffix  = ".part";
+    private static final String stateSuffix = ".part.json";
+    private static final int saveInterval   = 1000;
+    private static final int retryDelay     = 500;
+    private static final int stopTimeout    = 2000;
+    private static final Pattern contentRangePattern = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+    private static final Pattern digestPattern = Pattern.compile("(?i)(sha-256|md5)=:?([A-Za-z0-9+/=]+):?");
+
+    protected final URL url;
+    protected final File dest;
+    protected final File part;
+    protected final File stateFile;
+    protected final boolean trustAll;
+    protected int maxSegments = httpSegmentCountMax;
+    protected long minSegmentSize = httpSegmentSizeMin;
+    protected String expectedAlgorithm;
+    protected String expectedDigest;
+
+    private final AtomicLong received = new AtomicLong();
+    private final Set<HttpURLConnection> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopped;
+    private long lastSampleTime;
+    private long lastSampleBytes;
+    private long speed;
+
+    /** Initializes a downloader.
+     * @param url The URL of the remote file.
+     * @param dest The destination file. The part file and the progress file will be placed beside it.
+     * @param trustAll Whether to ignore SSL verification (unsafe), which only applies on HTTPS.
+     */
+    public RangedDownloader(URL url, File dest, boolean trustAll) {
+        this.url = url;
+        this.dest = dest;
+        this.part = new File(dest.getPath() + partSuffix);
+        this.stateFile = new File(dest.getPath() + stateSuffix);
+        this.trustAll = trustAll;
+    }
+
+    /** Sets the segmentation of the ranged download.
+     * @param maxSegments The maximum count of the concurrent segments.
+     * @param minSegmentSize The minimum size of a segment (byte). A file smaller than twice of it is not segmented.
+     * @return This instance.
+     */
+    public RangedDownloader setSegments(int maxSegments, long minSegmentSize) {
+        this.maxSegments = Math.max(1, maxSegments);
+        this.minSegmentSize = Math.max(1, minSegmentSize);
+        return this;
+    }
+
+    /** Sets the expected digest of the file, which overrides the one announced by the server.
+     * @param algorithm The digest algorithm, e.g. {@code SHA-256} or {@code MD5}.
+     * @param hex The digest in hexadecimal.
+     * @return This instance.
+     */
+    public RangedDownloader setExpectedDigest(String algorithm, String hex) {
+        this.expectedAlgorithm = algorithm;
+        this.expectedDigest = hex;
+        return this;
+    }
+
+    /** Downloads the file.
+     * @param progress The callback receiving the downloaded bytes and the total bytes ({@code -1} if unknown),
+     *                 which will be invoked on the calling thread.
+     * @param cancelled The supplier telling whether the download should be stopped.
+     * @return {@code true} if finished, or {@code false} if stopped,
+     *         in which case the progress of a ranged download is kept for resuming.
+     * @throws IOException If I/O error occurs, or the downloaded file is not integral.
+     */
+    public boolean download(BiConsumer<Long, Long> progress, BooleanSupplier cancelled)
+            throws IOException {
+        received.set(0);
+        stopped = false;
+        lastSampleTime = System.currentTimeMillis();
+        lastSampleBytes = 0;
+        speed = 0;
+
+        HttpURLConnection connection = NetUtils.ConnectionUtil.createConnection(url,
+                httpTimeoutDefault,
+                httpTimeoutDefault,
+                trustAll,
+                Map.of("Range", "bytes=0-"));
+        long total;
+        try {
+            long[] range = parseContentRange(connection);
+            total = range != null && range[0] == 0 ? range[2] : -1;
+            String validator = getValidator(connection);
+            if (expectedDigest == null)
+                parseAnnouncedDigest(connection);
+
+            State state = total > 0 ? loadState(total, validator) : null;
+            int segments = total > 0 ? (int)Math.min(maxSegments, total / minSegmentSize) : 1;
+            if (state == null && segments > 1)
+                state = createState(total, validator, segments);
+            if (state != null) {
+                // The first connection is not used by the ranged download
+                connection.disconnect();
+                Logger.info("Network", "Downloading " + url + " in " + state.segments.size() + " segments, " +
+                        state.getDone() + " of " + total + " bytes already done");
+                if (!downloadSegments(state, progress, cancelled))
+                    return false;
+            } else {
+                Files.deleteIfExists(stateFile.toPath());
+                if (range == null)
+                    total = connection.getContentLengthLong();
+                if (!downloadWhole(connection, total, progress, cancelled))
+                    return false;
+            }
+        } finally {
+            connection.disconnect();
+        }
+
+        verify(total);
+        Files.move(part.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(stateFile.toPath());
+        progress.accept(dest.length(), dest.length());
+        Logger.info("Network", "Downloaded " + dest + ", " + received.get() + " bytes received in this run");
+        return true;
+    }
+
+    /** Gets the download speed of this run, sampled when the progress is reported.
+     * @return The speed (byte/s).
+     */
+    public long getSpeedPerSecond() {
+        return speed;
+    }
+
+    private boolean downloadWhole(HttpURLConnection connection, long total, BiConsumer<Long, Long> progress,
+                                  BooleanSupplier cancelled)
+            throws IOException {
+        try (InputStream is = new BufferedInputStream(connection.getInputStream(), httpBufferSizeDefault);
+             OutputStream os = new BufferedOutputStream(Files.newOutputStream(part.toPath()), httpBufferSizeDefault)) {
+            byte[] bytes = new byte[httpBufferSizeDefault];
+            int len;
+            while ((len = is.read(bytes)) != -1) {
+                os.write(bytes, 0, len);
+                received.addAndGet(len);
+                report(progress, received.get(), total);
+                if (cancelled.getAsBoolean())
+                    break;
+            }
+        }
+        if (cancelled.getAsBoolean()) {
+            // A non-ranged download cannot be resumed
+            Files.deleteIfExists(part.toPath());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean downloadSegments(State state, BiConsumer<Long, Long> progress, BooleanSupplier cancelled)
+            throws IOException {
+        ArrayList<Segment> unfinished = new ArrayList<>();
+        for (Segment segment : state.segments)
+            if (segment.done < segment.getLength())
+                unfinished.add(segment);
+        if (unfinished.isEmpty())
+            return true;
+
+        ExecutorService executor = Executors.newFixedThreadPool(unfinished.size(), r -> {
+            Thread thread = new Thread(r, "Downloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Void> service = new ExecutorCompletionService<>(executor);
+        long lastSave = System.currentTimeMillis();
+        try {
+            for (Segment segment : unfinished)
+                service.submit(() -> {
+                    fetchSegment(segment, state.validator);
+                    return null;
+                });
+            for (int i = 0; i < unfinished.size(); ) {
+                if (cancelled.getAsBoolean()) {
+                    stop(executor);
+                    saveState(state);
+                    return false;
+                }
+                Future<Void> future = service.poll(100, TimeUnit.MILLISECONDS);
+                report(progress, state.getDone(), state.length);
+                if (System.currentTimeMillis() - lastSave >= saveInterval) {
+                    saveState(state);
+                    lastSave = System.currentTimeMillis();
+                }
+                if (future == null)
+                    continue;
+                i++;
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    stop(executor);
+                    if (e.getCause() instanceof RemoteChangedException ex) {
+                        // The downloaded segments belong to the old remote file, so they should not be resumed
+                        Logger.warn("Network", "The remote file was changed, the download of " + dest + " is dropped");
+                        Files.deleteIfExists(stateFile.toPath());
+                        Files.deleteIfExists(part.toPath());
+                        throw ex;
+                    }
+                    saveState(state);
+                    throw e.getCause() instanceof IOException ex ? ex : new IOException(e.getCause());
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop(executor);
+            saveState(state);
+            throw new InterruptedIOException("Downloading was interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void fetchSegment(Segment segment, String validator)
+            throws IOException, InterruptedException {
+        byte[] bytes = new byte[httpBufferSizeDefault];
+        int failures = 0;
+        while (segment.done < segment.getLength() && !stopped) {
+            long from = segment.start + segment.done;
+            HashMap<String, String> headers = new HashMap<>();
+            headers.put("Range", "bytes=" + from + "-" + segment.end);
+            if (validator != null)
+                headers.put("If-Range", validator);
+            HttpURLConnection connection = null;
+            try {
+                connection = NetUtils.ConnectionUtil.createConnection(url,
+                        httpTimeoutDefault,
+                        httpTimeoutDefault,
+                        trustAll,
+                        headers);
+                connections.add(connection);
+                if (stopped)
+                    return;
+                long[] range = parseContentRange(connection);
+                // The server answers the whole file instead if the If-Range validator does not match
+                if (range == null || range[0] != from)
+                    throw new RemoteChangedException("The remote file was changed or the range request was ignored");
+                try (InputStream is = connection.getInputStream();
+                     RandomAccessFile raf = new RandomAccessFile(part, "rw")) {
+                    raf.seek(from);
+                    int len;
+                    while (!stopped && segment.done < segment.getLength() &&
+                            (len = is.read(bytes, 0, (int)Math.min(bytes.length, segment.getLength() - segment.done))) != -1) {
+                        raf.write(bytes, 0, len);
+                        // The progress is counted after the bytes were written
+                        segment.done += len;
+                        received.addAndGet(len);
+                        failures = 0;
+                    }
+                }
+                if (!stopped && segment.done < segment.getLength())
+                    throw new EOFException("The connection was closed before the segment ended");
+            } catch (IOException e) {
+                if (stopped)
+                    return;
+                if (e instanceof RemoteChangedException)
+                    throw e;
+                if (e instanceof NetUtils.HttpResponseCodeException ex && ex.getType() == NetUtils.HttpResponseCodeType.CLIENT_ERROR)
+                    throw e;
+                if (++failures > httpRetryCountMax)
+                    throw e;
+                Logger.warn("Network", "Segment " + segment.start + "-" + segment.end + " dropped at " + segment.done +
+                        ", retrying (" + failures + "/" + httpRetryCountMax + "): " + e);
+                Thread.sleep((long)retryDelay * failures);
+            } finally {
+                if (connection != null) {
+                    connections.remove(connection);
+                    connection.disconnect();
+                }
+            }
+        }
+    }
+
+    private void stop(ExecutorService executor) {
+        stopped = true;
+        // Close the open connections, so that the workers blocked in reading return at once
+        for (HttpURLConnection connection : connections)
+            connection.disconnect();
+        executor.shutdownNow();
+        try {
+            // Let the workers finish their current writes so that the saved progress stays valid
+            if (!executor.awaitTermination(stopTimeout, TimeUnit.MILLISECONDS))
+                Logger.warn("Network", "The download workers of " + dest + " did not stop in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void report(BiConsumer<Long, Long> progress, long done, long total) {
+        long now = System.currentTimeMillis();
+        if (now - lastSampleTime >= 500) {
+            long bytes = received.get();
+            speed = (bytes - lastSampleBytes) * 1000 / (now - lastSampleTime);
+            lastSampleTime = now;
+            lastSampleBytes = bytes;
+        }
+        progress.accept(done, total);
+    }
+
+    private void verify(long total)
+            throws IOException {
+        if (total >= 0 && part.length() != total) {
+            Files.deleteIfExists(stateFile.toPath());
+            throw new IOException("The downloaded file is incomplete, expected " + total + " bytes but got " + part.length());
+        }
+        if (expectedDigest == null)
+            return;
+        String actual = getDigest(part, expectedAlgorithm);
+        if (!actual.equalsIgnoreCase(expectedDigest)) {
+            // A broken part file should not be resumed
+            Files.deleteIfExists(part.toPath());
+            Files.deleteIfExists(stateFile.toPath());
+            throw new IOException("The downloaded file is broken, expected " + expectedAlgorithm + " " + expectedDigest +
+                    " but got " + actual);
+        }
+        Logger.debug("Network", "Verified the " + expectedAlgorithm + " of " + part);
+    }
+
+    private State createState(long total, String validator, int segments)
+            throws IOException {
+        State state = new State();
+        state.url = url.toString();
+        state.length = total;
+        state.validator = validator;
+        state.segments = new ArrayList<>();
+        long size = total / segments;
+        for (int i = 0; i < segments; i++) {
+            Segment segment = new Segment();
+            segment.start = i * size;
+            segment.end = i == segments - 1 ? total - 1 : (i + 1) * size - 1;
+            state.segments.add(segment);
+        }
+        Files.createDirectories(part.getAbsoluteFile().getParentFile().toPath());
+        try (RandomAccessFile raf = new RandomAccessFile(part, "rw")) {
+            raf.setLength(total);
+        }
+        saveState(state);
+        return state;
+    }
+
+    private State loadState(long total, String validator) {
+        if (!stateFile.isFile() || !part.isFile())
+            return null;
+        try {
+            State state = JSONObject.parseObject(IOUtils.FileUtil.readString(stateFile, charsetDefault), State.class);
+            // The remote file is regarded as unchanged only if it has the same length and the same validator
+            boolean matched = state != null && state.length == total && part.length() == total &&
+                    (validator != null ? validator.equals(state.validator) : state.validator == null && url.toString().equals(state.url));
+            if (matched && state.segments != null && !state.segments.isEmpty()) {
+                for (Segment segment : state.segments)
+                    if (segment.done < 0 || segment.done > segment.getLength())
+                        return null;
+                Logger.info("Network", "Resuming the download of " + dest);
+                return state;
+            }
+            Logger.info("Network", "The remote file was changed, the previous download of " + dest + " is dropped");
+        } catch (Exception e) {
+            Logger.warn("Network", "Failed to read the download progress of " + dest + ": " + e);
+        }
+        return null;
+    }
+
+    private void saveState(State state) {
+        try {
+            // Take the snapshot before flushing, so that the saved progress never exceeds the flushed bytes
+            String json = JSON.toJSONString(state);
+            try (FileChannel channel = FileChannel.open(part.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+            IOUtils.FileUtil.writeString(stateFile, charsetDefault, json, false);
+        } catch (IOException e) {
+            Logger.warn("Network", "Failed to save the download progress of " + dest + ": " + e);
+        }
+    }
+
+    private static long[] parseContentRange(HttpURLConnection connection)
+            throws IOException {
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+            return null;
+        String header = connection.getHeaderField("Content-Range");
+        Matcher matcher = header == null ? null : contentRangePattern.matcher(header.trim());
+        if (matcher == null || !matcher.matches())
+            return null;
+        long total = matcher.group(3).equals("*") ? -1 : Long.parseLong(matcher.group(3));
+        return new long[] {Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), total};
+    }
+
+    private static String getValidator(HttpURLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        // A weak ETag cannot be used in the If-Range header
+        if (etag != null && !etag.startsWith("W/"))
+            return etag;
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    private void parseAnnouncedDigest(HttpURLConnection connection)
+            throws IOException {
+        // The Content-MD5 of a partial content only covers the returned part
+        String md5 = connection.getHeaderField("Content-MD5");
+        if (md5 != null && connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+            setAnnouncedDigest("MD5", md5);
+            return;
+        }
+        for (String name : new String[] {"Repr-Digest", "Digest"}) {
+            String header = connection.getHeaderField(name);
+            if (header == null)
+                continue;
+            Matcher matcher = digestPattern.matcher(header);
+            if (matcher.find()) {
+                setAnnouncedDigest(matcher.group(1).toUpperCase(Locale.ROOT).equals("MD5") ? "MD5" : "SHA-256",
+                        matcher.group(2));
+                return;
+            }
+        }
+    }
+
+    private void setAnnouncedDigest(String algorithm, String base64) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : Base64.getDecoder().decode(base64.trim()))
+                sb.append(String.format("%02x", b));
+            setExpectedDigest(algorithm, sb.toString());
+        } catch (IllegalArgumentException e) {
+            Logger.warn("Network", "Ignored the malformed " + algorithm + " announced by the server");
+        }
+    }
+
+    private static String getDigest(File file, String algorithm)
+            throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Unsupported digest algorithm " + algorithm);
+        }
+        byte[] buffer = new byte[httpBufferSizeDefault * 4];
+        try (InputStream stream = Files.newInputStream(file.toPath())) {
+            int len;
+            while ((len = stream.read(buffer)) > 0)
+                md.update(buffer, 0, len);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest())
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+
+    /** The exception indicating that the remote file was changed during a ranged download.
+     */
+    public static class RemoteChangedException extends IOException {
+        public RemoteChangedException(String message) {
+            super(message);
+        }
+    }
+
+
+    /** The persisted progress of a ranged download.
+     */
+    public static class State {
+        /** The URL of the remote file. */
+        public String url;
+        /** The length of the remote file (byte). */
+        public long length;
+        /** The {@code ETag} or {@code Last-Modified} of the remote file, or {@code null} if not provided. */
+        public String validator;
+        /** The segments. */
+        public List<Segment> segments;
+
+        /** Gets the total downloaded bytes of the segments.
+         * @return The bytes.
+         */
+        @JSONField(serialize = false)
+        public long getDone() {
+            long done = 0;
+            for (Segment segment : segments)
+                done += segment.done;
+            return done;
+        }
+    }
+
+
+    /** A segment of a ranged download.
+     */
+    public static class Segment {
+        /** The first byte position (inclusive). */
+        public long start;
+        /** The last byte position (inclusive). */
+        public long end;
+        /** The downloaded bytes from the start. */
+        public volatile long done;
+
+        /** Gets the length of the segment.
+         * @return The length (byte).
+         */
+        @JSONField(serialize = false)
+        public long getLength() {
+            return end - start + 1;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.guitasks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class StagedSwapTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testResolveWithin()
+            throws IOException {
+        Path root = tempDir.resolve("root");
+        assertEquals(root.resolve("models").resolve("char_002"), StagedSwap.resolveWithin(root, "models/char_002"));
+        assertEquals(root.resolve("b"), StagedSwap.resolveWithin(root, "a/../b"));
+
+        assertThrows(IOException.class, () -> StagedSwap.resolveWithin(root, "../escaped"));
+        assertThrows(IOException.class, () -> StagedSwap.resolveWithin(root, "models/../../escaped"));
+        assertThrows(IOException.class, () -> StagedSwap.resolveWithin(root, tempDir.resolve("abs").toString()));
+        assertThrows(IOException.class, () -> StagedSwap.resolveWithin(root, "."));
+        assertThrows(IOException.class, () -> StagedSwap.resolveWithin(root, ""));
+    }
+
+    @Test
+    public void testApply()
+            throws IOException {
+        Path staged = Files.createDirectories(tempDir.resolve("staging").resolve("model"));
+        Files.writeString(staged.resolve("new.skel"), "new", StandardCharsets.UTF_8);
+        Path target = Files.createDirectories(tempDir.resolve("models").resolve("model"));
+        Files.writeString(target.resolve("old.skel"), "old", StandardCharsets.UTF_8);
+        Path removed = Files.createDirectories(tempDir.resolve("models").resolve("removed"));
+
+        StagedSwap.apply(List.of(new StagedSwap.Entry(staged, target), new StagedSwap.Entry(null, removed)),
+                new File(tempDir.toFile(), "trash"));
+        assertTrue(Files.isRegularFile(target.resolve("new.skel")));
+        assertFalse(Files.exists(target.resolve("old.skel")));
+        assertFalse(Files.exists(removed));
+        assertFalse(Files.exists(staged));
+    }
+
+    @Test
+    public void testApplyRollback()
+            throws IOException {
+        Path target = Files.createDirectories(tempDir.resolve("models").resolve("model"));
+        Files.writeString(target.resolve("old.skel"), "old", StandardCharsets.UTF_8);
+        Path missing = tempDir.resolve("staging").resolve("missing");
+
+        assertThrows(IOException.class, () -> StagedSwap.apply(List.of(new StagedSwap.Entry(missing, target)),
+                new File(tempDir.toFile(), "trash")));
+        assertTrue(Files.isRegularFile(target.resolve("old.skel")));
+    }
+}
@@ -0,0 +1,182 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.guitasks;
+
+import cn.harryh.arkpets.guitasks.GuiTask.GuiTaskStyle;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static cn.harryh.arkpets.Const.PathConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The tests of a full incremental sync of {@link SyncModelsTask} against a local HTTP server.
+ */
+public class SyncModelsTaskTest {
+    @TempDir
+    Path workRoot;
+    @TempDir
+    Path remoteRoot;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final Set<String> requested = Collections.synchronizedSet(new TreeSet<>());
+
+    @BeforeEach
+    public void setUp()
+            throws IOException {
+        // The local models, where the model d has lost a file
+        writeDataset(workRoot, Map.of(
+                "char_a", List.of("a.png"),
+                "char_b", List.of("b.png"),
+                "char_c", List.of("c.png"),
+                "char_d", List.of("d.png", "d2.png")
+        ), "old");
+        Files.delete(workRoot.resolve("models/char_d/d2.png"));
+        // The remote models, where the model b is changed, c is removed and e is added
+        writeDataset(remoteRoot, Map.of(
+                "char_a", List.of("a.png"),
+                "char_b", List.of("b.png", "b 2.png"),
+                "char_d", List.of("d.png", "d2.png"),
+                "char_e", List.of("e.png")
+        ), "new");
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOnlyChangedModelsFetched()
+            throws Exception {
+        SyncModelsTask task = new SyncModelsTask(null, GuiTaskStyle.HIDDEN, getRootUrl());
+        SyncModelsTask.SyncReport report = task.sync(workRoot, getRootUrl(), m -> {}, (d, t) -> {}, () -> false);
+        assertNotNull(report);
+        assertEquals("1 added, 2 changed, 1 removed, 1 unchanged", report.diff().toString());
+
+        Set<String> expected = new TreeSet<>(Set.of(PathConfig.fileModelsDataPath));
+        for (String model : List.of("char_b", "char_d", "char_e"))
+            for (String file : remoteFiles(model))
+                expected.add(workRoot.relativize(workRoot.resolve("models").resolve(model).resolve(file))
+                        .toString().replace('\\', '/'));
+        assertEquals(expected, requested);
+
+        // The fetched models are swapped in, and the unchanged one is left as it is
+        for (String model : List.of("char_b", "char_d", "char_e"))
+            for (String file : remoteFiles(model))
+                assertEquals("new " + model + "/" + file, read(workRoot.resolve("models").resolve(model).resolve(file)));
+        assertEquals("old char_a/a.png", read(workRoot.resolve("models/char_a/a.png")));
+        assertFalse(Files.exists(workRoot.resolve("models/char_c")));
+        assertEquals(read(remoteRoot.resolve(PathConfig.fileModelsDataPath)),
+                read(workRoot.resolve(PathConfig.fileModelsDataPath)));
+        assertTrue(report.fetchedBytes() > 0);
+        assertEquals(Files.size(workRoot.resolve("models/char_a/a.png")) +
+                Files.size(workRoot.resolve("models/char_a/build_char_a.atlas")) +
+                Files.size(workRoot.resolve("models/char_a/build_char_a.skel")), report.savedBytes());
+        assertFalse(Files.exists(workRoot.resolve(PathConfig.tempModelsSyncDirPath)));
+        assertFalse(Files.exists(workRoot.resolve(PathConfig.tempModelsTrashDirPath)));
+
+        // Nothing but the dataset is fetched once more
+        requested.clear();
+        report = task.sync(workRoot, getRootUrl(), m -> {}, (d, t) -> {}, () -> false);
+        assertTrue(report.diff().isEmpty());
+        assertEquals(Set.of(PathConfig.fileModelsDataPath), requested);
+    }
+
+    @Test
+    public void testCancelledSyncChangesNothing()
+            throws Exception {
+        String oldDataset = read(workRoot.resolve(PathConfig.fileModelsDataPath));
+        SyncModelsTask task = new SyncModelsTask(null, GuiTaskStyle.HIDDEN, getRootUrl());
+        assertNull(task.sync(workRoot, getRootUrl(), m -> {}, (d, t) -> {}, () -> true));
+        assertEquals(oldDataset, read(workRoot.resolve(PathConfig.fileModelsDataPath)));
+        assertEquals("old char_b/b.png", read(workRoot.resolve("models/char_b/b.png")));
+        assertTrue(Files.exists(workRoot.resolve("models/char_c/c.png")));
+        assertFalse(Files.exists(workRoot.resolve("models/char_e")));
+    }
+
+    private String getRootUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    private void handle(HttpExchange exchange)
+            throws IOException {
+        String path = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring(1), StandardCharsets.UTF_8);
+        requested.add(path);
+        Path file = remoteRoot.resolve(path).normalize();
+        if (!file.startsWith(remoteRoot) || !Files.isRegularFile(file)) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] content = Files.readAllBytes(file);
+        exchange.sendResponseHeaders(200, content.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(content);
+        }
+    }
+
+    private static List<String> remoteFiles(String model) {
+        return switch (model) {
+            case "char_b" -> List.of("b.png", "b 2.png", "build_char_b.atlas", "build_char_b.skel");
+            case "char_d" -> List.of("d.png", "d2.png", "build_char_d.atlas", "build_char_d.skel");
+            default -> List.of(model.substring(5) + ".png", "build_" + model + ".atlas", "build_" + model + ".skel");
+        };
+    }
+
+    private static void writeDataset(Path root, Map<String, List<String>> models, String version)
+            throws IOException {
+        StringBuilder data = new StringBuilder();
+        for (Map.Entry<String, List<String>> model : new TreeMap<>(models).entrySet()) {
+            String key = model.getKey();
+            ArrayList<String> files = new ArrayList<>(model.getValue());
+            files.add("build_" + key + ".atlas");
+            files.add("build_" + key + ".skel");
+            Path dir = root.resolve("models").resolve(key);
+            Files.createDirectories(dir);
+            for (String file : files)
+                Files.writeString(dir.resolve(file), version + " " + key + "/" + file, StandardCharsets.UTF_8);
+            if (!data.isEmpty())
+                data.append(',');
+            data.append("""
+                    "%1$s": {"assetId": "build_%1$s", "type": "Operator", "name": "%1$s",
+                     "assetList": {".atlas": "build_%1$s.atlas", ".png": [%2$s], ".skel": "build_%1$s.skel"}}
+                    """.formatted(key, String.join(", ", model.getValue().stream().map(s -> "\"" + s + "\"").toList())));
+        }
+        Files.writeString(root.resolve(PathConfig.fileModelsDataPath), """
+                {"storageDirectory": {"Operator": "models"}, "sortTags": {"Operator": "干员"},
+                 "gameDataVersionDescription": "%s", "gameDataServerRegion": "zh_CN",
+                 "arkPetsCompatibility": [3, 7, 0], "data": {%s}}
+                """.formatted(version, data), StandardCharsets.UTF_8);
+    }
+
+    private static String read(Path file)
+            throws IOException {
+        return Files.readString(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,209 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.utils;
+
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The tests of the delay probing of {@link NetUtils.Source} against local server sockets.
+ */
+public class NetUtilsTest {
+    private static final int slowMillis = 1000;
+    private static final int timeoutMillis = 1500;
+
+    @TempDir
+    File tempDir;
+
+    private File originalCacheFile;
+    private final List<ServerSocket> servers = new ArrayList<>();
+    private int livePort;
+    private int deadPort;
+
+    @BeforeEach
+    public void setUp()
+            throws IOException {
+        originalCacheFile = NetUtils.ProbeCache.file;
+        NetUtils.ProbeCache.file = new File(tempDir, "sources_probe.json");
+        // The kernel accepts the connections into the backlog, so no thread has to accept them
+        ServerSocket live = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        servers.add(live);
+        livePort = live.getLocalPort();
+        // A closed port refuses the connections at once
+        try (ServerSocket dead = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            deadPort = dead.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws Exception {
+        // Wait for the pending writes before the original file is restored
+        NetUtils.ProbeCache.saveLater().get();
+        NetUtils.ProbeCache.file = originalCacheFile;
+        for (ServerSocket server : servers)
+            server.close();
+    }
+
+    @Test
+    public void testReturnsWithFirstResponders()
+            throws Exception {
+        LocalSource dead = new LocalSource(deadPort, 0);
+        LocalSource fast1 = new LocalSource(livePort, 0);
+        LocalSource slow = new LocalSource(livePort, slowMillis);
+        LocalSource fast2 = new LocalSource(livePort, 0);
+        long start = System.currentTimeMillis();
+        NetUtils.Source.testDelay(List.of(dead, fast1, slow, fast2), 2, false);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < slowMillis, "Waited " + elapsed + "ms for the slow source");
+        assertTrue(fast1.delay >= 0);
+        assertTrue(fast2.delay >= 0);
+        assertEquals(-1, dead.delay);
+        assertEquals(-1, slow.delay);
+        // The slow probe keeps running in background, and its result is saved as well
+        awaitTrue(() -> slow.lastProbeTime >= 0);
+        assertTrue(slow.delay >= 0);
+        awaitTrue(() -> readRecord(slow) != null && readRecord(slow).getIntValue("delay") >= 0);
+    }
+
+    @Test
+    public void testWaitsForAllIfQuorumNotReached() {
+        LocalSource dead = new LocalSource(deadPort, 0);
+        LocalSource fast = new LocalSource(livePort, 0);
+        NetUtils.Source.testDelay(List.of(dead, fast), 2, false);
+        assertEquals(-1, dead.delay);
+        assertTrue(fast.delay >= 0);
+        assertEquals(1, dead.probes.get());
+        assertEquals(1, fast.probes.get());
+    }
+
+    @Test
+    public void testFreshResultsReused() {
+        LocalSource fast1 = new LocalSource(livePort, 0);
+        LocalSource fast2 = new LocalSource(livePort, 0);
+        LocalSource dead = new LocalSource(deadPort, 0);
+        List<NetUtils.Source> sources = List.of(fast1, fast2, dead);
+        NetUtils.Source.testDelay(sources, 2, false);
+        assertProbes(1, fast1, fast2, dead);
+
+        // All the results are fresh, even if the quorum cannot be reached by them
+        NetUtils.Source.testDelay(sources, 2, false);
+        NetUtils.Source.testDelay(sources, 3, false);
+        assertProbes(1, fast1, fast2, dead);
+        NetUtils.Source.testDelay(sources, 2, true);
+        assertProbes(2, fast1, fast2, dead);
+
+        // The expired result is tested again, while the fresh ones are reused
+        fast1.lastProbeTime = System.currentTimeMillis() - 11 * 60 * 1000L;
+        NetUtils.Source.testDelay(sources, 2, false);
+        assertEquals(3, fast1.probes.get());
+        assertProbes(2, fast2, dead);
+
+        // A source with a recent error does not count, and its result is no longer trusted
+        fast2.receiveError();
+        NetUtils.Source.testDelay(sources, 2, false);
+        assertEquals(3, fast2.probes.get());
+        assertTrue(fast2.hasRecentError());
+    }
+
+    @Test
+    public void testProbeCachePersisted()
+            throws Exception {
+        LocalSource fast = new LocalSource(livePort, 0);
+        LocalSource dead = new LocalSource(deadPort, 0);
+        NetUtils.Source.testDelay(List.of(fast, dead), 1, false);
+        // The cache is saved before returning
+        JSONObject record = readRecord(fast);
+        assertNotNull(record);
+        assertEquals(fast.delay, record.getIntValue("delay"));
+        assertEquals(fast.lastProbeTime, record.getLongValue("probeTime"));
+
+        // A new instance of the same source restores the results
+        LocalSource restored = new LocalSource(fast.preUrl, livePort, 0);
+        assertEquals(fast.delay, restored.delay);
+        assertTrue(restored.isProbeFresh());
+        NetUtils.Source.testDelay(List.of(restored), 1, false);
+        assertEquals(0, restored.probes.get());
+
+        // The error is saved in background
+        fast.receiveError();
+        NetUtils.ProbeCache.saveLater().get();
+        record = readRecord(fast);
+        assertEquals(fast.lastErrorTime, record.getLongValue("errorTime"));
+        assertEquals(-1, record.getLongValue("probeTime"));
+    }
+
+    private static void assertProbes(int expected, LocalSource... sources) {
+        for (LocalSource source : sources)
+            assertEquals(expected, source.probes.get(), source.tag);
+    }
+
+    private static JSONObject readRecord(NetUtils.Source source) {
+        File file = NetUtils.ProbeCache.file;
+        try {
+            return file.isFile() ?
+                    JSONObject.parseObject(Files.readString(file.toPath(), StandardCharsets.UTF_8)).getJSONObject(source.preUrl) :
+                    null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timeout");
+            Thread.sleep(20);
+        }
+    }
+
+
+    /** The source which probes a local port instead of the default one, optionally after a delay.
+     */
+    private static class LocalSource extends NetUtils.Source {
+        private final int port;
+        private final int extraDelay;
+        final AtomicInteger probes = new AtomicInteger();
+
+        LocalSource(int port, int extraDelay) {
+            this("http://127.0.0.1/" + UUID.randomUUID() + "/", port, extraDelay);
+        }
+
+        LocalSource(String preUrl, int port, int extraDelay) {
+            super("Local " + port, preUrl);
+            this.port = port;
+            this.extraDelay = extraDelay;
+        }
+
+        @Override
+        public void testDelay() {
+            probes.incrementAndGet();
+            try {
+                Thread.sleep(extraDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            testDelay(port, timeoutMillis);
+        }
+    }
+}
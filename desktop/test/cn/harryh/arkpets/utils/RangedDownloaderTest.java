@@ -0,0 +1,184 @@
+/** Copyright (c) 2022-2025, Harry Huang
+ * At GPL-3.0 License
+ */
+package cn.harryh.arkpets.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** The tests of the ranged download against a local HTTP server.
+ */
+public class RangedDownloaderTest {
+    private static final int length = 256 * 1024;
+    private static final int segmentSize = 16 * 1024;
+    private static final int chunkSize = 4 * 1024;
+    private static final Pattern rangePattern = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    @TempDir
+    File tempDir;
+
+    private final byte[] data = new byte[length];
+    private HttpServer server;
+    private ExecutorService executor;
+    private File dest;
+
+    // The behaviors of the server
+    private volatile boolean rangeSupported = true;
+    private volatile String etag = "\"v1\"";
+    private volatile String nextEtag = null;
+    private volatile int chunkDelay = 0;
+    private final AtomicInteger drops = new AtomicInteger();
+    private final AtomicLong segmentBytes = new AtomicLong();
+
+    @BeforeEach
+    public void setUp()
+            throws IOException {
+        new Random(42).nextBytes(data);
+        dest = new File(tempDir, "file.bin");
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/file.bin", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSegmentDrops()
+            throws IOException {
+        drops.set(3);
+        assertTrue(newDownloader().download((d, t) -> {}, () -> false));
+        assertEquals(0, drops.get());
+        assertDownloaded();
+    }
+
+    @Test
+    public void testResumeAfterCancel()
+            throws IOException {
+        chunkDelay = 20;
+        AtomicLong done = new AtomicLong();
+        assertFalse(newDownloader().download((d, t) -> done.set(d), () -> done.get() >= length / 4));
+        assertTrue(new File(dest.getPath() + ".part.json").isFile());
+        assertFalse(dest.exists());
+
+        chunkDelay = 0;
+        segmentBytes.set(0);
+        assertTrue(newDownloader().download((d, t) -> {}, () -> false));
+        // Only the remaining bytes are requested by the segments
+        assertTrue(segmentBytes.get() > 0 && segmentBytes.get() < length, "Requested " + segmentBytes.get() + " bytes");
+        assertDownloaded();
+    }
+
+    @Test
+    public void testRangeNotSupported()
+            throws IOException {
+        rangeSupported = false;
+        assertTrue(newDownloader().download((d, t) -> {}, () -> false));
+        assertEquals(0, segmentBytes.get());
+        assertDownloaded();
+    }
+
+    @Test
+    public void testRemoteChanged() {
+        nextEtag = "\"v2\"";
+        assertThrows(RangedDownloader.RemoteChangedException.class,
+                () -> newDownloader().download((d, t) -> {}, () -> false));
+        // The progress of the old remote file must be dropped rather than retried or resumed
+        assertFalse(new File(dest.getPath() + ".part.json").exists());
+        assertFalse(new File(dest.getPath() + ".part").exists());
+        assertFalse(dest.exists());
+    }
+
+    private RangedDownloader newDownloader()
+            throws IOException {
+        URL url = new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/file.bin");
+        return new RangedDownloader(url, dest, false).setSegments(4, segmentSize);
+    }
+
+    private void assertDownloaded()
+            throws IOException {
+        assertArrayEquals(data, Files.readAllBytes(dest.toPath()));
+        assertFalse(new File(dest.getPath() + ".part").exists());
+        assertFalse(new File(dest.getPath() + ".part.json").exists());
+    }
+
+    private void handle(HttpExchange exchange)
+            throws IOException {
+        try (exchange) {
+            String currentEtag = etag;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            Matcher matcher = range == null ? null : rangePattern.matcher(range);
+            exchange.getResponseHeaders().set("ETag", currentEtag);
+            if (!rangeSupported || matcher == null || !matcher.matches() ||
+                    (ifRange != null && !ifRange.equals(currentEtag))) {
+                // The whole file
+                exchange.sendResponseHeaders(200, length);
+                write(exchange.getResponseBody(), 0, length, false);
+                return;
+            }
+            int start = Integer.parseInt(matcher.group(1));
+            int end = matcher.group(2).isEmpty() ? length - 1 : Integer.parseInt(matcher.group(2));
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            exchange.sendResponseHeaders(206, end - start + 1);
+            if (ifRange == null) {
+                // The first request of a download, after which the remote file may be changed
+                if (nextEtag != null)
+                    etag = nextEtag;
+            } else {
+                segmentBytes.addAndGet(end - start + 1);
+            }
+            boolean drop = ifRange != null && drops.getAndUpdate(i -> Math.max(0, i - 1)) > 0;
+            write(exchange.getResponseBody(), start, end - start + 1, drop);
+        } catch (IOException e) {
+            // The client may disconnect at any time
+        }
+    }
+
+    private void write(OutputStream os, int offset, int count, boolean drop)
+            throws IOException {
+        int limit = drop ? count / 2 : count;
+        for (int written = 0; written < limit; ) {
+            int len = Math.min(chunkSize, limit - written);
+            os.write(data, offset + written, len);
+            os.flush();
+            written += len;
+            if (chunkDelay > 0) {
+                try {
+                    Thread.sleep(chunkDelay);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+        if (drop)
+            throw new IOException("Dropped");
+    }
+}